@@ -8,6 +8,7 @@ import controller.analysisView.VisDrSandersonController;
 import javafx.application.Platform;
 import javafx.collections.ObservableList;
 import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
@@ -20,26 +21,45 @@ import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseDragEvent;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+import javafx.util.Pair;
 import model.SanimalData;
+import model.analysis.AnalysisSnapshot;
 import model.analysis.DataAnalyzer;
+import model.constant.SanimalMetadataFields;
 import model.image.ImageEntry;
+import model.location.Location;
 import model.query.CyVerseQuery;
 import model.query.IQueryCondition;
+import model.query.ImageIndex;
 import model.query.QueryEngine;
+import model.query.QueryPlan;
+import model.query.QueryResultCache;
 import model.threading.ErrorTask;
 import model.util.FXMLLoaderUtils;
 import org.controlsfx.control.MaskerPane;
 
+import javax.swing.filechooser.FileSystemView;
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
-import java.util.List;
-import java.util.Optional;
-import java.util.ResourceBundle;
+import java.time.Month;
+import java.time.format.TextStyle;
+import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * Controller class for the analysis page
  */
 public class SanimalAnalysisController implements Initializable
 {
+	// Queries estimated to return more images than this show a warning before running
+	private static final Long LARGE_QUERY_THRESHOLD = 50000L;
+	// Rough size of the metadata retrieved for one image in bytes, used to estimate the query's memory footprint
+	private static final Long ESTIMATED_METADATA_BYTES_PER_IMAGE = 1024L;
+	// Shown in place of a summary table if its count query failed
+	private static final String COUNT_FAILED = "  Unknown, the count query failed";
+
 	///
 	/// FXML bound fields start
 	///
@@ -87,6 +107,14 @@ public class SanimalAnalysisController implements Initializable
 	/// FXML bound fields end
 	///
 
+	// An index over the last result retrieved from CyVerse and the plan that produced it, narrower queries are answered from this
+	private ImageIndex lastResultIndex = null;
+	private QueryPlan lastResultPlan = null;
+	// The analysis currently being visualized, its images are what is saved to a snapshot
+	private DataAnalyzer currentAnalysis = null;
+	// The number of images per second metadata was retrieved at on the last full query, null until a query has been timed
+	private volatile Double measuredResultsPerSecond = null;
+
 	private Integer eventIntervalIndex = 0;
 
 	private Image standardArrow = new Image("/images/analysisWindow/arrowDivider.png");
@@ -147,51 +175,186 @@ public class SanimalAnalysisController implements Initializable
 	{
 		this.mpnQuerying.setVisible(true);
 
-		// Default 60s event interval
-		Integer eventInterval = 60;
-		try
+		Integer finalEventInterval = this.parseEventInterval();
+
+		// Turn the conditions into a normalized plan, and make sure it can return results before sending it to CyVerse
+		QueryPlan queryPlan = SanimalData.getInstance().getQueryEngine().createPlan();
+		List<String> problems = queryPlan.validate();
+		if (!problems.isEmpty())
 		{
-			// Check if a different interval was given
-			eventInterval = Integer.parseInt(this.txtEventInterval.getText());
+			SanimalData.getInstance().getErrorDisplay().showPopup(
+					Alert.AlertType.WARNING,
+					this.lvwFilters.getScene().getWindow(),
+					"Invalid Query",
+					"This query can never return any images",
+					String.join("\n", problems),
+					false);
+			this.mpnQuerying.setVisible(false);
+			actionEvent.consume();
+			return;
 		}
-		catch (NumberFormatException ignored) {}
 
-		// Create a query
-		CyVerseQuery query = new CyVerseQuery();
-		// For each condition listed in the listview, apply that to the overall query
-		for (IQueryCondition queryCondition : SanimalData.getInstance().getQueryEngine().getQueryConditions())
-			queryCondition.appendConditionToQuery(query);
+		// If this query only narrows the last query we ran, filter the last result locally instead of asking CyVerse
+		if (this.lastResultIndex != null && queryPlan.isNarrowerThan(this.lastResultPlan))
+		{
+			// Hold onto the index in case another query replaces it while we filter
+			ImageIndex resultIndex = this.lastResultIndex;
+			Task<DataAnalyzer> filterTask = new ErrorTask<DataAnalyzer>()
+			{
+				@Override
+				protected DataAnalyzer call()
+				{
+					this.updateMessage("Filtering previous results...");
+					return new DataAnalyzer(resultIndex.imagesFor(resultIndex.evaluate(queryPlan)), finalEventInterval);
+				}
+			};
+			filterTask.setOnSucceeded(event -> this.visualizeAnalysis(filterTask.getValue()));
+			filterTask.addEventHandler(WorkerStateEvent.WORKER_STATE_FAILED, event -> this.mpnQuerying.setVisible(false));
+			SanimalData.getInstance().getSanimalExecutor().getQueuedExecutor().addTask(filterTask);
+			actionEvent.consume();
+			return;
+		}
 
-		Task<List<String>> queryTask = new ErrorTask<List<String>>()
+		// Before running the query, count how many images it will return on the server. This is cheap compared to the real query
+		CyVerseQuery countQuery = queryPlan.toCountQuery(null);
+		Task<Long> countTask = new ErrorTask<Long>()
 		{
 			@Override
-			protected List<String> call()
+			protected Long call()
 			{
-				this.updateMessage("Performing query...");
-				// Grab the result of the query
-				return SanimalData.getInstance().getConnectionManager().performQuery(query);
+				this.updateMessage("Estimating query size...");
+				Map<String, Long> counts = SanimalData.getInstance().getConnectionManager().performAggregateQuery(countQuery);
+				// If the count failed we don't know the size, return null instead of pretending there are 0 results
+				if (counts == null)
+					return null;
+				// Add up the total, there's only one row since the count is not grouped
+				return counts.values().stream().mapToLong(Long::longValue).sum();
 			}
 		};
-		Integer finalEventInterval = eventInterval;
 
-		// Once finished with the task, we test if the user wants to continue
-		queryTask.setOnSucceeded(event ->
+		// Once the estimate is in, we test if the user wants to continue
+		countTask.setOnSucceeded(event ->
 		{
-			// Get the result of the first query
-			List<String> irodsAbsolutePaths = queryTask.getValue();
+			Long estimatedCount = countTask.getValue();
+			Boolean largeQuery = estimatedCount != null && estimatedCount > LARGE_QUERY_THRESHOLD;
+
+			// Ask the user if they would like to run the full query, get a summary, or give up
+			Alert alert = new Alert(largeQuery || estimatedCount == null ? Alert.AlertType.WARNING : Alert.AlertType.CONFIRMATION);
+			alert.initOwner(this.lvwFilters.getScene().getWindow());
+			alert.setTitle("Query Count");
+			if (estimatedCount == null)
+			{
+				alert.setHeaderText("The size of this query is unknown");
+				alert.setContentText("Counting the results of this query on CyVerse failed, so it may return any number of results. Continue anyway?");
+			}
+			else
+			{
+				Double estimatedMegabytes = estimatedCount * ESTIMATED_METADATA_BYTES_PER_IMAGE / (1024D * 1024D);
+				alert.setHeaderText(largeQuery ? "This is a large query, consider narrowing it or only retrieving a summary" : null);
+				alert.setContentText("This query will return approximately " + estimatedCount + " results (about " + String.format("%.1f", estimatedMegabytes) + " MB of metadata)" + this.describeQueryTime(estimatedCount) + ", continue?");
+			}
 
-			// Ask the user if they would like to continue to part 2 of the query where we retrieve metadata. This takes a while
-			Optional<ButtonType> buttonTypeOpt = SanimalData.getInstance().getErrorDisplay().showPopup(
-					Alert.AlertType.CONFIRMATION,
-					this.lvwFilters.getScene().getWindow(),
-					"Query Count",
-					null,
-					"This query will return " + irodsAbsolutePaths.size() + " results at approximately 6 results per second, continue?",
-					true);
+			// 3 buttons, Run the full query, Summary only, Cancel
+			ButtonType runQuery = new ButtonType("Run Query");
+			ButtonType summaryOnly = new ButtonType("Summary Only");
+			alert.getButtonTypes().setAll(runQuery, summaryOnly, ButtonType.CANCEL);
+
+			// Test for the result of the alert shown
+			Optional<ButtonType> result = alert.showAndWait();
+
+			// If run is pressed, grab every image and analyze them
+			if (result.isPresent() && result.get() == runQuery)
+				this.runFullQuery(queryPlan, finalEventInterval);
+			// If summary is pressed, only retrieve counts computed on the server
+			else if (result.isPresent() && result.get() == summaryOnly)
+				this.runSummaryQuery(queryPlan);
+			// Otherwise just jump out
+			else
+				this.mpnQuerying.setVisible(false);
+		});
+		// If the count throws, hide the masker without replacing the error task's failure handler
+		countTask.addEventHandler(WorkerStateEvent.WORKER_STATE_FAILED, event -> this.mpnQuerying.setVisible(false));
+		SanimalData.getInstance().getSanimalExecutor().getQueuedExecutor().addTask(countTask);
 
-			// If they press OK, query, otherwise just jump out
-			if (buttonTypeOpt.isPresent() && buttonTypeOpt.get() == ButtonType.OK)
+		actionEvent.consume();
+	}
+
+	/**
+	 * Performs the query, retrieves the metadata for every resulting image, and hands the result to the visualizations. If the
+	 * same query was run before and none of its collections have changed since, the cached result is used instead. If some
+	 * collections changed, the cached result is refreshed with only the images that changed
+	 *
+	 * @param queryPlan The plan to execute
+	 * @param eventInterval The event interval to analyze the images with
+	 */
+	private void runFullQuery(QueryPlan queryPlan, Integer eventInterval)
+	{
+		// Check the cache first, this requires the current modification stamp of each collection
+		Task<Pair<Map<String, String>, List<ImageEntry>>> cacheTask = new ErrorTask<Pair<Map<String, String>, List<ImageEntry>>>()
+		{
+			@Override
+			protected Pair<Map<String, String>, List<ImageEntry>> call()
 			{
+				this.updateMessage("Checking for cached results...");
+				Map<String, String> collectionStamps = SanimalData.getInstance().getConnectionManager().fetchCollectionModifyStamps();
+				QueryResultCache.CachedResult cachedResult = SanimalData.getInstance().getQueryResultCache().get(queryPlan, collectionStamps);
+				// Nothing cached, the full query must be run
+				if (cachedResult == null)
+					return new Pair<>(collectionStamps, null);
+				// Nothing changed, use the cached result as is
+				if (cachedResult.isUpToDate())
+					return new Pair<>(collectionStamps, cachedResult.getImages());
+
+				// Something changed, only fetch what changed since the result was cached
+				this.updateMessage("Refreshing cached results...");
+				List<ImageEntry> refreshedImages = SanimalData.getInstance().getConnectionManager().refreshQuery(queryPlan, cachedResult, collectionStamps);
+				if (refreshedImages != null)
+				{
+					// CyVerse only approximates spatial and time of day conditions, so remove anything that does not match exactly
+					refreshedImages = queryPlan.filterOnClient(refreshedImages);
+					SanimalData.getInstance().getQueryResultCache().put(queryPlan, collectionStamps, refreshedImages);
+				}
+				return new Pair<>(collectionStamps, refreshedImages);
+			}
+		};
+
+		cacheTask.setOnSucceeded(cacheEvent ->
+		{
+			Map<String, String> collectionStamps = cacheTask.getValue().getKey();
+			List<ImageEntry> cachedImages = cacheTask.getValue().getValue();
+			// If the result was cached or refreshed we're done
+			if (cachedImages != null)
+			{
+				this.visualizeResults(queryPlan, cachedImages, eventInterval);
+				return;
+			}
+
+			// Create a query
+			CyVerseQuery query = queryPlan.toQuery();
+
+			Task<List<String>> queryTask = new ErrorTask<List<String>>()
+			{
+				@Override
+				protected List<String> call()
+				{
+					this.updateMessage("Performing query...");
+					// Grab the result of the query, split into shards that run in parallel
+					return SanimalData.getInstance().getConnectionManager().performShardedQuery(query);
+				}
+			};
+
+			// Once finished with the task, we retrieve metadata for each image
+			queryTask.setOnSucceeded(event ->
+			{
+				// Get the result of the first query
+				List<String> irodsAbsolutePaths = queryTask.getValue();
+				// If part of the query failed the result is incomplete, the error has been shown so just stop
+				if (irodsAbsolutePaths == null)
+				{
+					this.mpnQuerying.setVisible(false);
+					return;
+				}
+
 				// Create a second task to perform the next query
 				Task<List<ImageEntry>> queryImageTask = new ErrorTask<List<ImageEntry>>()
 				{
@@ -199,35 +362,286 @@ public class SanimalAnalysisController implements Initializable
 					protected List<ImageEntry> call()
 					{
 						this.updateMessage("Performing image query...");
-						// Grab the result of the image query
-						return SanimalData.getInstance().getConnectionManager().fetchMetadataFor(irodsAbsolutePaths);
+						// Grab the result of the image query, and time it so later queries can estimate how long they will take
+						long fetchStart = System.currentTimeMillis();
+						List<ImageEntry> images = SanimalData.getInstance().getConnectionManager().fetchMetadataFor(irodsAbsolutePaths);
+						SanimalAnalysisController.this.recordFetchRate(images.size(), System.currentTimeMillis() - fetchStart);
+						// If some metadata could not be retrieved the result is missing images, so it must not be cached
+						Integer fetchedCount = images.size();
+						Boolean complete = fetchedCount == irodsAbsolutePaths.size();
+						// CyVerse only approximates spatial and time of day conditions, so remove anything that does not match exactly
+						images = queryPlan.filterOnClient(images);
+						if (complete)
+						{
+							// Store the result so the next identical query is fast
+							this.updateMessage("Caching query results...");
+							SanimalData.getInstance().getQueryResultCache().put(queryPlan, collectionStamps, images);
+						}
+						else
+						{
+							SanimalData.getInstance().getErrorDisplay().showPopup(
+									Alert.AlertType.WARNING,
+									null,
+									"Warning",
+									"Incomplete query results",
+									"Metadata could only be retrieved for " + fetchedCount + " of " + irodsAbsolutePaths.size() + " images. The analysis will be missing images, and the result was not cached.",
+									false);
+						}
+						return images;
 					}
 				};
 
-				queryImageTask.setOnSucceeded(event1 ->
-				{
-					// Analyze the result of the query
-					DataAnalyzer dataAnalyzer = new DataAnalyzer(queryImageTask.getValue(), finalEventInterval);
+				queryImageTask.setOnSucceeded(event1 -> this.visualizeResults(queryPlan, queryImageTask.getValue(), eventInterval));
 
-					// Hand the analysis over to the visualizations to graph
-					visDrSandersonController.visualize(dataAnalyzer);
-					visCSVController.visualize(dataAnalyzer);
-					visDownloadController.visualize(dataAnalyzer);
-					this.mpnQuerying.setVisible(false);
-				});
+				queryImageTask.addEventHandler(WorkerStateEvent.WORKER_STATE_FAILED, event1 -> this.mpnQuerying.setVisible(false));
 
 				// Execute the second query
 				SanimalData.getInstance().getSanimalExecutor().getQueuedExecutor().addTask(queryImageTask);
+			});
+			queryTask.addEventHandler(WorkerStateEvent.WORKER_STATE_FAILED, event -> this.mpnQuerying.setVisible(false));
+			SanimalData.getInstance().getSanimalExecutor().getQueuedExecutor().addTask(queryTask);
+		});
+		// If any step throws, hide the masker without replacing the error task's failure handler
+		cacheTask.addEventHandler(WorkerStateEvent.WORKER_STATE_FAILED, cacheEvent -> this.mpnQuerying.setVisible(false));
+		SanimalData.getInstance().getSanimalExecutor().getQueuedExecutor().addTask(cacheTask);
+	}
+
+	/**
+	 * Records how quickly image metadata was retrieved so that later query estimates can use it
+	 *
+	 * @param resultCount The number of images retrieved
+	 * @param elapsedMillis The number of milliseconds it took
+	 */
+	private void recordFetchRate(int resultCount, long elapsedMillis)
+	{
+		// Tiny queries don't say much about the rate, so only record queries that took a measurable amount of time
+		if (resultCount > 0 && elapsedMillis > 1000)
+			this.measuredResultsPerSecond = resultCount / (elapsedMillis / 1000D);
+	}
+
+	/**
+	 * Describes how long retrieving a number of results should take using the rate measured on the last query
+	 *
+	 * @param resultCount The number of results to retrieve
+	 * @return A phrase to append to the query estimate, or an empty string if no rate has been measured yet
+	 */
+	private String describeQueryTime(Long resultCount)
+	{
+		Double resultsPerSecond = this.measuredResultsPerSecond;
+		if (resultsPerSecond == null)
+			return "";
+		return String.format(", which should take about %.0f seconds at the %.1f results per second measured on the last query", resultCount / resultsPerSecond, resultsPerSecond);
+	}
+
+	/**
+	 * Parses the event interval the user typed in
+	 *
+	 * @return The event interval in minutes, 60 if no valid interval was given
+	 */
+	private Integer parseEventInterval()
+	{
+		// Default 60s event interval
+		Integer eventInterval = 60;
+		try
+		{
+			// Check if a different interval was given
+			eventInterval = Integer.parseInt(this.txtEventInterval.getText());
+		}
+		catch (NumberFormatException ignored) {}
+		return eventInterval;
+	}
+
+	/**
+	 * Called when the save results button is pressed, writes the images currently being analyzed to a snapshot file
+	 *
+	 * @param actionEvent consumed
+	 */
+	public void saveResults(ActionEvent actionEvent)
+	{
+		if (this.currentAnalysis == null)
+		{
+			SanimalData.getInstance().getErrorDisplay().showPopup(
+					Alert.AlertType.INFORMATION,
+					this.lvwFilters.getScene().getWindow(),
+					"No Results",
+					"Nothing to save",
+					"Perform a query first, then save its results.",
+					true);
+			actionEvent.consume();
+			return;
+		}
+
+		// Ask where to save the snapshot
+		FileChooser fileChooser = this.createSnapshotChooser("Save query results");
+		File file = fileChooser.showSaveDialog(this.lvwFilters.getScene().getWindow());
+		if (file != null)
+		{
+			DataAnalyzer analysisToSave = this.currentAnalysis;
+			Task<Void> saveTask = new ErrorTask<Void>()
+			{
+				@Override
+				protected Void call() throws IOException
+				{
+					this.updateMessage("Saving query results...");
+					AnalysisSnapshot.write(analysisToSave.getOriginalImageList(), file);
+					return null;
+				}
+			};
+			SanimalData.getInstance().getSanimalExecutor().getQueuedExecutor().addTask(saveTask);
+		}
+		actionEvent.consume();
+	}
+
+	/**
+	 * Called when the open results button is pressed, reads a snapshot file and analyzes it as if it were a query result
+	 *
+	 * @param actionEvent consumed
+	 */
+	public void openResults(ActionEvent actionEvent)
+	{
+		// Ask which snapshot to open
+		FileChooser fileChooser = this.createSnapshotChooser("Open query results");
+		File file = fileChooser.showOpenDialog(this.lvwFilters.getScene().getWindow());
+		if (file != null)
+		{
+			this.mpnQuerying.setVisible(true);
+			Integer eventInterval = this.parseEventInterval();
+			Task<DataAnalyzer> openTask = new ErrorTask<DataAnalyzer>()
+			{
+				@Override
+				protected DataAnalyzer call() throws IOException
+				{
+					this.updateMessage("Opening query results...");
+					AnalysisSnapshot snapshot = AnalysisSnapshot.open(file);
+					// Snapshots are written sorted by date, so their mapped columns can be analyzed without copying them onto the heap
+					if (snapshot.isSortedByDate())
+						return new DataAnalyzer(snapshot, eventInterval);
+					return new DataAnalyzer(snapshot.toImageEntries(), eventInterval);
+				}
+			};
+			openTask.setOnSucceeded(event ->
+			{
+				// The snapshot didn't come from a plan, so later queries can't be answered from it
+				this.lastResultIndex = null;
+				this.lastResultPlan = null;
+				this.visualizeAnalysis(openTask.getValue());
+			});
+			openTask.addEventHandler(WorkerStateEvent.WORKER_STATE_FAILED, event -> this.mpnQuerying.setVisible(false));
+			SanimalData.getInstance().getSanimalExecutor().getQueuedExecutor().addTask(openTask);
+		}
+		actionEvent.consume();
+	}
+
+	/**
+	 * Creates a file chooser for snapshot files
+	 *
+	 * @param title The title of the chooser window
+	 * @return A file chooser filtering for snapshot files
+	 */
+	private FileChooser createSnapshotChooser(String title)
+	{
+		FileChooser fileChooser = new FileChooser();
+		fileChooser.setTitle(title);
+		fileChooser.setInitialDirectory(FileSystemView.getFileSystemView().getDefaultDirectory());
+		fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Sanimal Query Results", "*.snapshot"));
+		return fileChooser;
+	}
+
+	/**
+	 * Indexes and analyzes the images returned by a query in the background, then hands the analysis over to the visualizations.
+	 * The index lets narrower queries be answered without a round trip to CyVerse
+	 *
+	 * @param queryPlan The plan that produced the result
+	 * @param images The images returned by the query
+	 * @param eventInterval The event interval to analyze the images with
+	 */
+	private void visualizeResults(QueryPlan queryPlan, List<ImageEntry> images, Integer eventInterval)
+	{
+		Task<Pair<ImageIndex, DataAnalyzer>> analyzeTask = new ErrorTask<Pair<ImageIndex, DataAnalyzer>>()
+		{
+			@Override
+			protected Pair<ImageIndex, DataAnalyzer> call()
+			{
+				this.updateMessage("Analyzing query results...");
+				return new Pair<>(new ImageIndex(images), new DataAnalyzer(images, eventInterval));
 			}
-			else
+		};
+		analyzeTask.setOnSucceeded(event ->
+		{
+			this.lastResultIndex = analyzeTask.getValue().getKey();
+			this.lastResultPlan = queryPlan;
+			this.visualizeAnalysis(analyzeTask.getValue().getValue());
+		});
+		analyzeTask.addEventHandler(WorkerStateEvent.WORKER_STATE_FAILED, event -> this.mpnQuerying.setVisible(false));
+		SanimalData.getInstance().getSanimalExecutor().getQueuedExecutor().addTask(analyzeTask);
+	}
+
+	/**
+	 * Hands an analysis over to the visualizations
+	 *
+	 * @param dataAnalyzer The analysis to visualize
+	 */
+	private void visualizeAnalysis(DataAnalyzer dataAnalyzer)
+	{
+		this.currentAnalysis = dataAnalyzer;
+
+		// Hand the analysis over to the visualizations to graph
+		visDrSandersonController.visualize(dataAnalyzer);
+		visCSVController.visualize(dataAnalyzer);
+		visDownloadController.visualize(dataAnalyzer);
+		this.mpnQuerying.setVisible(false);
+	}
+
+	/**
+	 * Retrieves image counts per species, location, and month computed on the server and shows them to the user. This never
+	 * downloads individual images or metadata so it is safe for very large queries
+	 *
+	 * @param queryPlan The plan to summarize
+	 */
+	private void runSummaryQuery(QueryPlan queryPlan)
+	{
+		// One grouped count query per summary table
+		CyVerseQuery speciesQuery = queryPlan.toCountQuery(SanimalMetadataFields.A_SPECIES_SCIENTIFIC_NAME);
+		CyVerseQuery locationQuery = queryPlan.toCountQuery(SanimalMetadataFields.A_LOCATION_ID);
+		CyVerseQuery monthQuery = queryPlan.toCountQuery(SanimalMetadataFields.A_DATE_MONTH_TAKEN);
+
+		Task<String> summaryTask = new ErrorTask<String>()
+		{
+			@Override
+			protected String call()
 			{
-				this.mpnQuerying.setVisible(false);
+				this.updateMessage("Performing summary query...");
+				Map<String, Long> speciesCounts = SanimalData.getInstance().getConnectionManager().performAggregateQuery(speciesQuery);
+				Map<String, Long> locationCounts = SanimalData.getInstance().getConnectionManager().performAggregateQuery(locationQuery);
+				Map<String, Long> monthCounts = SanimalData.getInstance().getConnectionManager().performAggregateQuery(monthQuery);
+
+				// Location IDs are not very readable so we show the location name next to it if we know it
+				Map<String, String> locationIDToName = SanimalData.getInstance().getLocationList().stream().collect(Collectors.toMap(Location::getId, Location::getName, (first, second) -> first));
+
+				// Format each table as value: count lines, tables whose count failed are shown as unknown rather than empty
+				return "Images per species:\n" +
+						(speciesCounts == null ? COUNT_FAILED : speciesCounts.entrySet().stream().map(entry -> "  " + entry.getKey() + ": " + entry.getValue()).collect(Collectors.joining("\n"))) +
+						"\n\nImages per location:\n" +
+						(locationCounts == null ? COUNT_FAILED : locationCounts.entrySet().stream().map(entry -> "  " + locationIDToName.getOrDefault(entry.getKey(), "") + " (" + entry.getKey() + "): " + entry.getValue()).collect(Collectors.joining("\n"))) +
+						"\n\nImages per month:\n" +
+						(monthCounts == null ? COUNT_FAILED : monthCounts.entrySet().stream().sorted(Comparator.comparing(entry -> Integer.parseInt(entry.getKey()))).map(entry -> "  " + Month.of(Integer.parseInt(entry.getKey())).getDisplayName(TextStyle.FULL, Locale.getDefault()) + ": " + entry.getValue()).collect(Collectors.joining("\n")));
 			}
+		};
 
+		// Show the summary once it's finished
+		summaryTask.setOnSucceeded(event ->
+		{
+			this.mpnQuerying.setVisible(false);
+			SanimalData.getInstance().getErrorDisplay().showPopup(
+					Alert.AlertType.INFORMATION,
+					this.lvwFilters.getScene().getWindow(),
+					"Query Summary",
+					"Image counts computed on CyVerse",
+					summaryTask.getValue(),
+					false);
 		});
-		SanimalData.getInstance().getSanimalExecutor().getQueuedExecutor().addTask(queryTask);
-
-		actionEvent.consume();
+		summaryTask.addEventHandler(WorkerStateEvent.WORKER_STATE_FAILED, event -> this.mpnQuerying.setVisible(false));
+		SanimalData.getInstance().getSanimalExecutor().getQueuedExecutor().addTask(summaryTask);
 	}
 
 	/**
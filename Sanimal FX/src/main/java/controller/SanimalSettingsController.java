@@ -12,10 +12,18 @@ import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
 import javafx.concurrent.Task;
 import javafx.concurrent.Worker;
+import javafx.concurrent.WorkerStateEvent;
 import javafx.fxml.FXML;
+import javafx.event.ActionEvent;
 import javafx.fxml.Initializable;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
 import javafx.scene.control.ComboBox;
 import model.SanimalData;
+import model.cyverse.TransferBenchmark;
+import model.threading.ErrorTask;
+import model.util.SettingsData;
 import org.controlsfx.control.PropertySheet;
 import org.controlsfx.control.TaskProgressView;
 import org.controlsfx.property.editor.AbstractPropertyEditor;
@@ -27,6 +35,7 @@ import org.fxmisc.easybind.EasyBind;
 import java.net.URL;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
+import java.util.Map;
 import java.util.Optional;
 import java.util.ResourceBundle;
 import java.util.stream.Collectors;
@@ -44,10 +53,19 @@ public class SanimalSettingsController implements Initializable
 	@FXML
 	public PropertySheet pstSettings;
 
+	// The button used to benchmark transfer profiles
+	@FXML
+	public Button btnBenchmarkTransfer;
+
 	///
 	/// FXML bound fields end
 	///
 
+	// The size of the transfer benchmark's test file in bytes
+	private static final Long BENCHMARK_FILE_SIZE = 64L * 1024L * 1024L;
+	// The simulated round trip per buffer in milliseconds used by the local benchmark
+	private static final Long BENCHMARK_LATENCY_MILLIS = 2L;
+
 	/**
 	 * Initialize sets up the analysis window and bindings
 	 *
@@ -70,4 +88,74 @@ public class SanimalSettingsController implements Initializable
 
 		 */
 	}
+
+	/**
+	 * Called to run the transfer benchmark and pick a transfer profile for the user
+	 *
+	 * @param actionEvent consumed
+	 */
+	public void benchmarkTransfer(ActionEvent actionEvent)
+	{
+		// By default the profiles are compared against a local stand-in for the data store so nothing is sent over the network
+		TransferBenchmark benchmark = new TransferBenchmark(BENCHMARK_FILE_SIZE, BENCHMARK_LATENCY_MILLIS);
+		// Benchmarking against CyVerse is more accurate but uploads the test file once per profile, so only do it if the user agrees to
+		if (SanimalData.getInstance().isLoggedIn())
+		{
+			Integer profileCount = SettingsData.TransferProfile.values().length;
+			Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+			alert.initOwner(this.pstSettings.getScene().getWindow());
+			alert.setTitle("Transfer Benchmark");
+			alert.setHeaderText("Benchmark against CyVerse?");
+			alert.setContentText("The local benchmark uses no network. Benchmarking against CyVerse uploads a " + (BENCHMARK_FILE_SIZE / (1024 * 1024)) + "MB test file to your account " + profileCount + " times (" + (profileCount * BENCHMARK_FILE_SIZE / (1024 * 1024)) + "MB in total), which may be slow or costly on field and satellite connections. The test file is removed after each upload.");
+
+			ButtonType local = new ButtonType("Local Benchmark");
+			ButtonType remote = new ButtonType("Upload to CyVerse");
+			alert.getButtonTypes().setAll(local, remote, ButtonType.CANCEL);
+
+			Optional<ButtonType> result = alert.showAndWait();
+			if (!result.isPresent() || result.get() == ButtonType.CANCEL)
+			{
+				actionEvent.consume();
+				return;
+			}
+			if (result.get() == remote)
+				benchmark = SanimalData.getInstance().getConnectionManager().createTransferBenchmark(BENCHMARK_FILE_SIZE);
+		}
+
+		this.btnBenchmarkTransfer.setDisable(true);
+
+		TransferBenchmark benchmarkToRun = benchmark;
+		Task<Map<SettingsData.TransferProfile, Double>> benchmarkTask = new ErrorTask<Map<SettingsData.TransferProfile, Double>>()
+		{
+			@Override
+			protected Map<SettingsData.TransferProfile, Double> call() throws Exception
+			{
+				this.updateMessage("Benchmarking transfer profiles...");
+				return benchmarkToRun.run();
+			}
+		};
+
+		// Once finished, apply the recommended profile and tell the user what was measured
+		benchmarkTask.setOnSucceeded(event ->
+		{
+			Map<SettingsData.TransferProfile, Double> throughputs = benchmarkTask.getValue();
+			SettingsData.TransferProfile recommended = TransferBenchmark.recommend(throughputs);
+			SanimalData.getInstance().getSettings().setTransferProfile(recommended);
+
+			String results = throughputs.entrySet().stream().map(entry -> entry.getKey() + ": " + String.format("%.1f", entry.getValue() / (1024 * 1024)) + " MB/s").collect(Collectors.joining("\n"));
+			SanimalData.getInstance().getErrorDisplay().showPopup(
+					Alert.AlertType.INFORMATION,
+					this.pstSettings.getScene().getWindow(),
+					"Transfer Profile",
+					"Recommended profile: " + recommended,
+					results + "\n\nThe profile will be used from the next transfer on.",
+					false);
+			this.btnBenchmarkTransfer.setDisable(false);
+		});
+		// Re-enable the button on failure without replacing the error task's failure handler
+		benchmarkTask.addEventHandler(WorkerStateEvent.WORKER_STATE_FAILED, event -> this.btnBenchmarkTransfer.setDisable(false));
+
+		SanimalData.getInstance().getSanimalExecutor().getImmediateExecutor().addTask(benchmarkTask);
+		actionEvent.consume();
+	}
 }
@@ -0,0 +1,137 @@
+package controller.analysisView;
+
+import javafx.collections.FXCollections;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.fxml.Initializable;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import model.analysis.ReportLineIndex;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.stream.Collectors;
+
+/**
+ * Controller for a read only view of a large text report. The report is shown in a list view with one row per line, so only the lines on
+ * screen are ever laid out. Sections can be jumped to from a drop down and text can be searched for as it is typed
+ */
+public class ReportViewerController implements Initializable
+{
+	///
+	/// FXML Bound fields start
+	///
+
+	// The drop down of section titles
+	@FXML
+	public ComboBox<String> cbxSection;
+	// The text to search for
+	@FXML
+	public TextField txtSearch;
+	// The list of report lines
+	@FXML
+	public ListView<String> lvwLines;
+
+	///
+	/// FXML Bound fields end
+	///
+
+	// The report being shown
+	private ReportLineIndex report = new ReportLineIndex();
+	// The line each section in the drop down starts on
+	private List<Integer> sectionLines = Collections.emptyList();
+	// The line of the last search match
+	private int searchLine = 0;
+
+	/**
+	 * Initializes the viewer by hooking up section navigation and search
+	 *
+	 * @param location ignored
+	 * @param resources ignored
+	 */
+	@Override
+	public void initialize(URL location, ResourceBundle resources)
+	{
+		// When a section is picked, scroll to its first line
+		this.cbxSection.setOnAction(event ->
+		{
+			int index = this.cbxSection.getSelectionModel().getSelectedIndex();
+			if (index >= 0 && index < this.sectionLines.size())
+				this.showLine(this.sectionLines.get(index));
+		});
+
+		// Search as the user types. Any line that matches the longer query also matched the shorter one, so searching can continue from
+		// the last match instead of starting over
+		this.txtSearch.textProperty().addListener((observable, oldValue, newValue) -> this.search(newValue, this.searchLine));
+		// Enter goes to the next match
+		this.txtSearch.setOnAction(this::findNext);
+	}
+
+	/**
+	 * Shows a new report, replacing the current one
+	 *
+	 * @param report The report to show
+	 */
+	public void setReport(ReportLineIndex report)
+	{
+		this.report = report;
+		this.searchLine = 0;
+		// The list only asks for the lines it is showing, so wrapping the index is enough
+		this.lvwLines.setItems(FXCollections.observableList(report.asList()));
+		// Use the first line of each section as its title
+		this.sectionLines = report.getSectionLines();
+		this.cbxSection.setItems(FXCollections.observableArrayList(this.sectionLines.stream().map(line -> report.getLine(line).trim()).collect(Collectors.toList())));
+	}
+
+	/**
+	 * @return The report being shown
+	 */
+	public ReportLineIndex getReport()
+	{
+		return this.report;
+	}
+
+	/**
+	 * Called when the next button is pressed or enter is pressed in the search box, goes to the next matching line
+	 *
+	 * @param actionEvent consumed
+	 */
+	public void findNext(ActionEvent actionEvent)
+	{
+		this.search(this.txtSearch.getText(), this.searchLine + 1);
+		actionEvent.consume();
+	}
+
+	/**
+	 * Scrolls to and selects the first line at or after a line that contains some text
+	 *
+	 * @param query The text to find
+	 * @param fromLine The line to start searching from
+	 */
+	private void search(String query, int fromLine)
+	{
+		if (query == null || query.isEmpty())
+			return;
+
+		int match = this.report.find(query, fromLine);
+		if (match != -1)
+		{
+			this.searchLine = match;
+			this.showLine(match);
+		}
+	}
+
+	/**
+	 * Scrolls a line into view and selects it
+	 *
+	 * @param line The line to show
+	 */
+	private void showLine(int line)
+	{
+		this.lvwLines.scrollTo(line);
+		this.lvwLines.getSelectionModel().select(line);
+	}
+}
@@ -2,6 +2,7 @@ package controller.analysisView;
 
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Spinner;
@@ -12,9 +13,12 @@ import javafx.scene.input.ClipboardContent;
 import javafx.scene.text.Font;
 import model.SanimalData;
 import model.analysis.DataAnalyzer;
+import model.analysis.ImageColumns;
 import model.analysis.SanimalAnalysisUtils;
+import model.analysis.textFormatters.EventIntervalSweepFormatter;
 import model.location.Location;
 import model.location.UTMCoord;
+import model.threading.ErrorTask;
 import model.util.RoundingUtils;
 import model.util.SettingsData;
 import org.apache.poi.ss.formula.functions.T;
@@ -22,6 +26,7 @@ import org.apache.poi.ss.formula.functions.T;
 import java.net.URL;
 import java.util.ResourceBundle;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Controller for the CSV visualization tab
@@ -41,6 +46,9 @@ public class VisCSVController implements VisControllerBase
 	// The text area containing species CSV with a species list
 	@FXML
 	public TextArea txtSpeciesCSV;
+	// The text area containing the event interval sweep CSV
+	@FXML
+	public TextArea txtSweepCSV;
 
 	// 3 buttons to control showing or hiding of lat/long fields
 	@FXML
@@ -75,6 +83,10 @@ public class VisCSVController implements VisControllerBase
 	/// FXML bound fields end
 	///
 
+	// The range of event intervals in minutes swept by the sweep CSV
+	private static final int SWEEP_MIN_INTERVAL = 1;
+	private static final int SWEEP_MAX_INTERVAL = 120;
+
 	private DataAnalyzer dataAnalyzer;
 
 	/**
@@ -90,6 +102,7 @@ public class VisCSVController implements VisControllerBase
 		this.txtRawCSV.setFont(Font.font(java.awt.Font.MONOSPACED, 14f));
 		this.txtLocationCSV.setFont(Font.font(java.awt.Font.MONOSPACED, 14f));
 		this.txtSpeciesCSV.setFont(Font.font(java.awt.Font.MONOSPACED, 14f));
+		this.txtSweepCSV.setFont(Font.font(java.awt.Font.MONOSPACED, 14f));
 		// When we select the round toggle button we show the rounding field
 		this.spnDecimalPlaces.disableProperty().bind(this.tbnRoundLatLon.selectedProperty().not());
 		// When we edit our toggle buttons update the CSV
@@ -117,6 +130,26 @@ public class VisCSVController implements VisControllerBase
 	{
 		this.dataAnalyzer = dataAnalyzer;
 		this.refreshCSVs();
+
+		// The sweep CSV has one line per event interval with the events, detection rate and activity of each species at that interval. It
+		// doesn't depend on the location display options, so it is computed once per data set off of the FX thread
+		this.txtSweepCSV.setText("");
+		Task<String> sweepTask = new ErrorTask<String>()
+		{
+			@Override
+			protected String call()
+			{
+				this.updateMessage("Sweeping event intervals...");
+				return new EventIntervalSweepFormatter(dataAnalyzer).printEventIntervalSweep(SWEEP_MIN_INTERVAL, SWEEP_MAX_INTERVAL);
+			}
+		};
+		sweepTask.setOnSucceeded(event ->
+		{
+			// Only show the sweep if a newer data set hasn't been given to us while it was running
+			if (this.dataAnalyzer == dataAnalyzer)
+				this.txtSweepCSV.setText(sweepTask.getValue());
+		});
+		SanimalData.getInstance().getSanimalExecutor().getQueuedExecutor().addTask(sweepTask);
 	}
 
 	/**
@@ -130,9 +163,11 @@ public class VisCSVController implements VisControllerBase
 		// The raw CSV for each image is made up of 1 line per image in the format of:
 		// File Name,Date Taken, Species in image, Species count, Location name, Location ID, Location latitude, Location longitude, Location elevation
 		// If multiple species are in each image, the single entry is broken into multiple lines, one per species
-		String rawCSV = dataAnalyzer.getImagesSortedByDate().stream().map(imageEntry ->
+		// The rows are read straight from the analysis' columns so no image entries need to be created
+		ImageColumns columns = dataAnalyzer.getColumns();
+		String rawCSV = IntStream.range(0, columns.size()).mapToObj(row ->
 		{
-			Location location = imageEntry.getLocationTaken();
+			Location location = columns.getLocation(columns.getLocationId(row));
 			// Start with location name and id
 			String locationString =
 					(this.tbnShowName.isSelected() ? location.getName() : "Omitted") + "," +
@@ -143,12 +178,13 @@ public class VisCSVController implements VisControllerBase
 			// Add elevation
 			SettingsData.DistanceUnits distanceUnits = SanimalData.getInstance().getSettings().getDistanceUnits();
 			locationString = locationString + (this.tbnShowElevation.isSelected() ? RoundingUtils.round(distanceUnits.formatToMeters(location.getElevation()), 2) + distanceUnits.getSymbol() : "Omitted");
-			return imageEntry.getFile().getName() + "," +
-				SanimalData.getInstance().getSettings().formatDateTime(imageEntry.getDateTaken(), " ") + "," +
-				imageEntry.getSpeciesPresent().stream().map(speciesEntry ->
-					speciesEntry.getSpecies().getName() + ";" +
-					speciesEntry.getSpecies().getScientificName() + ";" +
-					speciesEntry.getAmount().toString()
+			String imagePath = dataAnalyzer.getImagePath(row);
+			return imagePath.substring(imagePath.lastIndexOf('/') + 1) + "," +
+				SanimalData.getInstance().getSettings().formatDateTime(dataAnalyzer.getDateTaken(row), " ") + "," +
+				IntStream.range(columns.getFirstTag(row), columns.getFirstTag(row + 1)).mapToObj(tag ->
+					columns.getSpecies(columns.getTagSpeciesId(tag)).getName() + ";" +
+					columns.getSpecies(columns.getTagSpeciesId(tag)).getScientificName() + ";" +
+					columns.getTagAmount(tag)
 				).collect(Collectors.joining(";")) + "," + locationString;
 		}).collect(Collectors.joining("\n"));
 		if (rawCSV.isEmpty())
@@ -256,4 +292,17 @@ public class VisCSVController implements VisControllerBase
 		Clipboard.getSystemClipboard().setContent(content);
 		actionEvent.consume();
 	}
+
+	/**
+	 * If copy Sweep CSV is pressed, we copy the content of the CSV clipboard
+	 *
+	 * @param actionEvent consumed
+	 */
+	public void copySweepCSV(ActionEvent actionEvent)
+	{
+		ClipboardContent content = new ClipboardContent();
+		content.putString(this.txtSweepCSV.getText());
+		Clipboard.getSystemClipboard().setContent(content);
+		actionEvent.consume();
+	}
 }
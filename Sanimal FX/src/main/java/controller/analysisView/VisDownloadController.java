@@ -17,7 +17,6 @@ import javax.swing.filechooser.FileSystemView;
 import java.io.File;
 import java.net.URL;
 import java.util.ResourceBundle;
-import java.util.stream.Collectors;
 
 /**
  * Controller for the query downloader
@@ -61,7 +60,7 @@ public class VisDownloadController implements VisControllerBase
 	@Override
 	public void visualize(DataAnalyzer dataAnalyzer)
 	{
-		this.imageFilePaths.setAll(dataAnalyzer.getOriginalImageList().stream().map(imageEntry -> imageEntry.getFile().toString().replace('\\', '/')).collect(Collectors.toList()));
+		this.imageFilePaths.setAll(dataAnalyzer.getImagePaths());
 	}
 
 	/**
@@ -1,16 +1,19 @@
 package controller.analysisView;
 
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.scene.control.TextArea;
 import javafx.scene.input.Clipboard;
 import javafx.scene.input.ClipboardContent;
-import javafx.scene.text.Font;
+import model.SanimalData;
 import model.analysis.DataAnalyzer;
+import model.analysis.ReportLineIndex;
 import model.analysis.SanimalTextOutputFormatter;
+import model.threading.ErrorTask;
 
 import java.net.URL;
 import java.util.ResourceBundle;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Controller for the tab containing Dr. Sanderson's analysis
@@ -21,12 +24,12 @@ public class VisDrSandersonController implements VisControllerBase
 	/// FXML Bound fields start
 	///
 
-	// The text area to output the "output.txt" replica to
+	// The viewer to output the "output.txt" replica to
 	@FXML
-	public TextArea txtOutput;
-	// The text area to output the "allPictures.txt" replica to
+	public ReportViewerController outputViewerController;
+	// The viewer to output the "allPictures.txt" replica to
 	@FXML
-	public TextArea txtAllPictures;
+	public ReportViewerController allPicturesViewerController;
 
 	///
 	/// FXML Bound fields end
@@ -36,7 +39,7 @@ public class VisDrSandersonController implements VisControllerBase
 	private SanimalTextOutputFormatter outputFormatter = new SanimalTextOutputFormatter();
 
 	/**
-	 * Initializes the Dr. Sanderson output controller by setting the text area fonts
+	 * Initializes the Dr. Sanderson output controller, the report viewers set themselves up
 	 *
 	 * @param location ignored
 	 * @param resources ignored
@@ -44,9 +47,6 @@ public class VisDrSandersonController implements VisControllerBase
 	@Override
 	public void initialize(URL location, ResourceBundle resources)
 	{
-		// Use monospaced fonts
-		this.txtOutput.setFont(Font.font(java.awt.Font.MONOSPACED, 12f));
-		this.txtAllPictures.setFont(Font.font(java.awt.Font.MONOSPACED, 12f));
 	}
 
 	/**
@@ -57,9 +57,34 @@ public class VisDrSandersonController implements VisControllerBase
 	@Override
 	public void visualize(DataAnalyzer dataAnalyzer)
 	{
-		// Have our output formatter do all the hard work and just stick the result into the two text areas
-		this.txtOutput.setText(outputFormatter.format(dataAnalyzer));
-		this.txtAllPictures.setText(outputFormatter.createAllPictures(dataAnalyzer));
+		// Have our output formatter do all the hard work off of the FX thread, streaming into line indices the viewers can show directly
+		Task<ReportLineIndex> outputTask = new ErrorTask<ReportLineIndex>()
+		{
+			@Override
+			protected ReportLineIndex call() throws InterruptedException, ExecutionException
+			{
+				this.updateMessage("Creating Dr. Sanderson's output...");
+				ReportLineIndex output = new ReportLineIndex();
+				outputFormatter.format(dataAnalyzer, output);
+				return output;
+			}
+		};
+		outputTask.setOnSucceeded(event -> this.outputViewerController.setReport(outputTask.getValue()));
+		SanimalData.getInstance().getSanimalExecutor().getQueuedExecutor().addTask(outputTask);
+
+		Task<ReportLineIndex> allPicturesTask = new ErrorTask<ReportLineIndex>()
+		{
+			@Override
+			protected ReportLineIndex call()
+			{
+				this.updateMessage("Creating Dr. Sanderson's all pictures list...");
+				ReportLineIndex allPictures = new ReportLineIndex();
+				outputFormatter.createAllPictures(dataAnalyzer, allPictures);
+				return allPictures;
+			}
+		};
+		allPicturesTask.setOnSucceeded(event -> this.allPicturesViewerController.setReport(allPicturesTask.getValue()));
+		SanimalData.getInstance().getSanimalExecutor().getQueuedExecutor().addTask(allPicturesTask);
 	}
 
 	/**
@@ -70,7 +95,7 @@ public class VisDrSandersonController implements VisControllerBase
 	public void copyOutputText(ActionEvent actionEvent)
 	{
 		ClipboardContent content = new ClipboardContent();
-		content.putString(this.txtOutput.getText());
+		content.putString(this.outputViewerController.getReport().toString());
 		Clipboard.getSystemClipboard().setContent(content);
 		actionEvent.consume();
 	}
@@ -83,7 +108,7 @@ public class VisDrSandersonController implements VisControllerBase
 	public void copyAllPictures(ActionEvent actionEvent)
 	{
 		ClipboardContent content = new ClipboardContent();
-		content.putString(this.txtAllPictures.getText());
+		content.putString(this.allPicturesViewerController.getReport().toString());
 		Clipboard.getSystemClipboard().setContent(content);
 		actionEvent.consume();
 	}
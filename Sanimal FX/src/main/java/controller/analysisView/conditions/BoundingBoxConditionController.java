@@ -0,0 +1,119 @@
+package controller.analysisView.conditions;
+
+import controller.analysisView.IConditionController;
+import javafx.fxml.FXML;
+import javafx.scene.control.TextField;
+import model.query.IQueryCondition;
+import model.query.conditions.BoundingBoxCondition;
+import org.controlsfx.validation.ValidationSupport;
+import org.controlsfx.validation.Validator;
+import org.fxmisc.easybind.EasyBind;
+
+import java.net.URL;
+import java.util.ResourceBundle;
+
+/**
+ * Class used as a controller for the "Bounding box filter" UI component
+ */
+public class BoundingBoxConditionController implements IConditionController
+{
+	///
+	/// FXML Bound Fields Start
+	///
+
+	@FXML
+	public TextField txtMinLatitude;
+	@FXML
+	public TextField txtMaxLatitude;
+	@FXML
+	public TextField txtMinLongitude;
+	@FXML
+	public TextField txtMaxLongitude;
+
+	///
+	/// FXML Bound Fields End
+	///
+
+	/**
+	 * Initialize sets up validators to ensure that each edge of the box is a valid coordinate
+	 *
+	 * @param location ignored
+	 * @param resources ignored
+	 */
+	@Override
+	public void initialize(URL location, ResourceBundle resources)
+	{
+		ValidationSupport fieldValidator = new ValidationSupport();
+		// Latitudes must be between -90 and 90, longitudes must be between -180 and 180
+		fieldValidator.registerValidator(this.txtMinLatitude, true, Validator.createPredicateValidator(latitude -> this.validDoubleBetween(latitude, -90.0, 90.0), "Latitude must be a decimal value between -90 and 90!"));
+		fieldValidator.registerValidator(this.txtMaxLatitude, true, Validator.createPredicateValidator(latitude -> this.validDoubleBetween(latitude, -90.0, 90.0), "Latitude must be a decimal value between -90 and 90!"));
+		fieldValidator.registerValidator(this.txtMinLongitude, true, Validator.createPredicateValidator(longitude -> this.validDoubleBetween(longitude, -180.0, 180.0), "Longitude must be a decimal value between -180 and 180!"));
+		fieldValidator.registerValidator(this.txtMaxLongitude, true, Validator.createPredicateValidator(longitude -> this.validDoubleBetween(longitude, -180.0, 180.0), "Longitude must be a decimal value between -180 and 180!"));
+	}
+
+	/**
+	 * Initializes the controller with a data model to bind to
+	 *
+	 * @param iQueryCondition The data model which should be a bounding box filter condition
+	 */
+	@Override
+	public void initializeData(IQueryCondition iQueryCondition)
+	{
+		if (iQueryCondition instanceof BoundingBoxCondition)
+		{
+			BoundingBoxCondition boundingBoxCondition = (BoundingBoxCondition) iQueryCondition;
+
+			// Initialize our fields
+			this.txtMinLatitude.setText(boundingBoxCondition.minLatitudeProperty().getValue().toString());
+			this.txtMaxLatitude.setText(boundingBoxCondition.maxLatitudeProperty().getValue().toString());
+			this.txtMinLongitude.setText(boundingBoxCondition.minLongitudeProperty().getValue().toString());
+			this.txtMaxLongitude.setText(boundingBoxCondition.maxLongitudeProperty().getValue().toString());
+
+			// Bind the new values to our model
+			boundingBoxCondition.minLatitudeProperty().bind(EasyBind.map(this.txtMinLatitude.textProperty(), latitude -> parseOrDefault(latitude, -90.0)));
+			boundingBoxCondition.maxLatitudeProperty().bind(EasyBind.map(this.txtMaxLatitude.textProperty(), latitude -> parseOrDefault(latitude, 90.0)));
+			boundingBoxCondition.minLongitudeProperty().bind(EasyBind.map(this.txtMinLongitude.textProperty(), longitude -> parseOrDefault(longitude, -180.0)));
+			boundingBoxCondition.maxLongitudeProperty().bind(EasyBind.map(this.txtMaxLongitude.textProperty(), longitude -> parseOrDefault(longitude, 180.0)));
+		}
+	}
+
+	/**
+	 * Parses the string number into a double, or returns the default number if the parse fails
+	 *
+	 * @param number The number to parse as a string
+	 * @param defaultNumber The default return value
+	 * @return The string as a number or the default number if the parse fails
+	 */
+	private Double parseOrDefault(String number, Double defaultNumber)
+	{
+		try
+		{
+			return Double.parseDouble(number);
+		}
+		catch (NumberFormatException ignored)
+		{
+			return defaultNumber;
+		}
+	}
+
+	/**
+	 * Tests if a string is a valid double within a range
+	 *
+	 * @param number The number to test
+	 * @param min The smallest allowed value
+	 * @param max The largest allowed value
+	 * @return True if the number is a valid double in the range, false otherwise
+	 */
+	private Boolean validDoubleBetween(String number, Double min, Double max)
+	{
+		try
+		{
+			Double value = Double.parseDouble(number);
+			return value >= min && value <= max;
+		}
+		catch (NumberFormatException ignored)
+		{
+			return false;
+		}
+	}
+}
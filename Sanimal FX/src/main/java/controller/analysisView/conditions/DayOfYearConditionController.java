@@ -0,0 +1,115 @@
+package controller.analysisView.conditions;
+
+import controller.analysisView.IConditionController;
+import javafx.fxml.FXML;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.TextField;
+import model.query.IQueryCondition;
+import model.query.conditions.DayOfYearCondition;
+import org.controlsfx.validation.ValidationSupport;
+import org.controlsfx.validation.Validator;
+import org.fxmisc.easybind.EasyBind;
+
+import java.net.URL;
+import java.time.Month;
+import java.util.ResourceBundle;
+
+/**
+ * Class used as a controller for the "Day of year filter" UI component
+ */
+public class DayOfYearConditionController implements IConditionController
+{
+	///
+	/// FXML Bound Fields Start
+	///
+
+	@FXML
+	public ComboBox<Month> cbxStartMonth;
+	@FXML
+	public TextField txtStartDay;
+	@FXML
+	public ComboBox<Month> cbxEndMonth;
+	@FXML
+	public TextField txtEndDay;
+
+	///
+	/// FXML Bound Fields End
+	///
+
+	/**
+	 * Initialize sets up validators to ensure that start and end day are valid days of the month
+	 *
+	 * @param location ignored
+	 * @param resources ignored
+	 */
+	@Override
+	public void initialize(URL location, ResourceBundle resources)
+	{
+		ValidationSupport fieldValidator = new ValidationSupport();
+		// The days must be between 1 and 31
+		fieldValidator.registerValidator(this.txtStartDay, true, Validator.createPredicateValidator(this::validDay, "Start day must be a whole number between 1 and 31!"));
+		fieldValidator.registerValidator(this.txtEndDay, true, Validator.createPredicateValidator(this::validDay, "End day must be a whole number between 1 and 31!"));
+	}
+
+	/**
+	 * Initializes the controller with a data model to bind to
+	 *
+	 * @param iQueryCondition The data model which should be a day of year filter condition
+	 */
+	@Override
+	public void initializeData(IQueryCondition iQueryCondition)
+	{
+		if (iQueryCondition instanceof DayOfYearCondition)
+		{
+			DayOfYearCondition dayOfYearCondition = (DayOfYearCondition) iQueryCondition;
+
+			// Initialize our fields
+			this.cbxStartMonth.setItems(dayOfYearCondition.getMonthList());
+			this.cbxStartMonth.getSelectionModel().select(dayOfYearCondition.startMonthProperty().getValue());
+			this.txtStartDay.setText(dayOfYearCondition.startDayProperty().getValue().toString());
+			this.cbxEndMonth.setItems(dayOfYearCondition.getMonthList());
+			this.cbxEndMonth.getSelectionModel().select(dayOfYearCondition.endMonthProperty().getValue());
+			this.txtEndDay.setText(dayOfYearCondition.endDayProperty().getValue().toString());
+
+			// Bind the new values to our model
+			dayOfYearCondition.startMonthProperty().bind(this.cbxStartMonth.getSelectionModel().selectedItemProperty());
+			dayOfYearCondition.startDayProperty().bind(EasyBind.map(this.txtStartDay.textProperty(), day -> parseOrDefault(day, 1)));
+			dayOfYearCondition.endMonthProperty().bind(this.cbxEndMonth.getSelectionModel().selectedItemProperty());
+			dayOfYearCondition.endDayProperty().bind(EasyBind.map(this.txtEndDay.textProperty(), day -> parseOrDefault(day, 31)));
+		}
+	}
+
+	/**
+	 * Parses the string number into an integer, or returns the default number if the parse fails
+	 *
+	 * @param number The number to parse as a string
+	 * @param defaultNumber The default return value
+	 * @return The string as a number or the default number if the parse fails
+	 */
+	private Integer parseOrDefault(String number, Integer defaultNumber)
+	{
+		if (this.validDay(number))
+			return Integer.parseInt(number);
+		else
+			return defaultNumber;
+	}
+
+	/**
+	 * Tests if a string is a valid day of the month
+	 *
+	 * @param number The number to test
+	 * @return True if the number is an integer between 1 and 31, false otherwise
+	 */
+	private Boolean validDay(String number)
+	{
+		try
+		{
+			Integer day = Integer.parseInt(number);
+			return day >= 1 && day <= 31;
+		}
+		catch (NumberFormatException ignored)
+		{
+			return false;
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package controller.analysisView.conditions;
+
+import controller.analysisView.IConditionController;
+import javafx.fxml.FXML;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.TextField;
+import model.query.IQueryCondition;
+import model.query.conditions.RadiusCondition;
+import org.controlsfx.validation.ValidationSupport;
+import org.controlsfx.validation.Validator;
+import org.fxmisc.easybind.EasyBind;
+
+import java.net.URL;
+import java.util.ResourceBundle;
+
+/**
+ * Class used as a controller for the "Radius filter" UI component
+ */
+public class RadiusConditionController implements IConditionController
+{
+	///
+	/// FXML Bound Fields Start
+	///
+
+	@FXML
+	public TextField txtLatitude;
+	@FXML
+	public TextField txtLongitude;
+	@FXML
+	public TextField txtRadius;
+	@FXML
+	public ComboBox<RadiusCondition.RadiusUnits> cbxUnit;
+
+	///
+	/// FXML Bound Fields End
+	///
+
+	/**
+	 * Initialize sets up validators to ensure that the center is a valid coordinate and the radius is a positive number
+	 *
+	 * @param location ignored
+	 * @param resources ignored
+	 */
+	@Override
+	public void initialize(URL location, ResourceBundle resources)
+	{
+		ValidationSupport fieldValidator = new ValidationSupport();
+		// Latitudes must be between -90 and 90, longitudes must be between -180 and 180
+		fieldValidator.registerValidator(this.txtLatitude, true, Validator.createPredicateValidator(latitude -> this.validDoubleBetween(latitude, -90.0, 90.0), "Latitude must be a decimal value between -90 and 90!"));
+		fieldValidator.registerValidator(this.txtLongitude, true, Validator.createPredicateValidator(longitude -> this.validDoubleBetween(longitude, -180.0, 180.0), "Longitude must be a decimal value between -180 and 180!"));
+		// The radius can't be negative
+		fieldValidator.registerValidator(this.txtRadius, true, Validator.createPredicateValidator(radius -> this.validDoubleBetween(radius, 0.0, Double.MAX_VALUE), "Radius must be a positive decimal value!"));
+	}
+
+	/**
+	 * Initializes the controller with a data model to bind to
+	 *
+	 * @param iQueryCondition The data model which should be a radius filter condition
+	 */
+	@Override
+	public void initializeData(IQueryCondition iQueryCondition)
+	{
+		if (iQueryCondition instanceof RadiusCondition)
+		{
+			RadiusCondition radiusCondition = (RadiusCondition) iQueryCondition;
+
+			// Initialize our fields
+			this.txtLatitude.setText(radiusCondition.latitudeProperty().getValue().toString());
+			this.txtLongitude.setText(radiusCondition.longitudeProperty().getValue().toString());
+			this.txtRadius.setText(radiusCondition.radiusProperty().getValue().toString());
+			this.cbxUnit.setItems(radiusCondition.getUnitList());
+			this.cbxUnit.getSelectionModel().select(radiusCondition.unitsProperty().getValue());
+
+			// Bind the new values to our model
+			radiusCondition.latitudeProperty().bind(EasyBind.map(this.txtLatitude.textProperty(), latitude -> parseOrDefault(latitude, 0.0)));
+			radiusCondition.longitudeProperty().bind(EasyBind.map(this.txtLongitude.textProperty(), longitude -> parseOrDefault(longitude, 0.0)));
+			radiusCondition.radiusProperty().bind(EasyBind.map(this.txtRadius.textProperty(), radius -> parseOrDefault(radius, 0.0)));
+			radiusCondition.unitsProperty().bind(this.cbxUnit.getSelectionModel().selectedItemProperty());
+		}
+	}
+
+	/**
+	 * Parses the string number into a double, or returns the default number if the parse fails
+	 *
+	 * @param number The number to parse as a string
+	 * @param defaultNumber The default return value
+	 * @return The string as a number or the default number if the parse fails
+	 */
+	private Double parseOrDefault(String number, Double defaultNumber)
+	{
+		try
+		{
+			return Double.parseDouble(number);
+		}
+		catch (NumberFormatException ignored)
+		{
+			return defaultNumber;
+		}
+	}
+
+	/**
+	 * Tests if a string is a valid double within a range
+	 *
+	 * @param number The number to test
+	 * @param min The smallest allowed value
+	 * @param max The largest allowed value
+	 * @return True if the number is a valid double in the range, false otherwise
+	 */
+	private Boolean validDoubleBetween(String number, Double min, Double max)
+	{
+		try
+		{
+			Double value = Double.parseDouble(number);
+			return value >= min && value <= max;
+		}
+		catch (NumberFormatException ignored)
+		{
+			return false;
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package controller.analysisView.conditions;
+
+import controller.analysisView.IConditionController;
+import javafx.fxml.FXML;
+import javafx.scene.control.TextField;
+import model.query.IQueryCondition;
+import model.query.conditions.TimeOfDayCondition;
+import org.controlsfx.validation.ValidationSupport;
+import org.controlsfx.validation.Validator;
+import org.fxmisc.easybind.EasyBind;
+
+import java.net.URL;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ResourceBundle;
+
+/**
+ * Class used as a controller for the "Time of day filter" UI component
+ */
+public class TimeOfDayConditionController implements IConditionController
+{
+	// The format times are typed in, like 05:30
+	private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+
+	///
+	/// FXML Bound Fields Start
+	///
+
+	@FXML
+	public TextField txtStartTime;
+	@FXML
+	public TextField txtEndTime;
+
+	///
+	/// FXML Bound Fields End
+	///
+
+	/**
+	 * Initialize sets up validators to ensure that start and end time are valid times
+	 *
+	 * @param location ignored
+	 * @param resources ignored
+	 */
+	@Override
+	public void initialize(URL location, ResourceBundle resources)
+	{
+		ValidationSupport fieldValidator = new ValidationSupport();
+		// The times must be in 24 hour HH:mm format
+		fieldValidator.registerValidator(this.txtStartTime, true, Validator.createPredicateValidator(this::validTime, "Start time must be a 24 hour time like 05:30!"));
+		fieldValidator.registerValidator(this.txtEndTime, true, Validator.createPredicateValidator(this::validTime, "End time must be a 24 hour time like 19:45!"));
+	}
+
+	/**
+	 * Initializes the controller with a data model to bind to
+	 *
+	 * @param iQueryCondition The data model which should be a time of day filter condition
+	 */
+	@Override
+	public void initializeData(IQueryCondition iQueryCondition)
+	{
+		if (iQueryCondition instanceof TimeOfDayCondition)
+		{
+			TimeOfDayCondition timeOfDayCondition = (TimeOfDayCondition) iQueryCondition;
+
+			// Initialize our fields
+			this.txtStartTime.setText(timeOfDayCondition.startTimeProperty().getValue().format(TIME_FORMAT));
+			this.txtEndTime.setText(timeOfDayCondition.endTimeProperty().getValue().format(TIME_FORMAT));
+
+			// Bind the new values to our model
+			timeOfDayCondition.startTimeProperty().bind(EasyBind.map(this.txtStartTime.textProperty(), time -> parseOrDefault(time, LocalTime.of(0, 0))));
+			timeOfDayCondition.endTimeProperty().bind(EasyBind.map(this.txtEndTime.textProperty(), time -> parseOrDefault(time, LocalTime.of(23, 59))));
+		}
+	}
+
+	/**
+	 * Parses the string into a time, or returns the default time if the parse fails
+	 *
+	 * @param time The time to parse as a string
+	 * @param defaultTime The default return value
+	 * @return The string as a time or the default time if the parse fails
+	 */
+	private LocalTime parseOrDefault(String time, LocalTime defaultTime)
+	{
+		if (this.validTime(time))
+			return LocalTime.parse(time, TIME_FORMAT);
+		else
+			return defaultTime;
+	}
+
+	/**
+	 * Tests if a string is a valid time
+	 *
+	 * @param time The time to test
+	 * @return True if the time is in HH:mm format, false otherwise
+	 */
+	private Boolean validTime(String time)
+	{
+		try
+		{
+			LocalTime.parse(time, TIME_FORMAT);
+			return true;
+		}
+		catch (DateTimeParseException ignored)
+		{
+			return false;
+		}
+	}
+}
@@ -10,14 +10,18 @@ import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.concurrent.Task;
+import model.analysis.LunationCache;
 import model.cyverse.CyVerseConnectionManager;
 import model.cyverse.ImageCollection;
 import model.image.ImageContainer;
 import model.image.ImageDirectory;
 import model.image.ImageEntry;
 import model.location.Location;
+import model.location.LocationRegistry;
 import model.query.QueryEngine;
+import model.query.QueryResultCache;
 import model.species.Species;
+import model.species.SpeciesRegistry;
 import model.threading.ErrorService;
 import model.threading.ErrorTask;
 import model.threading.SanimalExecutor;
@@ -54,6 +58,10 @@ public class SanimalData
 	private AtomicBoolean needLocationSync = new AtomicBoolean(false);
 	private AtomicBoolean locationSyncInProgress = new AtomicBoolean(false);
 
+	// Dense ids and fast lookups for the species and location lists
+	private final SpeciesRegistry speciesRegistry;
+	private final LocationRegistry locationRegistry;
+
 	// A global list of image collections
 	private final ObservableList<ImageCollection> collectionList;
 
@@ -93,6 +101,12 @@ public class SanimalData
 	// Query engine used in storing the current query setup
 	private QueryEngine queryEngine = new QueryEngine();
 
+	// Cache of query results that persists between runs of the program
+	private final QueryResultCache queryResultCache = new QueryResultCache(new File(System.getProperty("user.home") + File.separator + "SanimalQueryCache"));
+
+	// Cache of every new and full moon the analysis has needed, persists between runs of the program
+	private final LunationCache lunationCache = new LunationCache(new File(System.getProperty("user.home") + File.separator + "SanimalQueryCache" + File.separator + "lunations.bin"));
+
 	/**
 	 * Private constructor since we're using the singleton design pattern
 	 */
@@ -110,6 +124,10 @@ public class SanimalData
 		// When the location list changes we push the changes to the CyVerse servers
 		this.setupAutoLocationSync();
 
+		// Index the species and location lists so images can find their species and location without scanning the lists
+		this.speciesRegistry = new SpeciesRegistry(this.speciesList);
+		this.locationRegistry = new LocationRegistry(this.locationList);
+
 		// Create the image collection list
 		this.collectionList = FXCollections.synchronizedObservableList(FXCollections.observableArrayList(collection -> new Observable[]{collection.nameProperty(), collection.getPermissions(), collection.organizationProperty(), collection.contactInfoProperty(), collection.descriptionProperty(), collection.idProperty() }));
 
@@ -377,6 +395,22 @@ public class SanimalData
 		return locationList;
 	}
 
+	/**
+	 * @return The registry of species in the global species list
+	 */
+	public SpeciesRegistry getSpeciesRegistry()
+	{
+		return speciesRegistry;
+	}
+
+	/**
+	 * @return The registry of locations in the global location list
+	 */
+	public LocationRegistry getLocationRegistry()
+	{
+		return locationRegistry;
+	}
+
 	/**
 	 * @return The global collection list
 	 */
@@ -483,4 +517,8 @@ public class SanimalData
 	}
 
 	public QueryEngine getQueryEngine() { return this.queryEngine; }
+
+	public QueryResultCache getQueryResultCache() { return this.queryResultCache; }
+
+	public LunationCache getLunationCache() { return this.lunationCache; }
 }
@@ -0,0 +1,276 @@
+package model.analysis;
+
+/**
+ * A circular kernel density estimate of when during the day a species is active. The times of day of the records are binned onto a
+ * fine circular grid and smoothed with a von Mises kernel, the convolution being done with an FFT so a density costs the same no matter
+ * how many records it is built from. The kernel's concentration is picked with Taylor's (2008) rule, which the activity overlap
+ * literature uses, and can be adjusted the same way: 0.8 for the Delta 1 overlap estimator and 1 for Delta 4
+ */
+public class ActivityDensity
+{
+	// The number of points on the grid the density is estimated at, a power of two for the FFT
+	public static final int GRID_SIZE = 512;
+	// The bandwidth adjustments recommended for the Delta 1 and Delta 4 overlap estimators
+	public static final double DELTA_1_ADJUST = 0.8;
+	public static final double DELTA_4_ADJUST = 1.0;
+	// The largest concentration used when fitting a von Mises distribution to the data, larger values are numerically meaningless
+	private static final double MAX_CONCENTRATION = 100;
+
+	// The times of day the density was built from, as fractions of a day from 0 to 1
+	private final double[] timesOfDay;
+	// Grid point -> the density at that time of day, grid point i is at i / GRID_SIZE of the day. The density integrates to 1 over a day
+	private final double[] density;
+
+	/**
+	 * Constructor estimates the density
+	 *
+	 * @param timesOfDay The times of day of the records, usually one per independent event, as fractions of a day from 0 to 1. There
+	 * must be at least one
+	 * @param adjust The bandwidth adjustment, larger values give a smoother density
+	 */
+	public ActivityDensity(double[] timesOfDay, double adjust)
+	{
+		this.timesOfDay = timesOfDay.clone();
+
+		// Linearly bin each time onto the two grid points around it
+		double[] real = new double[GRID_SIZE];
+		double[] imaginary = new double[GRID_SIZE];
+		for (double timeOfDay : timesOfDay)
+		{
+			double position = (timeOfDay - Math.floor(timeOfDay)) * GRID_SIZE;
+			int below = (int) position % GRID_SIZE;
+			double fraction = position - Math.floor(position);
+			real[below] = real[below] + (1 - fraction) / timesOfDay.length;
+			real[(below + 1) % GRID_SIZE] = real[(below + 1) % GRID_SIZE] + fraction / timesOfDay.length;
+		}
+
+		// The von Mises kernel centered on grid point 0, normalized so it sums to 1 over the grid
+		double concentration = bandwidth(timesOfDay) / adjust;
+		double[] kernelReal = new double[GRID_SIZE];
+		double[] kernelImaginary = new double[GRID_SIZE];
+		double kernelSum = 0;
+		for (int i = 0; i < GRID_SIZE; i++)
+		{
+			// Subtract 1 from the cosine so large concentrations don't overflow, the constant factor is removed by normalizing
+			kernelReal[i] = Math.exp(concentration * (Math.cos(2 * Math.PI * i / GRID_SIZE) - 1));
+			kernelSum = kernelSum + kernelReal[i];
+		}
+		for (int i = 0; i < GRID_SIZE; i++)
+			kernelReal[i] = kernelReal[i] / kernelSum;
+
+		// Circular convolution is a product in the frequency domain
+		fft(real, imaginary, false);
+		fft(kernelReal, kernelImaginary, false);
+		for (int i = 0; i < GRID_SIZE; i++)
+		{
+			double productReal = real[i] * kernelReal[i] - imaginary[i] * kernelImaginary[i];
+			double productImaginary = real[i] * kernelImaginary[i] + imaginary[i] * kernelReal[i];
+			real[i] = productReal;
+			imaginary[i] = productImaginary;
+		}
+		fft(real, imaginary, true);
+
+		// Turn the probability of each grid cell into a density per day. Rounding can leave tiny negative values, which are removed
+		this.density = new double[GRID_SIZE];
+		for (int i = 0; i < GRID_SIZE; i++)
+			this.density[i] = Math.max(0, real[i] * GRID_SIZE);
+	}
+
+	/**
+	 * @param timeOfDay The time of day as a fraction of a day from 0 to 1
+	 * @return The density at the time, linearly interpolated between the grid points around it
+	 */
+	public double densityAt(double timeOfDay)
+	{
+		double position = (timeOfDay - Math.floor(timeOfDay)) * GRID_SIZE;
+		int below = (int) position % GRID_SIZE;
+		double fraction = position - Math.floor(position);
+		return this.density[below] * (1 - fraction) + this.density[(below + 1) % GRID_SIZE] * fraction;
+	}
+
+	/**
+	 * @return The density at each grid point, grid point i is at i / GRID_SIZE of the day
+	 */
+	public double[] getDensity()
+	{
+		return this.density.clone();
+	}
+
+	/**
+	 * @return The number of records the density was built from
+	 */
+	public int getSampleSize()
+	{
+		return this.timesOfDay.length;
+	}
+
+	/**
+	 * Computes the Delta 1 overlap coefficient of two densities, the area under the smaller of the two curves. Both densities should be built
+	 * with DELTA_1_ADJUST. Recommended when either species has fewer than 75 records
+	 *
+	 * @param first The first density
+	 * @param second The second density
+	 * @return The overlap from 0 (never active at the same time) to 1 (identical activity)
+	 */
+	public static double overlapDelta1(ActivityDensity first, ActivityDensity second)
+	{
+		double overlap = 0;
+		for (int i = 0; i < GRID_SIZE; i++)
+			overlap = overlap + Math.min(first.density[i], second.density[i]);
+		return Math.min(1, overlap / GRID_SIZE);
+	}
+
+	/**
+	 * Computes the Delta 4 overlap coefficient of two densities, which compares the densities at each record's time instead of over the whole
+	 * grid. Both densities should be built with DELTA_4_ADJUST. Recommended when both species have at least 75 records
+	 *
+	 * @param first The first density
+	 * @param second The second density
+	 * @return The overlap from 0 (never active at the same time) to 1 (identical activity)
+	 */
+	public static double overlapDelta4(ActivityDensity first, ActivityDensity second)
+	{
+		return (ratioMean(first, second) + ratioMean(second, first)) / 2;
+	}
+
+	/**
+	 * @param from The density whose records are looked at
+	 * @param to The other density
+	 * @return The mean over the records of the smaller of 1 and the ratio of the other density to this density
+	 */
+	private static double ratioMean(ActivityDensity from, ActivityDensity to)
+	{
+		double sum = 0;
+		for (double timeOfDay : from.timesOfDay)
+		{
+			double fromDensity = from.densityAt(timeOfDay);
+			sum = sum + (fromDensity <= 0 ? 1 : Math.min(1, to.densityAt(timeOfDay) / fromDensity));
+		}
+		return sum / from.timesOfDay.length;
+	}
+
+	/**
+	 * Picks the concentration of the von Mises kernel with Taylor's (2008) rule, which fits a von Mises distribution to the data and uses
+	 * the kernel that would be best if the data really came from it
+	 *
+	 * @param timesOfDay The times of day as fractions of a day
+	 * @return The concentration of the kernel, larger values give a narrower kernel
+	 */
+	private static double bandwidth(double[] timesOfDay)
+	{
+		// The mean resultant length of the times as angles
+		double sumCos = 0;
+		double sumSin = 0;
+		for (double timeOfDay : timesOfDay)
+		{
+			sumCos = sumCos + Math.cos(2 * Math.PI * timeOfDay);
+			sumSin = sumSin + Math.sin(2 * Math.PI * timeOfDay);
+		}
+		double meanResultant = Math.sqrt(sumCos * sumCos + sumSin * sumSin) / timesOfDay.length;
+
+		// The maximum likelihood concentration solves I1(k) / I0(k) = mean resultant length, which increases with k so bisect for it
+		double low = 0;
+		double high = MAX_CONCENTRATION;
+		if (besselI(1, high) / besselI(0, high) <= meanResultant)
+			low = high;
+		for (int i = 0; i < 100 && high - low > 1e-9; i++)
+		{
+			double middle = (low + high) / 2;
+			if (besselI(1, middle) / besselI(0, middle) < meanResultant)
+				low = middle;
+			else
+				high = middle;
+		}
+		double kappa = low;
+
+		double besselI0 = besselI(0, kappa);
+		return Math.pow(3 * timesOfDay.length * kappa * kappa * besselI(2, 2 * kappa) / (4 * Math.sqrt(Math.PI) * besselI0 * besselI0), 0.4);
+	}
+
+	/**
+	 * @param order The order of the function, 0 or more
+	 * @param x The value to evaluate at, 0 or more
+	 * @return The modified Bessel function of the first kind, summed as a power series
+	 */
+	private static double besselI(int order, double x)
+	{
+		double half = x / 2;
+		// The first term is (x/2)^order / order!
+		double term = 1;
+		for (int i = 1; i <= order; i++)
+			term = term * half / i;
+		double sum = term;
+		for (int k = 1; k < 1000; k++)
+		{
+			term = term * half * half / (k * (double) (k + order));
+			sum = sum + term;
+			if (term < sum * 1e-16)
+				break;
+		}
+		return sum;
+	}
+
+	/**
+	 * An in place radix 2 fast fourier transform
+	 *
+	 * @param real The real parts, the length must be a power of two
+	 * @param imaginary The imaginary parts, the same length as real
+	 * @param inverse True for the inverse transform, which is also divided by the length
+	 */
+	private static void fft(double[] real, double[] imaginary, boolean inverse)
+	{
+		int length = real.length;
+
+		// Reorder the values by bit reversed index
+		for (int i = 1, j = 0; i < length; i++)
+		{
+			int bit = length >> 1;
+			for (; (j & bit) != 0; bit = bit >> 1)
+				j = j ^ bit;
+			j = j ^ bit;
+			if (i < j)
+			{
+				double swap = real[i];
+				real[i] = real[j];
+				real[j] = swap;
+				swap = imaginary[i];
+				imaginary[i] = imaginary[j];
+				imaginary[j] = swap;
+			}
+		}
+
+		// Combine transforms of doubling size
+		for (int size = 2; size <= length; size = size << 1)
+		{
+			double angle = 2 * Math.PI / size * (inverse ? 1 : -1);
+			double stepReal = Math.cos(angle);
+			double stepImaginary = Math.sin(angle);
+			for (int start = 0; start < length; start = start + size)
+			{
+				double twiddleReal = 1;
+				double twiddleImaginary = 0;
+				for (int k = 0; k < size / 2; k++)
+				{
+					int even = start + k;
+					int odd = even + size / 2;
+					double oddReal = real[odd] * twiddleReal - imaginary[odd] * twiddleImaginary;
+					double oddImaginary = real[odd] * twiddleImaginary + imaginary[odd] * twiddleReal;
+					real[odd] = real[even] - oddReal;
+					imaginary[odd] = imaginary[even] - oddImaginary;
+					real[even] = real[even] + oddReal;
+					imaginary[even] = imaginary[even] + oddImaginary;
+					double nextReal = twiddleReal * stepReal - twiddleImaginary * stepImaginary;
+					twiddleImaginary = twiddleReal * stepImaginary + twiddleImaginary * stepReal;
+					twiddleReal = nextReal;
+				}
+			}
+		}
+
+		if (inverse)
+			for (int i = 0; i < length; i++)
+			{
+				real[i] = real[i] / length;
+				imaginary[i] = imaginary[i] / length;
+			}
+	}
+}
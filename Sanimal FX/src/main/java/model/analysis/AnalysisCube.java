@@ -0,0 +1,469 @@
+package model.analysis;
+
+import model.location.Location;
+import model.species.Species;
+
+import java.util.Arrays;
+
+/**
+ * Pre-computed totals of the analysis over species x location x year x month x hour, built in a single pass over the image columns. Each
+ * (species or any species) x (location or any location) pair forms a stream of images, and each stream is split into one block per
+ * year and month. The totals of every block are computed once, so formatters can answer their questions by summing a few blocks
+ * instead of filtering the full image list again.
+ *
+ * Periods and abundances are not simply additive because an event can span two blocks. Each block remembers its first and last row and
+ * the largest count of its first and last event, so slices can join neighbouring blocks exactly the way periodForImageList and
+ * abundanceForImageList would have on the filtered list. Months use the same 1-12 values as ImageQuery.monthOnly
+ */
+public class AnalysisCube
+{
+	// Fields stored for each block
+	private static final int IMAGES = 0;
+	private static final int PERIOD = 1;
+	private static final int ABUNDANCE = 2;
+	private static final int FIRST_EVENT_MAX = 3;
+	private static final int LAST_EVENT_MAX = 4;
+	private static final int SINGLE_EVENT = 5;
+	private static final int FIRST_ROW = 6;
+	private static final int LAST_ROW = 7;
+	private static final int DAYS = 8;
+	private static final int FIELDS = 9;
+
+	// Hour totals stored for each block, the number of images in each hour followed by the activity in each hour
+	private static final int HOURS = 24;
+
+	// The columns the cube was built from
+	private final ImageColumns columns;
+	// The event interval in minutes
+	private final Integer eventInterval;
+	// The first year in the columns, and year - firstYear -> the year's index or -1 if no image was taken that year
+	private final int firstYear;
+	private final int[] yearIndices;
+	// The number of years with at least one image
+	private final int yearCount;
+	// The mapping from species and location pairs to streams, shared with EventIndex
+	private final StreamLayout layout;
+
+	// Stream -> block fields for every block, null if the stream has no images
+	private final int[][] blockStats;
+	// Stream -> block -> hour totals, null if the stream or block has no images
+	private final int[][][] hourStats;
+
+	/**
+	 * Constructor builds the cube in one pass over the columns
+	 *
+	 * @param columns The image columns, rows MUST be sorted by date
+	 * @param eventInterval The event interval in minutes
+	 */
+	public AnalysisCube(ImageColumns columns, Integer eventInterval)
+	{
+		this.columns = columns;
+		this.eventInterval = eventInterval;
+		this.layout = new StreamLayout(columns);
+
+		// Rows are sorted by date so the first and last rows give the range of years, only years with images get blocks
+		this.firstYear = columns.size() == 0 ? 0 : columns.getYear(0);
+		this.yearIndices = new int[columns.size() == 0 ? 0 : columns.getYear(columns.size() - 1) - this.firstYear + 1];
+		Arrays.fill(this.yearIndices, -1);
+		int yearsFound = 0;
+		for (int row = 0; row < columns.size(); row++)
+			if (this.yearIndices[columns.getYear(row) - this.firstYear] == -1)
+				this.yearIndices[columns.getYear(row) - this.firstYear] = yearsFound++;
+		this.yearCount = yearsFound;
+
+		int streamCount = this.layout.streamCount();
+		this.blockStats = new int[streamCount][];
+		this.hourStats = new int[streamCount][][];
+
+		// The state of each stream while scanning: the last row's block, time, hour slot and day, and the largest count in the current event
+		int[] lastBlock = new int[streamCount];
+		long[] lastEpochMillis = new long[streamCount];
+		int[] lastHourSlot = new int[streamCount];
+		int[] lastDay = new int[streamCount];
+		int[] eventMax = new int[streamCount];
+		Arrays.fill(lastBlock, -1);
+
+		int[] rowStreams = new int[this.layout.maxStreamsPerRow()];
+		for (int row = 0; row < columns.size(); row++)
+		{
+			int block = this.blockOf(columns.getYear(row), columns.getMonth(row));
+
+			// Add the row to every stream it belongs to
+			int streamsOnRow = this.layout.streamsOf(row, rowStreams);
+			for (int i = 0; i < streamsOnRow; i++)
+			{
+				int stream = rowStreams[i];
+				int amount = columns.maxCount(row, this.layout.speciesIdOf(stream));
+				this.addRow(stream, row, block, amount, lastBlock, lastEpochMillis, lastHourSlot, lastDay, eventMax);
+			}
+		}
+
+		// Close the last block of every stream
+		for (int stream = 0; stream < streamCount; stream++)
+			if (lastBlock[stream] != -1)
+				this.closeBlock(stream, lastBlock[stream], eventMax[stream]);
+	}
+
+	/**
+	 * Adds one row to a stream's current block
+	 *
+	 * @param stream The stream
+	 * @param row The row to add
+	 * @param block The block the row belongs to
+	 * @param amount The number of animals in the row that count towards this stream's abundance
+	 * @param lastBlock Stream -> the block of its last row
+	 * @param lastEpochMillis Stream -> the time of its last row
+	 * @param lastHourSlot Stream -> the hour of its last row counted from the start of the first year
+	 * @param lastDay Stream -> the day of its last row counted from the start of the first year
+	 * @param eventMax Stream -> the largest count in its current event
+	 */
+	private void addRow(int stream, int row, int block, int amount, int[] lastBlock, long[] lastEpochMillis, int[] lastHourSlot, int[] lastDay, int[] eventMax)
+	{
+		if (this.blockStats[stream] == null)
+		{
+			this.blockStats[stream] = new int[this.yearCount * 12 * FIELDS];
+			this.hourStats[stream] = new int[this.yearCount * 12][];
+		}
+		int[] stats = this.blockStats[stream];
+		int base = block * FIELDS;
+
+		long epochMillis = this.columns.getEpochMillis(row);
+		int hour = this.columns.getHour(row);
+		int day = (this.columns.getYear(row) - this.firstYear) * 367 + this.columns.getDayOfYear(row);
+		int hourSlot = day * HOURS + hour;
+
+		boolean newBlock = lastBlock[stream] != block;
+		if (newBlock)
+		{
+			// Close the previous block, then the first row of a block always starts a period and an event
+			if (lastBlock[stream] != -1)
+				this.closeBlock(stream, lastBlock[stream], eventMax[stream]);
+			this.hourStats[stream][block] = new int[HOURS * 2];
+			stats[base + FIRST_ROW] = row;
+			stats[base + PERIOD] = 1;
+			stats[base + SINGLE_EVENT] = 1;
+			eventMax[stream] = amount;
+		}
+		else
+		{
+			long differenceMinutes = (epochMillis - lastEpochMillis[stream]) / 1000 / 60;
+			// If the difference between the last image and the current one is at least the event interval a new event starts
+			if (differenceMinutes >= this.eventInterval)
+			{
+				stats[base + PERIOD]++;
+				stats[base + ABUNDANCE] = stats[base + ABUNDANCE] + eventMax[stream];
+				if (stats[base + SINGLE_EVENT] == 1)
+				{
+					stats[base + FIRST_EVENT_MAX] = eventMax[stream];
+					stats[base + SINGLE_EVENT] = 0;
+				}
+				eventMax[stream] = amount;
+			}
+			else
+			{
+				eventMax[stream] = Math.max(eventMax[stream], amount);
+			}
+		}
+
+		stats[base + IMAGES]++;
+		stats[base + LAST_ROW] = row;
+		int[] hours = this.hourStats[stream][block];
+		hours[hour]++;
+		// Activity is the number of distinct hours with an image, and rows are sorted so a new hour is never seen twice
+		if (newBlock || hourSlot != lastHourSlot[stream])
+			hours[HOURS + hour]++;
+		if (newBlock || day != lastDay[stream])
+			stats[base + DAYS]++;
+
+		lastBlock[stream] = block;
+		lastEpochMillis[stream] = epochMillis;
+		lastHourSlot[stream] = hourSlot;
+		lastDay[stream] = day;
+	}
+
+	/**
+	 * Records the last event of a block once the block has no more rows
+	 *
+	 * @param stream The stream
+	 * @param block The block to close
+	 * @param lastEventMax The largest count in the block's last event
+	 */
+	private void closeBlock(int stream, int block, int lastEventMax)
+	{
+		int[] stats = this.blockStats[stream];
+		int base = block * FIELDS;
+		stats[base + ABUNDANCE] = stats[base + ABUNDANCE] + lastEventMax;
+		stats[base + LAST_EVENT_MAX] = lastEventMax;
+		if (stats[base + SINGLE_EVENT] == 1)
+			stats[base + FIRST_EVENT_MAX] = lastEventMax;
+	}
+
+	/**
+	 * @param species The species, or null for images with any or no species
+	 * @param location The location, or null for images at any location
+	 * @param year The year, or null for every year
+	 * @param month The month from 1 to 12, or null for every month
+	 * @return The number of images matching the filters
+	 */
+	public int imageCount(Species species, Location location, Integer year, Integer month)
+	{
+		return this.slice(species, location, year, month).images;
+	}
+
+	/**
+	 * @param species The species, or null for images with any or no species
+	 * @param location The location, or null for images at any location
+	 * @param year The year, or null for every year
+	 * @param month The month from 1 to 12, or null for every month
+	 * @return The same value as periodForImageList on the images matching the filters
+	 */
+	public int period(Species species, Location location, Integer year, Integer month)
+	{
+		return this.slice(species, location, year, month).period;
+	}
+
+	/**
+	 * @param species The species to count, or null to count any species
+	 * @param location The location, or null for images at any location
+	 * @param year The year, or null for every year
+	 * @param month The month from 1 to 12, or null for every month
+	 * @return The same value as abundanceForImageList on the images matching the filters
+	 */
+	public int abundance(Species species, Location location, Integer year, Integer month)
+	{
+		return this.slice(species, location, year, month).abundance;
+	}
+
+	/**
+	 * @param species The species, or null for images with any or no species
+	 * @param location The location, or null for images at any location
+	 * @param year The year, or null for every year
+	 * @param month The month from 1 to 12, or null for every month
+	 * @return The number of distinct days with an image matching the filters
+	 */
+	public int dayCount(Species species, Location location, Integer year, Integer month)
+	{
+		return this.slice(species, location, year, month).days;
+	}
+
+	/**
+	 * @param species The species, or null for images with any or no species
+	 * @param location The location, or null for images at any location
+	 * @param year The year, or null for every year
+	 * @param month The month from 1 to 12, or null for every month
+	 * @return The first row of the columns matching the filters, or -1 if no row matches
+	 */
+	public int firstRow(Species species, Location location, Integer year, Integer month)
+	{
+		return this.slice(species, location, year, month).firstRow;
+	}
+
+	/**
+	 * @param species The species, or null for images with any or no species
+	 * @param location The location, or null for images at any location
+	 * @param year The year, or null for every year
+	 * @param month The month from 1 to 12, or null for every month
+	 * @return The last row of the columns matching the filters, or -1 if no row matches
+	 */
+	public int lastRow(Species species, Location location, Integer year, Integer month)
+	{
+		return this.slice(species, location, year, month).lastRow;
+	}
+
+	/**
+	 * @param species The species, or null for images with any or no species
+	 * @param location The location, or null for images at any location
+	 * @param year The year, or null for every year
+	 * @param month The month from 1 to 12, or null for every month
+	 * @param startHour The first hour to include
+	 * @param endHour The hour to stop at, exclusive
+	 * @return The number of images matching the filters taken between the two hours, like ImageQuery.timeFrame
+	 */
+	public int imageCount(Species species, Location location, Integer year, Integer month, Integer startHour, Integer endHour)
+	{
+		return this.sumHours(species, location, year, month, startHour, endHour, 0);
+	}
+
+	/**
+	 * @param species The species, or null for images with any or no species
+	 * @param location The location, or null for images at any location
+	 * @param year The year, or null for every year
+	 * @param month The month from 1 to 12, or null for every month
+	 * @param startHour The first hour to include
+	 * @param endHour The hour to stop at, exclusive
+	 * @return The same value as activityForImageList on the images matching the filters taken between the two hours
+	 */
+	public int activity(Species species, Location location, Integer year, Integer month, Integer startHour, Integer endHour)
+	{
+		return this.sumHours(species, location, year, month, startHour, endHour, HOURS);
+	}
+
+	/**
+	 * @param species The species, or null for images with any or no species
+	 * @param location The location, or null for images at any location
+	 * @param year The year, or null for every year
+	 * @param month The month from 1 to 12, or null for every month
+	 * @return The same value as activityForImageList on the images matching the filters
+	 */
+	public int activity(Species species, Location location, Integer year, Integer month)
+	{
+		return this.activity(species, location, year, month, 0, HOURS);
+	}
+
+	/**
+	 * Sums one of the hour totals over every block matching the filters
+	 *
+	 * @param species The species, or null for images with any or no species
+	 * @param location The location, or null for images at any location
+	 * @param year The year, or null for every year
+	 * @param month The month from 1 to 12, or null for every month
+	 * @param startHour The first hour to include
+	 * @param endHour The hour to stop at, exclusive
+	 * @param offset 0 to sum image counts or HOURS to sum activity
+	 * @return The sum
+	 */
+	private int sumHours(Species species, Location location, Integer year, Integer month, Integer startHour, Integer endHour, int offset)
+	{
+		int stream = this.layout.streamOf(species, location);
+		int sum = 0;
+		if (stream != -1 && this.hourStats[stream] != null)
+			for (int block = this.firstBlock(year, month); block <= this.lastBlock(year, month); block = this.nextBlock(block, month))
+			{
+				int[] hours = this.hourStats[stream][block];
+				if (hours != null)
+					for (int hour = Math.max(0, startHour); hour < Math.min(HOURS, endHour); hour++)
+						sum = sum + hours[offset + hour];
+			}
+		return sum;
+	}
+
+	/**
+	 * Joins every block matching the filters in date order. Two neighbouring blocks are part of the same event if the last image of the
+	 * first is less than the event interval away from the first image of the second, in which case the second block's first period is
+	 * not new and its first event merges with the first block's last event
+	 *
+	 * @param species The species, or null for images with any or no species
+	 * @param location The location, or null for images at any location
+	 * @param year The year, or null for every year
+	 * @param month The month from 1 to 12, or null for every month
+	 * @return The totals of the matching images
+	 */
+	private Slice slice(Species species, Location location, Integer year, Integer month)
+	{
+		Slice slice = new Slice();
+		int stream = this.layout.streamOf(species, location);
+		if (stream == -1 || this.blockStats[stream] == null)
+			return slice;
+
+		int[] stats = this.blockStats[stream];
+		int lastEventMax = 0;
+		for (int block = this.firstBlock(year, month); block <= this.lastBlock(year, month); block = this.nextBlock(block, month))
+		{
+			int base = block * FIELDS;
+			if (stats[base + IMAGES] == 0)
+				continue;
+
+			int period = stats[base + PERIOD];
+			int abundance = stats[base + ABUNDANCE];
+			int firstEventMax = stats[base + FIRST_EVENT_MAX];
+			boolean singleEvent = stats[base + SINGLE_EVENT] == 1;
+			int nextLastEventMax = stats[base + LAST_EVENT_MAX];
+			if (slice.lastRow != -1)
+			{
+				long differenceMinutes = (this.columns.getEpochMillis(stats[base + FIRST_ROW]) - this.columns.getEpochMillis(slice.lastRow)) / 1000 / 60;
+				if (differenceMinutes < this.eventInterval)
+				{
+					// The block's first event continues the previous block's last event
+					int mergedEventMax = Math.max(lastEventMax, firstEventMax);
+					period = period - 1;
+					abundance = abundance - lastEventMax - firstEventMax + mergedEventMax;
+					if (singleEvent)
+						nextLastEventMax = mergedEventMax;
+				}
+			}
+			else
+			{
+				slice.firstRow = stats[base + FIRST_ROW];
+			}
+
+			slice.images = slice.images + stats[base + IMAGES];
+			slice.period = slice.period + period;
+			slice.abundance = slice.abundance + abundance;
+			slice.days = slice.days + stats[base + DAYS];
+			slice.lastRow = stats[base + LAST_ROW];
+			lastEventMax = nextLastEventMax;
+		}
+		return slice;
+	}
+
+	/**
+	 * @param year The year filter, or null
+	 * @param month The month filter, or null
+	 * @return The first block matching the filters, greater than lastBlock if none match
+	 */
+	private int firstBlock(Integer year, Integer month)
+	{
+		if (!this.validFilters(year, month))
+			return 0;
+		int yearIndex = year == null ? 0 : this.yearIndices[year - this.firstYear];
+		return month == null ? yearIndex * 12 : yearIndex * 12 + month - 1;
+	}
+
+	/**
+	 * @param year The year filter, or null
+	 * @param month The month filter, or null
+	 * @return The last block matching the filters, less than firstBlock if none match
+	 */
+	private int lastBlock(Integer year, Integer month)
+	{
+		if (!this.validFilters(year, month))
+			return -1;
+		int yearIndex = year == null ? this.yearCount - 1 : this.yearIndices[year - this.firstYear];
+		return month == null ? yearIndex * 12 + 11 : yearIndex * 12 + month - 1;
+	}
+
+	/**
+	 * @param block The current block
+	 * @param month The month filter, or null
+	 * @return The next block to visit, the same month of the next year when filtering by month
+	 */
+	private int nextBlock(int block, Integer month)
+	{
+		return month == null ? block + 1 : block + 12;
+	}
+
+	/**
+	 * @param year The year filter, or null
+	 * @param month The month filter, or null
+	 * @return True if some block could match the filters
+	 */
+	private boolean validFilters(Integer year, Integer month)
+	{
+		return this.yearCount > 0 &&
+				(year == null || (year >= this.firstYear && year < this.firstYear + this.yearIndices.length && this.yearIndices[year - this.firstYear] != -1)) &&
+				(month == null || (month >= 1 && month <= 12));
+	}
+
+	/**
+	 * @param year The year
+	 * @param month The month from 1 to 12
+	 * @return The index of the year and month's block
+	 */
+	private int blockOf(int year, int month)
+	{
+		return this.yearIndices[year - this.firstYear] * 12 + month - 1;
+	}
+
+	/**
+	 * The totals of a slice of the cube
+	 */
+	private static class Slice
+	{
+		private int images = 0;
+		private int period = 0;
+		private int abundance = 0;
+		private int days = 0;
+		private int firstRow = -1;
+		private int lastRow = -1;
+	}
+}
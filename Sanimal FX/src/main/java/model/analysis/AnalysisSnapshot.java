@@ -0,0 +1,509 @@
+package model.analysis;
+
+import model.image.ImageEntry;
+import model.location.Location;
+import model.species.Species;
+import org.apache.commons.io.output.CountingOutputStream;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A versioned binary file containing an analysis data set: every image's path, date, location, and species tags. The file is laid
+ * out as the same columns ImageColumns uses so it can be memory mapped and analyzed without creating an object per image, which
+ * makes even very large data sets open instantly.
+ * <p>
+ * The format is big endian and is meant to be simple to read from other tools:
+ * <pre>
+ * magic          8 bytes  "SNMLSNAP"
+ * version        int      currently 1
+ * rowCount       int      number of images
+ * locationCount  int      number of unique locations
+ * speciesCount   int      number of unique species
+ * tagCount       int      total number of species tags
+ * sectionCount   int      number of sections that follow
+ * sectionTable   sectionCount * (long offset, long length) in bytes from the start of the file, in the order of Section
+ * sections       each starting on an 8 byte boundary
+ * </pre>
+ * Strings are stored as an int byte length followed by UTF-8 bytes, and missing coordinates are stored as NaN. The year, month, hour,
+ * and day of year columns are in the time zone of the computer that wrote the file, the epoch time column is authoritative
+ */
+public class AnalysisSnapshot
+{
+	// The bytes every snapshot file starts with
+	private static final byte[] MAGIC = "SNMLSNAP".getBytes(StandardCharsets.US_ASCII);
+	// The newest format version this class can read and the version it writes
+	private static final int VERSION = 1;
+	// The size of the fixed part of the header in bytes
+	private static final int HEADER_SIZE = MAGIC.length + 6 * Integer.BYTES;
+
+	/**
+	 * The sections of a snapshot file in the order they appear in the section table
+	 */
+	private enum Section
+	{
+		// long per row
+		EPOCH_MILLIS,
+		// short per row
+		YEARS,
+		// byte per row
+		MONTHS,
+		// byte per row
+		HOURS,
+		// short per row
+		DAYS_OF_YEAR,
+		// int per row, -1 if the image has no location
+		LOCATION_IDS,
+		// int per row plus one, index into the tag sections
+		TAG_OFFSETS,
+		// int per tag
+		TAG_SPECIES_IDS,
+		// int per tag
+		TAG_COUNTS,
+		// long per row plus one, byte offset into PATH_BYTES
+		PATH_OFFSETS,
+		// UTF-8 bytes of every path back to back
+		PATH_BYTES,
+		// per location: string id, string name, double latitude, double longitude, double elevation
+		LOCATIONS,
+		// per species: string common name, string scientific name
+		SPECIES
+	}
+
+	// The columns of the snapshot, backed by the mapped file
+	private final ImageColumns columns;
+	// Row -> byte offset of the row's path, backed by the mapped file
+	private final LongBuffer pathOffsets;
+	// The bytes of every path, backed by the mapped file
+	private final ByteBuffer pathBytes;
+
+	/**
+	 * Constructor is private, use open() to read a snapshot
+	 *
+	 * @param columns The mapped columns
+	 * @param pathOffsets The mapped path offsets
+	 * @param pathBytes The mapped path bytes
+	 */
+	private AnalysisSnapshot(ImageColumns columns, LongBuffer pathOffsets, ByteBuffer pathBytes)
+	{
+		this.columns = columns;
+		this.pathOffsets = pathOffsets;
+		this.pathBytes = pathBytes;
+	}
+
+	/**
+	 * Writes a list of images to a snapshot file. Rows are written sorted by date, the same order DataAnalyzer uses, so the columns can
+	 * be analyzed as they are when the snapshot is opened
+	 *
+	 * @param images The images to write
+	 * @param file The file to write to, overwritten if it exists
+	 * @throws IOException If the file could not be written
+	 */
+	public static void write(List<ImageEntry> images, File file) throws IOException
+	{
+		images = new ArrayList<>(images);
+		images.sort(Comparator.comparing(ImageEntry::getDateTaken));
+		ImageColumns columns = new ImageColumns(images);
+		long[] sectionTable = new long[Section.values().length * 2];
+		int headerAndTableSize = HEADER_SIZE + sectionTable.length * Long.BYTES;
+
+		try (CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			 DataOutputStream out = new DataOutputStream(counter))
+		{
+			// Header, the section table is written as zeros and filled in once the section sizes are known
+			out.write(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(columns.size());
+			out.writeInt(columns.getLocationCount());
+			out.writeInt(columns.getSpeciesCount());
+			out.writeInt(columns.getTotalTags());
+			out.writeInt(Section.values().length);
+			for (long ignored : sectionTable)
+				out.writeLong(0);
+
+			for (Section section : Section.values())
+			{
+				// Align each section to 8 bytes so it can be viewed as any primitive type
+				while (counter.getByteCount() % Long.BYTES != 0)
+					out.writeByte(0);
+				long start = counter.getByteCount();
+				writeSection(section, images, columns, out);
+				sectionTable[section.ordinal() * 2] = start;
+				sectionTable[section.ordinal() * 2 + 1] = counter.getByteCount() - start;
+			}
+		}
+
+		// Go back and fill in the section table
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"))
+		{
+			randomAccessFile.seek(HEADER_SIZE);
+			ByteBuffer table = ByteBuffer.allocate(headerAndTableSize - HEADER_SIZE);
+			for (long value : sectionTable)
+				table.putLong(value);
+			randomAccessFile.write(table.array());
+		}
+	}
+
+	/**
+	 * Writes the contents of one section
+	 *
+	 * @param section The section to write
+	 * @param images The images being written, used for paths
+	 * @param columns The columns of the images
+	 * @param out The stream to write to
+	 * @throws IOException If the stream could not be written
+	 */
+	private static void writeSection(Section section, List<ImageEntry> images, ImageColumns columns, DataOutputStream out) throws IOException
+	{
+		switch (section)
+		{
+			case EPOCH_MILLIS:
+				for (int row = 0; row < columns.size(); row++)
+					out.writeLong(columns.getEpochMillis(row));
+				break;
+			case YEARS:
+				for (int row = 0; row < columns.size(); row++)
+					out.writeShort(columns.getYear(row));
+				break;
+			case MONTHS:
+				for (int row = 0; row < columns.size(); row++)
+					out.writeByte(columns.getMonth(row));
+				break;
+			case HOURS:
+				for (int row = 0; row < columns.size(); row++)
+					out.writeByte(columns.getHour(row));
+				break;
+			case DAYS_OF_YEAR:
+				for (int row = 0; row < columns.size(); row++)
+					out.writeShort(columns.getDayOfYear(row));
+				break;
+			case LOCATION_IDS:
+				for (int row = 0; row < columns.size(); row++)
+					out.writeInt(columns.getLocationId(row));
+				break;
+			case TAG_OFFSETS:
+				for (int row = 0; row <= columns.size(); row++)
+					out.writeInt(columns.getFirstTag(row));
+				break;
+			case TAG_SPECIES_IDS:
+				for (int tag = 0; tag < columns.getTotalTags(); tag++)
+					out.writeInt(columns.getTagSpeciesId(tag));
+				break;
+			case TAG_COUNTS:
+				for (int tag = 0; tag < columns.getTotalTags(); tag++)
+					out.writeInt(columns.getTagAmount(tag));
+				break;
+			case PATH_OFFSETS:
+				long pathOffset = 0;
+				out.writeLong(pathOffset);
+				for (ImageEntry image : images)
+				{
+					pathOffset = pathOffset + pathBytes(image).length;
+					out.writeLong(pathOffset);
+				}
+				break;
+			case PATH_BYTES:
+				for (ImageEntry image : images)
+					out.write(pathBytes(image));
+				break;
+			case LOCATIONS:
+				for (int id = 0; id < columns.getLocationCount(); id++)
+				{
+					Location location = columns.getLocation(id);
+					writeString(out, location.getId());
+					writeString(out, location.getName());
+					out.writeDouble(location.getLat() == null ? Double.NaN : location.getLat());
+					out.writeDouble(location.getLng() == null ? Double.NaN : location.getLng());
+					out.writeDouble(location.getElevation() == null ? Double.NaN : location.getElevation());
+				}
+				break;
+			case SPECIES:
+				for (int id = 0; id < columns.getSpeciesCount(); id++)
+				{
+					Species species = columns.getSpecies(id);
+					writeString(out, species.getName());
+					writeString(out, species.getScientificName());
+				}
+				break;
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Opens a snapshot file by memory mapping each of its sections. Only the small location and species dictionaries are read
+	 * into objects, images are read from the file as they are accessed
+	 *
+	 * @param file The snapshot file
+	 * @return The opened snapshot
+	 * @throws IOException If the file could not be read or is not a snapshot this version can read
+	 */
+	public static AnalysisSnapshot open(File file) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file.toPath()))
+		{
+			// Read and check the header
+			if (channel.size() < HEADER_SIZE)
+				throw new IOException("The file is too short to be an analysis snapshot");
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			byte[] magic = new byte[MAGIC.length];
+			header.get(magic);
+			if (!Arrays.equals(magic, MAGIC))
+				throw new IOException("The file is not an analysis snapshot");
+			int version = header.getInt();
+			if (version > VERSION)
+				throw new IOException("The snapshot was written by a newer version (" + version + ") than this program can read (" + VERSION + ")");
+			int rowCount = header.getInt();
+			int locationCount = header.getInt();
+			int speciesCount = header.getInt();
+			int tagCount = header.getInt();
+			int sectionCount = header.getInt();
+			if (rowCount < 0 || locationCount < 0 || speciesCount < 0 || tagCount < 0)
+				throw new IOException("The snapshot header is corrupt");
+			if (sectionCount < Section.values().length)
+				throw new IOException("The snapshot is missing sections");
+
+			// Map each section separately so that no single mapping is larger than a buffer can address
+			ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long) sectionCount * 2 * Long.BYTES);
+			MappedByteBuffer[] sections = new MappedByteBuffer[Section.values().length];
+			for (Section section : Section.values())
+			{
+				long offset = table.getLong(section.ordinal() * 2 * Long.BYTES);
+				long length = table.getLong(section.ordinal() * 2 * Long.BYTES + Long.BYTES);
+				if (length > Integer.MAX_VALUE || offset + length > channel.size())
+					throw new IOException("The snapshot section " + section + " is corrupt or too large");
+				sections[section.ordinal()] = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+			}
+
+			// Make sure every fixed width section holds exactly one value per row or tag, otherwise reads would run into other sections
+			checkLength(sections, Section.EPOCH_MILLIS, (long) rowCount * Long.BYTES);
+			checkLength(sections, Section.YEARS, (long) rowCount * Short.BYTES);
+			checkLength(sections, Section.MONTHS, rowCount);
+			checkLength(sections, Section.HOURS, rowCount);
+			checkLength(sections, Section.DAYS_OF_YEAR, (long) rowCount * Short.BYTES);
+			checkLength(sections, Section.LOCATION_IDS, (long) rowCount * Integer.BYTES);
+			checkLength(sections, Section.TAG_OFFSETS, ((long) rowCount + 1) * Integer.BYTES);
+			checkLength(sections, Section.TAG_SPECIES_IDS, (long) tagCount * Integer.BYTES);
+			checkLength(sections, Section.TAG_COUNTS, (long) tagCount * Integer.BYTES);
+			checkLength(sections, Section.PATH_OFFSETS, ((long) rowCount + 1) * Long.BYTES);
+			checkReferences(sections, rowCount, locationCount, speciesCount, tagCount);
+
+			// The dictionaries are small, so read them into objects
+			Location[] locations = readLocations(sections[Section.LOCATIONS.ordinal()], locationCount);
+			Species[] species = readSpecies(sections[Section.SPECIES.ordinal()], speciesCount);
+
+			ImageColumns columns = new ImageColumns(
+					rowCount,
+					sections[Section.EPOCH_MILLIS.ordinal()].asLongBuffer(),
+					sections[Section.YEARS.ordinal()].asShortBuffer(),
+					sections[Section.MONTHS.ordinal()],
+					sections[Section.HOURS.ordinal()],
+					sections[Section.DAYS_OF_YEAR.ordinal()].asShortBuffer(),
+					sections[Section.LOCATION_IDS.ordinal()].asIntBuffer(),
+					locations,
+					sections[Section.TAG_OFFSETS.ordinal()].asIntBuffer(),
+					sections[Section.TAG_SPECIES_IDS.ordinal()].asIntBuffer(),
+					sections[Section.TAG_COUNTS.ordinal()].asIntBuffer(),
+					species);
+			return new AnalysisSnapshot(columns, sections[Section.PATH_OFFSETS.ordinal()].asLongBuffer(), sections[Section.PATH_BYTES.ordinal()]);
+		}
+		catch (IndexOutOfBoundsException | IllegalArgumentException | BufferUnderflowException e)
+		{
+			throw new IOException("The snapshot is corrupt", e);
+		}
+	}
+
+	/**
+	 * Makes sure a section has the length the header says it should
+	 *
+	 * @param sections The mapped sections
+	 * @param section The section to check
+	 * @param expectedLength The length in bytes the section must have
+	 * @throws IOException If the section has any other length
+	 */
+	private static void checkLength(MappedByteBuffer[] sections, Section section, long expectedLength) throws IOException
+	{
+		if (sections[section.ordinal()].capacity() != expectedLength)
+			throw new IOException("The snapshot section " + section + " is " + sections[section.ordinal()].capacity() + " bytes but should be " + expectedLength + " bytes");
+	}
+
+	/**
+	 * Makes sure every id and offset in the file points inside the section it refers to, so a corrupt file fails here instead of
+	 * part way through an analysis
+	 *
+	 * @param sections The mapped sections, already checked with checkLength
+	 * @param rowCount The number of rows
+	 * @param locationCount The number of locations
+	 * @param speciesCount The number of species
+	 * @param tagCount The number of tags
+	 * @throws IOException If any id or offset is out of range
+	 */
+	private static void checkReferences(MappedByteBuffer[] sections, int rowCount, int locationCount, int speciesCount, int tagCount) throws IOException
+	{
+		IntBuffer locationIds = sections[Section.LOCATION_IDS.ordinal()].asIntBuffer();
+		IntBuffer tagOffsets = sections[Section.TAG_OFFSETS.ordinal()].asIntBuffer();
+		LongBuffer pathOffsets = sections[Section.PATH_OFFSETS.ordinal()].asLongBuffer();
+		long pathBytes = sections[Section.PATH_BYTES.ordinal()].capacity();
+		if (tagOffsets.get(0) != 0 || tagOffsets.get(rowCount) != tagCount || pathOffsets.get(0) != 0 || pathOffsets.get(rowCount) != pathBytes)
+			throw new IOException("The snapshot's tag or path offsets are corrupt");
+		for (int row = 0; row < rowCount; row++)
+			if (locationIds.get(row) < -1 || locationIds.get(row) >= locationCount || tagOffsets.get(row) > tagOffsets.get(row + 1) || pathOffsets.get(row) > pathOffsets.get(row + 1))
+				throw new IOException("The snapshot row " + row + " is corrupt");
+		IntBuffer tagSpeciesIds = sections[Section.TAG_SPECIES_IDS.ordinal()].asIntBuffer();
+		for (int tag = 0; tag < tagCount; tag++)
+			if (tagSpeciesIds.get(tag) < 0 || tagSpeciesIds.get(tag) >= speciesCount)
+				throw new IOException("The snapshot tag " + tag + " is corrupt");
+	}
+
+	/**
+	 * Reads the location dictionary
+	 *
+	 * @param buffer The mapped location section
+	 * @param locationCount The number of locations
+	 * @return Location id -> location
+	 */
+	private static Location[] readLocations(ByteBuffer buffer, int locationCount)
+	{
+		Location[] locations = new Location[locationCount];
+		for (int id = 0; id < locationCount; id++)
+		{
+			String locationId = readString(buffer);
+			String name = readString(buffer);
+			Double latitude = buffer.getDouble();
+			Double longitude = buffer.getDouble();
+			Double elevation = buffer.getDouble();
+			locations[id] = new Location(name, locationId, latitude.isNaN() ? null : latitude, longitude.isNaN() ? null : longitude, elevation.isNaN() ? null : elevation);
+		}
+		return locations;
+	}
+
+	/**
+	 * Reads the species dictionary
+	 *
+	 * @param buffer The mapped species section
+	 * @param speciesCount The number of species
+	 * @return Species id -> species
+	 */
+	private static Species[] readSpecies(ByteBuffer buffer, int speciesCount)
+	{
+		Species[] species = new Species[speciesCount];
+		for (int id = 0; id < speciesCount; id++)
+		{
+			String name = readString(buffer);
+			String scientificName = readString(buffer);
+			species[id] = new Species(name, scientificName, Species.DEFAULT_ICON);
+		}
+		return species;
+	}
+
+	/**
+	 * Tests if the rows are sorted by date, which every snapshot written by write() is. Sorted columns can be analyzed without copying
+	 *
+	 * @return True if every row was taken at or after the row before it
+	 */
+	public boolean isSortedByDate()
+	{
+		for (int row = 1; row < this.columns.size(); row++)
+			if (this.columns.getEpochMillis(row) < this.columns.getEpochMillis(row - 1))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Creates an image entry for every row. This creates one object per image, so analysis code should prefer getColumns()
+	 *
+	 * @return A list of image entries in row order, rows with the same location or species share one object
+	 */
+	public List<ImageEntry> toImageEntries()
+	{
+		List<ImageEntry> images = new ArrayList<>(this.columns.size());
+		ZoneId zone = ZoneId.systemDefault();
+		for (int row = 0; row < this.columns.size(); row++)
+		{
+			ImageEntry entry = new ImageEntry(new File(this.getPath(row)));
+			entry.setDateTaken(LocalDateTime.ofInstant(Instant.ofEpochMilli(this.columns.getEpochMillis(row)), zone));
+			if (this.columns.getLocationId(row) != -1)
+				entry.setLocationTaken(this.columns.getLocation(this.columns.getLocationId(row)));
+			for (int tag = this.columns.getFirstTag(row); tag < this.columns.getFirstTag(row + 1); tag++)
+				entry.addSpecies(this.columns.getSpecies(this.columns.getTagSpeciesId(tag)), this.columns.getTagAmount(tag));
+			images.add(entry);
+		}
+		return images;
+	}
+
+	/**
+	 * Reads the path of one row straight from the file
+	 *
+	 * @param row The row
+	 * @return The image's path
+	 */
+	public String getPath(int row)
+	{
+		int start = (int) this.pathOffsets.get(row);
+		int end = (int) this.pathOffsets.get(row + 1);
+		byte[] bytes = new byte[end - start];
+		ByteBuffer view = this.pathBytes.duplicate();
+		view.position(start);
+		view.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return The columns of the snapshot, backed directly by the file
+	 */
+	public ImageColumns getColumns()
+	{
+		return this.columns;
+	}
+
+	/**
+	 * Encodes an image's path, always with forward slashes so the file is the same on every platform
+	 *
+	 * @param image The image
+	 * @return The UTF-8 bytes of the path
+	 */
+	private static byte[] pathBytes(ImageEntry image)
+	{
+		return image.getFile().getPath().replace('\\', '/').getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes a string as an int byte length followed by UTF-8 bytes
+	 *
+	 * @param out The stream to write to
+	 * @param value The string, null is written as an empty string
+	 * @throws IOException If the stream could not be written
+	 */
+	private static void writeString(DataOutputStream out, String value) throws IOException
+	{
+		byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a string written by writeString
+	 *
+	 * @param buffer The buffer to read from, advanced past the string
+	 * @return The string
+	 */
+	private static String readString(ByteBuffer buffer)
+	{
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
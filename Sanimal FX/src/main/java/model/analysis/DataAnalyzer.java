@@ -1,11 +1,12 @@
 package model.analysis;
 
-import library.MoonCalculator;
+import model.SanimalData;
 import model.image.ImageEntry;
 import model.location.Location;
 import model.species.Species;
 import model.species.SpeciesEntry;
 
+import java.lang.ref.SoftReference;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -24,12 +25,25 @@ public class DataAnalyzer
 	private List<Location> allImageLocations = new ArrayList<>();
 	private List<Species> allImageSpecies = new ArrayList<>();
 	private List<Integer> allImageYears = new ArrayList<>();
-	// A list of all images but sorted by date instead of randomly
-	private List<ImageEntry> imagesSortedByDate;
-	// A list of all original images
-	private List<ImageEntry> originalImageList;
+	// A list of all images but sorted by date instead of randomly, only created once something asks for it
+	private List<ImageEntry> imagesSortedByDate = null;
+	// Image entries created from the snapshot once something asks for them. They can always be created again, so the garbage
+	// collector may take them back when memory runs low
+	private SoftReference<List<ImageEntry>> snapshotImages = new SoftReference<>(null);
+	// A list of all original images, null if the analysis is of a snapshot
+	private List<ImageEntry> originalImageList = null;
+	// The snapshot being analyzed, null if the analysis is of a list of images
+	private AnalysisSnapshot snapshot = null;
+	// A columnar copy of the images sorted by date, row i is the same image as getImagesSortedByDate().get(i)
+	private ImageColumns columns;
+	// Pre-computed totals over species, location, year, month, and hour
+	private AnalysisCube cube;
+	// Every independent event of every species at every location
+	private EventIndex events;
 	// The event interval, in minutes
 	private Integer eventInterval;
+	// A table of every full and new moon over the image's interval, null if there are no images
+	private LunationTable lunations = null;
 	// A pre-calculated list of all full and new moons over the image's interval
 	private List<Date> fullMoons = new ArrayList<>();
 	private List<Date> newMoons = new ArrayList<>();
@@ -47,11 +61,12 @@ public class DataAnalyzer
 		this.eventInterval = eventInterval;
 		this.originalImageList = images;
 
-		// Find all image locations
+		// Find all image locations, locations are compared by reference so use an identity set to find duplicates quickly
+		Set<Location> locationsFound = Collections.newSetFromMap(new IdentityHashMap<>());
 		for (ImageEntry entry : images)
 			if (entry.getLocationTaken() != null)
 			{
-				if (!allImageLocations.contains(entry.getLocationTaken()))
+				if (locationsFound.add(entry.getLocationTaken()))
 					allImageLocations.add(entry.getLocationTaken());
 			}
 			else
@@ -60,60 +75,89 @@ public class DataAnalyzer
 		// Sort the locations by name
 		allImageLocations.sort(Comparator.comparing(Location::getName));
 
-		// Find all image species 
+		// Find all image species, species are compared by reference so use an identity set to find duplicates quickly
+		Set<Species> speciesFound = Collections.newSetFromMap(new IdentityHashMap<>());
 		for (ImageEntry imageEntry : images)
 			for (SpeciesEntry speciesEntry : imageEntry.getSpeciesPresent())
-				if (!allImageSpecies.contains(speciesEntry.getSpecies()))
+				if (speciesFound.add(speciesEntry.getSpecies()))
 					allImageSpecies.add(speciesEntry.getSpecies());
 
 		// Sort species by name
 		allImageSpecies.sort(Comparator.comparing(Species::getName));
 
-		// Find all image years
-		for (ImageEntry imageEntry : images)
-		{
-			Integer year = imageEntry.getDateTaken().getYear();
-			if (!allImageYears.contains(year))
-				allImageYears.add(year);
-		}
+		// Copy the images sorted by date into columns. The sorted list is not kept, the analysis only needs the columns
+		columns = new ImageColumns(sortByDate(images));
 
-		// Sort years first to last
-		Collections.sort(allImageYears);
+		this.analyzeColumns();
+	}
 
-		// Create a copy of "images", and sort it by date
-		imagesSortedByDate = new ArrayList<>(images);
-		imagesSortedByDate.sort(Comparator.comparing(ImageEntry::getDateTaken));
+	/**
+	 * Constructor for the analysis of a snapshot file. The snapshot's memory mapped columns are analyzed as they are instead of being
+	 * copied onto the heap, so the snapshot's rows must be sorted by date
+	 *
+	 * @param snapshot
+	 *            The snapshot to perform the analysis on, see AnalysisSnapshot.isSortedByDate()
+	 * @param eventInterval
+	 *            The event interval given in minutes
+	 */
+	public DataAnalyzer(AnalysisSnapshot snapshot, Integer eventInterval)
+	{
+		this.eventInterval = eventInterval;
+		this.snapshot = snapshot;
+		this.columns = snapshot.getColumns();
 
-		// If we have at least one image, begin calculating lunar cycles
-		if (imagesSortedByDate.size() > 0)
-		{
-			// Full moon calculations
-			LocalDateTime first = imagesSortedByDate.get(0).getDateTaken();
-			LocalDateTime last = imagesSortedByDate.get(imagesSortedByDate.size() - 1).getDateTaken();
-			while (first.isBefore(last))
-			{
-				double julianDate = MoonCalculator.getJulian(Date.from(first.atZone(ZoneId.systemDefault()).toInstant()));
-				double[] phases = MoonCalculator.getPhase(julianDate);
-				double fullMoon = MoonCalculator.getLunation(julianDate, phases[MoonCalculator.MOONPHASE], 180);
-				long fullMillis = MoonCalculator.toMillisFromJulian(fullMoon);
-				Date nextFullMoonDate = new Date(fullMillis);
-				fullMoons.add(nextFullMoonDate);
-				first = LocalDateTime.ofInstant(Instant.ofEpochMilli(nextFullMoonDate.getTime() + 20 * 1000 * 60 * 60 * 24), ZoneId.systemDefault());
-			}
+		// The columns already hold every unique location and species
+		for (int locationId = 0; locationId < columns.getLocationCount(); locationId++)
+			allImageLocations.add(columns.getLocation(locationId));
+		allImageLocations.sort(Comparator.comparing(Location::getName));
+		for (int row = 0; row < columns.size() && !nullLocationsFound; row++)
+			if (columns.getLocationId(row) == -1)
+				nullLocationsFound = true;
+		for (int speciesId = 0; speciesId < columns.getSpeciesCount(); speciesId++)
+			allImageSpecies.add(columns.getSpecies(speciesId));
+		allImageSpecies.sort(Comparator.comparing(Species::getName));
 
-			// New moon calculations
-			LocalDateTime first2 = imagesSortedByDate.get(0).getDateTaken();
-			LocalDateTime last2 = imagesSortedByDate.get(imagesSortedByDate.size() - 1).getDateTaken();
-			while (first2.isBefore(last2))
-			{
-				double julianDate = MoonCalculator.getJulian(Date.from(first2.atZone(ZoneId.systemDefault()).toInstant()));
-				double[] phases = MoonCalculator.getPhase(julianDate);
-				double newMoon = MoonCalculator.getLunation(julianDate, phases[MoonCalculator.MOONPHASE], 0);
-				long newMillis = MoonCalculator.toMillisFromJulian(newMoon);
-				Date nextNewMoonDate = new Date(newMillis);
-				newMoons.add(nextNewMoonDate);
-				first2 = LocalDateTime.ofInstant(Instant.ofEpochMilli(nextNewMoonDate.getTime() + 20 * 1000 * 60 * 60 * 24), ZoneId.systemDefault());
-			}
+		this.analyzeColumns();
+	}
+
+	/**
+	 * Creates a copy of a list of images sorted by date. The sort is stable, so the same list always sorts into the same order
+	 *
+	 * @param images
+	 *            The images to sort
+	 * @return A sorted copy of the images
+	 */
+	private static List<ImageEntry> sortByDate(List<ImageEntry> images)
+	{
+		List<ImageEntry> sorted = new ArrayList<>(images);
+		sorted.sort(Comparator.comparing(ImageEntry::getDateTaken));
+		return sorted;
+	}
+
+	/**
+	 * Computes everything derived from the columns, shared by both constructors
+	 */
+	private void analyzeColumns()
+	{
+		// Compute the totals of every species, location, year, and month in one pass
+		cube = new AnalysisCube(columns, eventInterval);
+
+		// Split the images of every species and location into independent events once
+		events = new EventIndex(columns, eventInterval);
+
+		// Find all image years, which are sorted first to last since the rows are sorted by date
+		for (int row = 0; row < columns.size(); row++)
+			if (allImageYears.isEmpty() || allImageYears.get(allImageYears.size() - 1) != columns.getYear(row))
+				allImageYears.add(columns.getYear(row));
+
+		// If we have at least one image, look up every new and full moon over the images' interval
+		if (columns.size() > 0)
+		{
+			long firstMillis = columns.getEpochMillis(0);
+			long lastMillis = columns.getEpochMillis(columns.size() - 1);
+			lunations = SanimalData.getInstance().getLunationCache().tableFor(firstMillis, lastMillis);
+			fullMoons = lunations.getFullMoons(firstMillis - LunationTable.NEAR_MOON_MILLIS, lastMillis + LunationTable.NEAR_MOON_MILLIS);
+			newMoons = lunations.getNewMoons(firstMillis - LunationTable.NEAR_MOON_MILLIS, lastMillis + LunationTable.NEAR_MOON_MILLIS);
 		}
 	}
 
@@ -272,6 +316,130 @@ public class DataAnalyzer
 		return abundance;
 	}
 
+	/**
+	 * Get the activity for a set of rows in the image columns. Rows MUST first be filtered by location and species to achieve a total accumulation
+	 *
+	 * @param rows
+	 *            The rows of getColumns() to test, in ascending order
+	 * @return The activity for the rows
+	 */
+	public Integer activityForRows(int[] rows)
+	{
+		int activity = 0;
+
+		int oldHour = -1;
+		int oldDay = -1;
+		int oldYear = -1;
+		for (int row : rows)
+		{
+			int hour = columns.getHour(row);
+			int day = columns.getDayOfYear(row);
+			int year = columns.getYear(row);
+			// If either the hour, day, or year changes, we're onto a new activity
+			if ((hour != oldHour) || (oldDay != day) || (oldYear != year))
+			{
+				activity = activity + 1;
+				oldHour = hour;
+				oldDay = day;
+				oldYear = year;
+			}
+		}
+
+		return activity;
+	}
+
+	/**
+	 * Get the period for a set of rows in the image columns. Rows MUST first be filtered by location and species to achieve a total accumulation
+	 *
+	 * @param rows
+	 *            The rows of getColumns() to test, in ascending order
+	 * @return The period for the rows
+	 */
+	public Integer periodForRows(int[] rows)
+	{
+		int period = 0;
+
+		long lastImageTimeMillis = 0;
+		for (int row : rows)
+		{
+			long imageTimeMillis = columns.getEpochMillis(row);
+			long differenceMinutes = (imageTimeMillis - lastImageTimeMillis) / 1000 / 60;
+			// If the difference between the last image and the current one must be > the event interval
+			if (differenceMinutes >= eventInterval)
+				period++;
+			lastImageTimeMillis = imageTimeMillis;
+		}
+
+		return period;
+	}
+
+	/**
+	 * Get the abundance value for a set of rows in the image columns. Rows MUST first be filtered by location and species to achieve a total accumulation
+	 *
+	 * @param rows
+	 *            The rows of getColumns() to test, in ascending order
+	 * @param speciesFilter
+	 *            The species for which to look for. May be null for any species
+	 * @return The abundance value for the rows
+	 */
+	public Integer abundanceForRows(int[] rows, Species speciesFilter)
+	{
+		int abundance = 0;
+
+		// -1 means any species, a species not in the columns can never match
+		int speciesId = speciesFilter == null ? -1 : columns.speciesIdOf(speciesFilter);
+		if (speciesFilter != null && speciesId == -1)
+			return 0;
+
+		long lastImageTimeMillis = 0;
+		int maxAnimalsInEvent = 0;
+		for (int row : rows)
+		{
+			long imageTimeMillis = columns.getEpochMillis(row);
+			long differenceMinutes = (imageTimeMillis - lastImageTimeMillis) / 1000 / 60;
+
+			// If the current image is further away than the event interval, add the current max number of animals to the total
+			if (differenceMinutes >= eventInterval)
+			{
+				abundance = abundance + maxAnimalsInEvent;
+				maxAnimalsInEvent = 0;
+			}
+
+			// The max number of animals is the max number of animals in this image or the max number of animals in the last image
+			maxAnimalsInEvent = Math.max(maxAnimalsInEvent, columns.maxCount(row, speciesId));
+
+			lastImageTimeMillis = imageTimeMillis;
+		}
+
+		abundance = abundance + maxAnimalsInEvent;
+
+		return abundance;
+	}
+
+	/**
+	 * @return A columnar copy of all images sorted by date, row i is the same image as getImagesSortedByDate().get(i)
+	 */
+	public ImageColumns getColumns()
+	{
+		return columns;
+	}
+
+	/**
+	 * @return Pre-computed totals of the images by species, location, year, month, and hour
+	 */
+	public AnalysisCube getCube()
+	{
+		return cube;
+	}
+
+	/**
+	 * @return The independent events of every species at every location
+	 */
+	public EventIndex getEvents()
+	{
+		return events;
+	}
+
 	/**
 	 * @return A list containing all image locations
 	 */
@@ -305,11 +473,70 @@ public class DataAnalyzer
 	}
 
 	/**
+	 * Returns an image entry for every row. The entries are only created the first time this is called, so analysis code should
+	 * prefer getColumns() and only formatters that still work with image entries should call this
+	 *
 	 * @return A list containing all image sorted by date
 	 */
-	public List<ImageEntry> getImagesSortedByDate()
+	public synchronized List<ImageEntry> getImagesSortedByDate()
+	{
+		// Image entries share the columns' location and species objects, so lookups by reference find the same ids
+		if (this.snapshot != null)
+		{
+			List<ImageEntry> images = this.snapshotImages.get();
+			if (images == null)
+			{
+				images = this.snapshot.toImageEntries();
+				this.snapshotImages = new SoftReference<>(images);
+			}
+			return images;
+		}
+
+		if (this.imagesSortedByDate == null)
+			this.imagesSortedByDate = sortByDate(this.originalImageList);
+		return this.imagesSortedByDate;
+	}
+
+	/**
+	 * @param row
+	 *            The row
+	 * @return The date the image on the given row was taken
+	 */
+	public LocalDateTime getDateTaken(int row)
+	{
+		return LocalDateTime.ofInstant(Instant.ofEpochMilli(this.columns.getEpochMillis(row)), ZoneId.systemDefault());
+	}
+
+	/**
+	 * @param row
+	 *            The row
+	 * @return The path of the image on the given row with forward slashes. A snapshot's path is read from the file without creating
+	 *         an image entry
+	 */
+	public String getImagePath(int row)
+	{
+		if (this.snapshot != null)
+			return this.snapshot.getPath(row);
+		return this.getImagesSortedByDate().get(row).getFile().toString().replace('\\', '/');
+	}
+
+	/**
+	 * @return The path of every image sorted by date, see getImagePath(int)
+	 */
+	public List<String> getImagePaths()
+	{
+		List<String> paths = new ArrayList<>(this.columns.size());
+		for (int row = 0; row < this.columns.size(); row++)
+			paths.add(this.getImagePath(row));
+		return paths;
+	}
+
+	/**
+	 * @return A table of every full and new moon over the images' interval, or null if there are no images
+	 */
+	public LunationTable getLunations()
 	{
-		return imagesSortedByDate;
+		return lunations;
 	}
 
 	/**
@@ -337,10 +564,11 @@ public class DataAnalyzer
 	}
 
 	/**
-	 * @return A reference to the original list of images
+	 * @return A reference to the original list of images. A snapshot has no original list, so its images are created the same way
+	 *         getImagesSortedByDate() creates them
 	 */
 	public List<ImageEntry> getOriginalImageList()
 	{
-		return this.originalImageList;
+		return this.snapshot != null ? this.getImagesSortedByDate() : this.originalImageList;
 	}
 }
@@ -0,0 +1,37 @@
+package model.analysis;
+
+/**
+ * The part of the day an image was taken in, based on the position of the sun at the image's location rather than the clock
+ */
+public enum DielPeriod
+{
+	Night("Night"),
+	Dawn("Dawn"),
+	Day("Day"),
+	Dusk("Dusk"),
+	Unknown("Unknown");
+
+	// The display name of the period
+	private String stringValue;
+
+	/**
+	 * Constructor just needs the display name of the period
+	 *
+	 * @param stringValue The display name
+	 */
+	DielPeriod(String stringValue)
+	{
+		this.stringValue = stringValue;
+	}
+
+	/**
+	 * Returns the string representation of the period
+	 *
+	 * @return The display name of the period
+	 */
+	@Override
+	public String toString()
+	{
+		return this.stringValue;
+	}
+}
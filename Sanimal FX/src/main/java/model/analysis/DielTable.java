@@ -0,0 +1,212 @@
+package model.analysis;
+
+import model.location.Location;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+
+/**
+ * The diel period of every row of a set of image columns. The times of dawn, sunrise, sunset and dusk are computed once for each location
+ * and each day it has pictures on, using the sunrise equation and the location's latitude and longitude. Each row is then classified by
+ * comparing its time against its location's table for that day, so no astronomy is done per image. ImageColumns creates these the first
+ * time a diel period is asked for.
+ *
+ * Camera clocks are set to the time at the site, not to the time zone of the computer running the analysis, and locations don't store a
+ * time zone. So pictures are classified on the camera's wall clock, and the solar events are moved into the site's local mean solar time
+ * (UTC plus longitude / 15 hours). This is within an hour or so of the site's civil time away from the edges of wide time zones, and
+ * never depends on where the analysis is run. Times in the tables are milliseconds since 1970-01-01T00:00 on that local clock
+ */
+final class DielTable
+{
+	// The altitude of the sun's center in degrees at sunrise and sunset, including refraction and the size of the sun's disk
+	private static final double SUNRISE_ALTITUDE = -0.833;
+	// The altitude of the sun's center in degrees at the start of civil dawn and the end of civil dusk
+	private static final double TWILIGHT_ALTITUDE = -6.0;
+	// The tilt of the earth's axis in degrees
+	private static final double OBLIQUITY = 23.4397;
+	// The julian date of noon on January 1st 2000, and the epoch day of that date
+	private static final double JULIAN_J2000 = 2451545.0;
+	private static final long EPOCH_DAY_J2000 = 10957;
+	// The julian date of the unix epoch
+	private static final double JULIAN_UNIX_EPOCH = 2440587.5;
+	private static final double MILLIS_PER_DAY = 1000.0 * 60 * 60 * 24;
+
+	// The index of each solar event within a day of the table
+	private static final int DAWN = 0;
+	private static final int SUNRISE = 1;
+	private static final int SUNSET = 2;
+	private static final int DUSK = 3;
+	private static final int EVENTS_PER_DAY = 4;
+	// Ordinal -> diel period
+	private static final DielPeriod[] PERIODS = DielPeriod.values();
+
+	// The diel period of each row, as an ordinal of DielPeriod
+	private final byte[] periods;
+
+	/**
+	 * Constructor builds the solar event tables and classifies every row
+	 *
+	 * @param columns The image columns
+	 */
+	DielTable(ImageColumns columns)
+	{
+		int size = columns.size();
+		int locationCount = columns.getLocationCount();
+
+		// Find the local day of each row and the first and last day each location has a picture on
+		long[] rowDays = new long[size];
+		long[] firstDays = new long[locationCount];
+		long[] lastDays = new long[locationCount];
+		Arrays.fill(firstDays, Long.MAX_VALUE);
+		Arrays.fill(lastDays, Long.MIN_VALUE);
+		for (int row = 0; row < size; row++)
+		{
+			rowDays[row] = LocalDate.ofYearDay(columns.getYear(row), columns.getDayOfYear(row)).toEpochDay();
+			int locationId = columns.getLocationId(row);
+			if (locationId != -1)
+			{
+				firstDays[locationId] = Math.min(firstDays[locationId], rowDays[row]);
+				lastDays[locationId] = Math.max(lastDays[locationId], rowDays[row]);
+			}
+		}
+
+		// Location id -> day - (first day - 1) -> solar events. The day before the first is included since its dusk can run past midnight
+		long[][] solarEvents = new long[locationCount][];
+		for (int locationId = 0; locationId < locationCount; locationId++)
+		{
+			Location location = columns.getLocation(locationId);
+			if (firstDays[locationId] <= lastDays[locationId] && location.getLat() != null && location.getLng() != null)
+			{
+				int days = (int) (lastDays[locationId] - firstDays[locationId] + 2);
+				solarEvents[locationId] = new long[days * EVENTS_PER_DAY];
+				for (int day = 0; day < days; day++)
+					computeSolarEvents(location.getLat(), location.getLng(), firstDays[locationId] - 1 + day, solarEvents[locationId], day * EVENTS_PER_DAY);
+			}
+		}
+
+		// Classify each row against its location's table. ImageColumns turned the camera's clock into an instant with the system time
+		// zone, so adding that zone's offset back gives the camera's wall clock
+		ZoneRules systemZone = ZoneId.systemDefault().getRules();
+		this.periods = new byte[size];
+		for (int row = 0; row < size; row++)
+		{
+			int locationId = columns.getLocationId(row);
+			DielPeriod period = DielPeriod.Unknown;
+			if (locationId != -1 && solarEvents[locationId] != null)
+			{
+				long epochMillis = columns.getEpochMillis(row);
+				long localMillis = epochMillis + systemZone.getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds() * 1000L;
+				period = classify(localMillis, solarEvents[locationId], (int) (rowDays[row] - firstDays[locationId] + 1) * EVENTS_PER_DAY);
+			}
+			this.periods[row] = (byte) period.ordinal();
+		}
+	}
+
+	/**
+	 * @param row The row
+	 * @return The diel period the row's image was taken in
+	 */
+	DielPeriod getDielPeriod(int row)
+	{
+		return PERIODS[this.periods[row]];
+	}
+
+	/**
+	 * Classifies a single image without a table, used when filtering lists of images
+	 *
+	 * @param location The location the image was taken at
+	 * @param dateTaken The time the image was taken on the camera's clock
+	 * @return The diel period the image was taken in
+	 */
+	static DielPeriod classify(Location location, LocalDateTime dateTaken)
+	{
+		if (location == null || location.getLat() == null || location.getLng() == null)
+			return DielPeriod.Unknown;
+
+		long epochDay = dateTaken.toLocalDate().toEpochDay();
+		long[] solarEvents = new long[EVENTS_PER_DAY * 2];
+		computeSolarEvents(location.getLat(), location.getLng(), epochDay - 1, solarEvents, 0);
+		computeSolarEvents(location.getLat(), location.getLng(), epochDay, solarEvents, EVENTS_PER_DAY);
+		return classify(dateTaken.toInstant(ZoneOffset.UTC).toEpochMilli(), solarEvents, EVENTS_PER_DAY);
+	}
+
+	/**
+	 * Classifies a time against a day of a solar event table
+	 *
+	 * @param localMillis The time on the site's local clock in milliseconds since 1970-01-01T00:00
+	 * @param solarEvents The solar event table, which must have the day before at offset - EVENTS_PER_DAY
+	 * @param offset The index of the day's events in the table
+	 * @return The diel period of the time
+	 */
+	private static DielPeriod classify(long localMillis, long[] solarEvents, int offset)
+	{
+		if (localMillis < solarEvents[offset + DAWN])
+			// Before dawn it may still be dusk from the day before, far enough from the equator in summer
+			return localMillis < solarEvents[offset - EVENTS_PER_DAY + DUSK] ? DielPeriod.Dusk : DielPeriod.Night;
+		else if (localMillis < solarEvents[offset + SUNRISE])
+			return DielPeriod.Dawn;
+		else if (localMillis < solarEvents[offset + SUNSET])
+			return DielPeriod.Day;
+		else if (localMillis < solarEvents[offset + DUSK])
+			return DielPeriod.Dusk;
+		else
+			return DielPeriod.Night;
+	}
+
+	/**
+	 * Computes the time of dawn, sunrise, sunset and dusk on a day using the sunrise equation. If the sun never rises the day has no
+	 * length, and if it never sets the day lasts from one solar midnight to the next. Twilight is handled the same way
+	 *
+	 * @param latitude The latitude in degrees
+	 * @param longitude The longitude in degrees, east is positive
+	 * @param epochDay The local day as a count of days since January 1st 1970
+	 * @param solarEvents The table to write the events into, in the location's local mean solar time
+	 * @param offset The index to write the day's events at
+	 */
+	private static void computeSolarEvents(double latitude, double longitude, long epochDay, long[] solarEvents, int offset)
+	{
+		// The days since J2000 at the location's mean solar noon
+		double meanSolarNoon = epochDay - EPOCH_DAY_J2000 + 0.0008 - longitude / 360;
+		double meanAnomaly = Math.toRadians((357.5291 + 0.98560028 * meanSolarNoon) % 360);
+		double center = 1.9148 * Math.sin(meanAnomaly) + 0.02 * Math.sin(2 * meanAnomaly) + 0.0003 * Math.sin(3 * meanAnomaly);
+		double eclipticLongitude = Math.toRadians((Math.toDegrees(meanAnomaly) + center + 180 + 102.9372) % 360);
+		double solarTransit = JULIAN_J2000 + meanSolarNoon + 0.0053 * Math.sin(meanAnomaly) - 0.0069 * Math.sin(2 * eclipticLongitude);
+		double declination = Math.asin(Math.sin(eclipticLongitude) * Math.sin(Math.toRadians(OBLIQUITY)));
+
+		double twilightAngle = hourAngle(Math.toRadians(latitude), declination, TWILIGHT_ALTITUDE);
+		double sunriseAngle = hourAngle(Math.toRadians(latitude), declination, SUNRISE_ALTITUDE);
+		// The sunrise equation gives UTC, the site's mean solar time is ahead of it by the longitude, a day per 360 degrees
+		double localTransit = solarTransit + longitude / 360;
+		solarEvents[offset + DAWN] = toEpochMillis(localTransit - twilightAngle / 360);
+		solarEvents[offset + SUNRISE] = toEpochMillis(localTransit - sunriseAngle / 360);
+		solarEvents[offset + SUNSET] = toEpochMillis(localTransit + sunriseAngle / 360);
+		solarEvents[offset + DUSK] = toEpochMillis(localTransit + twilightAngle / 360);
+	}
+
+	/**
+	 * @param latitude The latitude in radians
+	 * @param declination The sun's declination in radians
+	 * @param altitude The altitude of the sun in degrees
+	 * @return The hour angle in degrees from solar noon to when the sun crosses the altitude, 0 if it never gets that high and 180 if it
+	 * never gets that low
+	 */
+	private static double hourAngle(double latitude, double declination, double altitude)
+	{
+		double cosine = (Math.sin(Math.toRadians(altitude)) - Math.sin(latitude) * Math.sin(declination)) / (Math.cos(latitude) * Math.cos(declination));
+		return Math.toDegrees(Math.acos(Math.max(-1, Math.min(1, cosine))));
+	}
+
+	/**
+	 * @param julianDate The julian date
+	 * @return The date in milliseconds since 1970-01-01T00:00 on the same clock as the julian date
+	 */
+	private static long toEpochMillis(double julianDate)
+	{
+		return Math.round((julianDate - JULIAN_UNIX_EPOCH) * MILLIS_PER_DAY);
+	}
+}
@@ -0,0 +1,260 @@
+package model.analysis;
+
+import model.location.Location;
+import model.species.Species;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An index of every independent event in the analysis, built once from the image columns. Each (species or any species) x (location or
+ * any location) pair forms a stream of pictures in date order, and each stream is split into events the same way periodForImageList
+ * and abundanceForImageList split a filtered image list: a new event starts whenever a picture is taken at least the event interval
+ * after the previous one.
+ *
+ * Filtering a stream by a continuous window of time never changes the gaps between the pictures left inside the window, so the period of
+ * the window is simply the number of events that have a picture inside it. Abundance is the same except for the events cut by the edges
+ * of the window, which are re-scanned. This lets formatters answer questions about arbitrary windows of time with two binary searches
+ * instead of filtering and re-scanning the image list. Year and month totals come from AnalysisCube, which splits the same streams
+ */
+public class EventIndex
+{
+	// The columns the index was built from
+	private final ImageColumns columns;
+	// The mapping from species and location pairs to streams, shared with AnalysisCube
+	private final StreamLayout layout;
+
+	// Stream -> the rows of the stream's pictures in date order
+	private final int[][] streamRows;
+	// Stream -> the stream's events in date order
+	private final List<List<IndependentEvent>> streamEvents = new ArrayList<>();
+	// Stream -> event -> the sum of the largest counts of every event before it, so abundance over many events is one subtraction
+	private final int[][] abundancePrefix;
+
+	/**
+	 * Constructor builds the index in one pass over the columns
+	 *
+	 * @param columns The image columns, rows MUST be sorted by date
+	 * @param eventInterval The event interval in minutes
+	 */
+	public EventIndex(ImageColumns columns, Integer eventInterval)
+	{
+		this.columns = columns;
+		this.layout = new StreamLayout(columns);
+
+		int streamCount = this.layout.streamCount();
+		int[] rowStreams = new int[this.layout.maxStreamsPerRow()];
+
+		// Count the pictures in each stream first so the row arrays can be allocated once
+		int[] streamSizes = new int[streamCount];
+		for (int row = 0; row < columns.size(); row++)
+		{
+			int streamsOnRow = this.layout.streamsOf(row, rowStreams);
+			for (int i = 0; i < streamsOnRow; i++)
+				streamSizes[rowStreams[i]]++;
+		}
+
+		// Then fill in the rows, which stay in date order since the columns are sorted
+		this.streamRows = new int[streamCount][];
+		for (int stream = 0; stream < streamCount; stream++)
+			this.streamRows[stream] = new int[streamSizes[stream]];
+		int[] streamFill = new int[streamCount];
+		for (int row = 0; row < columns.size(); row++)
+		{
+			int streamsOnRow = this.layout.streamsOf(row, rowStreams);
+			for (int i = 0; i < streamsOnRow; i++)
+				this.streamRows[rowStreams[i]][streamFill[rowStreams[i]]++] = row;
+		}
+
+		// Split each stream into events
+		this.abundancePrefix = new int[streamCount][];
+		for (int stream = 0; stream < streamCount; stream++)
+		{
+			int[] rows = this.streamRows[stream];
+			int speciesId = this.layout.speciesIdOf(stream);
+			List<IndependentEvent> events = new ArrayList<>();
+
+			int firstImage = 0;
+			int maxCount = 0;
+			long lastEpochMillis = 0;
+			for (int image = 0; image < rows.length; image++)
+			{
+				long epochMillis = columns.getEpochMillis(rows[image]);
+				// If the difference between the last picture and the current one is at least the event interval a new event starts
+				if (image != 0 && (epochMillis - lastEpochMillis) / 1000 / 60 >= eventInterval)
+				{
+					events.add(new IndependentEvent(columns.getEpochMillis(rows[firstImage]), lastEpochMillis, maxCount, firstImage, image - 1));
+					firstImage = image;
+					maxCount = 0;
+				}
+				maxCount = Math.max(maxCount, columns.maxCount(rows[image], speciesId));
+				lastEpochMillis = epochMillis;
+			}
+			if (rows.length != 0)
+				events.add(new IndependentEvent(columns.getEpochMillis(rows[firstImage]), lastEpochMillis, maxCount, firstImage, rows.length - 1));
+
+			int[] prefix = new int[events.size() + 1];
+			for (int event = 0; event < events.size(); event++)
+				prefix[event + 1] = prefix[event] + events.get(event).getMaxCount();
+
+			this.streamEvents.add(Collections.unmodifiableList(events));
+			this.abundancePrefix[stream] = prefix;
+		}
+	}
+
+	/**
+	 * Returns the independent events of a species at a location
+	 *
+	 * @param species The species, or null for any species
+	 * @param location The location, or null for any location
+	 * @return The events in date order, empty if no picture matches
+	 */
+	public List<IndependentEvent> getEvents(Species species, Location location)
+	{
+		int stream = this.layout.streamOf(species, location);
+		return stream == -1 ? Collections.emptyList() : this.streamEvents.get(stream);
+	}
+
+	/**
+	 * Returns the pictures of a species at a location, IndependentEvent.getFirstImage and getLastImage are indices into this array
+	 *
+	 * @param species The species, or null for any species
+	 * @param location The location, or null for any location
+	 * @return The rows of getColumns() in date order, empty if no picture matches
+	 */
+	public int[] getRows(Species species, Location location)
+	{
+		int stream = this.layout.streamOf(species, location);
+		return stream == -1 ? new int[0] : this.streamRows[stream].clone();
+	}
+
+	/**
+	 * Sweeps the independent events of a species at a location over a range of event intervals. The pictures of a stream don't depend on
+	 * the interval this index was built with, so any interval can be swept
+	 *
+	 * @param species The species, or null for any species
+	 * @param location The location, or null for any location
+	 * @param minInterval The smallest interval to sweep in minutes
+	 * @param maxInterval The largest interval to sweep in minutes
+	 * @return The events for every interval in the range
+	 */
+	public EventIntervalSweep sweep(Species species, Location location, int minInterval, int maxInterval)
+	{
+		int stream = this.layout.streamOf(species, location);
+		return new EventIntervalSweep(this.columns, stream == -1 ? new int[0] : this.streamRows[stream], minInterval, maxInterval);
+	}
+
+	/**
+	 * Computes the period of a species at a location within a window of time
+	 *
+	 * @param species The species, or null for any species
+	 * @param location The location, or null for any location
+	 * @param fromMillis The start of the window in milliseconds since the epoch, inclusive
+	 * @param toMillis The end of the window in milliseconds since the epoch, exclusive
+	 * @return The same value as periodForImageList on the images matching the filters
+	 */
+	public int periodBetween(Species species, Location location, long fromMillis, long toMillis)
+	{
+		int stream = this.layout.streamOf(species, location);
+		if (stream == -1)
+			return 0;
+
+		int first = this.firstImageAtOrAfter(stream, fromMillis);
+		int end = this.firstImageAtOrAfter(stream, toMillis);
+		if (first >= end)
+			return 0;
+		return this.eventOf(stream, end - 1) - this.eventOf(stream, first) + 1;
+	}
+
+	/**
+	 * Computes the abundance of a species at a location within a window of time
+	 *
+	 * @param species The species, or null for any species
+	 * @param location The location, or null for any location
+	 * @param fromMillis The start of the window in milliseconds since the epoch, inclusive
+	 * @param toMillis The end of the window in milliseconds since the epoch, exclusive
+	 * @return The same value as abundanceForImageList on the images matching the filters
+	 */
+	public int abundanceBetween(Species species, Location location, long fromMillis, long toMillis)
+	{
+		int stream = this.layout.streamOf(species, location);
+		if (stream == -1)
+			return 0;
+
+		int first = this.firstImageAtOrAfter(stream, fromMillis);
+		int end = this.firstImageAtOrAfter(stream, toMillis);
+		if (first >= end)
+			return 0;
+
+		List<IndependentEvent> events = this.streamEvents.get(stream);
+		int firstEvent = this.eventOf(stream, first);
+		int lastEvent = this.eventOf(stream, end - 1);
+		if (firstEvent == lastEvent)
+			return this.maxCount(stream, first, end - 1);
+
+		// The events at the edges may be cut by the window so they are re-scanned, every event in between is whole
+		int abundance = this.maxCount(stream, first, events.get(firstEvent).getLastImage());
+		abundance = abundance + this.abundancePrefix[stream][lastEvent] - this.abundancePrefix[stream][firstEvent + 1];
+		abundance = abundance + this.maxCount(stream, events.get(lastEvent).getFirstImage(), end - 1);
+		return abundance;
+	}
+
+	/**
+	 * @param stream The stream
+	 * @param epochMillis A time in milliseconds since the epoch
+	 * @return The index of the stream's first picture taken at or after the time, or the stream's size if there is none
+	 */
+	private int firstImageAtOrAfter(int stream, long epochMillis)
+	{
+		int[] rows = this.streamRows[stream];
+		int low = 0;
+		int high = rows.length;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (this.columns.getEpochMillis(rows[middle]) < epochMillis)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * @param stream The stream
+	 * @param image The index of a picture in the stream
+	 * @return The index of the event containing the picture
+	 */
+	private int eventOf(int stream, int image)
+	{
+		List<IndependentEvent> events = this.streamEvents.get(stream);
+		int low = 0;
+		int high = events.size() - 1;
+		while (low < high)
+		{
+			int middle = (low + high + 1) >>> 1;
+			if (events.get(middle).getFirstImage() <= image)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+		return low;
+	}
+
+	/**
+	 * @param stream The stream
+	 * @param firstImage The index of the first picture to scan
+	 * @param lastImage The index of the last picture to scan, inclusive
+	 * @return The largest number of animals of the stream's species in one of the pictures
+	 */
+	private int maxCount(int stream, int firstImage, int lastImage)
+	{
+		int[] rows = this.streamRows[stream];
+		int speciesId = this.layout.speciesIdOf(stream);
+		int maxCount = 0;
+		for (int image = firstImage; image <= lastImage; image++)
+			maxCount = Math.max(maxCount, this.columns.maxCount(rows[image], speciesId));
+		return maxCount;
+	}
+}
@@ -0,0 +1,109 @@
+package model.analysis;
+
+/**
+ * The independent events of one stream of pictures for every event interval in a range, built in one pass over the stream. A picture
+ * starts a new event at an interval exactly when the gap to the previous picture, in whole minutes, is at least the interval. So counting
+ * the gaps once into a histogram and summing it from the largest gap down gives the events for every interval without re-splitting the
+ * stream. The histogram is kept per hour of the day so activity patterns can be swept the same way
+ */
+public class EventIntervalSweep
+{
+	// The smallest and largest interval swept in minutes
+	private final int minInterval;
+	private final int maxInterval;
+	// The number of pictures in the stream
+	private final int imageCount;
+	// Interval - minInterval -> hour -> the number of events starting in that hour
+	private final int[][] eventStartsByHour;
+	// Interval - minInterval -> the number of events
+	private final int[] eventCounts;
+
+	/**
+	 * Constructor sweeps the stream
+	 *
+	 * @param columns The image columns
+	 * @param rows The rows of the stream's pictures in date order
+	 * @param minInterval The smallest interval to sweep in minutes
+	 * @param maxInterval The largest interval to sweep in minutes
+	 */
+	EventIntervalSweep(ImageColumns columns, int[] rows, int minInterval, int maxInterval)
+	{
+		this.minInterval = minInterval;
+		this.maxInterval = maxInterval;
+		this.imageCount = rows.length;
+
+		// Hour -> gap in minutes -> the number of pictures taken in that hour with that gap to the previous picture. Gaps past the largest
+		// interval start an event at every interval so they share the last bucket, as does the first picture
+		int buckets = maxInterval + 2;
+		int[][] gapsByHour = new int[24][buckets];
+		long lastEpochMillis = 0;
+		for (int image = 0; image < rows.length; image++)
+		{
+			long epochMillis = columns.getEpochMillis(rows[image]);
+			long gap = image == 0 ? buckets - 1 : Math.min((epochMillis - lastEpochMillis) / 1000 / 60, buckets - 1);
+			gapsByHour[columns.getHour(rows[image])][(int) gap]++;
+			lastEpochMillis = epochMillis;
+		}
+
+		// Sum each hour from the largest gap down, the events starting at an interval are the pictures with a gap at least that large
+		int intervals = maxInterval - minInterval + 1;
+		this.eventStartsByHour = new int[intervals][24];
+		this.eventCounts = new int[intervals];
+		for (int hour = 0; hour < 24; hour++)
+		{
+			int starts = 0;
+			for (int gap = buckets - 1; gap >= minInterval; gap--)
+			{
+				starts = starts + gapsByHour[hour][gap];
+				if (gap <= maxInterval)
+				{
+					this.eventStartsByHour[gap - minInterval][hour] = starts;
+					this.eventCounts[gap - minInterval] = this.eventCounts[gap - minInterval] + starts;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The smallest interval swept in minutes
+	 */
+	public int getMinInterval()
+	{
+		return this.minInterval;
+	}
+
+	/**
+	 * @return The largest interval swept in minutes
+	 */
+	public int getMaxInterval()
+	{
+		return this.maxInterval;
+	}
+
+	/**
+	 * @return The number of pictures in the stream
+	 */
+	public int getImageCount()
+	{
+		return this.imageCount;
+	}
+
+	/**
+	 * @param interval The event interval in minutes, must be within the swept range
+	 * @return The number of independent events at that interval, the same value as periodForImageList
+	 */
+	public int getEventCount(int interval)
+	{
+		return this.eventCounts[interval - this.minInterval];
+	}
+
+	/**
+	 * @param interval The event interval in minutes, must be within the swept range
+	 * @param hour The hour of the day from 0 to 23
+	 * @return The number of independent events at that interval whose first picture was taken in that hour
+	 */
+	public int getEventStarts(int interval, int hour)
+	{
+		return this.eventStartsByHour[interval - this.minInterval][hour];
+	}
+}
@@ -0,0 +1,454 @@
+package model.analysis;
+
+import model.image.ImageEntry;
+import model.location.Location;
+import model.species.Species;
+import model.species.SpeciesEntry;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A column oriented, read only copy of the metadata of a list of images. Each image is a row, and each field is stored in its own
+ * primitive array so that scanning one field touches only that field's memory. Locations and species are dictionary encoded into
+ * dense integer ids, and each image's species tags are stored back to back with an offset array pointing to the first tag of each row.
+ * Like the rest of the analysis, locations and species are compared by reference. Columns are stored as buffers so that they can be
+ * backed either by arrays on the heap or by a memory mapped AnalysisSnapshot file
+ */
+public final class ImageColumns
+{
+	// The number of bins getDaysSinceNewMoonBin splits a lunar month into, one per whole day
+	public static final int LUNAR_DAY_BINS = 30;
+
+	// The number of rows
+	private final int size;
+
+	// The time each image was taken in milliseconds since the epoch
+	private final LongBuffer epochMillis;
+	// The local date fields of each image, pre-computed so filters and activity counts don't need to create date objects
+	private final ShortBuffer years;
+	private final ByteBuffer months;
+	private final ByteBuffer hours;
+	private final ShortBuffer daysOfYear;
+
+	// The location id of each image, or -1 if the image has no location
+	private final IntBuffer locationIds;
+	// Location id -> location
+	private final Location[] locations;
+	// Location -> location id
+	private final Map<Location, Integer> locationIdLookup = new IdentityHashMap<>();
+
+	// The index of the first tag of each row in the tag arrays, the tags of row i are at [tagOffsets[i], tagOffsets[i + 1])
+	private final IntBuffer tagOffsets;
+	// The species id of each tag
+	private final IntBuffer tagSpeciesIds;
+	// The number of animals of each tag
+	private final IntBuffer tagCounts;
+	// Species id -> species
+	private final Species[] species;
+	// Species -> species id
+	private final Map<Species, Integer> speciesIdLookup = new IdentityHashMap<>();
+
+	// The lunar attributes of each row, computed the first time one is asked for since most analyses don't need them
+	private volatile LunarColumns lunarColumns = null;
+	// The diel period of each row, computed the first time one is asked for
+	private volatile DielTable dielTable = null;
+
+	/**
+	 * Constructor copies the metadata of every image into columns. Rows are in the same order as the list
+	 *
+	 * @param images The images to copy
+	 */
+	public ImageColumns(List<ImageEntry> images)
+	{
+		this.size = images.size();
+		long[] epochMillis = new long[this.size];
+		short[] years = new short[this.size];
+		byte[] months = new byte[this.size];
+		byte[] hours = new byte[this.size];
+		short[] daysOfYear = new short[this.size];
+		int[] locationIds = new int[this.size];
+		int[] tagOffsets = new int[this.size + 1];
+
+		// Count the tags first so the tag arrays can be allocated once
+		int totalTags = 0;
+		for (ImageEntry image : images)
+			totalTags = totalTags + image.getSpeciesPresent().size();
+		int[] tagSpeciesIds = new int[totalTags];
+		int[] tagCounts = new int[totalTags];
+
+		List<Location> locationDictionary = new ArrayList<>();
+		List<Species> speciesDictionary = new ArrayList<>();
+		ZoneId zone = ZoneId.systemDefault();
+		int tag = 0;
+		for (int row = 0; row < this.size; row++)
+		{
+			ImageEntry image = images.get(row);
+
+			// Date fields
+			LocalDateTime dateTaken = image.getDateTaken();
+			epochMillis[row] = dateTaken.atZone(zone).toInstant().toEpochMilli();
+			years[row] = (short) dateTaken.getYear();
+			months[row] = (byte) dateTaken.getMonthValue();
+			hours[row] = (byte) dateTaken.getHour();
+			daysOfYear[row] = (short) dateTaken.getDayOfYear();
+
+			// Location, assigned the next id the first time it is seen
+			Location location = image.getLocationTaken();
+			if (location != null)
+			{
+				locationIds[row] = this.locationIdLookup.computeIfAbsent(location, ignored ->
+				{
+					locationDictionary.add(location);
+					return locationDictionary.size() - 1;
+				});
+			}
+			else
+			{
+				locationIds[row] = -1;
+			}
+
+			// Species tags, each species is assigned the next id the first time it is seen
+			tagOffsets[row] = tag;
+			for (SpeciesEntry speciesEntry : image.getSpeciesPresent())
+			{
+				Species tagSpecies = speciesEntry.getSpecies();
+				tagSpeciesIds[tag] = this.speciesIdLookup.computeIfAbsent(tagSpecies, ignored ->
+				{
+					speciesDictionary.add(tagSpecies);
+					return speciesDictionary.size() - 1;
+				});
+				tagCounts[tag] = speciesEntry.getAmount();
+				tag++;
+			}
+		}
+		tagOffsets[this.size] = tag;
+
+		this.epochMillis = LongBuffer.wrap(epochMillis);
+		this.years = ShortBuffer.wrap(years);
+		this.months = ByteBuffer.wrap(months);
+		this.hours = ByteBuffer.wrap(hours);
+		this.daysOfYear = ShortBuffer.wrap(daysOfYear);
+		this.locationIds = IntBuffer.wrap(locationIds);
+		this.tagOffsets = IntBuffer.wrap(tagOffsets);
+		this.tagSpeciesIds = IntBuffer.wrap(tagSpeciesIds);
+		this.tagCounts = IntBuffer.wrap(tagCounts);
+		this.locations = locationDictionary.toArray(new Location[0]);
+		this.species = speciesDictionary.toArray(new Species[0]);
+	}
+
+	/**
+	 * Constructor used by AnalysisSnapshot to wrap columns that were already written, usually views of a memory mapped file. Nothing
+	 * is copied
+	 *
+	 * @param size The number of rows
+	 * @param epochMillis The time each image was taken in milliseconds since the epoch
+	 * @param years The year of each image
+	 * @param months The month of each image
+	 * @param hours The hour of each image
+	 * @param daysOfYear The day of year of each image
+	 * @param locationIds The location id of each image
+	 * @param locations Location id -> location
+	 * @param tagOffsets The index of the first tag of each row, with one extra entry for the end of the last row
+	 * @param tagSpeciesIds The species id of each tag
+	 * @param tagCounts The number of animals of each tag
+	 * @param species Species id -> species
+	 */
+	ImageColumns(int size, LongBuffer epochMillis, ShortBuffer years, ByteBuffer months, ByteBuffer hours, ShortBuffer daysOfYear, IntBuffer locationIds, Location[] locations, IntBuffer tagOffsets, IntBuffer tagSpeciesIds, IntBuffer tagCounts, Species[] species)
+	{
+		this.size = size;
+		this.epochMillis = epochMillis;
+		this.years = years;
+		this.months = months;
+		this.hours = hours;
+		this.daysOfYear = daysOfYear;
+		this.locationIds = locationIds;
+		this.locations = locations;
+		this.tagOffsets = tagOffsets;
+		this.tagSpeciesIds = tagSpeciesIds;
+		this.tagCounts = tagCounts;
+		this.species = species;
+		for (int id = 0; id < locations.length; id++)
+			this.locationIdLookup.put(locations[id], id);
+		for (int id = 0; id < species.length; id++)
+			this.speciesIdLookup.put(species[id], id);
+	}
+
+	/**
+	 * Tests if a row is tagged with a species
+	 *
+	 * @param row The row to test
+	 * @param speciesId The id of the species
+	 * @return True if one of the row's tags is the species
+	 */
+	public boolean hasSpecies(int row, int speciesId)
+	{
+		for (int tag = this.tagOffsets.get(row); tag < this.tagOffsets.get(row + 1); tag++)
+			if (this.tagSpeciesIds.get(tag) == speciesId)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns the largest number of animals in a row's tags
+	 *
+	 * @param row The row to test
+	 * @param speciesId The id of the species to look at, or -1 for any species
+	 * @return The largest count, or 0 if no tag matches
+	 */
+	public int maxCount(int row, int speciesId)
+	{
+		int maxCount = 0;
+		for (int tag = this.tagOffsets.get(row); tag < this.tagOffsets.get(row + 1); tag++)
+			if (speciesId == -1 || this.tagSpeciesIds.get(tag) == speciesId)
+				maxCount = Math.max(maxCount, this.tagCounts.get(tag));
+		return maxCount;
+	}
+
+	/**
+	 * @param row The row
+	 * @return The number of species tags on the row
+	 */
+	public int tagCount(int row)
+	{
+		return this.tagOffsets.get(row + 1) - this.tagOffsets.get(row);
+	}
+
+	/**
+	 * @param row The row
+	 * @return The index of the row's first tag, the row's tags are at [getFirstTag(row), getFirstTag(row + 1))
+	 */
+	public int getFirstTag(int row)
+	{
+		return this.tagOffsets.get(row);
+	}
+
+	/**
+	 * @param tag The index of the tag
+	 * @return The species id of the tag
+	 */
+	public int getTagSpeciesId(int tag)
+	{
+		return this.tagSpeciesIds.get(tag);
+	}
+
+	/**
+	 * @param tag The index of the tag
+	 * @return The number of animals of the tag
+	 */
+	public int getTagAmount(int tag)
+	{
+		return this.tagCounts.get(tag);
+	}
+
+	/**
+	 * @return The total number of tags over every row
+	 */
+	public int getTotalTags()
+	{
+		return this.tagOffsets.get(this.size);
+	}
+
+	/**
+	 * Looks up the id of a location
+	 *
+	 * @param location The location to find
+	 * @return The location's id, or -1 if no row has the location
+	 */
+	public int locationIdOf(Location location)
+	{
+		return this.locationIdLookup.getOrDefault(location, -1);
+	}
+
+	/**
+	 * Looks up the id of a species
+	 *
+	 * @param species The species to find
+	 * @return The species's id, or -1 if no row has the species
+	 */
+	public int speciesIdOf(Species species)
+	{
+		return this.speciesIdLookup.getOrDefault(species, -1);
+	}
+
+	/**
+	 * @return An array of every row index in order, used as the starting point of a query
+	 */
+	public int[] allRows()
+	{
+		int[] rows = new int[this.size];
+		for (int row = 0; row < this.size; row++)
+			rows[row] = row;
+		return rows;
+	}
+
+	///
+	/// Column accessors
+	///
+
+	public int size()
+	{
+		return this.size;
+	}
+
+	public long getEpochMillis(int row)
+	{
+		return this.epochMillis.get(row);
+	}
+
+	public int getYear(int row)
+	{
+		return this.years.get(row);
+	}
+
+	public int getMonth(int row)
+	{
+		return this.months.get(row);
+	}
+
+	public int getHour(int row)
+	{
+		return this.hours.get(row);
+	}
+
+	public int getDayOfYear(int row)
+	{
+		return this.daysOfYear.get(row);
+	}
+
+	public int getLocationId(int row)
+	{
+		return this.locationIds.get(row);
+	}
+
+	/**
+	 * @param row The row
+	 * @return The fraction of the moon's disk that was lit when the image was taken, from 0 to 1
+	 */
+	public double getMoonIllumination(int row)
+	{
+		return this.lunarColumns().getIllumination(row);
+	}
+
+	/**
+	 * @param row The row
+	 * @return The phase angle of the moon when the image was taken in degrees from 0 to 360, 0 is a new moon and 180 is a full moon
+	 */
+	public double getMoonPhaseAngle(int row)
+	{
+		return this.lunarColumns().getPhaseAngle(row);
+	}
+
+	/**
+	 * @param row The row
+	 * @return The days since the last new moon when the image was taken, from 0 to 29.53
+	 */
+	public double getDaysSinceNewMoon(int row)
+	{
+		return this.lunarColumns().getDaysSinceNewMoon(row);
+	}
+
+	/**
+	 * @param row The row
+	 * @param bins The number of equal bins to split 0% to 100% illumination into
+	 * @return The bin of the row's moon illumination, from 0 to bins - 1
+	 */
+	public int getMoonIlluminationBin(int row, int bins)
+	{
+		return Math.min((int) (this.getMoonIllumination(row) * bins), bins - 1);
+	}
+
+	/**
+	 * @param row The row
+	 * @return The whole number of days since the last new moon, from 0 to 29
+	 */
+	public int getDaysSinceNewMoonBin(int row)
+	{
+		return Math.min((int) this.getDaysSinceNewMoon(row), LUNAR_DAY_BINS - 1);
+	}
+
+	/**
+	 * @param row The row
+	 * @return The part of the day the image was taken in based on sunrise and sunset at its location, Unknown if it has no location
+	 */
+	public DielPeriod getDielPeriod(int row)
+	{
+		DielTable dielTable = this.dielTable;
+		if (dielTable == null)
+		{
+			synchronized (this)
+			{
+				dielTable = this.dielTable;
+				if (dielTable == null)
+				{
+					dielTable = new DielTable(this);
+					this.dielTable = dielTable;
+				}
+			}
+		}
+		return dielTable.getDielPeriod(row);
+	}
+
+	/**
+	 * @return The lunar attributes of every row, computed in one pass the first time they are needed
+	 */
+	private LunarColumns lunarColumns()
+	{
+		LunarColumns lunarColumns = this.lunarColumns;
+		if (lunarColumns == null)
+		{
+			synchronized (this)
+			{
+				lunarColumns = this.lunarColumns;
+				if (lunarColumns == null)
+				{
+					lunarColumns = new LunarColumns(this);
+					this.lunarColumns = lunarColumns;
+				}
+			}
+		}
+		return lunarColumns;
+	}
+
+	/**
+	 * @param locationId The id of the location
+	 * @return The location with the id
+	 */
+	public Location getLocation(int locationId)
+	{
+		return this.locations[locationId];
+	}
+
+	/**
+	 * @return The number of unique locations
+	 */
+	public int getLocationCount()
+	{
+		return this.locations.length;
+	}
+
+	/**
+	 * @param speciesId The id of the species
+	 * @return The species with the id
+	 */
+	public Species getSpecies(int speciesId)
+	{
+		return this.species[speciesId];
+	}
+
+	/**
+	 * @return The number of unique species
+	 */
+	public int getSpeciesCount()
+	{
+		return this.species.length;
+	}
+}
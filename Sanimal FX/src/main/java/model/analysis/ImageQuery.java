@@ -7,14 +7,17 @@ import model.species.SpeciesEntry;
 import org.apache.commons.lang3.ArrayUtils;
 
 import java.time.ZoneId;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
- * A class that utilizes Java 8 predicates to filter a list of images
+ * A class that utilizes Java 8 predicates to filter a list of images, or the rows of a columnar copy of a list of images
  * 
  * @author David Slovikosky
  */
@@ -22,6 +25,8 @@ public class ImageQuery
 {
 	// A base predicate to add to
 	private Predicate<ImageEntry> predicate = entry -> true;
+	// The same predicate over image columns. It is created once per set of columns so that ids are only looked up once
+	private Function<ImageColumns, IntPredicate> columnPredicate = columns -> row -> true;
 
 	public ImageQuery()
 	{
@@ -37,6 +42,7 @@ public class ImageQuery
 	public ImageQuery yearOnly(int... year)
 	{
 		this.predicate = this.predicate.and(image -> ArrayUtils.contains(year, image.getDateTaken().getYear()));
+		this.andColumns(columns -> row -> ArrayUtils.contains(year, columns.getYear(row)));
 		return this;
 	}
 
@@ -50,6 +56,7 @@ public class ImageQuery
 	public ImageQuery monthOnly(int... month)
 	{
 		this.predicate = this.predicate.and(image -> ArrayUtils.contains(month, image.getDateTaken().getMonthValue()));
+		this.andColumns(columns -> row -> ArrayUtils.contains(month, columns.getMonth(row)));
 		return this;
 	}
 
@@ -65,6 +72,7 @@ public class ImageQuery
 	public ImageQuery timeFrame(Integer startTimeHour, Integer endTimeHour)
 	{
 		this.predicate = this.predicate.and(image -> (image.getDateTaken().getHour() >= startTimeHour && image.getDateTaken().getHour() < endTimeHour));
+		this.andColumns(columns -> row -> columns.getHour(row) >= startTimeHour && columns.getHour(row) < endTimeHour);
 		return this;
 	}
 
@@ -84,6 +92,11 @@ public class ImageQuery
 					return true;
 			return false;
 		});
+		this.andColumns(columns ->
+		{
+			int speciesId = columns.speciesIdOf(species);
+			return row -> speciesId != -1 && columns.hasSpecies(row, speciesId);
+		});
 		return this;
 	}
 
@@ -96,6 +109,7 @@ public class ImageQuery
 	{
 		this.predicate = this.predicate.and(entry ->
 				!entry.getSpeciesPresent().isEmpty());
+		this.andColumns(columns -> row -> columns.tagCount(row) > 0);
 		return this;
 	}
 
@@ -109,6 +123,11 @@ public class ImageQuery
 	public ImageQuery locationOnly(Location location)
 	{
 		this.predicate = this.predicate.and(image -> image.getLocationTaken() == location);
+		this.andColumns(columns ->
+		{
+			int locationId = columns.locationIdOf(location);
+			return row -> locationId != -1 && columns.getLocationId(row) == locationId;
+		});
 		return this;
 	}
 
@@ -121,17 +140,23 @@ public class ImageQuery
 	 */
 	public ImageQuery newMoonOnly(List<Date> newMoons)
 	{
-		this.predicate = this.predicate.and(entry ->
-		{
-			long currentTime = entry.getDateTaken().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
-			for (Date date : newMoons)
-			{
-				long moonDate = date.getTime();
-				if (Math.abs(moonDate - currentTime) < 5 * 1000 * 60 * 60 * 24)
-					return true;
-			}
-			return false;
-		});
+		long[] sortedMoons = sortedMillis(newMoons);
+		this.predicate = this.predicate.and(entry -> LunationTable.nearAny(sortedMoons, entry.getDateTaken().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+		this.andColumns(columns -> row -> LunationTable.nearAny(sortedMoons, columns.getEpochMillis(row)));
+		return this;
+	}
+
+	/**
+	 * Filter images by new moon only
+	 *
+	 * @param lunations
+	 *            The table of moons covering the images
+	 * @return The predicate builder instance to chain filters
+	 */
+	public ImageQuery newMoonOnly(LunationTable lunations)
+	{
+		this.predicate = this.predicate.and(entry -> lunations.isNearNewMoon(entry.getDateTaken().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+		this.andColumns(columns -> row -> lunations.isNearNewMoon(columns.getEpochMillis(row)));
 		return this;
 	}
 
@@ -144,20 +169,158 @@ public class ImageQuery
 	 */
 	public ImageQuery fullMoonOnly(List<Date> fullMoons)
 	{
-		this.predicate = this.predicate.and(entry ->
-		{
-			long currentTime = entry.getDateTaken().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
-			for (Date date : fullMoons)
-			{
-				long moonDate = date.getTime();
-				if (Math.abs(moonDate - currentTime) < 5 * 1000 * 60 * 60 * 24)
-					return true;
-			}
-			return false;
-		});
+		long[] sortedMoons = sortedMillis(fullMoons);
+		this.predicate = this.predicate.and(entry -> LunationTable.nearAny(sortedMoons, entry.getDateTaken().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+		this.andColumns(columns -> row -> LunationTable.nearAny(sortedMoons, columns.getEpochMillis(row)));
+		return this;
+	}
+
+	/**
+	 * Filter images by full moon only
+	 *
+	 * @param lunations
+	 *            The table of moons covering the images
+	 * @return The predicate builder instance to chain filters
+	 */
+	public ImageQuery fullMoonOnly(LunationTable lunations)
+	{
+		this.predicate = this.predicate.and(entry -> lunations.isNearFullMoon(entry.getDateTaken().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+		this.andColumns(columns -> row -> lunations.isNearFullMoon(columns.getEpochMillis(row)));
+		return this;
+	}
+
+	/**
+	 * Filter images by how much of the moon was lit when they were taken
+	 *
+	 * @param minIllumination
+	 *            The smallest fraction of the moon's disk that is lit, from 0 to 1
+	 * @param maxIllumination
+	 *            The largest fraction of the moon's disk that is lit, from 0 to 1
+	 * @return The predicate builder instance to chain filters
+	 */
+	public ImageQuery moonIllumination(double minIllumination, double maxIllumination)
+	{
+		this.predicate = this.predicate.and(entry -> between((float) LunarColumns.illuminationAt(epochMillisOf(entry)), minIllumination, maxIllumination));
+		this.andColumns(columns -> row -> between(columns.getMoonIllumination(row), minIllumination, maxIllumination));
+		return this;
+	}
+
+	/**
+	 * Filter images by the phase angle of the moon when they were taken
+	 *
+	 * @param minAngle
+	 *            The smallest phase angle in degrees from 0 to 360, 0 is a new moon and 180 is a full moon
+	 * @param maxAngle
+	 *            The largest phase angle in degrees from 0 to 360
+	 * @return The predicate builder instance to chain filters
+	 */
+	public ImageQuery moonPhaseAngle(double minAngle, double maxAngle)
+	{
+		this.predicate = this.predicate.and(entry -> between((float) LunarColumns.phaseAngleAt(epochMillisOf(entry)), minAngle, maxAngle));
+		this.andColumns(columns -> row -> between(columns.getMoonPhaseAngle(row), minAngle, maxAngle));
 		return this;
 	}
 
+	/**
+	 * Filter images by the days since the last new moon when they were taken
+	 *
+	 * @param minDays
+	 *            The smallest number of days since the new moon, from 0 to 29.53
+	 * @param maxDays
+	 *            The largest number of days since the new moon, from 0 to 29.53
+	 * @return The predicate builder instance to chain filters
+	 */
+	public ImageQuery daysSinceNewMoon(double minDays, double maxDays)
+	{
+		this.predicate = this.predicate.and(entry -> between((float) LunarColumns.daysSinceNewMoon(LunarColumns.phaseAngleAt(epochMillisOf(entry))), minDays, maxDays));
+		this.andColumns(columns -> row -> between(columns.getDaysSinceNewMoon(row), minDays, maxDays));
+		return this;
+	}
+
+	/**
+	 * Filter images by the part of the day they were taken in, based on sunrise and sunset at their location. Like ImageColumns, the
+	 * camera's clock is compared against the site's local mean solar time, see DielTable
+	 *
+	 * @param periods
+	 *            The diel periods to keep
+	 * @return The predicate builder instance to chain filters
+	 */
+	public ImageQuery dielPeriodOnly(DielPeriod... periods)
+	{
+		boolean[] keep = new boolean[DielPeriod.values().length];
+		for (DielPeriod period : periods)
+			keep[period.ordinal()] = true;
+		this.predicate = this.predicate.and(entry -> keep[DielTable.classify(entry.getLocationTaken(), entry.getDateTaken()).ordinal()]);
+		this.andColumns(columns -> row -> keep[columns.getDielPeriod(row).ordinal()]);
+		return this;
+	}
+
+	/**
+	 * @param value The value to test
+	 * @param min The smallest value allowed
+	 * @param max The largest value allowed
+	 * @return True if the value is between min and max, inclusive
+	 */
+	private static boolean between(double value, double min, double max)
+	{
+		return value >= min && value <= max;
+	}
+
+	/**
+	 * @param entry The image
+	 * @return The time the image was taken in milliseconds since the epoch, the same value ImageColumns stores
+	 */
+	private static long epochMillisOf(ImageEntry entry)
+	{
+		return entry.getDateTaken().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+
+	/**
+	 * Sorts a list of dates once so that each image can be tested against it with a binary search
+	 *
+	 * @param dates The dates to sort
+	 * @return The dates in milliseconds since the epoch, sorted first to last
+	 */
+	private static long[] sortedMillis(List<Date> dates)
+	{
+		return dates.stream().mapToLong(Date::getTime).sorted().toArray();
+	}
+
+	/**
+	 * ANDs a predicate over image columns into the column predicate
+	 *
+	 * @param next The function creating the predicate for a set of columns
+	 */
+	private void andColumns(Function<ImageColumns, IntPredicate> next)
+	{
+		Function<ImageColumns, IntPredicate> previous = this.columnPredicate;
+		this.columnPredicate = columns -> previous.apply(columns).and(next.apply(columns));
+	}
+
+	/**
+	 * Finalize the predicate and apply it to every row of a set of image columns
+	 *
+	 * @param columns The columns to query
+	 * @return The matching row indices in ascending order
+	 */
+	public int[] query(ImageColumns columns)
+	{
+		return this.query(columns, columns.allRows());
+	}
+
+	/**
+	 * Finalize the predicate and apply it to some of the rows of a set of image columns, usually the result of a previous query
+	 *
+	 * @param columns The columns to query
+	 * @param rows The row indices to filter
+	 * @return The matching row indices in the same order as given
+	 */
+	public int[] query(ImageColumns columns, int[] rows)
+	{
+		IntPredicate rowPredicate = this.columnPredicate.apply(columns);
+		return Arrays.stream(rows).filter(rowPredicate).toArray();
+	}
+
 	/**
 	 * Finalize the predicate and apply it to a list of images.
 	 * 
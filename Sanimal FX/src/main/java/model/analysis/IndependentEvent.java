@@ -0,0 +1,68 @@
+package model.analysis;
+
+/**
+ * One independent event: a run of pictures of the same species at the same location where each picture was taken less than the event
+ * interval after the previous one. Events are created by the EventIndex and are read only
+ */
+public class IndependentEvent
+{
+	// The time of the first and last picture in the event in milliseconds since the epoch
+	private final long startMillis;
+	private final long endMillis;
+	// The largest number of animals in one picture of the event
+	private final int maxCount;
+	// The index of the first and last picture of the event in the event's stream of pictures, see EventIndex.getRows
+	private final int firstImage;
+	private final int lastImage;
+
+	/**
+	 * Constructor for the event
+	 *
+	 * @param startMillis The time of the first picture in milliseconds since the epoch
+	 * @param endMillis The time of the last picture in milliseconds since the epoch
+	 * @param maxCount The largest number of animals in one picture
+	 * @param firstImage The index of the first picture in the stream
+	 * @param lastImage The index of the last picture in the stream
+	 */
+	IndependentEvent(long startMillis, long endMillis, int maxCount, int firstImage, int lastImage)
+	{
+		this.startMillis = startMillis;
+		this.endMillis = endMillis;
+		this.maxCount = maxCount;
+		this.firstImage = firstImage;
+		this.lastImage = lastImage;
+	}
+
+	public long getStartMillis()
+	{
+		return startMillis;
+	}
+
+	public long getEndMillis()
+	{
+		return endMillis;
+	}
+
+	public int getMaxCount()
+	{
+		return maxCount;
+	}
+
+	public int getFirstImage()
+	{
+		return firstImage;
+	}
+
+	public int getLastImage()
+	{
+		return lastImage;
+	}
+
+	/**
+	 * @return The number of pictures in the event
+	 */
+	public int getImageCount()
+	{
+		return lastImage - firstImage + 1;
+	}
+}
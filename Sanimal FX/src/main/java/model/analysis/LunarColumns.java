@@ -0,0 +1,95 @@
+package model.analysis;
+
+import library.MoonCalculator;
+
+import java.util.Date;
+import java.util.stream.IntStream;
+
+/**
+ * The lunar attributes of every row of a set of image columns, computed in one pass with MoonCalculator's math. Each attribute is stored
+ * in its own primitive array like the rest of ImageColumns. ImageColumns creates these the first time a lunar attribute is asked for
+ */
+final class LunarColumns
+{
+	// The number of days from one new moon to the next
+	static final double SYNODIC_MONTH_DAYS = 29.5306;
+
+	// The fraction of the moon's disk that is lit when each image was taken, from 0 to 1
+	private final float[] illumination;
+	// The phase angle of the moon when each image was taken in degrees, 0 is a new moon and 180 is a full moon
+	private final float[] phaseAngles;
+	// The days since the last new moon when each image was taken, from 0 to 29.53
+	private final float[] daysSinceNewMoon;
+
+	/**
+	 * Constructor computes the lunar attributes of every row. Rows don't depend on each other so they are computed in parallel
+	 *
+	 * @param columns The image columns
+	 */
+	LunarColumns(ImageColumns columns)
+	{
+		int size = columns.size();
+		this.illumination = new float[size];
+		this.phaseAngles = new float[size];
+		this.daysSinceNewMoon = new float[size];
+		IntStream.range(0, size).parallel().forEach(row ->
+		{
+			double[] phase = phaseAt(columns.getEpochMillis(row));
+			double phaseAngle = MoonCalculator.putIntoRange(phase[MoonCalculator.MOONPHASE]);
+			this.illumination[row] = (float) phase[MoonCalculator.MOONPERCENT];
+			this.phaseAngles[row] = (float) phaseAngle;
+			this.daysSinceNewMoon[row] = (float) daysSinceNewMoon(phaseAngle);
+		});
+	}
+
+	/**
+	 * @param epochMillis The time in milliseconds since the epoch
+	 * @return The results of MoonCalculator.getPhase at the time
+	 */
+	static double[] phaseAt(long epochMillis)
+	{
+		return MoonCalculator.getPhase(MoonCalculator.getJulian(new Date(epochMillis)));
+	}
+
+	/**
+	 * @param epochMillis The time in milliseconds since the epoch
+	 * @return The fraction of the moon's disk that is lit at the time, from 0 to 1
+	 */
+	static double illuminationAt(long epochMillis)
+	{
+		return phaseAt(epochMillis)[MoonCalculator.MOONPERCENT];
+	}
+
+	/**
+	 * @param epochMillis The time in milliseconds since the epoch
+	 * @return The phase angle of the moon at the time in degrees from 0 to 360
+	 */
+	static double phaseAngleAt(long epochMillis)
+	{
+		return MoonCalculator.putIntoRange(phaseAt(epochMillis)[MoonCalculator.MOONPHASE]);
+	}
+
+	/**
+	 * @param phaseAngle The phase angle of the moon in degrees from 0 to 360
+	 * @return The days since the last new moon
+	 */
+	static double daysSinceNewMoon(double phaseAngle)
+	{
+		return phaseAngle / 360 * SYNODIC_MONTH_DAYS;
+	}
+
+	float getIllumination(int row)
+	{
+		return this.illumination[row];
+	}
+
+	float getPhaseAngle(int row)
+	{
+		return this.phaseAngles[row];
+	}
+
+	float getDaysSinceNewMoon(int row)
+	{
+		return this.daysSinceNewMoon[row];
+	}
+}
@@ -0,0 +1,110 @@
+package model.analysis;
+
+import javafx.scene.control.Alert;
+import model.SanimalData;
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import java.io.*;
+
+/**
+ * On disk cache of the lunation table. The cached table only ever grows: if an analysis needs moons outside of the cached range, the
+ * table is recomputed over both ranges and written back, so later analyses over any part of that range never call MoonCalculator
+ */
+public class LunationCache
+{
+	// The file the table is written to
+	private final File cacheFile;
+	// The table in memory, null until it is first needed
+	private LunationTable table = null;
+
+	/**
+	 * Constructor initializes the cache file
+	 *
+	 * @param cacheFile The file to store the table in, its directory is created if it does not exist
+	 */
+	public LunationCache(File cacheFile)
+	{
+		this.cacheFile = cacheFile;
+	}
+
+	/**
+	 * Returns a lunation table that covers a range of time, reading it from disk or computing it if needed
+	 *
+	 * @param fromMillis The start of the range in milliseconds since the epoch
+	 * @param toMillis The end of the range in milliseconds since the epoch
+	 * @return A table covering at least the range
+	 */
+	public synchronized LunationTable tableFor(long fromMillis, long toMillis)
+	{
+		// Read the table from disk the first time it is needed
+		if (this.table == null)
+			this.table = this.read();
+
+		if (this.table == null || !this.table.covers(fromMillis, toMillis))
+		{
+			// Grow the table to cover both the old and new range so we don't flip between two ranges
+			if (this.table != null)
+			{
+				fromMillis = Math.min(fromMillis, this.table.getCoveredFrom() + LunationTable.NEAR_MOON_MILLIS);
+				toMillis = Math.max(toMillis, this.table.getCoveredTo() - LunationTable.NEAR_MOON_MILLIS);
+			}
+			this.table = LunationTable.compute(fromMillis, toMillis);
+			this.write(this.table);
+		}
+		return this.table;
+	}
+
+	/**
+	 * @return The table stored on disk, or null if there is none or it could not be read
+	 */
+	private LunationTable read()
+	{
+		if (!this.cacheFile.exists())
+			return null;
+
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(this.cacheFile))))
+		{
+			return LunationTable.read(input);
+		}
+		catch (Exception e)
+		{
+			// A broken cache file is just a miss, remove it so we don't read it again
+			SanimalData.getInstance().getErrorDisplay().printError("Could not read lunation cache, ignoring it: " + e.getMessage());
+			this.cacheFile.delete();
+			return null;
+		}
+	}
+
+	/**
+	 * Writes a table to disk
+	 *
+	 * @param table The table to write
+	 */
+	private void write(LunationTable table)
+	{
+		File directory = this.cacheFile.getAbsoluteFile().getParentFile();
+		if (directory != null && !directory.exists() && !directory.mkdirs())
+			return;
+
+		// Write to a temporary file first and then move it over so a half written table is never read
+		File partialFile = new File(this.cacheFile.getPath() + ".part");
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partialFile))))
+		{
+			table.write(output);
+		}
+		catch (IOException e)
+		{
+			SanimalData.getInstance().getErrorDisplay().showPopup(
+					Alert.AlertType.ERROR,
+					null,
+					"Error",
+					"Cache error",
+					"Error writing the lunation cache!\n" + ExceptionUtils.getStackTrace(e),
+					false);
+			partialFile.delete();
+			return;
+		}
+		this.cacheFile.delete();
+		partialFile.renameTo(this.cacheFile);
+	}
+}
@@ -0,0 +1,250 @@
+package model.analysis;
+
+import library.MoonCalculator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A sorted table of every new and full moon over a range of time. The moons are found with MoonCalculator once when the table is built,
+ * after which testing if a picture was taken near a moon is a binary search instead of a scan over every moon. Tables are read only and
+ * can be written to and read from disk, see LunationCache
+ */
+public class LunationTable
+{
+	// Pictures taken less than this long before or after a moon are considered to be near that moon
+	public static final long NEAR_MOON_MILLIS = 5L * 1000 * 60 * 60 * 24;
+	// The version of the binary format, bump this if the format or the moon calculation changes
+	private static final int FORMAT_VERSION = 1;
+	// The time to step forward after finding a moon before looking for the next one of the same phase
+	private static final long STEP_MILLIS = 20L * 1000 * 60 * 60 * 24;
+	// Moons are found this far outside the range asked for so that pictures at the edges of the range still see their closest moon
+	private static final long PADDING_MILLIS = 30L * 1000 * 60 * 60 * 24;
+
+	// The range of time every moon is known for, in milliseconds since the epoch
+	private final long coveredFrom;
+	private final long coveredTo;
+	// The times of each new and full moon in milliseconds since the epoch, sorted first to last
+	private final long[] newMoons;
+	private final long[] fullMoons;
+
+	/**
+	 * Constructor initializes all fields
+	 *
+	 * @param coveredFrom The start of the range every moon is known for
+	 * @param coveredTo The end of the range every moon is known for
+	 * @param newMoons The sorted times of each new moon
+	 * @param fullMoons The sorted times of each full moon
+	 */
+	private LunationTable(long coveredFrom, long coveredTo, long[] newMoons, long[] fullMoons)
+	{
+		this.coveredFrom = coveredFrom;
+		this.coveredTo = coveredTo;
+		this.newMoons = newMoons;
+		this.fullMoons = fullMoons;
+	}
+
+	/**
+	 * Computes a table of every moon over a range of time
+	 *
+	 * @param fromMillis The start of the range in milliseconds since the epoch
+	 * @param toMillis The end of the range in milliseconds since the epoch
+	 * @return A table covering at least the range
+	 */
+	public static LunationTable compute(long fromMillis, long toMillis)
+	{
+		long coveredFrom = fromMillis - NEAR_MOON_MILLIS;
+		long coveredTo = toMillis + NEAR_MOON_MILLIS;
+		return new LunationTable(coveredFrom, coveredTo, computeMoons(coveredFrom, coveredTo, 0), computeMoons(coveredFrom, coveredTo, 180));
+	}
+
+	/**
+	 * Finds every moon of one phase over a range of time, stepping from one moon to the next the same way the analysis always has
+	 *
+	 * @param fromMillis The start of the range in milliseconds since the epoch
+	 * @param toMillis The end of the range in milliseconds since the epoch
+	 * @param lunation The phase of the moon in degrees, 0 for new moons and 180 for full moons
+	 * @return The sorted times of each moon
+	 */
+	private static long[] computeMoons(long fromMillis, long toMillis, double lunation)
+	{
+		List<Long> moons = new ArrayList<>();
+		long current = fromMillis - PADDING_MILLIS;
+		while (current < toMillis + PADDING_MILLIS)
+		{
+			double julianDate = MoonCalculator.getJulian(new Date(current));
+			double[] phases = MoonCalculator.getPhase(julianDate);
+			long moonMillis = MoonCalculator.toMillisFromJulian(MoonCalculator.getLunation(julianDate, phases[MoonCalculator.MOONPHASE], lunation));
+			moons.add(moonMillis);
+			current = moonMillis + STEP_MILLIS;
+		}
+		return moons.stream().mapToLong(Long::longValue).sorted().toArray();
+	}
+
+	/**
+	 * @param fromMillis The start of the range in milliseconds since the epoch
+	 * @param toMillis The end of the range in milliseconds since the epoch
+	 * @return True if this table knows every moon that any time in the range could be near
+	 */
+	public boolean covers(long fromMillis, long toMillis)
+	{
+		return this.coveredFrom <= fromMillis - NEAR_MOON_MILLIS && toMillis + NEAR_MOON_MILLIS <= this.coveredTo;
+	}
+
+	/**
+	 * @return The start of the range every moon is known for in milliseconds since the epoch
+	 */
+	public long getCoveredFrom()
+	{
+		return this.coveredFrom;
+	}
+
+	/**
+	 * @return The end of the range every moon is known for in milliseconds since the epoch
+	 */
+	public long getCoveredTo()
+	{
+		return this.coveredTo;
+	}
+
+	/**
+	 * @param epochMillis The time in milliseconds since the epoch
+	 * @return True if the time is less than 5 days from a new moon
+	 */
+	public boolean isNearNewMoon(long epochMillis)
+	{
+		return nearAny(this.newMoons, epochMillis);
+	}
+
+	/**
+	 * @param epochMillis The time in milliseconds since the epoch
+	 * @return True if the time is less than 5 days from a full moon
+	 */
+	public boolean isNearFullMoon(long epochMillis)
+	{
+		return nearAny(this.fullMoons, epochMillis);
+	}
+
+	/**
+	 * @param fromMillis The start of the range in milliseconds since the epoch, inclusive
+	 * @param toMillis The end of the range in milliseconds since the epoch, inclusive
+	 * @return The new moons in the range, sorted first to last
+	 */
+	public List<Date> getNewMoons(long fromMillis, long toMillis)
+	{
+		return between(this.newMoons, fromMillis, toMillis);
+	}
+
+	/**
+	 * @param fromMillis The start of the range in milliseconds since the epoch, inclusive
+	 * @param toMillis The end of the range in milliseconds since the epoch, inclusive
+	 * @return The full moons in the range, sorted first to last
+	 */
+	public List<Date> getFullMoons(long fromMillis, long toMillis)
+	{
+		return between(this.fullMoons, fromMillis, toMillis);
+	}
+
+	/**
+	 * Tests if a time is less than 5 days from any moon. Only the moons just before and just after the time can be close enough, so they
+	 * are found with a binary search
+	 *
+	 * @param sortedMoons The times of each moon, sorted first to last
+	 * @param epochMillis The time to test in milliseconds since the epoch
+	 * @return True if the time is near a moon
+	 */
+	static boolean nearAny(long[] sortedMoons, long epochMillis)
+	{
+		int index = Arrays.binarySearch(sortedMoons, epochMillis);
+		if (index >= 0)
+			return true;
+		int after = -index - 1;
+		return (after < sortedMoons.length && sortedMoons[after] - epochMillis < NEAR_MOON_MILLIS) ||
+				(after > 0 && epochMillis - sortedMoons[after - 1] < NEAR_MOON_MILLIS);
+	}
+
+	/**
+	 * @param sortedMoons The times of each moon, sorted first to last
+	 * @param fromMillis The start of the range, inclusive
+	 * @param toMillis The end of the range, inclusive
+	 * @return The moons in the range as dates
+	 */
+	private static List<Date> between(long[] sortedMoons, long fromMillis, long toMillis)
+	{
+		List<Date> moons = new ArrayList<>();
+		for (long moon : sortedMoons)
+			if (moon >= fromMillis && moon <= toMillis)
+				moons.add(new Date(moon));
+		return moons;
+	}
+
+	/**
+	 * Writes the table in a compact binary form
+	 *
+	 * @param output The stream to write to
+	 * @throws IOException If the stream can't be written to
+	 */
+	public void write(DataOutputStream output) throws IOException
+	{
+		output.writeInt(FORMAT_VERSION);
+		output.writeLong(this.coveredFrom);
+		output.writeLong(this.coveredTo);
+		writeMoons(output, this.newMoons);
+		writeMoons(output, this.fullMoons);
+	}
+
+	/**
+	 * Reads a table written by write()
+	 *
+	 * @param input The stream to read from
+	 * @return The table, or null if it was written in a different format version
+	 * @throws IOException If the stream can't be read from or is cut short
+	 */
+	public static LunationTable read(DataInputStream input) throws IOException
+	{
+		if (input.readInt() != FORMAT_VERSION)
+			return null;
+		long coveredFrom = input.readLong();
+		long coveredTo = input.readLong();
+		long[] newMoons = readMoons(input);
+		long[] fullMoons = readMoons(input);
+		return new LunationTable(coveredFrom, coveredTo, newMoons, fullMoons);
+	}
+
+	/**
+	 * @param output The stream to write to
+	 * @param moons The times of each moon
+	 * @throws IOException If the stream can't be written to
+	 */
+	private static void writeMoons(DataOutputStream output, long[] moons) throws IOException
+	{
+		output.writeInt(moons.length);
+		for (long moon : moons)
+			output.writeLong(moon);
+	}
+
+	/**
+	 * @param input The stream to read from
+	 * @return The times of each moon
+	 * @throws IOException If the stream can't be read from, is cut short, or the moons are out of order
+	 */
+	private static long[] readMoons(DataInputStream input) throws IOException
+	{
+		int count = input.readInt();
+		if (count < 0)
+			throw new IOException("Invalid lunation count " + count);
+		long[] moons = new long[count];
+		for (int i = 0; i < count; i++)
+		{
+			moons[i] = input.readLong();
+			if (i > 0 && moons[i] < moons[i - 1])
+				throw new IOException("Lunation table is not sorted");
+		}
+		return moons;
+	}
+}
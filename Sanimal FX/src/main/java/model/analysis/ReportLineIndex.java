@@ -0,0 +1,181 @@
+package model.analysis;
+
+import java.io.Writer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A writer target that keeps a report in memory together with an index of where each line and section starts. Viewers use the index
+ * to fetch only the lines they are showing, to jump to a section, and to search line by line without splitting the whole report into
+ * separate strings
+ */
+public class ReportLineIndex extends Writer
+{
+	// The full text of the report
+	private final StringBuilder text = new StringBuilder();
+	// Line -> the offset of the line's first character in the text, only the first lineCount entries are used
+	private int[] lineStarts = new int[1024];
+	private int lineCount = 1;
+	// The lines that sections start on, in order
+	private final List<Integer> sectionLines = new ArrayList<>();
+
+	@Override
+	public synchronized void write(char[] buffer, int offset, int length)
+	{
+		for (int i = offset; i < offset + length; i++)
+			if (buffer[i] == '\n')
+				this.addLineStart(this.text.length() + i - offset + 1);
+		this.text.append(buffer, offset, length);
+	}
+
+	@Override
+	public synchronized void write(String string, int offset, int length)
+	{
+		for (int i = offset; i < offset + length; i++)
+			if (string.charAt(i) == '\n')
+				this.addLineStart(this.text.length() + i - offset + 1);
+		this.text.append(string, offset, offset + length);
+	}
+
+	@Override
+	public void flush()
+	{
+	}
+
+	@Override
+	public void close()
+	{
+	}
+
+	/**
+	 * Records the start of a new line
+	 *
+	 * @param start The offset of the line's first character
+	 */
+	private void addLineStart(int start)
+	{
+		if (this.lineCount == this.lineStarts.length)
+			this.lineStarts = Arrays.copyOf(this.lineStarts, this.lineStarts.length * 2);
+		this.lineStarts[this.lineCount++] = start;
+	}
+
+	/**
+	 * Marks the line currently being written as the start of a section. ReportWriter.startSection calls this
+	 */
+	public synchronized void markSection()
+	{
+		int line = this.lineCount - 1;
+		if (this.sectionLines.isEmpty() || this.sectionLines.get(this.sectionLines.size() - 1) != line)
+			this.sectionLines.add(line);
+	}
+
+	/**
+	 * @return The number of lines in the report, a final new line does not start another line
+	 */
+	public synchronized int getLineCount()
+	{
+		if (this.text.length() == 0)
+			return 0;
+		return this.lineStarts[this.lineCount - 1] == this.text.length() ? this.lineCount - 1 : this.lineCount;
+	}
+
+	/**
+	 * @param line The index of the line
+	 * @return The text of the line without its new line
+	 */
+	public synchronized String getLine(int line)
+	{
+		return this.text.substring(this.lineStarts[line], this.lineEnd(line));
+	}
+
+	/**
+	 * @return The lines that each section starts on, in order
+	 */
+	public synchronized List<Integer> getSectionLines()
+	{
+		return Collections.unmodifiableList(new ArrayList<>(this.sectionLines));
+	}
+
+	/**
+	 * Finds the next line containing some text, ignoring case. The search starts at a line and wraps around to the top of the report
+	 *
+	 * @param query The text to find
+	 * @param fromLine The first line to look at
+	 * @return The first matching line, or -1 if no line contains the text
+	 */
+	public synchronized int find(String query, int fromLine)
+	{
+		int lines = this.getLineCount();
+		if (query.isEmpty() || lines == 0)
+			return -1;
+		for (int i = 0; i < lines; i++)
+		{
+			int line = (Math.floorMod(fromLine, lines) + i) % lines;
+			if (this.lineContains(line, query))
+				return line;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param line The index of the line
+	 * @param query The text to find
+	 * @return True if the line contains the text, ignoring case
+	 */
+	private boolean lineContains(int line, String query)
+	{
+		int end = this.lineEnd(line);
+		for (int start = this.lineStarts[line]; start + query.length() <= end; start++)
+		{
+			// Compare in place so no strings are created while searching
+			int matched = 0;
+			while (matched < query.length() && Character.toLowerCase(this.text.charAt(start + matched)) == Character.toLowerCase(query.charAt(matched)))
+				matched++;
+			if (matched == query.length())
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param line The index of the line
+	 * @return The offset just past the line's last character, not counting its new line
+	 */
+	private int lineEnd(int line)
+	{
+		return line + 1 < this.lineCount ? this.lineStarts[line + 1] - 1 : this.text.length();
+	}
+
+	/**
+	 * @return A read only list view of the lines that fetches each line when it is asked for, used as the items of a ListView
+	 */
+	public List<String> asList()
+	{
+		return new AbstractList<String>()
+		{
+			@Override
+			public String get(int index)
+			{
+				return ReportLineIndex.this.getLine(index);
+			}
+
+			@Override
+			public int size()
+			{
+				return ReportLineIndex.this.getLineCount();
+			}
+		};
+	}
+
+	/**
+	 * @return The full text of the report
+	 */
+	@Override
+	public synchronized String toString()
+	{
+		return this.text.toString();
+	}
+}
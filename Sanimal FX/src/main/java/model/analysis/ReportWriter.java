@@ -0,0 +1,107 @@
+package model.analysis;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * A writer that analysis output is streamed into line by line instead of being built up as one large string. The output can go to any
+ * number of targets at once, for example a ReportLineIndex for the UI and any other Writer. Like any PrintWriter it never throws, use
+ * checkError() once writing is done. Lines always end with '\n' so the output looks the same on every platform
+ */
+public class ReportWriter extends PrintWriter
+{
+	// The writers the output is copied to
+	private final Writer[] targets;
+
+	/**
+	 * Constructor writes to every target given
+	 *
+	 * @param targets The writers to copy the output to
+	 */
+	public ReportWriter(Writer... targets)
+	{
+		super(targets.length == 1 ? targets[0] : new TeeWriter(targets));
+		this.targets = targets;
+	}
+
+	/**
+	 * Marks the start of a new section of the report in every target that keeps a line index, so viewers can jump between sections
+	 */
+	public void startSection()
+	{
+		for (Writer target : this.targets)
+			if (target instanceof ReportLineIndex)
+				((ReportLineIndex) target).markSection();
+	}
+
+	/**
+	 * Ends the current line with '\n' instead of the platform's line separator
+	 */
+	@Override
+	public void println()
+	{
+		this.write('\n');
+	}
+
+	/**
+	 * A writer that copies everything written to it into several other writers
+	 */
+	private static class TeeWriter extends Writer
+	{
+		// The writers to copy to
+		private final Writer[] targets;
+
+		/**
+		 * Constructor
+		 *
+		 * @param targets The writers to copy to
+		 */
+		TeeWriter(Writer[] targets)
+		{
+			this.targets = targets;
+		}
+
+		@Override
+		public void write(char[] buffer, int offset, int length) throws IOException
+		{
+			for (Writer target : this.targets)
+				target.write(buffer, offset, length);
+		}
+
+		@Override
+		public void write(String string, int offset, int length) throws IOException
+		{
+			for (Writer target : this.targets)
+				target.write(string, offset, length);
+		}
+
+		@Override
+		public void flush() throws IOException
+		{
+			for (Writer target : this.targets)
+				target.flush();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			// Close every target even if one of them fails, then report the first failure
+			IOException firstException = null;
+			for (Writer target : this.targets)
+			{
+				try
+				{
+					target.close();
+				}
+				catch (IOException e)
+				{
+					if (firstException == null)
+						firstException = e;
+				}
+			}
+			if (firstException != null)
+				throw firstException;
+		}
+	}
+}
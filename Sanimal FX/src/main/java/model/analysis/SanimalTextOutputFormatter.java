@@ -1,9 +1,17 @@
 package model.analysis;
 
+import javafx.scene.control.Alert;
+import model.SanimalData;
 import model.analysis.textFormatters.*;
 import model.image.ImageEntry;
 
-import java.util.List;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * The formatter that simulates the creation of Jim Sanderson's "Output.txt"
@@ -12,23 +20,49 @@ import java.util.List;
  */
 public class SanimalTextOutputFormatter
 {
+	// The most sections of the output computed at the same time
+	private static final int MAX_PARALLEL_SECTIONS = 16;
+
 	/**
 	 * Returns a massive string that is perfectly formatted to look like "Output.txt"
 	 * 
 	 * @param dataStatistics
 	 *            A set of statistics computed from the images
 	 * @return A formatted string
+	 * @throws InterruptedException If the thread was interrupted while waiting for a section
+	 * @throws ExecutionException If a section could not be computed
+	 */
+	public String format(DataAnalyzer dataStatistics) throws InterruptedException, ExecutionException
+	{
+		StringWriter toReturn = new StringWriter();
+		this.format(dataStatistics, toReturn);
+		return toReturn.toString();
+	}
+
+	/**
+	 * Streams text that is perfectly formatted to look like "Output.txt" into a writer. Sections are written as soon as they are done, so
+	 * only the few sections being computed at once are ever held in memory
+	 *
+	 * @param dataStatistics
+	 *            A set of statistics computed from the images
+	 * @param out
+	 *            The writer to send the text to, for example a ReportLineIndex a viewer can show
+	 * @throws InterruptedException If the thread was interrupted while waiting for a section, the interrupt flag is left set
+	 * @throws ExecutionException If a section could not be computed, nothing after the sections written so far is printed
 	 */
-	public String format(DataAnalyzer dataStatistics)
+	public void format(DataAnalyzer dataStatistics, Writer out) throws InterruptedException, ExecutionException
 	{
-		// The string to return
-		String toReturn = "";
+		ReportWriter toReturn = out instanceof ReportWriter ? (ReportWriter) out : new ReportWriter(out);
 
 		List<ImageEntry> images = dataStatistics.getOriginalImageList();
 
-		// If there are no images, return an appropriate string
+		// If there are no images, print an appropriate string
 		if (images.isEmpty())
-			return "No images found under directory";
+		{
+			toReturn.print("No images found under directory");
+			this.finishReport(toReturn);
+			return;
+		}
 
 		// Elapsed time in the calculation
 		long elapsedTime = System.currentTimeMillis();
@@ -47,218 +81,268 @@ public class SanimalTextOutputFormatter
 		OccouranceFormatter occouranceFormatter = new OccouranceFormatter(images, dataStatistics);
 		DetectionRateFormatter detectionRateFormatter = new DetectionRateFormatter(images, dataStatistics);
 
-		// Proceed to print each header:
+		// Proceed to list each header in the order it is printed:
+
+		List<Callable<String>> sections = new ArrayList<>();
 
 		// LOCATIONS 
 
-		toReturn = toReturn + headerFormatter.printLocations();
+		sections.add(headerFormatter::printLocations);
 
 		// SPECIES
 
-		toReturn = toReturn + headerFormatter.printSpecies();
+		sections.add(headerFormatter::printSpecies);
 
 		// FOR ALL SPECIES AT ALL LOCATIONS
 
-		toReturn = toReturn + headerFormatter.printImageAnalysisHeader();
+		sections.add(headerFormatter::printImageAnalysisHeader);
 
 		// NUMBER OF DAYS IN CAMERA TRAP PROGRAM
 
-		toReturn = toReturn + firstLastSpeciesFormatter.printDaysInCameraTrap();
+		sections.add(firstLastSpeciesFormatter::printDaysInCameraTrap);
 
 		// FIRST PICTURE OF EACH SPECIES
 
-		toReturn = toReturn + firstLastSpeciesFormatter.printFirstPicOfEachSpecies();
+		sections.add(firstLastSpeciesFormatter::printFirstPicOfEachSpecies);
 
 		// LAST PICTURE OF EACH SPECIES
 
-		toReturn = toReturn + firstLastSpeciesFormatter.printLastPicOfEachSpecies();
+		sections.add(firstLastSpeciesFormatter::printLastPicOfEachSpecies);
 
 		// SPECIES ACCUMULATION CURVE
 
-		toReturn = toReturn + firstLastSpeciesFormatter.printSpeciesAccumulationCurve();
+		sections.add(firstLastSpeciesFormatter::printSpeciesAccumulationCurve);
 
 		// NUMBER OF PICTURES AND FILTERED PICTURES PER YEAR
 
-		toReturn = toReturn + actPerAbuLocFormatter.printNumberOfPicturesByYear();
+		sections.add(actPerAbuLocFormatter::printNumberOfPicturesByYear);
 
 		// NUMBER OF PICTURES BY SPECIES BY YEAR
 
-		toReturn = toReturn + actPerAbuLocFormatter.printNumberOfPicturesBySpeciesByYear();
+		sections.add(actPerAbuLocFormatter::printNumberOfPicturesBySpeciesByYear);
 
 		// SPECIES RANKED BY NUMBER OF INDEPENDENT PICTURES AND PERCENT OF TOTAL
 
-		toReturn = toReturn + actPerAbuLocFormatter.printNumberOfPicturesByPercentTotal();
+		sections.add(actPerAbuLocFormatter::printNumberOfPicturesByPercentTotal);
 
 		// CAMERA TRAP DAYS
 
-		toReturn = toReturn + trapDaysAndEffortFormatter.printCameraTrapDays();
+		sections.add(trapDaysAndEffortFormatter::printCameraTrapDays);
 
 		//CAMERA TRAP EFFORT
 
-		toReturn = toReturn + trapDaysAndEffortFormatter.printCameraTrapEffort();
+		sections.add(trapDaysAndEffortFormatter::printCameraTrapEffort);
 
 		// CAMERA TRAP EFFORT SUMMARY
 
-		toReturn = toReturn + trapDaysAndEffortFormatter.printCameraTrapEffortSummary();
+		sections.add(trapDaysAndEffortFormatter::printCameraTrapEffortSummary);
 
 		// FOR EACH LOCATION TOTAL NUMBER AND PERCENT OF EACH SPECIES
 
-		toReturn = toReturn + locationStatFormatter.printPercentOfSpeciesInLoc();
+		sections.add(locationStatFormatter::printPercentOfSpeciesInLoc);
 
 		// FOR EACH LOCATION AND MONTH TOTAL NUMBER EACH SPECIES
 
-		toReturn = toReturn + locationStatFormatter.printSpeciesByMonthByLocByYear();
+		sections.add(locationStatFormatter::printSpeciesByMonthByLocByYear);
 
 		// ALL LOCATIONS ALL SPECIES FOR EACH MONTH FOR ALL YEARS
 
-		toReturn = toReturn + locationStatFormatter.printSpeciesByMonthByLoc();
+		sections.add(locationStatFormatter::printSpeciesByMonthByLoc);
 
 		// DISTANCE (km) BETWEEN LOCATIONS
 
-		toReturn = toReturn + locationStatFormatter.printDistanceBetweenLocations();
+		sections.add(locationStatFormatter::printDistanceBetweenLocations);
 
 		// ACTIVITY PATTERNS
 
-		toReturn = toReturn + activityPatternFormatter.printActivityPatterns();
+		sections.add(activityPatternFormatter::printActivityPatterns);
+
+		// DIEL ACTIVITY PATTERNS
+
+		sections.add(activityPatternFormatter::printDielActivityPatterns);
 
 		// SPECIES PAIRS ACTIVITY SIMILARITY (LOWER IS MORE SIMILAR)
 
-		toReturn = toReturn + activityPatternFormatter.printSpeciesPairsActivitySimilarity();
+		sections.add(activityPatternFormatter::printSpeciesPairsActivitySimilarity);
 
 		// SPECIES PAIR MOST SIMILAR IN ACTIVITY (FREQUENCY)
 
-		toReturn = toReturn + activityPatternFormatter.printSpeciePairMostSimilar();
+		sections.add(activityPatternFormatter::printSpeciePairMostSimilar);
 
 		// CHI-SQUARE ANALYSIS OF PAIRED ACTIVITY PATTERNS
 
-		toReturn = toReturn + activityPatternFormatter.printChiSquareAnalysisPairedActivity();
+		sections.add(activityPatternFormatter::printChiSquareAnalysisPairedActivity);
+
+		// ACTIVITY KERNEL DENSITY
+
+		sections.add(activityPatternFormatter::printActivityDensities);
+
+		// SPECIES PAIRS ACTIVITY OVERLAP (HIGHER IS MORE SIMILAR)
+
+		sections.add(activityPatternFormatter::printActivityOverlap);
 
 		// LUNAR ACTIVITY PATTERN
 
-		toReturn = toReturn + lunarActivityFormatter.printLunarActivity();
+		sections.add(lunarActivityFormatter::printLunarActivity);
 
 		//SPECIES LUNAR ACTIVITY MOST DIFFERENT: 
 
-		toReturn = toReturn + lunarActivityFormatter.printLunarActivityMostDifferent();
+		sections.add(lunarActivityFormatter::printLunarActivityMostDifferent);
+
+		// LUNAR ILLUMINATION ACTIVITY
+
+		sections.add(lunarActivityFormatter::printLunarIlluminationActivity);
 
 		// ACTIVITY PATTERNS BY SEASON
 
-		toReturn = toReturn + activityPatternFormatter.printActivityPatternsSeason();
+		sections.add(activityPatternFormatter::printActivityPatternsSeason);
 
 		// SPECIES ABUNDANCE
 
-		toReturn = toReturn + actPerAbuLocFormatter.printSpeciesAbundance();
+		sections.add(actPerAbuLocFormatter::printSpeciesAbundance);
 
 		// LOCATIONS BY SPECIES AND LOCATION AND SPECIES RICHNESS
 
-		toReturn = toReturn + richnessFormatter.printLocationSpeciesRichness();
+		sections.add(richnessFormatter::printLocationSpeciesRichness);
 
 		// LOCATION SPECIES FREQUENCY SIMILARITY (LOWER IS MORE SIMILAR)
 
-		toReturn = toReturn + locationStatFormatter.printLocSpeciesFrequencySimiliarity();
+		sections.add(locationStatFormatter::printLocSpeciesFrequencySimiliarity);
 
 		// LOCATION-SPECIES COMPOSITION SIMILARITY (Jaccard Similarity Index)
 
-		toReturn = toReturn + locationStatFormatter.printLocSpeciesCompositionSimiliarity();
+		sections.add(locationStatFormatter::printLocSpeciesCompositionSimiliarity);
 
 		// SPECIES BY LOCATION WITH UTM AND ELEVATION
 
-		toReturn = toReturn + speciesLocCoordFormatter.printSpeciesByLocWithUTM();
+		sections.add(speciesLocCoordFormatter::printSpeciesByLocWithUTM);
 
 		// SPECIES OVERLAP AT LOCATIONS
 
-		toReturn = toReturn + locationStatFormatter.printSpeciesOverlapAtLoc();
+		sections.add(locationStatFormatter::printSpeciesOverlapAtLoc);
 
 		// CHI-SQUARE ANALYSIS OF PAIRED SITES SPECIES FREQUENCIES
 
-		toReturn = toReturn + occouranceFormatter.printCHISqAnalysisOfPairedSpecieFreq();
+		sections.add(occouranceFormatter::printCHISqAnalysisOfPairedSpecieFreq);
 
 		// PICTURES FOR EACH LOCATION BY MONTH AND YEAR
 
-		toReturn = toReturn + totalDayFormatter.printPicturesByMonthYearLoc();
+		sections.add(totalDayFormatter::printPicturesByMonthYearLoc);
 
 		// PICTURES FOR EACH LOCATION BY MONTH AND YEAR SUMMARY
 
-		toReturn = toReturn + totalDayFormatter.printPicturesByMonthLoc();
+		sections.add(totalDayFormatter::printPicturesByMonthLoc);
 
 		// SPECIES AND SPECIES RICHNESS BY YEAR AND MONTH
 
-		toReturn = toReturn + totalDayFormatter.printPicturesByMonthYearSpeciesRichness();
+		sections.add(totalDayFormatter::printPicturesByMonthYearSpeciesRichness);
 
 		// SPECIES ALL YEARS BY MONTH
 
-		toReturn = toReturn + totalDayFormatter.printPicturesByMonthSpeciesRichness();
+		sections.add(totalDayFormatter::printPicturesByMonthSpeciesRichness);
 
 		// SPECIES BY LOCATION BY YEAR BY MONTH SORTED BY ELEVATION
 
-		toReturn = toReturn + totalDayFormatter.printPicturesByMonthSpeciesLocElevation();
+		sections.add(totalDayFormatter::printPicturesByMonthSpeciesLocElevation);
 
 		// SPECIES ABUNDANCE BY LOCATION BY YEAR BY MONTH SORTED BY ELEVATION
 
-		toReturn = toReturn + totalDayFormatter.printAbundanceByMonthSpeciesLocElevation();
+		sections.add(totalDayFormatter::printAbundanceByMonthSpeciesLocElevation);
 
 		// SPECIES BY LOCATION SORTED BY ELEVATION AND NORMALIZED BY EFFORT
 
-		toReturn = toReturn + totalDayFormatter.printSpeciesByLocElevationAndEffort();
+		sections.add(totalDayFormatter::printSpeciesByLocElevationAndEffort);
 
 		// SPECIES BY LOCATION SORTED BY ELEVATION AND NORMALIZED BY EFFORT TABLE
 
-		toReturn = toReturn + totalDayFormatter.printSpeciesByLocElevationAndEffortTable();
+		sections.add(totalDayFormatter::printSpeciesByLocElevationAndEffortTable);
 
 		// SPECIES AVERAGE ABUNDANCE BY YEAR AND SITE
 
-		toReturn = toReturn + actPerAbuLocFormatter.printSpeciesAbundanceYearSite();
+		sections.add(actPerAbuLocFormatter::printSpeciesAbundanceYearSite);
 
 		// SPECIES AVERAGE ABUNDANCE BY SITE ALL YEARS
 
-		toReturn = toReturn + actPerAbuLocFormatter.printSpeciesAbundanceSite();
+		sections.add(actPerAbuLocFormatter::printSpeciesAbundanceSite);
 
 		// SPECIES CO-OCCURRENCE MATRIX
 
-		toReturn = toReturn + occouranceFormatter.printCoOccuranceMatrix();
+		sections.add(occouranceFormatter::printCoOccuranceMatrix);
 
 		// ABSENCE-PRESENCE MATRIX
 
-		toReturn = toReturn + occouranceFormatter.printAbsensePresenceMatrix();
+		sections.add(occouranceFormatter::printAbsensePresenceMatrix);
 
 		// SPECIES MIN AND MAX ELEVATION
 
-		toReturn = toReturn + occouranceFormatter.printMaxMinSpeciesElevation();
+		sections.add(occouranceFormatter::printMaxMinSpeciesElevation);
 
 		// DETECTION RATE FOR EACH SPECIES PER YEAR
 
-		toReturn = toReturn + detectionRateFormatter.printDetectionRateSpeciesYear();
+		sections.add(detectionRateFormatter::printDetectionRateSpeciesYear);
 
 		// DETECTION RATE SUMMARY FOR EACH SPECIES
 
-		toReturn = toReturn + detectionRateFormatter.printDetectionRateSummary();
+		sections.add(detectionRateFormatter::printDetectionRateSummary);
 
 		// DETECTION RATE FOR EACH LOCATION BY MONTH
 
-		toReturn = toReturn + detectionRateFormatter.printDetectionRateLocationMonth();
+		sections.add(detectionRateFormatter::printDetectionRateLocationMonth);
 
 		// DETECTION RATE SUMMARY FOR EACH LOCATION BY MONTH
 
-		toReturn = toReturn + detectionRateFormatter.printDetectionRateLocationMonthSummary();
+		sections.add(detectionRateFormatter::printDetectionRateLocationMonthSummary);
 
 		// MONTHLY DETECTION RATE TREND
 
-		toReturn = toReturn + detectionRateFormatter.printDetectionRateTrend();
+		sections.add(detectionRateFormatter::printDetectionRateTrend);
 
 		// NATIVE OCCUPANCY
 
-		toReturn = toReturn + occouranceFormatter.printNativeOccupancy();
+		sections.add(occouranceFormatter::printNativeOccupancy);
 
 		// AREA COVERED BY CAMERA TRAPS
 
-		toReturn = toReturn + locationStatFormatter.printAreaCoveredByTraps();
+		sections.add(locationStatFormatter::printAreaCoveredByTraps);
+
+		// The sections only read the analysis, so they can all be computed at the same time and then written out in order
+		int parallelism = Math.min(Runtime.getRuntime().availableProcessors(), MAX_PARALLEL_SECTIONS);
+		ForkJoinPool sectionPool = new ForkJoinPool(parallelism);
+		try
+		{
+			// Keep a few sections running ahead of the writer, each section is dropped as soon as it has been written
+			Deque<ForkJoinTask<String>> sectionResults = new ArrayDeque<>();
+			Iterator<Callable<String>> remainingSections = sections.iterator();
+			while (remainingSections.hasNext() || !sectionResults.isEmpty())
+			{
+				while (remainingSections.hasNext() && sectionResults.size() < parallelism * 2)
+					sectionResults.add(sectionPool.submit(remainingSections.next()));
+				String section = sectionResults.poll().get();
+				// Empty sections are skipped so they don't show up in a viewer's list of sections
+				if (!section.isEmpty())
+				{
+					toReturn.startSection();
+					toReturn.print(section);
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			// Keep the interrupt visible to whoever runs this, then let them fail instead of writing a partial report
+			Thread.currentThread().interrupt();
+			throw e;
+		}
+		finally
+		{
+			// Sections still running are only needed if the report finished, so stop any that are left after a failure
+			sectionPool.shutdownNow();
+		}
 
 		// ELAPSED TIME
 
-		toReturn = toReturn + "ELAPSED TIME " + String.format("%10.3f ", ((System.currentTimeMillis() - elapsedTime) / 1000D)) + "SECONDS";
-
-		return toReturn;
+		toReturn.print("ELAPSED TIME " + String.format("%10.3f ", ((System.currentTimeMillis() - elapsedTime) / 1000D)) + "SECONDS");
 
+		this.finishReport(toReturn);
 	}
 
 	/**
@@ -270,13 +354,47 @@ public class SanimalTextOutputFormatter
 	 */
 	public String createAllPictures(DataAnalyzer dataStatistics)
 	{
-		String toReturn = "";
+		StringWriter toReturn = new StringWriter();
+		this.createAllPictures(dataStatistics, toReturn);
+		return toReturn.toString();
+	}
+
+	/**
+	 * Streams "Allpictures.txt" into a writer one line at a time
+	 *
+	 * @param dataStatistics
+	 *            A set of statistics computed from the images
+	 * @param out
+	 *            The writer to send the text to
+	 */
+	public void createAllPictures(DataAnalyzer dataStatistics, Writer out)
+	{
+		ReportWriter toReturn = out instanceof ReportWriter ? (ReportWriter) out : new ReportWriter(out);
 
 		// Create an analysis object, then create the formatter, and create the text
 		DataAnalyzer analysis = new DataAnalyzer(dataStatistics.getOriginalImageList(), dataStatistics.getEventInterval());
 		AllPicturesFormatter allPicturesFormatter = new AllPicturesFormatter(dataStatistics.getOriginalImageList(), analysis);
-		toReturn = toReturn + allPicturesFormatter.createAllPictures();
+		allPicturesFormatter.createAllPictures(toReturn);
+
+		this.finishReport(toReturn);
+	}
 
-		return toReturn;
+	/**
+	 * Flushes a report and tells the user if any of it could not be written. The writer is left open since it belongs to the caller
+	 *
+	 * @param toReturn
+	 *            The writer the report was written to
+	 */
+	private void finishReport(ReportWriter toReturn)
+	{
+		// PrintWriters don't throw, so check for errors once at the end
+		if (toReturn.checkError())
+			SanimalData.getInstance().getErrorDisplay().showPopup(
+					Alert.AlertType.ERROR,
+					null,
+					"Error",
+					"Analysis error",
+					"The analysis output could not be written completely!",
+					false);
 	}
 }
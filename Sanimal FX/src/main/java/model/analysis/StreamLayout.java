@@ -0,0 +1,116 @@
+package model.analysis;
+
+import model.location.Location;
+import model.species.Species;
+
+/**
+ * The mapping from (species or any species) x (location or any location) pairs to stream indices shared by AnalysisCube and EventIndex.
+ * A row belongs to the "any species" streams, plus one stream per distinct species tagged on it, each both at "any location" and at the
+ * row's own location if it has one
+ */
+final class StreamLayout
+{
+	// The columns the streams are built from
+	private final ImageColumns columns;
+	// The number of locations in the columns, used to find a stream's index
+	private final int locationCount;
+
+	// Scratch space for the distinct species on a row
+	private final int[] rowSpecies;
+
+	/**
+	 * Constructor takes the columns the streams are built from. A layout keeps scratch space for streamsOf, so one layout must only be
+	 * used by one thread at a time
+	 *
+	 * @param columns The image columns
+	 */
+	StreamLayout(ImageColumns columns)
+	{
+		this.columns = columns;
+		this.locationCount = columns.getLocationCount();
+		this.rowSpecies = new int[columns.getSpeciesCount() + 1];
+	}
+
+	/**
+	 * @return The number of streams
+	 */
+	int streamCount()
+	{
+		return (this.columns.getSpeciesCount() + 1) * (this.locationCount + 1);
+	}
+
+	/**
+	 * @return The most streams a single row can belong to, the size of the array streamsOf needs
+	 */
+	int maxStreamsPerRow()
+	{
+		return (this.columns.getSpeciesCount() + 1) * 2;
+	}
+
+	/**
+	 * Finds every stream a row belongs to
+	 *
+	 * @param row The row
+	 * @param rowStreams Filled with the streams of the row, at least maxStreamsPerRow long
+	 * @return The number of streams written to rowStreams
+	 */
+	int streamsOf(int row, int[] rowStreams)
+	{
+		// Find the distinct species on this row, plus "any species"
+		int speciesOnRow = 0;
+		this.rowSpecies[speciesOnRow++] = -1;
+		for (int tag = this.columns.getFirstTag(row); tag < this.columns.getFirstTag(row + 1); tag++)
+		{
+			int speciesId = this.columns.getTagSpeciesId(tag);
+			boolean seen = false;
+			for (int i = 1; i < speciesOnRow; i++)
+				seen = seen || this.rowSpecies[i] == speciesId;
+			if (!seen)
+				this.rowSpecies[speciesOnRow++] = speciesId;
+		}
+
+		// Every species goes into "any location", and into its own location if the row has one
+		int locationId = this.columns.getLocationId(row);
+		int streamsOnRow = 0;
+		for (int i = 0; i < speciesOnRow; i++)
+		{
+			rowStreams[streamsOnRow++] = this.streamOf(this.rowSpecies[i], -1);
+			if (locationId != -1)
+				rowStreams[streamsOnRow++] = this.streamOf(this.rowSpecies[i], locationId);
+		}
+		return streamsOnRow;
+	}
+
+	/**
+	 * @param species The species, or null for any species
+	 * @param location The location, or null for any location
+	 * @return The stream of the pair, or -1 if the species or location is not in the columns
+	 */
+	int streamOf(Species species, Location location)
+	{
+		int speciesId = species == null ? -1 : this.columns.speciesIdOf(species);
+		int locationId = location == null ? -1 : this.columns.locationIdOf(location);
+		if ((species != null && speciesId == -1) || (location != null && locationId == -1))
+			return -1;
+		return this.streamOf(speciesId, locationId);
+	}
+
+	/**
+	 * @param speciesId The species id, or -1 for any species
+	 * @param locationId The location id, or -1 for any location
+	 * @return The stream of the pair
+	 */
+	int streamOf(int speciesId, int locationId)
+	{
+		return (speciesId + 1) * (this.locationCount + 1) + locationId + 1;
+	}
+
+	/**
+	 * @param stream The stream
+	 * @return The species id of the stream, or -1 for any species
+	 */
+	int speciesIdOf(int stream)
+	{
+		return stream / (this.locationCount + 1) - 1;
+	}
+}
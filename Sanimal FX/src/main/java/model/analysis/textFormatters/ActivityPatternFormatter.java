@@ -1,7 +1,12 @@
 package model.analysis.textFormatters;
 
+import model.analysis.ActivityDensity;
 import model.analysis.DataAnalyzer;
+import model.analysis.DielPeriod;
+import model.analysis.EventIndex;
+import model.analysis.ImageColumns;
 import model.analysis.ImageQuery;
+import model.analysis.IndependentEvent;
 import model.image.ImageEntry;
 import model.location.Location;
 import model.species.Species;
@@ -9,7 +14,9 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The text formatter for species activity patterns
@@ -46,8 +53,10 @@ public class ActivityPatternFormatter extends TextFormatter
 		for (Species species : analysis.getAllImageSpecies())
 		{
 			StringBuilder toAdd = new StringBuilder();
-			List<ImageEntry> imagesWithSpecies = new ImageQuery().speciesOnly(species).query(analysis.getImagesSortedByDate());
-			Integer totalImages = imagesWithSpecies.size();
+			// Work on the columnar copy of the images sorted by date, these loops run once per species, hour, and month
+			ImageColumns columns = analysis.getColumns();
+			int[] rowsWithSpecies = new ImageQuery().speciesOnly(species).query(columns);
+			Integer totalImages = rowsWithSpecies.length;
 			// Activity / All
 			toAdd.append("                   All months         Jan              Feb              Mar              Apr              May              Jun              Jul              Aug              Sep              Oct              Nov              Dec\n");
 			toAdd.append("    Hour        Number Frequency Number Frequency Number Frequency Number Frequency Number Frequency Number Frequency Number Frequency Number Frequency Number Frequency Number Frequency Number Frequency Number Frequency Number Frequency\n");
@@ -61,16 +70,16 @@ public class ActivityPatternFormatter extends TextFormatter
 				Integer activity;
 				// -1 = all months
 				if (i == -1)
-					activity = analysis.activityForImageList(imagesWithSpecies);
+					activity = analysis.activityForRows(rowsWithSpecies);
 				else
-					activity = analysis.activityForImageList(new ImageQuery().monthOnly(i).query(imagesWithSpecies));
+					activity = analysis.activityForRows(new ImageQuery().monthOnly(i).query(columns, rowsWithSpecies));
 				totalActivities[i + 1] = activity;
 			}
 
 			// 24 hrs
 			for (int i = 0; i < 24; i++)
 			{
-				List<ImageEntry> imagesWithSpeciesAtTime = new ImageQuery().timeFrame(i, i + 1).query(imagesWithSpecies);
+				int[] rowsWithSpeciesAtTime = new ImageQuery().timeFrame(i, i + 1).query(columns, rowsWithSpecies);
 				toAdd.append(String.format("%02d:00-%02d:00   ", i, i + 1));
 				// 12 months
 				for (int j = -1; j < 12; j++)
@@ -78,9 +87,9 @@ public class ActivityPatternFormatter extends TextFormatter
 					Integer activity;
 					// -1 = all months
 					if (j == -1)
-						activity = analysis.activityForImageList(imagesWithSpeciesAtTime);
+						activity = analysis.activityForRows(rowsWithSpeciesAtTime);
 					else
-						activity = analysis.activityForImageList(new ImageQuery().monthOnly(j).query(imagesWithSpeciesAtTime));
+						activity = analysis.activityForRows(new ImageQuery().monthOnly(j).query(columns, rowsWithSpeciesAtTime));
 
 					if (activity != 0)
 						toAdd.append(String.format("%6d %10.3f", activity, (double) activity / totalActivities[j + 1]));
@@ -108,6 +117,50 @@ public class ActivityPatternFormatter extends TextFormatter
 		return toReturn.toString();
 	}
 
+	/**
+	 * For each species activity is given for each part of the day instead of each clock hour. Night, dawn, day and dusk are found from the
+	 * sunrise, sunset and civil twilight at the location and on the day each picture was taken, so they follow the seasons and differ
+	 * between locations. Pictures at locations without a latitude and longitude are left out. Activity is counted the same way as in the
+	 * hourly activity patterns above.
+	 *
+	 * @return Returns a string representing the data in a clean form
+	 */
+	public String printDielActivityPatterns()
+	{
+		StringBuilder toReturn = new StringBuilder();
+		DielPeriod[] periods = { DielPeriod.Night, DielPeriod.Dawn, DielPeriod.Day, DielPeriod.Dusk };
+
+		toReturn.append("DIEL ACTIVITY PATTERNS\n");
+		toReturn.append(" Activity by part of the day using sunrise, sunset, and civil twilight at each location\n");
+		toReturn.append("                                 Night              Dawn               Day               Dusk\n");
+		toReturn.append("Species                   Number Frequency  Number Frequency  Number Frequency  Number Frequency\n");
+
+		ImageColumns columns = analysis.getColumns();
+		for (Species species : analysis.getAllImageSpecies())
+		{
+			int[] rowsWithSpecies = new ImageQuery().speciesOnly(species).query(columns);
+			int[] activities = new int[periods.length];
+			int totalActivity = 0;
+			for (int i = 0; i < periods.length; i++)
+			{
+				activities[i] = analysis.activityForRows(new ImageQuery().dielPeriodOnly(periods[i]).query(columns, rowsWithSpecies));
+				totalActivity = totalActivity + activities[i];
+			}
+
+			if (totalActivity != 0)
+			{
+				toReturn.append(String.format("%-25s", StringUtils.left(species.getName(), 25)));
+				for (int activity : activities)
+					toReturn.append(String.format("%7d %9.3f ", activity, (double) activity / totalActivity));
+				toReturn.append("\n");
+			}
+		}
+
+		toReturn.append("\n");
+
+		return toReturn.toString();
+	}
+
 	/**
 	 * <p>
 	 * Dr. Jim Sanderson's description:
@@ -139,20 +192,21 @@ public class ActivityPatternFormatter extends TextFormatter
 			toReturn.append(String.format("%-27s", species.getName()));
 			for (Species other : analysis.getAllImageSpecies())
 			{
-				List<ImageEntry> imagesWithSpecies = new ImageQuery().speciesOnly(species).query(analysis.getImagesSortedByDate());
-				List<ImageEntry> imagesWithSpeciesOther = new ImageQuery().speciesOnly(other).query(analysis.getImagesSortedByDate());
-				int totalActivity = analysis.activityForImageList(imagesWithSpecies);
-				int totalActivityOther = analysis.activityForImageList(imagesWithSpeciesOther);
+				ImageColumns columns = analysis.getColumns();
+				int[] rowsWithSpecies = new ImageQuery().speciesOnly(species).query(columns);
+				int[] rowsWithSpeciesOther = new ImageQuery().speciesOnly(other).query(columns);
+				int totalActivity = analysis.activityForRows(rowsWithSpecies);
+				int totalActivityOther = analysis.activityForRows(rowsWithSpeciesOther);
 
 				double activitySimilarity = 0;
 
 				// 24 hrs
 				for (int i = 0; i < 24; i++)
 				{
-					List<ImageEntry> imagesWithSpeciesAtTime = new ImageQuery().timeFrame(i, i + 1).query(imagesWithSpecies);
-					List<ImageEntry> imagesWithSpeciesAtTimeOther = new ImageQuery().timeFrame(i, i + 1).query(imagesWithSpeciesOther);
-					double activity = analysis.activityForImageList(imagesWithSpeciesAtTime);
-					double activityOther = analysis.activityForImageList(imagesWithSpeciesAtTimeOther);
+					int[] rowsWithSpeciesAtTime = new ImageQuery().timeFrame(i, i + 1).query(columns, rowsWithSpecies);
+					int[] rowsWithSpeciesAtTimeOther = new ImageQuery().timeFrame(i, i + 1).query(columns, rowsWithSpeciesOther);
+					double activity = analysis.activityForRows(rowsWithSpeciesAtTime);
+					double activityOther = analysis.activityForRows(rowsWithSpeciesAtTimeOther);
 					double frequency = activity / totalActivity;
 					double frequencyOther = activityOther / totalActivityOther;
 					double difference = frequency - frequencyOther;
@@ -260,6 +314,126 @@ public class ActivityPatternFormatter extends TextFormatter
 		return toReturn.toString();
 	}
 
+	/**
+	 * For each species with at least 2 independent events a smooth estimate of activity over the day is given. Instead of counting pictures
+	 * in one hour segments, the start time of every event is spread out with a circular kernel so activity just before and after midnight
+	 * is treated as close together. The table shows the estimated percent of the species' activity in each hour.
+	 *
+	 * @return Returns a string representing the data in a clean form
+	 */
+	public String printActivityDensities()
+	{
+		StringBuilder toReturn = new StringBuilder();
+
+		toReturn.append("ACTIVITY KERNEL DENSITY\n");
+		toReturn.append("  Percent of activity in each hour, circular kernel density estimate\n");
+		toReturn.append("  One record of each species per location per event\n");
+
+		List<Species> densitySpecies = new ArrayList<>();
+		List<ActivityDensity> densities = new ArrayList<>();
+		for (Species species : analysis.getAllImageSpecies())
+		{
+			double[] timesOfDay = this.timesOfDay(species);
+			if (timesOfDay.length >= 2)
+			{
+				densitySpecies.add(species);
+				densities.add(new ActivityDensity(timesOfDay, ActivityDensity.DELTA_4_ADJUST));
+			}
+		}
+
+		toReturn.append("    Hour       ");
+		for (Species species : densitySpecies)
+			toReturn.append(String.format("%-8s ", StringUtils.left(species.getName(), 8)));
+		toReturn.append("\n");
+
+		// 24 hrs, the density at the middle of the hour approximates the share of the day's activity in that hour
+		for (int i = 0; i < 24; i++)
+		{
+			toReturn.append(String.format("%02d:00-%02d:00    ", i, i + 1));
+			for (ActivityDensity density : densities)
+				toReturn.append(String.format("%6.2f   ", density.densityAt((i + 0.5) / 24) / 24 * 100));
+			toReturn.append("\n");
+		}
+
+		toReturn.append("\n");
+
+		return toReturn.toString();
+	}
+
+	/**
+	 * The overlap of the activity of each pair of species with at least 2 independent events is given, from 0 (never active at the same time)
+	 * to 1 (identical activity). Overlap is the area shared by both species' circular kernel density estimates of activity. The Delta 4
+	 * estimator is used when both species have 75 or more events, otherwise Delta 1 is used and marked with a *.
+	 *
+	 * @return Returns a string representing the data in a clean form
+	 */
+	public String printActivityOverlap()
+	{
+		StringBuilder toReturn = new StringBuilder();
+
+		toReturn.append("SPECIES PAIRS ACTIVITY OVERLAP (HIGHER IS MORE SIMILAR)\n");
+		toReturn.append("  One record of each species per location per event\n");
+		toReturn.append("  Delta 4 when both species have 75 or more events, otherwise Delta 1 (*)\n");
+
+		// Build each species' densities once, every pair then only compares them
+		List<Species> overlapSpecies = new ArrayList<>();
+		List<ActivityDensity> densitiesDelta1 = new ArrayList<>();
+		List<ActivityDensity> densitiesDelta4 = new ArrayList<>();
+		for (Species species : analysis.getAllImageSpecies())
+		{
+			double[] timesOfDay = this.timesOfDay(species);
+			if (timesOfDay.length >= 2)
+			{
+				overlapSpecies.add(species);
+				densitiesDelta1.add(new ActivityDensity(timesOfDay, ActivityDensity.DELTA_1_ADJUST));
+				densitiesDelta4.add(new ActivityDensity(timesOfDay, ActivityDensity.DELTA_4_ADJUST));
+			}
+		}
+
+		toReturn.append("                            ");
+		for (Species species : overlapSpecies)
+			toReturn.append(String.format("%-8s ", StringUtils.left(species.getName(), 8)));
+		toReturn.append("\n");
+
+		for (int i = 0; i < overlapSpecies.size(); i++)
+		{
+			toReturn.append(String.format("%-28s", StringUtils.left(overlapSpecies.get(i).getName(), 27)));
+			for (int j = 0; j < overlapSpecies.size(); j++)
+			{
+				if (densitiesDelta4.get(i).getSampleSize() >= 75 && densitiesDelta4.get(j).getSampleSize() >= 75)
+					toReturn.append(String.format("%6.3f   ", ActivityDensity.overlapDelta4(densitiesDelta4.get(i), densitiesDelta4.get(j))));
+				else
+					toReturn.append(String.format("%6.3f*  ", ActivityDensity.overlapDelta1(densitiesDelta1.get(i), densitiesDelta1.get(j))));
+			}
+			toReturn.append("\n");
+		}
+
+		toReturn.append("\n");
+
+		return toReturn.toString();
+	}
+
+	/**
+	 * Pictures in a burst are not independent observations, so the density is built from one record per independent event like the rest
+	 * of the analysis. Each event counts once at the time of its first picture
+	 *
+	 * @param species The species
+	 * @return The time of day each of the species' independent events at each location started, as a fraction of a day from 0 to 1
+	 */
+	private double[] timesOfDay(Species species)
+	{
+		List<ImageEntry> imagesSortedByDate = analysis.getImagesSortedByDate();
+		EventIndex events = analysis.getEvents();
+		List<Double> timesOfDay = new ArrayList<>();
+		for (Location location : analysis.getAllImageLocations())
+		{
+			int[] rows = events.getRows(species, location);
+			for (IndependentEvent event : events.getEvents(species, location))
+				timesOfDay.add(imagesSortedByDate.get(rows[event.getFirstImage()]).getDateTaken().toLocalTime().toNanoOfDay() / (double) TimeUnit.DAYS.toNanos(1));
+		}
+		return ArrayUtils.toPrimitive(timesOfDay.toArray(new Double[0]));
+	}
+
 	/**
 	 * <p>
 	 * Dr. Jim Sanderson's description:
@@ -2,11 +2,13 @@ package model.analysis.textFormatters;
 
 import model.analysis.DataAnalyzer;
 import model.analysis.ImageQuery;
+import model.analysis.ReportWriter;
 import model.image.ImageEntry;
 import model.location.Location;
 import model.species.Species;
 import org.apache.commons.io.FilenameUtils;
 
+import java.io.StringWriter;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 
@@ -30,10 +32,23 @@ public class AllPicturesFormatter extends TextFormatter
 	 */
 	public String createAllPictures()
 	{
-		StringBuilder toReturn = new StringBuilder();
+		StringWriter toReturn = new StringWriter();
+		this.createAllPictures(new ReportWriter(toReturn));
+		return toReturn.toString();
+	}
 
+	/**
+	 * <p>
+	 * Streams the all pictures list into a writer one line at a time, so the list is never held in memory
+	 *
+	 * @param toReturn The writer to print the list to
+	 */
+	public void createAllPictures(ReportWriter toReturn)
+	{
 		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy MM dd HH mm ss");
 
+		// Lines are separated rather than terminated, so the list doesn't end with a new line
+		boolean firstLine = true;
 		for (Location location : analysis.getAllImageLocations())
 		{
 			List<ImageEntry> withLocation = new ImageQuery().locationOnly(location).query(images);
@@ -42,14 +57,14 @@ public class AllPicturesFormatter extends TextFormatter
 				List<ImageEntry> withLocationSpecies = new ImageQuery().speciesOnly(species).query(withLocation);
 				for (ImageEntry imageEntry : withLocationSpecies)
 				{
-					toReturn.append(String.format("%-28s %-28s %-28s\n", location.getName(), species.getName(), imageEntry.getDateTaken().format(formatter) + "." + FilenameUtils.getExtension(imageEntry.getFile().toString())));
+					if (!firstLine)
+						toReturn.println();
+					toReturn.print(String.format("%-28s %-28s %-28s", location.getName(), species.getName(), imageEntry.getDateTaken().format(formatter) + "." + FilenameUtils.getExtension(imageEntry.getFile().toString())));
+					firstLine = false;
 				}
 			}
 		}
 
-		if (toReturn.length() > 0)
-			toReturn = new StringBuilder(toReturn.substring(0, toReturn.length() - 1));
-
-		return toReturn.toString();
+		toReturn.flush();
 	}
 }
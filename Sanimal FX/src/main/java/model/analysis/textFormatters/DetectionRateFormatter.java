@@ -1,5 +1,6 @@
 package model.analysis.textFormatters;
 
+import model.analysis.AnalysisCube;
 import model.analysis.DataAnalyzer;
 import model.analysis.ImageQuery;
 import model.image.ImageEntry;
@@ -34,6 +35,7 @@ public class DetectionRateFormatter extends TextFormatter
 	public String printDetectionRateSpeciesYear()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
 
 		toReturn.append("DETECTION RATE FOR EACH SPECIES PER YEAR\n");
 		toReturn.append("  One record of each species per location per PERIOD\n");
@@ -94,7 +96,7 @@ public class DetectionRateFormatter extends TextFormatter
 
 					for (Species species : analysis.getAllImageSpecies())
 					{
-						periodTotal = periodTotal + analysis.periodForImageList(new ImageQuery().speciesOnly(species).query(byYearLocation));
+						periodTotal = periodTotal + cube.period(species, location, year, null);
 					}
 
 					totalPics = totalPics + periodTotal;
@@ -103,7 +105,7 @@ public class DetectionRateFormatter extends TextFormatter
 
 					for (Species species : analysis.getAllImageSpecies())
 					{
-						Integer period = analysis.periodForImageList(new ImageQuery().speciesOnly(species).query(byYearLocation));
+						Integer period = cube.period(species, location, year, null);
 						toReturn.append(String.format(" %5.2f", 100D * (double) period / totalDaysForLoc));
 						Integer index = analysis.getAllImageSpecies().indexOf(species);
 						averageRate[index] = averageRate[index] + (double) period;
@@ -139,6 +141,7 @@ public class DetectionRateFormatter extends TextFormatter
 	public String printDetectionRateSummary()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
 
 		toReturn.append("DETECTION RATE SUMMARY FOR EACH SPECIES\n");
 		toReturn.append("  One record of each species per location per PERIOD\n");
@@ -205,7 +208,7 @@ public class DetectionRateFormatter extends TextFormatter
 			for (Species species : analysis.getAllImageSpecies())
 			{
 				for (Integer year : analysis.getAllImageYears())
-					periodTotal = periodTotal + analysis.periodForImageList(new ImageQuery().speciesOnly(species).yearOnly(year).query(byLocation));
+					periodTotal = periodTotal + cube.period(species, location, year, null);
 			}
 
 			totalPics = totalPics + periodTotal;
@@ -216,7 +219,7 @@ public class DetectionRateFormatter extends TextFormatter
 			{
 				Integer period = 0;
 				for (Integer year : analysis.getAllImageYears())
-					period = period + analysis.periodForImageList(new ImageQuery().speciesOnly(species).yearOnly(year).query(byLocation));
+					period = period + cube.period(species, location, year, null);
 				toReturn.append(String.format(" %5.2f", (double) period / totalDaysLoc));
 				Integer index = analysis.getAllImageSpecies().indexOf(species);
 				averageRate[index] = averageRate[index] + (double) period;
@@ -250,6 +253,7 @@ public class DetectionRateFormatter extends TextFormatter
 	public String printDetectionRateLocationMonth()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
 
 		toReturn.append("DETECTION RATE FOR EACH LOCATION BY MONTH\n");
 		toReturn.append("  One record of each species per location per PERIOD\n");
@@ -303,7 +307,7 @@ public class DetectionRateFormatter extends TextFormatter
 
 					for (Species species : analysis.getAllImageSpecies())
 					{
-						periodTotal = periodTotal + analysis.periodForImageList(new ImageQuery().speciesOnly(species).query(byYearLocation));
+						periodTotal = periodTotal + cube.period(species, location, year, null);
 					}
 
 					totalPics = totalPics + periodTotal;
@@ -315,7 +319,7 @@ public class DetectionRateFormatter extends TextFormatter
 						// Go through species here?
 						Integer period = 0;
 						for (Species species : analysis.getAllImageSpecies())
-							period = period + analysis.periodForImageList(new ImageQuery().monthOnly(i).speciesOnly(species).query(byYearLocation));
+							period = period + cube.period(species, location, year, i);
 						toReturn.append(String.format(" %5.2f  ", (double) period / totalDaysForLoc));
 
 						averageRate[i] = averageRate[i] + (double) period;
@@ -351,6 +355,7 @@ public class DetectionRateFormatter extends TextFormatter
 	public String printDetectionRateLocationMonthSummary()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
 
 		toReturn.append("DETECTION RATE SUMMARY FOR EACH LOCATION BY MONTH\n");
 		toReturn.append("  One record of each species per location per PERIOD\n");
@@ -411,7 +416,7 @@ public class DetectionRateFormatter extends TextFormatter
 			for (Species species : analysis.getAllImageSpecies())
 			{
 				for (Integer year : analysis.getAllImageYears())
-					periodTotal = periodTotal + analysis.periodForImageList(new ImageQuery().speciesOnly(species).yearOnly(year).query(byLocation));
+					periodTotal = periodTotal + cube.period(species, location, year, null);
 			}
 
 			totalPics = totalPics + periodTotal;
@@ -423,7 +428,7 @@ public class DetectionRateFormatter extends TextFormatter
 				Integer period = 0;
 				for (Species species : analysis.getAllImageSpecies())
 					for (Integer year : analysis.getAllImageYears())
-						period = period + analysis.periodForImageList(new ImageQuery().monthOnly(i).speciesOnly(species).yearOnly(year).query(byLocation));
+						period = period + cube.period(species, location, year, i);
 				toReturn.append(String.format(" %5.2f  ", (double) period / totalDaysLoc));
 
 				averageRate[i] = averageRate[i] + (double) period;
@@ -456,10 +461,10 @@ public class DetectionRateFormatter extends TextFormatter
 	 */
 	public String printDetectionRateTrend()
 	{
-		String toReturn = "";
+		StringBuilder toReturn = new StringBuilder();
 
-		toReturn = toReturn + "MONTHLY DETECTION RATE TREND\n";
-		toReturn = toReturn + "   Use independent records from only those locations that ever recorded species\n";
+		toReturn.append("MONTHLY DETECTION RATE TREND\n");
+		toReturn.append("   Use independent records from only those locations that ever recorded species\n");
 
 		//		for (Integer year : analysis.getAllImageYears())
 		//		{
@@ -488,8 +493,8 @@ public class DetectionRateFormatter extends TextFormatter
 		//			}
 		//		}
 
-		toReturn = toReturn + "No idea what these numbers are\n\n";
+		toReturn.append("No idea what these numbers are\n\n");
 
-		return toReturn;
+		return toReturn.toString();
 	}
 }
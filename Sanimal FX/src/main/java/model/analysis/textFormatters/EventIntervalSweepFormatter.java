@@ -0,0 +1,115 @@
+package model.analysis.textFormatters;
+
+import model.analysis.AnalysisCube;
+import model.analysis.DataAnalyzer;
+import model.analysis.EventIndex;
+import model.analysis.EventIntervalSweep;
+import model.analysis.SanimalAnalysisUtils;
+import model.location.Location;
+import model.species.Species;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The text formatter for how sensitive event counts, detection rates and activity are to the event interval
+ */
+public class EventIntervalSweepFormatter extends TextFormatter
+{
+	/**
+	 * The sweep only reads the analysis' columns, so it needs no image entries
+	 *
+	 * @param analysis The analysis to sweep
+	 */
+	public EventIntervalSweepFormatter(DataAnalyzer analysis)
+	{
+		super(Collections.emptyList(), analysis);
+	}
+
+	/**
+	 * Sweeps every species over a range of event intervals and prints one CSV table with a row per interval. For each species the table has
+	 * the number of independent events (one record of each species per location per event), the detection rate (events per 100 camera
+	 * trap days), the pictures per event and the hour of the day the most events start in. The sweep is computed in one pass over each
+	 * species' pictures at each location, so it does not need the analysis to be rerun for every interval. Numbers always use a '.' decimal
+	 * point so the commas stay column separators in every locale
+	 *
+	 * @param minInterval The smallest event interval in minutes
+	 * @param maxInterval The largest event interval in minutes
+	 * @return Returns a string representing the data in a CSV form
+	 */
+	public String printEventIntervalSweep(int minInterval, int maxInterval)
+	{
+		StringBuilder toReturn = new StringBuilder();
+		EventIndex events = analysis.getEvents();
+		AnalysisCube cube = analysis.getCube();
+		List<Species> allSpecies = analysis.getAllImageSpecies();
+		List<Location> allLocations = analysis.getAllImageLocations();
+
+		// Camera trap days are the days between the first and last picture at each location, which doesn't depend on the interval
+		long trapDays = 0;
+		for (Location location : allLocations)
+		{
+			int firstRow = cube.firstRow(null, location, null, null);
+			int lastRow = cube.lastRow(null, location, null, null);
+			if (firstRow != -1)
+				trapDays = trapDays + SanimalAnalysisUtils.daysBetween(analysis.getDateTaken(firstRow), analysis.getDateTaken(lastRow)) + 1;
+		}
+
+		// Sweep each species at each location it was seen at once, most species are only seen at a few locations so the rest stay null
+		EventIntervalSweep[][] sweeps = new EventIntervalSweep[allSpecies.size()][allLocations.size()];
+		for (int i = 0; i < allSpecies.size(); i++)
+			for (int j = 0; j < allLocations.size(); j++)
+				if (cube.imageCount(allSpecies.get(i), allLocations.get(j), null, null) > 0)
+					sweeps[i][j] = events.sweep(allSpecies.get(i), allLocations.get(j), minInterval, maxInterval);
+
+		toReturn.append("Interval (min)");
+		for (Species species : allSpecies)
+		{
+			String name = species.getName();
+			toReturn.append(",").append(name).append(" Events");
+			toReturn.append(",").append(name).append(" Rate");
+			toReturn.append(",").append(name).append(" Pics/Event");
+			toReturn.append(",").append(name).append(" Peak Hour");
+		}
+		toReturn.append(",All Events,All Rate\n");
+
+		for (int interval = minInterval; interval <= maxInterval; interval++)
+		{
+			toReturn.append(interval);
+			int totalEvents = 0;
+			for (int i = 0; i < allSpecies.size(); i++)
+			{
+				// Add up the species' events and pictures over every location
+				int speciesEvents = 0;
+				int speciesPics = 0;
+				int[] startsByHour = new int[24];
+				for (EventIntervalSweep sweep : sweeps[i])
+				{
+					if (sweep == null)
+						continue;
+					speciesEvents = speciesEvents + sweep.getEventCount(interval);
+					speciesPics = speciesPics + sweep.getImageCount();
+					for (int hour = 0; hour < 24; hour++)
+						startsByHour[hour] = startsByHour[hour] + sweep.getEventStarts(interval, hour);
+				}
+				totalEvents = totalEvents + speciesEvents;
+
+				int peakHour = 0;
+				for (int hour = 1; hour < 24; hour++)
+					if (startsByHour[hour] > startsByHour[peakHour])
+						peakHour = hour;
+
+				toReturn.append(",").append(speciesEvents);
+				toReturn.append(",").append(String.format(Locale.ROOT, "%.4f", trapDays == 0 ? 0.0 : speciesEvents * 100.0 / trapDays));
+				toReturn.append(",").append(String.format(Locale.ROOT, "%.4f", speciesEvents == 0 ? 0.0 : (double) speciesPics / speciesEvents));
+				toReturn.append(",").append(speciesEvents == 0 ? "" : String.format(Locale.ROOT, "%02d:00", peakHour));
+			}
+			toReturn.append(",").append(totalEvents);
+			toReturn.append(",").append(String.format(Locale.ROOT, "%.4f", trapDays == 0 ? 0.0 : totalEvents * 100.0 / trapDays));
+			toReturn.append("\n");
+		}
+
+		return toReturn.toString();
+	}
+}
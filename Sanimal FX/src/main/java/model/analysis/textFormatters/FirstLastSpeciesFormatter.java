@@ -34,17 +34,17 @@ public class FirstLastSpeciesFormatter extends TextFormatter
 	 */
 	public String printDaysInCameraTrap()
 	{
-		String toReturn = "";
+		StringBuilder toReturn = new StringBuilder();
 
-		LocalDateTime firstImageDate = analysis.getImagesSortedByDate().get(0).getDateTaken();
-		LocalDateTime lastImageDate = analysis.getImagesSortedByDate().get(analysis.getImagesSortedByDate().size() - 1).getDateTaken();
+		LocalDateTime firstImageDate = analysis.getDateTaken(0);
+		LocalDateTime lastImageDate = analysis.getDateTaken(analysis.getColumns().size() - 1);
 
-		toReturn = toReturn + "NUMBER OF DAYS IN CAMERA TRAP PROGRAM = " + (SanimalAnalysisUtils.daysBetween(firstImageDate, lastImageDate) + 1) + "\n";
-		toReturn = toReturn + "First picture: Year = " + firstImageDate.getYear() + " Month = " + (firstImageDate.getMonthValue() + 1) + " Day = " + firstImageDate.getDayOfMonth() + "\n";
-		toReturn = toReturn + "Last picture: Year = " + firstImageDate.getYear() + " Month = " + (firstImageDate.getMonthValue() + 1) + " Day = " + firstImageDate.getDayOfMonth() + "\n";
-		toReturn = toReturn + "\n";
+		toReturn.append("NUMBER OF DAYS IN CAMERA TRAP PROGRAM = " + (SanimalAnalysisUtils.daysBetween(firstImageDate, lastImageDate) + 1) + "\n");
+		toReturn.append("First picture: Year = " + firstImageDate.getYear() + " Month = " + (firstImageDate.getMonthValue() + 1) + " Day = " + firstImageDate.getDayOfMonth() + "\n");
+		toReturn.append("Last picture: Year = " + firstImageDate.getYear() + " Month = " + (firstImageDate.getMonthValue() + 1) + " Day = " + firstImageDate.getDayOfMonth() + "\n");
+		toReturn.append("\n");
 
-		return toReturn;
+		return toReturn.toString();
 	}
 
 	/**
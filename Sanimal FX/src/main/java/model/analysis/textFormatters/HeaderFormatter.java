@@ -75,10 +75,10 @@ public class HeaderFormatter extends TextFormatter
 	 */
 	public String printImageAnalysisHeader()
 	{
-		String toReturn = "";
+		StringBuilder toReturn = new StringBuilder();
 
-		toReturn = toReturn + "FOR ALL SPECIES AT ALL LOCATIONS\n";
-		toReturn = toReturn + "Number of pictures processed = " + images.size() + "\n";
+		toReturn.append("FOR ALL SPECIES AT ALL LOCATIONS\n");
+		toReturn.append("Number of pictures processed = " + images.size() + "\n");
 
 		Integer totalActivity = 0;
 		for (Species species : analysis.getAllImageSpecies())
@@ -91,24 +91,18 @@ public class HeaderFormatter extends TextFormatter
 			}
 		}
 
-		toReturn = toReturn + "Number of pictures used in activity calculation = " + totalActivity + "\n";
+		toReturn.append("Number of pictures used in activity calculation = " + totalActivity + "\n");
 
 		Integer totalPeriod = 0;
 		for (Species species : analysis.getAllImageSpecies())
-		{
-			List<ImageEntry> withSpecies = new ImageQuery().speciesOnly(species).query(analysis.getImagesSortedByDate());
 			for (Location location : analysis.getAllImageLocations())
-			{
-				List<ImageEntry> withSpeciesLoc = new ImageQuery().locationOnly(location).query(withSpecies);
-				totalPeriod = totalPeriod + analysis.periodForImageList(withSpeciesLoc);
-			}
-		}
+				totalPeriod = totalPeriod + analysis.getEvents().getEvents(species, location).size();
 
-		toReturn = toReturn + "Number of independent pictures used in analysis = " + totalPeriod + "\n";
+		toReturn.append("Number of independent pictures used in analysis = " + totalPeriod + "\n");
 
-		toReturn = toReturn + "Number of sequential pictures of same species at same location within a PERIOD = " + (images.size() - totalPeriod) + "\n";
-		toReturn = toReturn + "\n";
+		toReturn.append("Number of sequential pictures of same species at same location within a PERIOD = " + (images.size() - totalPeriod) + "\n");
+		toReturn.append("\n");
 
-		return toReturn;
+		return toReturn.toString();
 	}
 }
@@ -53,7 +53,7 @@ public class LocationStatFormatter extends TextFormatter
 			for (Location location : analysis.getAllImageLocations())
 			{
 				Integer totalPeriod = analysis.periodForImageList(new ImageQuery().locationOnly(location).anyValidSpecies().query(analysis.getImagesSortedByDate()));
-				Integer period = analysis.periodForImageList(new ImageQuery().locationOnly(location).speciesOnly(species).query(analysis.getImagesSortedByDate()));
+				Integer period = analysis.getEvents().getEvents(species, location).size();
 				toReturn.append(String.format("%5d %7.2f                   ", period, (period / (double) totalPeriod) * 100));
 			}
 			toReturn.append("\n");
@@ -62,7 +62,7 @@ public class LocationStatFormatter extends TextFormatter
 		toReturn.append("Total pictures            ");
 
 		for (Location location : analysis.getAllImageLocations())
-			toReturn.append(String.format("%5d  100.00                   ", analysis.periodForImageList(new ImageQuery().locationOnly(location).query(analysis.getImagesSortedByDate()))));
+			toReturn.append(String.format("%5d  100.00                   ", analysis.getEvents().getEvents(null, location).size()));
 
 		toReturn.append("\n\n");
 
@@ -429,13 +429,13 @@ public class LocationStatFormatter extends TextFormatter
 	 */
 	public String printAreaCoveredByTraps()
 	{
-		String toReturn = "";
+		StringBuilder toReturn = new StringBuilder();
 
-		toReturn = toReturn + "AREA COVERED BY CAMERA TRAPS\n";
-		toReturn = toReturn + "  List of locations forming convex polygon\n";
-		toReturn = toReturn + "No idea what these numbers are\n\n";
+		toReturn.append("AREA COVERED BY CAMERA TRAPS\n");
+		toReturn.append("  List of locations forming convex polygon\n");
+		toReturn.append("No idea what these numbers are\n\n");
 
-		return toReturn;
+		return toReturn.toString();
 	}
 
 	/**
@@ -451,18 +451,18 @@ public class LocationStatFormatter extends TextFormatter
 	 */
 	public String printLocSpeciesFrequencySimiliarity()
 	{
-		String toReturn = "";
-
-		toReturn = toReturn + "LOCATION SPECIES FREQUENCY SIMILARITY (LOWER IS MORE SIMILAR)\n";
-		toReturn = toReturn + "   One picture of each species per camera per PERIOD\n";
-		toReturn = toReturn + "   Square root of sums of squared difference in frequency\n\n";
-		toReturn = toReturn + "  TOP 10 LOCATION PAIRS MOST SIMILAR IN SPECIES FREQUENCY\n";
-		toReturn = toReturn + "No idea what these numbers are\n\n";
-		toReturn = toReturn + "  TOP 10 LOCATION PAIRS MOST DIFFERENT IN SPECIES FREQUENCY\n";
-		toReturn = toReturn + "No idea what these numbers are\n\n";
+		StringBuilder toReturn = new StringBuilder();
+
+		toReturn.append("LOCATION SPECIES FREQUENCY SIMILARITY (LOWER IS MORE SIMILAR)\n");
+		toReturn.append("   One picture of each species per camera per PERIOD\n");
+		toReturn.append("   Square root of sums of squared difference in frequency\n\n");
+		toReturn.append("  TOP 10 LOCATION PAIRS MOST SIMILAR IN SPECIES FREQUENCY\n");
+		toReturn.append("No idea what these numbers are\n\n");
+		toReturn.append("  TOP 10 LOCATION PAIRS MOST DIFFERENT IN SPECIES FREQUENCY\n");
+		toReturn.append("No idea what these numbers are\n\n");
 		//      ???
 
-		return toReturn;
+		return toReturn.toString();
 	}
 
 	/**
@@ -479,18 +479,18 @@ public class LocationStatFormatter extends TextFormatter
 	 */
 	public String printLocSpeciesCompositionSimiliarity()
 	{
-		String toReturn = "";
-
-		toReturn = toReturn + "LOCATION-SPECIES COMPOSITION SIMILARITY (Jaccard Similarity Index)\n";
-		toReturn = toReturn + "  Is species present at this location? yes=1, no=0\n";
-		toReturn = toReturn + "  1.00 means locations are identical; 0.00 means locations have no species in common\n";
-		toReturn = toReturn + "  Location, location, JSI, number of species at each location, and number of species in common\n\n";
-		toReturn = toReturn + "  TOP 10 LOCATION PAIRS MOST SIMILAR IN SPECIES COMPOSITION\n";
-		toReturn = toReturn + "No idea what these numbers are\n\n";
-		toReturn = toReturn + "  TOP 10 LOCATION PAIRS MOST DIFFERENT IN SPECIES COMPOSITION\n";
-		toReturn = toReturn + "No idea what these numbers are\n\n";
+		StringBuilder toReturn = new StringBuilder();
+
+		toReturn.append("LOCATION-SPECIES COMPOSITION SIMILARITY (Jaccard Similarity Index)\n");
+		toReturn.append("  Is species present at this location? yes=1, no=0\n");
+		toReturn.append("  1.00 means locations are identical; 0.00 means locations have no species in common\n");
+		toReturn.append("  Location, location, JSI, number of species at each location, and number of species in common\n\n");
+		toReturn.append("  TOP 10 LOCATION PAIRS MOST SIMILAR IN SPECIES COMPOSITION\n");
+		toReturn.append("No idea what these numbers are\n\n");
+		toReturn.append("  TOP 10 LOCATION PAIRS MOST DIFFERENT IN SPECIES COMPOSITION\n");
+		toReturn.append("No idea what these numbers are\n\n");
 		//      ???
 
-		return toReturn;
+		return toReturn.toString();
 	}
 }
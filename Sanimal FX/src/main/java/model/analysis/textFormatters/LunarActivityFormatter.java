@@ -1,10 +1,12 @@
 package model.analysis.textFormatters;
 
 import model.analysis.DataAnalyzer;
+import model.analysis.ImageColumns;
 import model.analysis.ImageQuery;
 import model.analysis.LunarActivityEntry;
 import model.image.ImageEntry;
 import model.species.Species;
+import org.apache.commons.lang3.StringUtils;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -16,6 +18,9 @@ import java.util.List;
  */
 public class LunarActivityFormatter extends TextFormatter
 {
+	// The number of bins the illumination table splits 0% to 100% into
+	private static final int ILLUMINATION_BINS = 10;
+
 	private List<LunarActivityEntry> lunarActivities = null;
 
 	public LunarActivityFormatter(List<ImageEntry> images, DataAnalyzer analysis)
@@ -43,8 +48,8 @@ public class LunarActivityFormatter extends TextFormatter
 		toReturn.append("  New and full moon +/- 5 days activity patterns\n");
 		toReturn.append("  Difference (large is greater difference)\n");
 
-		List<ImageEntry> imagesFull = new ImageQuery().fullMoonOnly(analysis.getFullMoons()).query(images);
-		List<ImageEntry> imagesNew = new ImageQuery().newMoonOnly(analysis.getNewMoons()).query(images);
+		List<ImageEntry> imagesFull = analysis.getLunations() == null ? new ArrayList<>() : new ImageQuery().fullMoonOnly(analysis.getLunations()).query(images);
+		List<ImageEntry> imagesNew = analysis.getLunations() == null ? new ArrayList<>() : new ImageQuery().newMoonOnly(analysis.getLunations()).query(images);
 
 		for (Species species : analysis.getAllImageSpecies())
 		{
@@ -135,13 +140,96 @@ public class LunarActivityFormatter extends TextFormatter
 		return toReturn.toString();
 	}
 
+	/**
+	 * For all species the number of pictures taken at each amount of moon light and each day of the lunar month is given. Unlike the new
+	 * and full moon activity patterns every picture is counted, binned by the fraction of the moon's disk that was lit (in steps of 10%)
+	 * and by the whole days since the last new moon. Both tables are filled in one pass over the pictures
+	 *
+	 * @return Returns a string representing the data in a clean form
+	 */
+	public String printLunarIlluminationActivity()
+	{
+		StringBuilder toReturn = new StringBuilder();
+		ImageColumns columns = analysis.getColumns();
+		List<Species> allSpecies = analysis.getAllImageSpecies();
+
+		// Species id in the columns -> index in the list of species
+		int[] speciesIndex = new int[columns.getSpeciesCount()];
+		for (int id = 0; id < columns.getSpeciesCount(); id++)
+			speciesIndex[id] = allSpecies.indexOf(columns.getSpecies(id));
+
+		// Species -> bin -> number of pictures, the last species index is every species
+		int[][] byIllumination = new int[allSpecies.size() + 1][ILLUMINATION_BINS];
+		int[][] byDay = new int[allSpecies.size() + 1][ImageColumns.LUNAR_DAY_BINS];
+		for (int row = 0; row < columns.size(); row++)
+		{
+			int illuminationBin = columns.getMoonIlluminationBin(row, ILLUMINATION_BINS);
+			int dayBin = columns.getDaysSinceNewMoonBin(row);
+			for (int tag = columns.getFirstTag(row); tag < columns.getFirstTag(row + 1); tag++)
+			{
+				int index = speciesIndex[columns.getTagSpeciesId(tag)];
+				byIllumination[index][illuminationBin]++;
+				byDay[index][dayBin]++;
+			}
+			byIllumination[allSpecies.size()][illuminationBin]++;
+			byDay[allSpecies.size()][dayBin]++;
+		}
+
+		toReturn.append("LUNAR ILLUMINATION ACTIVITY\n");
+		toReturn.append("  Number of pictures of each species by the percent of the moon lit when the picture was taken\n");
+		this.appendSpeciesHeader(toReturn, "Illumination", allSpecies);
+		for (int bin = 0; bin < ILLUMINATION_BINS; bin++)
+			this.appendBinRow(toReturn, String.format("%3d%%-%3d%%", bin * 100 / ILLUMINATION_BINS, (bin + 1) * 100 / ILLUMINATION_BINS), byIllumination, bin);
+		toReturn.append("\n");
+
+		toReturn.append("LUNAR DAY ACTIVITY\n");
+		toReturn.append("  Number of pictures of each species by the days since the last new moon when the picture was taken\n");
+		this.appendSpeciesHeader(toReturn, "Day", allSpecies);
+		for (int bin = 0; bin < ImageColumns.LUNAR_DAY_BINS; bin++)
+			this.appendBinRow(toReturn, String.format("%2d", bin), byDay, bin);
+		toReturn.append("\n");
+
+		return toReturn.toString();
+	}
+
+	/**
+	 * Appends the header of a lunar bin table, one column per species plus a total
+	 *
+	 * @param toReturn The string builder to append to
+	 * @param binTitle The title of the bin column
+	 * @param allSpecies Every species in the analysis
+	 */
+	private void appendSpeciesHeader(StringBuilder toReturn, String binTitle, List<Species> allSpecies)
+	{
+		toReturn.append(String.format("%-13s", binTitle));
+		for (Species species : allSpecies)
+			toReturn.append(String.format("%5s ", StringUtils.left(species.getName(), 5)));
+		toReturn.append("Total\n");
+	}
+
+	/**
+	 * Appends one row of a lunar bin table
+	 *
+	 * @param toReturn The string builder to append to
+	 * @param binLabel The label of the bin
+	 * @param counts Species -> bin -> number of pictures, the last species index is the total
+	 * @param bin The bin to append
+	 */
+	private void appendBinRow(StringBuilder toReturn, String binLabel, int[][] counts, int bin)
+	{
+		toReturn.append(String.format("%-13s", binLabel));
+		for (int index = 0; index < counts.length - 1; index++)
+			toReturn.append(String.format("%5d ", counts[index][bin]));
+		toReturn.append(String.format("%5d\n", counts[counts.length - 1][bin]));
+	}
+
 	// Algorithm copied from "public String printLunarActivity()"
 	private void createLunarActivityTable()
 	{
 		lunarActivities = new ArrayList<LunarActivityEntry>();
 
-		List<ImageEntry> imagesFull = new ImageQuery().fullMoonOnly(analysis.getFullMoons()).query(images);
-		List<ImageEntry> imagesNew = new ImageQuery().newMoonOnly(analysis.getNewMoons()).query(images);
+		List<ImageEntry> imagesFull = analysis.getLunations() == null ? new ArrayList<>() : new ImageQuery().fullMoonOnly(analysis.getLunations()).query(images);
+		List<ImageEntry> imagesNew = analysis.getLunations() == null ? new ArrayList<>() : new ImageQuery().newMoonOnly(analysis.getLunations()).query(images);
 
 		for (Species species : analysis.getAllImageSpecies())
 		{
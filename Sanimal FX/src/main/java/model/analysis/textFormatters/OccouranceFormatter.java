@@ -278,13 +278,13 @@ public class OccouranceFormatter extends TextFormatter
 	 */
 	public String printCHISqAnalysisOfPairedSpecieFreq()
 	{
-		String toReturn = "";
+		StringBuilder toReturn = new StringBuilder();
 
-		toReturn = toReturn + "CHI-SQUARE ANALYSIS OF PAIRED SITES SPECIES FREQUENCIES\n";
-		toReturn = toReturn + "  H0: Species frequencies are independent of site\n";
-		toReturn = toReturn + "  Reject null hypothesis = R, Accept null hypothesis = -\n";
-		toReturn = toReturn + "Sites                      \n";
-		toReturn = toReturn + "No idea what these numbers are\n\n";
+		toReturn.append("CHI-SQUARE ANALYSIS OF PAIRED SITES SPECIES FREQUENCIES\n");
+		toReturn.append("  H0: Species frequencies are independent of site\n");
+		toReturn.append("  Reject null hypothesis = R, Accept null hypothesis = -\n");
+		toReturn.append("Sites                      \n");
+		toReturn.append("No idea what these numbers are\n\n");
 
 		//		for (Location location : analysis.getAllImageLocations())
 		//			toReturn = toReturn + String.format("%-8s", StringUtils.left(location.getName(), 8));
@@ -297,6 +297,6 @@ public class OccouranceFormatter extends TextFormatter
 		//		}
 		// ???
 
-		return toReturn;
+		return toReturn.toString();
 	}
 }
@@ -44,13 +44,11 @@ public class RichnessFormatter extends TextFormatter
 		for (Location location : analysis.getAllImageLocations())
 		{
 			toReturn.append(String.format("%-28s       ", location.getName()));
-			List<ImageEntry> imagesAtLoc = new ImageQuery().locationOnly(location).query(analysis.getImagesSortedByDate());
 
 			Integer horizontalRichness = 0;
 			for (Species species : analysis.getAllImageSpecies())
 			{
-				List<ImageEntry> imagesAtLocWithSpecies = new ImageQuery().speciesOnly(species).query(imagesAtLoc);
-				Integer period = analysis.periodForImageList(imagesAtLocWithSpecies);
+				Integer period = analysis.getEvents().getEvents(species, location).size();
 				horizontalRichness = horizontalRichness + (period == 0 ? 0 : 1);
 				toReturn.append(String.format("%5d  ", period));
 			}
@@ -1,7 +1,7 @@
 package model.analysis.textFormatters;
 
+import model.analysis.AnalysisCube;
 import model.analysis.DataAnalyzer;
-import model.analysis.ImageQuery;
 import model.image.ImageEntry;
 import model.location.Location;
 import model.species.Species;
@@ -36,6 +36,7 @@ public class TotalDayFormatter extends TextFormatter
 	public String printPicturesByMonthYearLoc()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
 
 		toReturn.append("PICTURES FOR EACH LOCATION BY MONTH AND YEAR\n");
 		toReturn.append("  Number of independent pictures per location\n");
@@ -46,15 +47,13 @@ public class TotalDayFormatter extends TextFormatter
 
 			for (Location location : analysis.getAllImageLocations())
 			{
-				List<ImageEntry> imagesByLocationAndYear = new ImageQuery().yearOnly(year).locationOnly(location).query(analysis.getImagesSortedByDate());
-				if (!imagesByLocationAndYear.isEmpty())
+				if (cube.imageCount(null, location, year, null) != 0)
 				{
 					toReturn.append(String.format("%-28s", location.getName()));
 					Integer total = 0;
 					for (int i = 0; i < 12; i++)
 					{
-						List<ImageEntry> imagesByLocationYearAndMonth = new ImageQuery().monthOnly(i).query(imagesByLocationAndYear);
-						Integer period = analysis.periodForImageList(imagesByLocationYearAndMonth);
+						Integer period = cube.period(null, location, year, i);
 						total = total + period;
 						toReturn.append(String.format("%5d ", period));
 					}
@@ -71,8 +70,7 @@ public class TotalDayFormatter extends TextFormatter
 				Integer totalPeriod = 0;
 				for (Location location : analysis.getAllImageLocations())
 				{
-					List<ImageEntry> imagesByLocationYearAndMonth = new ImageQuery().locationOnly(location).monthOnly(i).yearOnly(year).query(analysis.getImagesSortedByDate());
-					Integer period = analysis.periodForImageList(imagesByLocationYearAndMonth);
+					Integer period = cube.period(null, location, year, i);
 					totalPic = totalPic + period;
 					totalPeriod = totalPeriod + period;
 					totalPics[i] = totalPics[i] + period;
@@ -84,38 +82,9 @@ public class TotalDayFormatter extends TextFormatter
 
 			toReturn.append("Total days                     ");
 
-			List<ImageEntry> yearsPics = new ImageQuery().yearOnly(year).query(analysis.getImagesSortedByDate());
-
 			int[] daysUsed = new int[12];
 			for (Location location : analysis.getAllImageLocations())
-			{
-				List<ImageEntry> yearLocPics = new ImageQuery().locationOnly(location).query(yearsPics);
-				if (!yearLocPics.isEmpty())
-				{
-					ImageEntry first = yearLocPics.get(0);
-					ImageEntry last = yearLocPics.get(yearLocPics.size() - 1);
-					LocalDateTime firstCal = first.getDateTaken();
-					LocalDateTime lastCal = last.getDateTaken();
-					Integer firstDaysInMonth = 31;
-					Integer firstDay = firstCal.getDayOfMonth() - 1;
-					Integer lastDay = lastCal.getDayOfMonth() - 1;
-					Integer firstMonth = firstCal.getMonthValue() - 1;
-					Integer lastMonth = lastCal.getMonthValue() - 1;
-					if (firstMonth == lastMonth)
-						daysUsed[firstMonth] = daysUsed[firstMonth] + (lastDay - firstDay + 1);
-					else
-					{
-						daysUsed[firstMonth] = daysUsed[firstMonth] + (firstDaysInMonth - (firstDay - 1));
-						firstMonth++;
-						while (firstMonth < lastMonth)
-						{
-							daysUsed[firstMonth] = daysUsed[firstMonth] + 31;
-							firstMonth++;
-						}
-						daysUsed[lastMonth] = daysUsed[lastMonth] + lastDay;
-					}
-				}
-			}
+				this.addDaysUsed(daysUsed, location, year);
 			Integer totalDays = 0;
 			for (Integer month : daysUsed)
 			{
@@ -152,6 +121,7 @@ public class TotalDayFormatter extends TextFormatter
 	public String printPicturesByMonthLoc()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
 
 		toReturn.append("PICTURES FOR EACH LOCATION BY MONTH AND YEAR SUMMARY\n");
 		toReturn.append("  Number of independent pictures per location\n");
@@ -165,13 +135,10 @@ public class TotalDayFormatter extends TextFormatter
 		{
 			toReturn.append(String.format("%-28s", location.getName()));
 
-			List<ImageEntry> imagesAtLoc = new ImageQuery().locationOnly(location).query(analysis.getImagesSortedByDate());
-
 			Integer picsInYear = 0;
 			for (int i = 0; i < 12; i++)
 			{
-				List<ImageEntry> imagesAtLocWithMonth = new ImageQuery().monthOnly(i).query(imagesAtLoc);
-				Integer period = analysis.periodForImageList(imagesAtLocWithMonth);
+				Integer period = cube.period(null, location, null, i);
 				picsInYear = picsInYear + period;
 				toReturn.append(String.format("%5d ", period));
 			}
@@ -190,8 +157,7 @@ public class TotalDayFormatter extends TextFormatter
 			Integer totalPeriod = 0;
 			for (Location location : analysis.getAllImageLocations())
 			{
-				List<ImageEntry> imagesByMonthAndLoc = new ImageQuery().monthOnly(i).locationOnly(location).query(analysis.getImagesSortedByDate());
-				Integer period = analysis.periodForImageList(imagesByMonthAndLoc);
+				Integer period = cube.period(null, location, null, i);
 				totalPic = totalPic + period;
 				totalPeriod = totalPeriod + period;
 				totalPics[i] = totalPics[i] + period;
@@ -206,36 +172,8 @@ public class TotalDayFormatter extends TextFormatter
 		int[] daysUsed = new int[12];
 		for (Integer year : analysis.getAllImageYears())
 		{
-			List<ImageEntry> yearsPics = new ImageQuery().yearOnly(year).query(analysis.getImagesSortedByDate());
 			for (Location location : analysis.getAllImageLocations())
-			{
-				List<ImageEntry> yearLocPics = new ImageQuery().locationOnly(location).query(yearsPics);
-				if (!yearLocPics.isEmpty())
-				{
-					ImageEntry first = yearLocPics.get(0);
-					ImageEntry last = yearLocPics.get(yearLocPics.size() - 1);
-					LocalDateTime firstCal = first.getDateTaken();
-					LocalDateTime lastCal = last.getDateTaken();
-					Integer firstDaysInMonth = 31;
-					Integer firstDay = firstCal.getDayOfMonth() - 1;
-					Integer lastDay = lastCal.getDayOfMonth() - 1;
-					Integer firstMonth = firstCal.getMonthValue() - 1;
-					Integer lastMonth = lastCal.getMonthValue() - 1;
-					if (firstMonth == lastMonth)
-						daysUsed[firstMonth] = daysUsed[firstMonth] + (lastDay - firstDay + 1);
-					else
-					{
-						daysUsed[firstMonth] = daysUsed[firstMonth] + (firstDaysInMonth - (firstDay - 1));
-						firstMonth++;
-						while (firstMonth < lastMonth)
-						{
-							daysUsed[firstMonth] = daysUsed[firstMonth] + 31;
-							firstMonth++;
-						}
-						daysUsed[lastMonth] = daysUsed[lastMonth] + lastDay;
-					}
-				}
-			}
+				this.addDaysUsed(daysUsed, location, year);
 		}
 		Integer totalDays = 0;
 		for (Integer month : daysUsed)
@@ -273,6 +211,7 @@ public class TotalDayFormatter extends TextFormatter
 	public String printPicturesByMonthYearSpeciesRichness()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
 
 		toReturn.append("SPECIES AND SPECIES RICHNESS BY YEAR AND MONTH\n");
 		toReturn.append("  One record of each species per location per PERIOD\n");
@@ -285,15 +224,13 @@ public class TotalDayFormatter extends TextFormatter
 			int[] totalRichness = new int[12];
 			for (Species species : analysis.getAllImageSpecies())
 			{
-				List<ImageEntry> imagesBySpeciesAndYear = new ImageQuery().yearOnly(year).speciesOnly(species).query(analysis.getImagesSortedByDate());
-				if (!imagesBySpeciesAndYear.isEmpty())
+				if (cube.imageCount(species, null, year, null) != 0)
 				{
 					toReturn.append(String.format("%-28s", species.getName()));
 					Integer total = 0;
 					for (int i = 0; i < 12; i++)
 					{
-						List<ImageEntry> imagesBySpeciesYearAndMonth = new ImageQuery().monthOnly(i).query(imagesBySpeciesAndYear);
-						Integer period = analysis.periodForImageList(imagesBySpeciesYearAndMonth);
+						Integer period = cube.period(species, null, year, i);
 						total = total + period;
 						toReturn.append(String.format("%5d ", period));
 						totalRichness[i] = totalRichness[i] + (period == 0 ? 0 : 1);
@@ -308,12 +245,10 @@ public class TotalDayFormatter extends TextFormatter
 			int[] totalPics = new int[12];
 			for (int i = 0; i < 12; i++)
 			{
-				List<ImageEntry> imagesByYearAndMonth = new ImageQuery().monthOnly(i).yearOnly(year).query(analysis.getImagesSortedByDate());
 				Integer totalPeriod = 0;
 				for (Location location : analysis.getAllImageLocations())
 				{
-					List<ImageEntry> imagesByYearMonthAndLocation = new ImageQuery().locationOnly(location).query(imagesByYearAndMonth);
-					Integer period = analysis.periodForImageList(imagesByYearMonthAndLocation);
+					Integer period = cube.period(null, location, year, i);
 					totalPic = totalPic + period;
 					totalPeriod = totalPeriod + period;
 					totalPics[i] = totalPics[i] + period;
@@ -324,38 +259,9 @@ public class TotalDayFormatter extends TextFormatter
 			toReturn.append("\n");
 
 			toReturn.append("Total days                     ");
-			List<ImageEntry> yearsPics = new ImageQuery().yearOnly(year).query(analysis.getImagesSortedByDate());
-
 			int[] daysUsed = new int[12];
 			for (Location location : analysis.getAllImageLocations())
-			{
-				List<ImageEntry> yearLocPics = new ImageQuery().locationOnly(location).query(yearsPics);
-				if (!yearLocPics.isEmpty())
-				{
-					ImageEntry first = yearLocPics.get(0);
-					ImageEntry last = yearLocPics.get(yearLocPics.size() - 1);
-					LocalDateTime firstCal = first.getDateTaken();
-					LocalDateTime lastCal = last.getDateTaken();
-					Integer firstDaysInMonth = 31;
-					Integer firstDay = firstCal.getDayOfMonth() - 1;
-					Integer lastDay = lastCal.getDayOfMonth() - 1;
-					Integer firstMonth = firstCal.getMonthValue() - 1;
-					Integer lastMonth = lastCal.getMonthValue() - 1;
-					if (firstMonth == lastMonth)
-						daysUsed[firstMonth] = daysUsed[firstMonth] + (lastDay - firstDay + 1);
-					else
-					{
-						daysUsed[firstMonth] = daysUsed[firstMonth] + (firstDaysInMonth - (firstDay - 1));
-						firstMonth++;
-						while (firstMonth < lastMonth)
-						{
-							daysUsed[firstMonth] = daysUsed[firstMonth] + 31;
-							firstMonth++;
-						}
-						daysUsed[lastMonth] = daysUsed[lastMonth] + lastDay;
-					}
-				}
-			}
+				this.addDaysUsed(daysUsed, location, year);
 			Integer totalDays = 0;
 			for (Integer month : daysUsed)
 			{
@@ -400,6 +306,7 @@ public class TotalDayFormatter extends TextFormatter
 	public String printPicturesByMonthSpeciesRichness()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
 
 		toReturn.append("SPECIES ALL YEARS BY MONTH\n");
 		toReturn.append("  One record of each species per location per PERIOD\n");
@@ -409,12 +316,10 @@ public class TotalDayFormatter extends TextFormatter
 		{
 			toReturn.append(String.format("%-28s", species.getName()));
 
-			List<ImageEntry> imagesBySpecies = new ImageQuery().speciesOnly(species).query(analysis.getImagesSortedByDate());
 			Integer total = 0;
 			for (int i = 0; i < 12; i++)
 			{
-				List<ImageEntry> imagesBySpeciesAndMonth = new ImageQuery().monthOnly(i).query(imagesBySpecies);
-				Integer period = analysis.periodForImageList(imagesBySpeciesAndMonth);
+				Integer period = cube.period(species, null, null, i);
 				total = total + period;
 				toReturn.append(String.format("%5d ", period));
 				totalRichness[i] = totalRichness[i] + (period == 0 ? 0 : 1);
@@ -430,14 +335,12 @@ public class TotalDayFormatter extends TextFormatter
 		int[] totalPics = new int[12];
 		for (int i = 0; i < 12; i++)
 		{
-			List<ImageEntry> imagesByMonth = new ImageQuery().monthOnly(i).query(analysis.getImagesSortedByDate());
 			Integer totalPeriod = 0;
 			for (Location location : analysis.getAllImageLocations())
 			{
 				for (Integer year : analysis.getAllImageYears())
 				{
-					List<ImageEntry> imagesByYearMonthAndLocation = new ImageQuery().yearOnly(year).locationOnly(location).query(imagesByMonth);
-					Integer period = analysis.periodForImageList(imagesByYearMonthAndLocation);
+					Integer period = cube.period(null, location, year, i);
 					totalPic = totalPic + period;
 					totalPeriod = totalPeriod + period;
 					totalPics[i] = totalPics[i] + period;
@@ -453,37 +356,8 @@ public class TotalDayFormatter extends TextFormatter
 		int[] daysUsed = new int[12];
 		for (Integer year : analysis.getAllImageYears())
 		{
-			List<ImageEntry> yearsPics = new ImageQuery().yearOnly(year).query(analysis.getImagesSortedByDate());
 			for (Location location : analysis.getAllImageLocations())
-			{
-				List<ImageEntry> yearLocPics = new ImageQuery().locationOnly(location).query(yearsPics);
-				if (!yearLocPics.isEmpty())
-				{
-
-					ImageEntry first = yearLocPics.get(0);
-					ImageEntry last = yearLocPics.get(yearLocPics.size() - 1);
-					LocalDateTime firstCal = first.getDateTaken();
-					LocalDateTime lastCal = last.getDateTaken();
-					Integer firstDaysInMonth = 31;
-					Integer firstDay = firstCal.getDayOfMonth() - 1;
-					Integer lastDay = lastCal.getDayOfMonth() - 1;
-					Integer firstMonth = firstCal.getMonthValue() - 1;
-					Integer lastMonth = lastCal.getMonthValue() - 1;
-					if (firstMonth == lastMonth)
-						daysUsed[firstMonth] = daysUsed[firstMonth] + (lastDay - firstDay + 1);
-					else
-					{
-						daysUsed[firstMonth] = daysUsed[firstMonth] + (firstDaysInMonth - (firstDay - 1));
-						firstMonth++;
-						while (firstMonth < lastMonth)
-						{
-							daysUsed[firstMonth] = daysUsed[firstMonth] + 31;
-							firstMonth++;
-						}
-						daysUsed[lastMonth] = daysUsed[lastMonth] + lastDay;
-					}
-				}
-			}
+				this.addDaysUsed(daysUsed, location, year);
 		}
 		Integer totalDays = 0;
 		for (Integer month : daysUsed)
@@ -528,6 +402,7 @@ public class TotalDayFormatter extends TextFormatter
 	public String printPicturesByMonthSpeciesLocElevation()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
 
 		toReturn.append("SPECIES BY LOCATION BY YEAR BY MONTH SORTED BY ELEVATION\n");
 		toReturn.append("  One record of each species per location per PERIOD\n");
@@ -538,9 +413,7 @@ public class TotalDayFormatter extends TextFormatter
 
 			for (Integer year : analysis.getAllImageYears())
 			{
-				List<ImageEntry> imagesBySpeciesAndYear = new ImageQuery().speciesOnly(species).yearOnly(year).query(analysis.getImagesSortedByDate());
-
-				if (!imagesBySpeciesAndYear.isEmpty())
+				if (cube.imageCount(species, null, year, null) != 0)
 				{
 					toReturn.append(year).append("\n");
 
@@ -548,15 +421,13 @@ public class TotalDayFormatter extends TextFormatter
 
 					for (Location location : analysis.getAllImageLocations())
 					{
-						List<ImageEntry> imagesBySpeciesLocationAndYear = new ImageQuery().locationOnly(location).query(imagesBySpeciesAndYear);
-						if (!imagesBySpeciesLocationAndYear.isEmpty())
+						if (cube.imageCount(species, location, year, null) != 0)
 						{
 							toReturn.append(String.format("%-28s %6d", location.getName(), location.getElevation().intValue()));
 							Integer total = 0;
 							for (int i = 0; i < 12; i++)
 							{
-								List<ImageEntry> imagesBySpeciesYearLocationAndMonth = new ImageQuery().monthOnly(i).query(imagesBySpeciesLocationAndYear);
-								Integer period = analysis.periodForImageList(imagesBySpeciesYearLocationAndMonth);
+								Integer period = cube.period(species, location, year, i);
 								total = total + period;
 								toReturn.append(String.format("%5d ", period));
 							}
@@ -570,12 +441,10 @@ public class TotalDayFormatter extends TextFormatter
 					int[] totalPics = new int[12];
 					for (int i = 0; i < 12; i++)
 					{
-						List<ImageEntry> imagesByYearSpeciesAndMonth = new ImageQuery().speciesOnly(species).monthOnly(i).yearOnly(year).query(images);
 						Integer totalPeriod = 0;
 						for (Location location : analysis.getAllImageLocations())
 						{
-							List<ImageEntry> imagesByYearSpeciesMonthLocation = new ImageQuery().locationOnly(location).query(imagesByYearSpeciesAndMonth);
-							Integer period = analysis.periodForImageList(imagesByYearSpeciesMonthLocation);
+							Integer period = cube.period(species, location, year, i);
 							totalPic = totalPic + period;
 							totalPeriod = totalPeriod + period;
 							totalPics[i] = totalPics[i] + period;
@@ -588,38 +457,8 @@ public class TotalDayFormatter extends TextFormatter
 					toReturn.append("Total days                            ");
 
 					int[] daysUsed = new int[12];
-					List<ImageEntry> yearsPics = new ImageQuery().yearOnly(year).query(analysis.getImagesSortedByDate());
-
 					for (Location location : analysis.getAllImageLocations())
-					{
-						List<ImageEntry> yearLocPics = new ImageQuery().locationOnly(location).query(yearsPics);
-
-						if (!yearLocPics.isEmpty())
-						{
-							ImageEntry first = yearLocPics.get(0);
-							ImageEntry last = yearLocPics.get(yearLocPics.size() - 1);
-							LocalDateTime firstCal = first.getDateTaken();
-							LocalDateTime lastCal = last.getDateTaken();
-							Integer firstDaysInMonth = 31;
-							Integer firstDay = firstCal.getDayOfMonth() - 1;
-							Integer lastDay = lastCal.getDayOfMonth() - 1;
-							Integer firstMonth = firstCal.getMonthValue() - 1;
-							Integer lastMonth = lastCal.getMonthValue() - 1;
-							if (firstMonth == lastMonth)
-								daysUsed[firstMonth] = daysUsed[firstMonth] + (lastDay - firstDay + 1);
-							else
-							{
-								daysUsed[firstMonth] = daysUsed[firstMonth] + (firstDaysInMonth - (firstDay - 1));
-								firstMonth++;
-								while (firstMonth < lastMonth)
-								{
-									daysUsed[firstMonth] = daysUsed[firstMonth] + 31;
-									firstMonth++;
-								}
-								daysUsed[lastMonth] = daysUsed[lastMonth] + lastDay;
-							}
-						}
-					}
+						this.addDaysUsed(daysUsed, location, year);
 					Integer totalDays = 0;
 					for (Integer month : daysUsed)
 					{
@@ -652,19 +491,16 @@ public class TotalDayFormatter extends TextFormatter
 
 			for (Location location : analysis.getAllImageLocations())
 			{
-				List<ImageEntry> imagesBySpeciesLocation = new ImageQuery().locationOnly(location).speciesOnly(species).query(analysis.getImagesSortedByDate());
-				if (!imagesBySpeciesLocation.isEmpty())
+				if (cube.imageCount(species, location, null, null) != 0)
 				{
 					toReturn.append(String.format("%-28s %6d", location.getName(), location.getElevation().intValue()));
 					Integer total = 0;
 					for (int i = 0; i < 12; i++)
 					{
-						List<ImageEntry> imagesBySpeciesLocationAndMonth = new ImageQuery().monthOnly(i).query(imagesBySpeciesLocation);
 						Integer totalPeriod = 0;
 						for (Integer year : analysis.getAllImageYears())
 						{
-							List<ImageEntry> imagesBySpeciesLocationMonthAndYear = new ImageQuery().yearOnly(year).query(imagesBySpeciesLocationAndMonth);
-							Integer period = analysis.periodForImageList(imagesBySpeciesLocationMonthAndYear);
+							Integer period = cube.period(species, location, year, i);
 							totalPeriod = totalPeriod + period;
 							total = total + period;
 						}
@@ -681,14 +517,12 @@ public class TotalDayFormatter extends TextFormatter
 			int[] totalPics = new int[12];
 			for (int i = 0; i < 12; i++)
 			{
-				List<ImageEntry> imagesByMonthSpecies = new ImageQuery().speciesOnly(species).monthOnly(i).query(analysis.getImagesSortedByDate());
 				Integer totalPeriod = 0;
 				for (Integer year : analysis.getAllImageYears())
 				{
 					for (Location location : analysis.getAllImageLocations())
 					{
-						List<ImageEntry> imagesByYearSpeciesMonthLocation = new ImageQuery().yearOnly(year).locationOnly(location).query(imagesByMonthSpecies);
-						Integer period = analysis.periodForImageList(imagesByYearSpeciesMonthLocation);
+						Integer period = cube.period(species, location, year, i);
 						totalPic = totalPic + period;
 						totalPeriod = totalPeriod + period;
 						totalPics[i] = totalPics[i] + period;
@@ -704,37 +538,8 @@ public class TotalDayFormatter extends TextFormatter
 			int[] daysUsed = new int[12];
 			for (Integer year : analysis.getAllImageYears())
 			{
-				List<ImageEntry> yearsPics = new ImageQuery().yearOnly(year).query(analysis.getImagesSortedByDate());
 				for (Location location : analysis.getAllImageLocations())
-				{
-					List<ImageEntry> yearLocPics = new ImageQuery().locationOnly(location).query(yearsPics);
-
-					if (!yearLocPics.isEmpty())
-					{
-						ImageEntry first = yearLocPics.get(0);
-						ImageEntry last = yearLocPics.get(yearLocPics.size() - 1);
-						LocalDateTime firstCal = first.getDateTaken();
-						LocalDateTime lastCal = last.getDateTaken();
-						Integer firstDaysInMonth = 31;
-						Integer firstDay = firstCal.getDayOfMonth() - 1;
-						Integer lastDay = lastCal.getDayOfMonth() - 1;
-						Integer firstMonth = firstCal.getMonthValue() - 1;
-						Integer lastMonth = lastCal.getMonthValue() - 1;
-						if (firstMonth == lastMonth)
-							daysUsed[firstMonth] = daysUsed[firstMonth] + (lastDay - firstDay + 1);
-						else
-						{
-							daysUsed[firstMonth] = daysUsed[firstMonth] + (firstDaysInMonth - (firstDay - 1));
-							firstMonth++;
-							while (firstMonth < lastMonth)
-							{
-								daysUsed[firstMonth] = daysUsed[firstMonth] + 31;
-								firstMonth++;
-							}
-							daysUsed[lastMonth] = daysUsed[lastMonth] + lastDay;
-						}
-					}
-				}
+					this.addDaysUsed(daysUsed, location, year);
 			}
 			Integer totalDays = 0;
 			for (Integer month : daysUsed)
@@ -772,6 +577,7 @@ public class TotalDayFormatter extends TextFormatter
 	public String printAbundanceByMonthSpeciesLocElevation()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
 
 		toReturn.append("SPECIES ABUNDANCE BY LOCATION BY YEAR BY MONTH SORTED BY ELEVATION\n");
 		toReturn.append("  One record of each species per location per PERIOD\n");
@@ -781,13 +587,9 @@ public class TotalDayFormatter extends TextFormatter
 		{
 			toReturn.append(species.getName()).append("\n");
 
-			List<ImageEntry> withSpecices = new ImageQuery().speciesOnly(species).query(analysis.getImagesSortedByDate());
-
 			for (Integer year : analysis.getAllImageYears())
 			{
-				List<ImageEntry> withSpeciesYear = new ImageQuery().yearOnly(year).query(withSpecices);
-
-				if (!withSpeciesYear.isEmpty())
+				if (cube.imageCount(species, null, year, null) != 0)
 				{
 					toReturn.append(year).append("\n");
 
@@ -795,16 +597,13 @@ public class TotalDayFormatter extends TextFormatter
 
 					for (Location location : analysis.getAllImageLocations())
 					{
-						List<ImageEntry> withSpeciesYearLocation = new ImageQuery().locationOnly(location).query(withSpeciesYear);
-
-						if (!withSpeciesYearLocation.isEmpty())
+						if (cube.imageCount(species, location, year, null) != 0)
 						{
 							toReturn.append(String.format("%-28s %6d", location.getName(), location.getElevation().intValue()));
 							Integer total = 0;
 							for (int i = 0; i < 12; i++)
 							{
-								List<ImageEntry> withSpeciesYearLocationMonth = new ImageQuery().monthOnly(i).query(withSpeciesYearLocation);
-								Integer abundance = analysis.abundanceForImageList(withSpeciesYearLocationMonth, species);
+								Integer abundance = cube.abundance(species, location, year, i);
 								total = total + abundance;
 								toReturn.append(String.format("%5d ", abundance));
 							}
@@ -819,12 +618,10 @@ public class TotalDayFormatter extends TextFormatter
 					int[] totalPics = new int[12];
 					for (int i = 0; i < 12; i++)
 					{
-						List<ImageEntry> withSpeciesYearMonth = new ImageQuery().monthOnly(i).query(withSpeciesYear);
 						Integer totalPeriod = 0;
 						for (Location location : analysis.getAllImageLocations())
 						{
-							List<ImageEntry> withSpeciesYearMonthLocation = new ImageQuery().locationOnly(location).query(withSpeciesYearMonth);
-							Integer period = analysis.periodForImageList(withSpeciesYearMonthLocation);
+							Integer period = cube.period(species, location, year, i);
 							totalPic = totalPic + period;
 							totalPeriod = totalPeriod + period;
 							totalPics[i] = totalPics[i] + period;
@@ -839,12 +636,10 @@ public class TotalDayFormatter extends TextFormatter
 					int[] totalAbundances = new int[12];
 					for (int i = 0; i < 12; i++)
 					{
-						List<ImageEntry> withSpeciesYearMonth = new ImageQuery().monthOnly(i).query(withSpeciesYear);
 						Integer totalAbundance = 0;
 						for (Location location : analysis.getAllImageLocations())
 						{
-							List<ImageEntry> withSpeciesYearMonthLocation = new ImageQuery().locationOnly(location).query(withSpeciesYearMonth);
-							Integer abundance = analysis.abundanceForImageList(withSpeciesYearMonthLocation, species);
+							Integer abundance = cube.abundance(species, location, year, i);
 							totalAbundancePics = totalAbundancePics + abundance;
 							totalAbundance = totalAbundance + abundance;
 						}
@@ -864,38 +659,8 @@ public class TotalDayFormatter extends TextFormatter
 
 					toReturn.append("Total days                            ");
 					int[] daysUsed = new int[12];
-					List<ImageEntry> yearsPics = new ImageQuery().yearOnly(year).query(analysis.getImagesSortedByDate());
-
 					for (Location location : analysis.getAllImageLocations())
-					{
-						List<ImageEntry> yearLocPics = new ImageQuery().locationOnly(location).query(yearsPics);
-
-						if (!yearLocPics.isEmpty())
-						{
-							ImageEntry first = yearLocPics.get(0);
-							ImageEntry last = yearLocPics.get(yearLocPics.size() - 1);
-							LocalDateTime firstCal = first.getDateTaken();
-							LocalDateTime lastCal = last.getDateTaken();
-							Integer firstDaysInMonth = 31;
-							Integer firstDay = firstCal.getDayOfMonth() - 1;
-							Integer lastDay = lastCal.getDayOfMonth() - 1;
-							Integer firstMonth = firstCal.getMonthValue() - 1;
-							Integer lastMonth = lastCal.getMonthValue() - 1;
-							if (firstMonth == lastMonth)
-								daysUsed[firstMonth] = daysUsed[firstMonth] + (lastDay - firstDay + 1);
-							else
-							{
-								daysUsed[firstMonth] = daysUsed[firstMonth] + (firstDaysInMonth - (firstDay - 1));
-								firstMonth++;
-								while (firstMonth < lastMonth)
-								{
-									daysUsed[firstMonth] = daysUsed[firstMonth] + 31;
-									firstMonth++;
-								}
-								daysUsed[lastMonth] = daysUsed[lastMonth] + lastDay;
-							}
-						}
-					}
+						this.addDaysUsed(daysUsed, location, year);
 					Integer totalDays = 0;
 					for (Integer month : daysUsed)
 					{
@@ -926,23 +691,18 @@ public class TotalDayFormatter extends TextFormatter
 
 			toReturn.append("Location                  Elevation  Jan   Feb   Mar   Apr   May   Jun   Jul   Aug   Sep   Oct   Nov   Dec   Total\n");
 
-			List<ImageEntry> withSpecies = new ImageQuery().query(withSpecices);
 			for (Location location : analysis.getAllImageLocations())
 			{
-				List<ImageEntry> withSpeciesLocation = new ImageQuery().locationOnly(location).query(withSpecies);
-
-				if (!withSpeciesLocation.isEmpty())
+				if (cube.imageCount(species, location, null, null) != 0)
 				{
 					toReturn.append(String.format("%-28s %6d", location.getName(), (int) location.getElevation().intValue()));
 					Integer total = 0;
 					for (int i = 0; i < 12; i++)
 					{
-						List<ImageEntry> withSpeciesLocationMonth = new ImageQuery().monthOnly(i).query(withSpeciesLocation);
 						Integer abundance = 0;
 						for (Integer year : analysis.getAllImageYears())
 						{
-							List<ImageEntry> withSpeciesLocationMonthYear = new ImageQuery().yearOnly(year).query(withSpeciesLocationMonth);
-							abundance = abundance + analysis.abundanceForImageList(withSpeciesLocationMonthYear, species);
+							abundance = abundance + cube.abundance(species, location, year, i);
 							total = total + abundance;
 						}
 						toReturn.append(String.format("%5d ", abundance));
@@ -958,8 +718,7 @@ public class TotalDayFormatter extends TextFormatter
 			int[] totalPics = new int[12];
 			for (int i = 0; i < 12; i++)
 			{
-				List<ImageEntry> withSpeciesYearMonth = new ImageQuery().monthOnly(i).query(withSpecices);
-				Integer period = analysis.periodForImageList(withSpeciesYearMonth);
+				Integer period = cube.period(species, null, null, i);
 				totalPic = totalPic + period;
 				totalPics[i] = period;
 				toReturn.append(String.format("%5d ", period));
@@ -972,16 +731,13 @@ public class TotalDayFormatter extends TextFormatter
 			int[] totalAbundances = new int[12];
 			for (int i = 0; i < 12; i++)
 			{
-				List<ImageEntry> withSpeciesMonth = new ImageQuery().monthOnly(i).query(withSpecies);
 				Integer totalAbundance = 0;
 				for (Location location : analysis.getAllImageLocations())
 				{
-					List<ImageEntry> withSpeciesMonthLocation = new ImageQuery().locationOnly(location).query(withSpeciesMonth);
 					Integer abundance = 0;
 					for (Integer year : analysis.getAllImageYears())
 					{
-						List<ImageEntry> withSpeciesMonthLocationYear = new ImageQuery().yearOnly(year).query(withSpeciesMonthLocation);
-						abundance = abundance + analysis.abundanceForImageList(withSpeciesMonthLocationYear, species);
+						abundance = abundance + cube.abundance(species, location, year, i);
 					}
 					totalAbundancePics = totalAbundancePics + abundance;
 					totalAbundance = totalAbundance + abundance;
@@ -1005,37 +761,8 @@ public class TotalDayFormatter extends TextFormatter
 			int[] daysUsed = new int[12];
 			for (Integer year : analysis.getAllImageYears())
 			{
-				List<ImageEntry> yearsPics = new ImageQuery().yearOnly(year).query(analysis.getImagesSortedByDate());
-
 				for (Location location : analysis.getAllImageLocations())
-				{
-					List<ImageEntry> yearLocPics = new ImageQuery().locationOnly(location).query(yearsPics);
-					if (!yearLocPics.isEmpty())
-					{
-						ImageEntry first = yearLocPics.get(0);
-						ImageEntry last = yearLocPics.get(yearLocPics.size() - 1);
-						LocalDateTime firstCal = first.getDateTaken();
-						LocalDateTime lastCal = last.getDateTaken();
-						Integer firstDaysInMonth = 31;
-						Integer firstDay = firstCal.getDayOfMonth() - 1;
-						Integer lastDay = lastCal.getDayOfMonth() - 1;
-						Integer firstMonth = firstCal.getMonthValue() - 1;
-						Integer lastMonth = lastCal.getMonthValue() - 1;
-						if (firstMonth == lastMonth)
-							daysUsed[firstMonth] = daysUsed[firstMonth] + (lastDay - firstDay + 1);
-						else
-						{
-							daysUsed[firstMonth] = daysUsed[firstMonth] + (firstDaysInMonth - (firstDay - 1));
-							firstMonth++;
-							while (firstMonth < lastMonth)
-							{
-								daysUsed[firstMonth] = daysUsed[firstMonth] + 31;
-								firstMonth++;
-							}
-							daysUsed[lastMonth] = daysUsed[lastMonth] + lastDay;
-						}
-					}
-				}
+					this.addDaysUsed(daysUsed, location, year);
 			}
 			Integer totalDays = 0;
 			for (Integer month : daysUsed)
@@ -1072,6 +799,7 @@ public class TotalDayFormatter extends TextFormatter
 	public String printSpeciesByLocElevationAndEffort()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
 
 		toReturn.append("SPECIES BY LOCATION SORTED BY ELEVATION AND NORMALIZED BY EFFORT\n");
 		toReturn.append("  One record of each species per location per PERIOD\n");
@@ -1084,56 +812,25 @@ public class TotalDayFormatter extends TextFormatter
 
 		for (Species species : analysis.getAllImageSpecies())
 		{
-			List<ImageEntry> withSpecies = new ImageQuery().speciesOnly(species).query(analysis.getImagesSortedByDate());
 			toReturn.append("Location                  Elevation   # pics/Effort   Percent\n");
 			toReturn.append(species.getName()).append("\n");
 			double[] picsOverEffortTotals = new double[analysis.getAllImageLocations().size()];
 			Double picsOverEffortTotal = 0D;
 			for (Location location : analysis.getAllImageLocations())
 			{
-				List<ImageEntry> withSpeciesLoc = new ImageQuery().locationOnly(location).query(withSpecies);
-
 				Integer periodTotal = 0;
 				for (Integer year : analysis.getAllImageYears())
 				{
-					List<ImageEntry> withSpeciesLocYear = new ImageQuery().yearOnly(year).query(withSpeciesLoc);
-					if (!withSpeciesLocYear.isEmpty())
+					if (cube.imageCount(species, location, year, null) != 0)
 					{
-						periodTotal = periodTotal + analysis.periodForImageList(withSpeciesLocYear);
+						periodTotal = periodTotal + cube.period(species, location, year, null);
 					}
 				}
 
 				Integer effortTotal = 0;
 				for (Integer year : analysis.getAllImageYears())
 				{
-					List<ImageEntry> yearsPics = new ImageQuery().yearOnly(year).query(analysis.getImagesSortedByDate());
-					List<ImageEntry> yearLocPics = new ImageQuery().locationOnly(location).query(yearsPics);
-
-					if (!yearLocPics.isEmpty())
-					{
-						ImageEntry first = yearLocPics.get(0);
-						ImageEntry last = yearLocPics.get(yearLocPics.size() - 1);
-						LocalDateTime firstCal = first.getDateTaken();
-						LocalDateTime lastCal = last.getDateTaken();
-						Integer firstDaysInMonth = 31;
-						Integer firstDay = firstCal.getDayOfMonth();
-						Integer lastDay = lastCal.getDayOfMonth();
-						Integer firstMonth = firstCal.getMonthValue();
-						Integer lastMonth = lastCal.getMonthValue();
-						if (firstMonth == lastMonth)
-							effortTotal = effortTotal + (lastDay - firstDay + 1);
-						else
-						{
-							effortTotal = effortTotal + (firstDaysInMonth - (firstDay - 1));
-							firstMonth++;
-							while (firstMonth < lastMonth)
-							{
-								effortTotal = effortTotal + 31;
-								firstMonth++;
-							}
-							effortTotal = effortTotal + lastDay;
-						}
-					}
+					effortTotal = effortTotal + this.effort(location, year);
 				}
 
 				Double picsOverEffort = (effortTotal == 0 ? 0 : (double) periodTotal / effortTotal);
@@ -1164,6 +861,7 @@ public class TotalDayFormatter extends TextFormatter
 	public String printSpeciesByLocElevationAndEffortTable()
 	{
 		StringBuilder toReturn = new StringBuilder("\n");
+		AnalysisCube cube = analysis.getCube();
 
 		toReturn.append("SPECIES BY LOCATION SORTED BY ELEVATION AND NORMALIZED BY EFFORT TABLE\n");
 		toReturn.append("  One record of each species per location per PERIOD\n");
@@ -1190,19 +888,15 @@ public class TotalDayFormatter extends TextFormatter
 
 			for (Species species : analysis.getAllImageSpecies())
 			{
-				List<ImageEntry> bySpecies = new ImageQuery().speciesOnly(species).query(images);
-				List<ImageEntry> bySpeciesAndLoc = new ImageQuery().locationOnly(location).query(bySpecies);
 				Integer bySpeciesPeriod = 0;
 				Integer bySpeciesAndLocPeriod = 0;
 
 				for (Integer year : analysis.getAllImageYears())
 				{
-					List<ImageEntry> bySpeciesYear = new ImageQuery().yearOnly(year).query(bySpecies);
 					for (Location location2 : analysis.getAllImageLocations())
-						bySpeciesPeriod = bySpeciesPeriod + analysis.periodForImageList(new ImageQuery().locationOnly(location2).query(bySpeciesYear));
+						bySpeciesPeriod = bySpeciesPeriod + cube.period(species, location2, year, null);
 
-					List<ImageEntry> bySpeciesLocYear = new ImageQuery().yearOnly(year).query(bySpeciesAndLoc);
-					bySpeciesAndLocPeriod = bySpeciesAndLocPeriod + analysis.periodForImageList(bySpeciesLocYear);
+					bySpeciesAndLocPeriod = bySpeciesAndLocPeriod + cube.period(species, location, year, null);
 				}
 
 				toReturn.append(String.format("%6.2f ", bySpeciesPeriod == 0 ? 0 : 100.0D * (double) bySpeciesAndLocPeriod / bySpeciesPeriod));
@@ -1216,4 +910,76 @@ public class TotalDayFormatter extends TextFormatter
 		return toReturn.toString();
 	}
 
+	/**
+	 * Adds the number of days a location was active during a year to each month's total. The location is active from its first to its last
+	 * image of the year
+	 *
+	 * @param daysUsed The total number of days used in each month, from 0 to 11
+	 * @param location The location
+	 * @param year The year
+	 */
+	private void addDaysUsed(int[] daysUsed, Location location, Integer year)
+	{
+		int firstRow = analysis.getCube().firstRow(null, location, year, null);
+		if (firstRow != -1)
+		{
+			LocalDateTime firstCal = analysis.getDateTaken(firstRow);
+			LocalDateTime lastCal = analysis.getDateTaken(analysis.getCube().lastRow(null, location, year, null));
+			Integer firstDaysInMonth = 31;
+			Integer firstDay = firstCal.getDayOfMonth() - 1;
+			Integer lastDay = lastCal.getDayOfMonth() - 1;
+			Integer firstMonth = firstCal.getMonthValue() - 1;
+			Integer lastMonth = lastCal.getMonthValue() - 1;
+			if (firstMonth == lastMonth)
+				daysUsed[firstMonth] = daysUsed[firstMonth] + (lastDay - firstDay + 1);
+			else
+			{
+				daysUsed[firstMonth] = daysUsed[firstMonth] + (firstDaysInMonth - (firstDay - 1));
+				firstMonth++;
+				while (firstMonth < lastMonth)
+				{
+					daysUsed[firstMonth] = daysUsed[firstMonth] + 31;
+					firstMonth++;
+				}
+				daysUsed[lastMonth] = daysUsed[lastMonth] + lastDay;
+			}
+		}
+	}
+
+	/**
+	 * Computes the effort of a location during a year, which is the number of days from its first to its last image of the year
+	 *
+	 * @param location The location
+	 * @param year The year
+	 * @return The number of days of effort, 0 if the location has no images that year
+	 */
+	private Integer effort(Location location, Integer year)
+	{
+		Integer effortTotal = 0;
+		int firstRow = analysis.getCube().firstRow(null, location, year, null);
+		if (firstRow != -1)
+		{
+			LocalDateTime firstCal = analysis.getDateTaken(firstRow);
+			LocalDateTime lastCal = analysis.getDateTaken(analysis.getCube().lastRow(null, location, year, null));
+			Integer firstDaysInMonth = 31;
+			Integer firstDay = firstCal.getDayOfMonth();
+			Integer lastDay = lastCal.getDayOfMonth();
+			Integer firstMonth = firstCal.getMonthValue();
+			Integer lastMonth = lastCal.getMonthValue();
+			if (firstMonth == lastMonth)
+				effortTotal = effortTotal + (lastDay - firstDay + 1);
+			else
+			{
+				effortTotal = effortTotal + (firstDaysInMonth - (firstDay - 1));
+				firstMonth++;
+				while (firstMonth < lastMonth)
+				{
+					effortTotal = effortTotal + 31;
+					firstMonth++;
+				}
+				effortTotal = effortTotal + lastDay;
+			}
+		}
+		return effortTotal;
+	}
 }
@@ -11,8 +11,13 @@ import model.SanimalData;
 import model.constant.SanimalMetadataFields;
 import model.image.*;
 import model.location.Location;
+import model.location.LocationRegistry;
 import model.query.CyVerseQuery;
+import model.query.QueryPlan;
+import model.query.QueryResultCache;
 import model.species.Species;
+import model.species.SpeciesEntry;
+import model.species.SpeciesRegistry;
 import model.util.RoundingUtils;
 import model.util.SettingsData;
 import org.apache.commons.io.FileUtils;
@@ -21,11 +26,13 @@ import org.apache.commons.lang.RandomStringUtils;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
+import org.irods.jargon.core.checksum.ChecksumValue;
 import org.irods.jargon.core.connection.*;
 import org.irods.jargon.core.connection.auth.AuthResponse;
 import org.irods.jargon.core.exception.AuthenticationException;
 import org.irods.jargon.core.exception.InvalidUserException;
 import org.irods.jargon.core.exception.JargonException;
+import org.irods.jargon.core.protovalues.ChecksumEncodingEnum;
 import org.irods.jargon.core.protovalues.FilePermissionEnum;
 import org.irods.jargon.core.pub.*;
 import org.irods.jargon.core.pub.domain.AvuData;
@@ -45,6 +52,10 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 /**
@@ -75,9 +86,33 @@ public class CyVerseConnectionManager
 	{
 	}.getType();
 	private static final SimpleDateFormat FOLDER_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH-mm-ss") ;
+	// iRODS switches over to parallel transfers above 32MB (MAX_SZ_FOR_SINGLE_BUF), so TAR parts are sized in multiples of this
+	private static final long IRODS_IDEAL_TRANSFER_SIZE = 32L * 1024L * 1024L;
+	// The smallest and largest TAR part sizes we will upload
+	private static final long MIN_TAR_PART_SIZE = 2L * IRODS_IDEAL_TRANSFER_SIZE;
+	private static final long MAX_TAR_PART_SIZE = 64L * IRODS_IDEAL_TRANSFER_SIZE;
+	// The TAR part size to use before we have measured any upload throughput
+	private static final long DEFAULT_TAR_PART_SIZE = 8L * IRODS_IDEAL_TRANSFER_SIZE;
+	// The number of seconds we want each TAR part to take to upload, this bounds how much work is lost if a part has to be retried
+	private static final long TARGET_SECONDS_PER_TAR_PART = 120L;
+	// Upper limit on the number of images in a single TAR part, the rules that untar uploads don't like too many files at once
+	private static final int MAX_IMAGES_PER_TAR_PART = 900;
+	// The number of times we try to upload a TAR part before giving up if its checksum keeps coming back wrong
+	private static final int MAX_UPLOAD_ATTEMPTS = 3;
+	// The maximum number of query shards to run against CyVerse at once, each one uses its own connection
+	private static final int MAX_PARALLEL_QUERY_SHARDS = 4;
+	// The threads query shards run on, shared by every sharded query. Daemon threads so they never keep Sanimal open
+	private final ExecutorService queryShardExecutor = Executors.newFixedThreadPool(MAX_PARALLEL_QUERY_SHARDS, runnable ->
+	{
+		Thread thread = new Thread(runnable, "Query Shard");
+		thread.setDaemon(true);
+		return thread;
+	});
 
 	private IRODSAccount authenticatedAccount;
 	private CyVerseSessionManager sessionManager;
+	// The measured upload throughput in bytes per second, or 0 if no upload has been measured yet
+	private double measuredUploadBytesPerSecond = 0;
 
 	/**
 	 * Given a username and password, this method logs a cyverse user in
@@ -841,8 +876,8 @@ public class CyVerseConnectionManager
 					String localDirName = directoryToWrite.getFile().getName();
 					AvuData collectionIDTag = new AvuData(SanimalMetadataFields.A_COLLECTION_ID, collection.getID().toString(), "");
 
-					// Make a set of tar files from the image files. Don't use a single tar file because we may have > 1000 images in each
-					File[] tarsToWrite = DirectoryManager.directoryToTars(directoryToWrite, directoryMetaJSON, imageEntry ->
+					// Make a set of tar files from the image files. Don't use a single tar file because we may have > 1000 images in each, and cut parts by size so each takes about as long to upload
+					TarPart[] tarsToWrite = DirectoryManager.directoryToTars(directoryToWrite, directoryMetaJSON, imageEntry ->
 					{
 						try
 						{
@@ -859,21 +894,58 @@ public class CyVerseConnectionManager
 							e.printStackTrace();
 						}
 						return "";
-					}, 900);
+					}, this.computeTarPartSize(), MAX_IMAGES_PER_TAR_PART);
 
-					// For each tar part, upload
-					for (Integer tarPart = 0; tarPart < tarsToWrite.length; tarPart++)
+					try
 					{
-						if (messageCallback != null)
-							messageCallback.setValue("Uploading TAR file part (" + (tarPart + 1) + " / " + tarsToWrite.length + ") to CyVerse...");
+						// For each tar part, upload
+						for (Integer tarPart = 0; tarPart < tarsToWrite.length; tarPart++)
+						{
+							if (messageCallback != null)
+								messageCallback.setValue("Uploading TAR file part (" + (tarPart + 1) + " / " + tarsToWrite.length + ") to CyVerse...");
+
+							TarPart toWrite = tarsToWrite[tarPart];
+							File localToUpload = new File(FilenameUtils.getFullPath(toWrite.getFile().getAbsolutePath()) + uploadFolderName + "-" + tarPart.toString() + "." + FilenameUtils.getExtension(toWrite.getFile().getAbsolutePath()));
+							toWrite.getFile().renameTo(localToUpload);
+							toWrite.setFile(localToUpload);
+							String remoteTarPath = collectionUploadDirStr + "/" + localToUpload.getName();
+							IRODSFile remoteTar = fileFactory.instanceIRODSFile(remoteTarPath);
+
+							Boolean checksumMatched = false;
+							for (Integer attempt = 1; attempt <= MAX_UPLOAD_ATTEMPTS && !checksumMatched; attempt++)
+							{
+								// Upload the tar under its final name so the post-put rules untar it, and time how long it took
+								long tarBytes = localToUpload.length();
+								long uploadStart = System.currentTimeMillis();
+								this.sessionManager.getCurrentAO().getDataTransferOperations(this.authenticatedAccount).putOperation(localToUpload, remoteTar, transferCallback, null);
+								this.recordUploadThroughput(tarBytes, System.currentTimeMillis() - uploadStart);
+
+								// Verify the TAR if the rules haven't already untarred and removed it, a TAR that is gone can't be checked from here
+								IRODSFile uploadedTar = fileFactory.instanceIRODSFile(remoteTarPath);
+								checksumMatched = !uploadedTar.exists() || this.uploadMatchesChecksum(toWrite, remoteTarPath);
+								if (!checksumMatched)
+								{
+									// Remove the corrupt TAR and put it again, the new put triggers the rules again
+									uploadedTar.delete();
+
+									if (attempt < MAX_UPLOAD_ATTEMPTS && messageCallback != null)
+										messageCallback.setValue("Checksum mismatch on TAR file part (" + (tarPart + 1) + " / " + tarsToWrite.length + "), retrying upload...");
+								}
+							}
 
-						File toWrite = tarsToWrite[tarPart];
-						File localToUpload = new File(FilenameUtils.getFullPath(toWrite.getAbsolutePath()) + uploadFolderName + "-" + tarPart.toString() + "." + FilenameUtils.getExtension(toWrite.getAbsolutePath()));
-						toWrite.renameTo(localToUpload);
-						// Upload the tar
-						this.sessionManager.getCurrentAO().getDataTransferOperations(this.authenticatedAccount).putOperation(localToUpload, collectionUploadDir, transferCallback, null);
+							// If every attempt was corrupted stop the upload, the remaining parts would leave the collection with a gap in it
+							if (!checksumMatched)
+								throw new IOException("TAR file part (" + (tarPart + 1) + " / " + tarsToWrite.length + ") was corrupted during upload " + MAX_UPLOAD_ATTEMPTS + " times, giving up on the upload!");
 
-						localToUpload.delete();
+							localToUpload.delete();
+						}
+					}
+					finally
+					{
+						// If the upload stopped early don't leave the remaining TARs in the temp directory
+						for (TarPart tarPart : tarsToWrite)
+							if (tarPart.getFile().exists())
+								tarPart.getFile().delete();
 					}
 					// Let rules do the rest!
 				}
@@ -892,6 +964,76 @@ public class CyVerseConnectionManager
 		}
 	}
 
+	/**
+	 * Asks CyVerse to compute the checksum of an uploaded TAR file and compares it to the checksum computed when the TAR was written locally
+	 *
+	 * @param tarPart The TAR part that was uploaded
+	 * @param remoteTarPath The absolute path of the uploaded TAR on CyVerse
+	 * @return True if the checksums match, false if the upload was corrupted or is missing
+	 * @throws JargonException Thrown if something goes wrong in the Jargon library
+	 */
+	private Boolean uploadMatchesChecksum(TarPart tarPart, String remoteTarPath) throws JargonException
+	{
+		IRODSFile remoteTar = this.sessionManager.getCurrentAO().getIRODSFileFactory(this.authenticatedAccount).instanceIRODSFile(remoteTarPath);
+		// If the TAR never arrived it can't match
+		if (!remoteTar.exists())
+			return false;
+
+		// Have iRODS checksum the file, it will use whatever hashing scheme the server is configured with
+		ChecksumValue remoteChecksum = this.sessionManager.getCurrentAO().getDataObjectChecksumUtilitiesAO(this.authenticatedAccount).computeChecksumOnDataObject(remoteTar);
+		String localChecksum = remoteChecksum.getChecksumEncoding() == ChecksumEncodingEnum.SHA256 ? tarPart.getSha256Hex() : tarPart.getMd5Hex();
+		return localChecksum.equalsIgnoreCase(remoteChecksum.getHexChecksumValue());
+	}
+
+	/**
+	 * Creates a benchmark that times uploads of a test file into the user's Sanimal directory with each transfer profile
+	 *
+	 * @param testFileSize The size of the test file to upload in bytes
+	 * @return The benchmark, ready to be run on a background thread
+	 */
+	public TransferBenchmark createTransferBenchmark(Long testFileSize)
+	{
+		return new TransferBenchmark(this.authenticatedAccount, HOME_DIRECTORY + SanimalData.getInstance().getUsername() + "/Sanimal", testFileSize);
+	}
+
+	/**
+	 * Computes how large each TAR part should be. We aim for parts that take a fixed amount of time to upload at the measured throughput,
+	 * rounded to a multiple of iRODS' ideal transfer size and clamped to sane bounds
+	 *
+	 * @return The number of bytes each TAR part should roughly contain
+	 */
+	private long computeTarPartSize()
+	{
+		// If we haven't uploaded anything yet, use the default
+		if (this.measuredUploadBytesPerSecond <= 0)
+			return DEFAULT_TAR_PART_SIZE;
+
+		// Take the number of bytes we can upload in the target time, and round it to the nearest multiple of the ideal transfer size
+		long bytesInTargetTime = (long) (this.measuredUploadBytesPerSecond * TARGET_SECONDS_PER_TAR_PART);
+		long roundedBytes = Math.round((double) bytesInTargetTime / IRODS_IDEAL_TRANSFER_SIZE) * IRODS_IDEAL_TRANSFER_SIZE;
+		return Math.max(MIN_TAR_PART_SIZE, Math.min(MAX_TAR_PART_SIZE, roundedBytes));
+	}
+
+	/**
+	 * Records how long an upload took so that later TAR parts can be sized using the measured throughput
+	 *
+	 * @param bytes The number of bytes that were uploaded
+	 * @param elapsedMillis The number of milliseconds the upload took
+	 */
+	private void recordUploadThroughput(long bytes, long elapsedMillis)
+	{
+		// Ignore uploads too quick to measure
+		if (elapsedMillis <= 0 || bytes <= 0)
+			return;
+
+		double bytesPerSecond = bytes * 1000D / elapsedMillis;
+		// The first measurement is taken as is, after that we use an exponential moving average so a single slow part doesn't throw off the estimate
+		if (this.measuredUploadBytesPerSecond <= 0)
+			this.measuredUploadBytesPerSecond = bytesPerSecond;
+		else
+			this.measuredUploadBytesPerSecond = 0.7 * this.measuredUploadBytesPerSecond + 0.3 * bytesPerSecond;
+	}
+
 	/**
 	 * Save the set of images that were downloaded to CyVerse
 	 *
@@ -1154,28 +1296,367 @@ public class CyVerseConnectionManager
 		{
 			try
 			{
+				List<String> matchingFilePaths = this.executePathQuery(queryBuilder);
+				this.sessionManager.closeSession();
+				return matchingFilePaths;
+			}
+			catch (JargonQueryException | JargonException | NumberFormatException | GenQueryBuilderException e)
+			{
+				e.printStackTrace();
+				SanimalData.getInstance().getErrorDisplay().showPopup(
+						Alert.AlertType.ERROR,
+						null,
+						"Error",
+						"Query failed",
+						"Query caused an exception!",
+						false);
+			}
+			this.sessionManager.closeSession();
+		}
+
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Executes a path query on the current thread's session, which must already be open
+	 *
+	 * @param queryBuilder The query builder with all specified options
+	 * @return A list of image CyVerse paths instead of local paths
+	 * @throws JargonQueryException If the query was malformed
+	 * @throws JargonException If the query could not be executed
+	 * @throws GenQueryBuilderException If the query could not be built
+	 */
+	private List<String> executePathQuery(CyVerseQuery queryBuilder) throws JargonQueryException, JargonException, GenQueryBuilderException
+	{
+		return this.executePathQuery(queryBuilder.build());
+	}
+
+	/**
+	 * Executes a path query on the current thread's session, which must already be open. The query must select COL_COLL_NAME
+	 * and COL_DATA_NAME in that order
+	 *
+	 * @param queryBuilder The iRODS query builder with all specified options
+	 * @return A list of image CyVerse paths instead of local paths
+	 * @throws JargonQueryException If the query was malformed
+	 * @throws JargonException If the query could not be executed
+	 * @throws GenQueryBuilderException If the query could not be built
+	 */
+	private List<String> executePathQuery(IRODSGenQueryBuilder queryBuilder) throws JargonQueryException, JargonException, GenQueryBuilderException
+	{
+		// Convert the query builder to a query generator
+		IRODSGenQueryFromBuilder query = queryBuilder.exportIRODSQueryFromBuilder(this.sessionManager.getCurrentAO().getJargonProperties().getMaxFilesAndDirsQueryMax());
+		// Perform the query, and get a set of results
+		IRODSGenQueryExecutor irodsGenQueryExecutor = this.sessionManager.getCurrentAO().getIRODSGenQueryExecutor(this.authenticatedAccount);
+		IRODSQueryResultSet resultSet = irodsGenQueryExecutor.executeIRODSQuery(query, 0);
+
+		List<String> matchingFilePaths = new ArrayList<>();
+		Boolean morePages;
+
+		// Iterate while more results exist
+		do
+		{
+			// Grab each row
+			for (IRODSQueryResultRow resultRow : resultSet.getResults())
+			{
+				// Get the path to the image and the image name, create an absolute path with the info
+				String pathToImage = resultRow.getColumn(0);
+				String imageName = resultRow.getColumn(1);
+				matchingFilePaths.add(pathToImage + "/" + imageName);
+			}
+
+			// Remember if there's another page before we move on so the last page still gets read
+			morePages = resultSet.isHasMoreRecords();
+			// Need this test to avoid NoMoreResultsException
+			if (morePages)
+			{
+				// Move the result set on if there's more records
+				IRODSQueryResultSet nextResultSet = irodsGenQueryExecutor.getMoreResults(resultSet);
+				// Close the current result set
+				irodsGenQueryExecutor.closeResults(resultSet);
+				// Advance the "pointer" to the next result set
+				resultSet = nextResultSet;
+			}
+		} while (morePages);
+		return matchingFilePaths;
+	}
+
+	/**
+	 * Brings a previous result of a query up to date without fetching metadata for every image again. Deleted images can't be
+	 * found from modify times, so instead only the collections whose modification stamp changed are listed again, and images in
+	 * every other collection are kept as they are. Within the changed collections, two queries on DATA_MODIFY_TIME and
+	 * META_DATA_MODIFY_TIME tell us which images changed after the high water mark. Metadata is only fetched for new and changed images
+	 *
+	 * @param queryPlan The plan that produced the previous result
+	 * @param cachedResult The previous result of the query
+	 * @param collectionStamps The current collection ID -> modification stamp of every collection on CyVerse
+	 * @return The up to date result, or null if the refresh failed and the query should be run from scratch
+	 */
+	public List<ImageEntry> refreshQuery(QueryPlan queryPlan, QueryResultCache.CachedResult cachedResult, Map<String, String> collectionStamps)
+	{
+		// The collections the plan searches, a plan without a collection filter searches every collection old or new
+		Set<String> involvedCollectionIDs = new HashSet<>();
+		if (queryPlan.getCollections().isEmpty())
+		{
+			involvedCollectionIDs.addAll(cachedResult.getCollectionStamps().keySet());
+			involvedCollectionIDs.addAll(collectionStamps.keySet());
+		}
+		else
+		{
+			queryPlan.getCollections().forEach(imageCollection -> involvedCollectionIDs.add(imageCollection.getID().toString()));
+		}
+
+		// Only collections whose stamp changed can have added, removed, or changed images
+		Set<String> changedCollectionIDs = involvedCollectionIDs.stream()
+				.filter(collectionID -> !Objects.equals(cachedResult.getCollectionStamps().get(collectionID), collectionStamps.get(collectionID)))
+				.collect(Collectors.toSet());
+		// Collections that were removed entirely have nothing left to list
+		Set<ImageCollection> collectionsToList = new HashSet<>();
+		for (String collectionID : changedCollectionIDs)
+		{
+			if (collectionStamps.containsKey(collectionID))
+			{
+				ImageCollection imageCollection = this.findCollection(queryPlan, collectionID);
+				// A collection we don't know about yet can't be queried on its own, so run the whole query instead
+				if (imageCollection == null)
+					return null;
+				collectionsToList.add(imageCollection);
+			}
+		}
+
+		Set<String> currentPaths = new LinkedHashSet<>();
+		Set<String> changedPaths = new HashSet<>();
+
+		if (!collectionsToList.isEmpty())
+		{
+			if (this.sessionManager.openSession())
+			{
+				try
+				{
+					// Every path in the changed collections that matches the query right now, this is cheap compared to fetching metadata
+					currentPaths.addAll(this.executePathQuery(queryPlan.toQuery().restrictedTo(collectionsToList)));
+
+					// Every image in the changed collections whose file or any metadata changed after the high water mark. We don't
+					// join on the SANIMAL attribute here since the changed attribute would then have to be that one
+					for (ImageCollection imageCollection : collectionsToList)
+					{
+						changedPaths.addAll(this.executePathQuery(this.modifiedAfterQuery(imageCollection, RodsGenQueryEnum.COL_D_MODIFY_TIME, cachedResult.getHighWaterMark())));
+						changedPaths.addAll(this.executePathQuery(this.modifiedAfterQuery(imageCollection, RodsGenQueryEnum.COL_META_DATA_MODIFY_TIME, cachedResult.getHighWaterMark())));
+					}
+					// Images that changed but no longer match are not part of the result
+					changedPaths.retainAll(currentPaths);
+				}
+				catch (JargonQueryException | JargonException | NumberFormatException | GenQueryBuilderException e)
+				{
+					// Fall back to running the whole query
+					SanimalData.getInstance().getErrorDisplay().printError("Incremental refresh failed, running the full query: " + e.getMessage());
+					this.sessionManager.closeSession();
+					return null;
+				}
+				this.sessionManager.closeSession();
+			}
+			else
+			{
+				return null;
+			}
+		}
+
+		// Index the previous result by path
+		Map<String, ImageEntry> pathToImage = new LinkedHashMap<>();
+		for (ImageEntry imageEntry : cachedResult.getImages())
+			pathToImage.put(FilenameUtils.separatorsToUnix(imageEntry.getFile().getPath()), imageEntry);
+
+		// Images in changed collections that were deleted or changed so they no longer match are removed
+		pathToImage.keySet().removeIf(path -> changedCollectionIDs.contains(collectionIDOf(path)) && !currentPaths.contains(path));
+
+		// Fetch metadata for images that are new to the result or changed since it was retrieved
+		List<String> pathsToFetch = currentPaths.stream().filter(path -> !pathToImage.containsKey(path) || changedPaths.contains(path)).collect(Collectors.toList());
+		List<ImageEntry> fetchedImages = this.fetchMetadataFor(pathsToFetch);
+		// If we couldn't get every image the merged result would be incomplete
+		if (fetchedImages.size() != pathsToFetch.size())
+			return null;
+
+		// The analysis compares locations and species by reference, so fetched images must share the previous result's objects
+		Map<String, Location> knownLocations = new HashMap<>();
+		Map<String, Species> knownSpecies = new HashMap<>();
+		for (ImageEntry imageEntry : pathToImage.values())
+		{
+			if (imageEntry.getLocationTaken() != null)
+				knownLocations.putIfAbsent(imageEntry.getLocationTaken().getId(), imageEntry.getLocationTaken());
+			for (SpeciesEntry speciesEntry : imageEntry.getSpeciesPresent())
+				knownSpecies.putIfAbsent(speciesEntry.getSpecies().getScientificName().toLowerCase(), speciesEntry.getSpecies());
+		}
+		for (ImageEntry fetchedImage : fetchedImages)
+		{
+			if (fetchedImage.getLocationTaken() != null)
+				fetchedImage.setLocationTaken(knownLocations.computeIfAbsent(fetchedImage.getLocationTaken().getId(), id -> fetchedImage.getLocationTaken()));
+			for (SpeciesEntry speciesEntry : fetchedImage.getSpeciesPresent())
+				speciesEntry.getSpeciesProperty().setValue(knownSpecies.computeIfAbsent(speciesEntry.getSpecies().getScientificName().toLowerCase(), name -> speciesEntry.getSpecies()));
+			// Replace the old copy of the image or add it to the end
+			pathToImage.put(FilenameUtils.separatorsToUnix(fetchedImage.getFile().getPath()), fetchedImage);
+		}
+
+		return new ArrayList<>(pathToImage.values());
+	}
+
+	/**
+	 * Builds a query for every data object in a collection whose file or metadata changed after a given time. Unlike a CyVerseQuery
+	 * this does not require the SANIMAL attribute, so a change to any attribute of an image is found
+	 *
+	 * @param imageCollection The collection to search
+	 * @param modifyTimeColumn Either COL_D_MODIFY_TIME to test when the file changed, or COL_META_DATA_MODIFY_TIME to test when its metadata changed
+	 * @param epochSeconds The time in seconds since the epoch, iRODS stores modify times in seconds
+	 * @return The iRODS query ready to be executed
+	 * @throws GenQueryBuilderException If the query could not be built
+	 */
+	private IRODSGenQueryBuilder modifiedAfterQuery(ImageCollection imageCollection, RodsGenQueryEnum modifyTimeColumn, Long epochSeconds) throws GenQueryBuilderException
+	{
+		IRODSGenQueryBuilder queryBuilder = new IRODSGenQueryBuilder(true, false, null);
+		queryBuilder.addSelectAsGenQueryValue(RodsGenQueryEnum.COL_COLL_NAME);
+		queryBuilder.addSelectAsGenQueryValue(RodsGenQueryEnum.COL_DATA_NAME);
+		queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_COLL_NAME, QueryConditionOperators.LIKE, COLLECTIONS_DIRECTORY + "/" + imageCollection.getID().toString() + "/%");
+		// The high water mark was already seen, so only strictly later changes count. iRODS stores times as 11 digit zero padded strings
+		queryBuilder.addConditionAsGenQueryField(modifyTimeColumn, QueryConditionOperators.GREATER_THAN, String.format("%011d", epochSeconds));
+		return queryBuilder;
+	}
+
+	/**
+	 * Finds a collection by ID, first in the collections of a query plan and then in every collection we know about
+	 *
+	 * @param queryPlan The plan to search first
+	 * @param collectionID The ID of the collection
+	 * @return The collection, or null if it was not found
+	 */
+	private ImageCollection findCollection(QueryPlan queryPlan, String collectionID)
+	{
+		for (ImageCollection imageCollection : queryPlan.getCollections())
+			if (imageCollection.getID().toString().equals(collectionID))
+				return imageCollection;
+		for (ImageCollection imageCollection : SanimalData.getInstance().getCollectionList())
+			if (imageCollection.getID().toString().equals(collectionID))
+				return imageCollection;
+		return null;
+	}
+
+	/**
+	 * Returns the ID of the collection an image on CyVerse belongs to, which is the first directory below the collections directory
+	 *
+	 * @param absoluteIRODSPath The absolute iRODS path of the image
+	 * @return The collection ID
+	 */
+	private static String collectionIDOf(String absoluteIRODSPath)
+	{
+		return StringUtils.substringBefore(StringUtils.removeStart(absoluteIRODSPath, COLLECTIONS_DIRECTORY + "/"), "/");
+	}
+
+	/**
+	 * Splits a query into shards (by collection, year range, or IN list chunk) and performs them in parallel, each on its own
+	 * connection. The results are merged and de-duplicated. If any shard fails the result would be missing images, so nothing is
+	 * returned at all
+	 *
+	 * @param queryBuilder The query builder with all specified options
+	 * @return A list of unique image CyVerse paths instead of local paths, or null if any shard failed
+	 */
+	public List<String> performShardedQuery(CyVerseQuery queryBuilder)
+	{
+		List<CyVerseQuery> shards = queryBuilder.shard(MAX_PARALLEL_QUERY_SHARDS);
+
+		// Submit every shard, each thread opens its own session so the shards don't share a connection
+		List<Future<List<String>>> shardResults = new ArrayList<>();
+		for (CyVerseQuery shard : shards)
+			shardResults.add(this.queryShardExecutor.submit(() -> this.performQueryShard(shard)));
+
+		try
+		{
+			// Merge the results keeping the first occurrence of each path
+			Set<String> matchingFilePaths = new LinkedHashSet<>();
+			for (Future<List<String>> shardResult : shardResults)
+				matchingFilePaths.addAll(shardResult.get());
+			return new ArrayList<>(matchingFilePaths);
+		}
+		catch (InterruptedException | ExecutionException e)
+		{
+			// Don't leave the other shards running for a result we won't use
+			shardResults.forEach(shardResult -> shardResult.cancel(true));
+			if (e instanceof InterruptedException)
+				Thread.currentThread().interrupt();
+			SanimalData.getInstance().getErrorDisplay().showPopup(
+					Alert.AlertType.ERROR,
+					null,
+					"Error",
+					"Query failed",
+					"Sharded query caused an exception, the query was not completed!\n" + ExceptionUtils.getStackTrace(e),
+					false);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Performs one shard of a sharded query on the current thread. Unlike performQuery this throws on failure so the caller knows the
+	 * shard's results are missing
+	 *
+	 * @param shard The shard to perform
+	 * @return A list of image CyVerse paths instead of local paths
+	 * @throws JargonQueryException If the query was malformed
+	 * @throws JargonException If the query could not be executed or a session could not be opened
+	 * @throws GenQueryBuilderException If the query could not be built
+	 */
+	private List<String> performQueryShard(CyVerseQuery shard) throws JargonQueryException, JargonException, GenQueryBuilderException
+	{
+		if (!this.sessionManager.openSession())
+			throw new JargonException("Could not open a session for the query shard");
+		try
+		{
+			return this.executePathQuery(shard);
+		}
+		finally
+		{
+			this.sessionManager.closeSession();
+		}
+	}
+
+	/**
+	 * Performs an aggregate query on CyVerse's servers, returning only the counts instead of every matching image path
+	 *
+	 * @param queryBuilder The count query (created with CyVerseQuery(String)) to perform
+	 * @return A map of attribute value -> number of matching images, or "" -> total if the query was not grouped by an attribute. Null if
+	 * the query failed
+	 */
+	public Map<String, Long> performAggregateQuery(CyVerseQuery queryBuilder)
+	{
+		// Stays null if the query can't be run, so callers can tell a failed count apart from a count of 0
+		Map<String, Long> counts = null;
+
+		if (this.sessionManager.openSession())
+		{
+			try
+			{
+				counts = new TreeMap<>();
 				// Convert the query builder to a query generator
 				IRODSGenQueryFromBuilder query = queryBuilder.build().exportIRODSQueryFromBuilder(this.sessionManager.getCurrentAO().getJargonProperties().getMaxFilesAndDirsQueryMax());
 				// Perform the query, and get a set of results
 				IRODSGenQueryExecutor irodsGenQueryExecutor = this.sessionManager.getCurrentAO().getIRODSGenQueryExecutor(this.authenticatedAccount);
 				IRODSQueryResultSet resultSet = irodsGenQueryExecutor.executeIRODSQuery(query, 0);
 
-				List<String> matchingFilePaths = new ArrayList<>();
+				// Grouped queries return the value first and the count second, totals just return the count
+				Boolean grouped = queryBuilder.getCountByAttribute() != null;
+				Boolean morePages;
 
 				// Iterate while more results exist
 				do
 				{
-					// Grab each row
+					// Grab each row, there's one per group
 					for (IRODSQueryResultRow resultRow : resultSet.getResults())
 					{
-						// Get the path to the image and the image name, create an absolute path with the info
-						String pathToImage = resultRow.getColumn(0);
-						String imageName = resultRow.getColumn(1);
-						matchingFilePaths.add(pathToImage + "/" + imageName);
+						String key = grouped ? resultRow.getColumn(0) : "";
+						Long count = Long.parseLong(resultRow.getColumn(grouped ? 1 : 0));
+						counts.merge(key, count, Long::sum);
 					}
 
+					// Remember if there's another page before we move on so the last page still gets read
+					morePages = resultSet.isHasMoreRecords();
 					// Need this test to avoid NoMoreResultsException
-					if (resultSet.isHasMoreRecords())
+					if (morePages)
 					{
 						// Move the result set on if there's more records
 						IRODSQueryResultSet nextResultSet = irodsGenQueryExecutor.getMoreResults(resultSet);
@@ -1184,9 +1665,7 @@ public class CyVerseConnectionManager
 						// Advance the "pointer" to the next result set
 						resultSet = nextResultSet;
 					}
-				} while (resultSet.isHasMoreRecords());
-				this.sessionManager.closeSession();
-				return matchingFilePaths;
+				} while (morePages);
 			}
 			catch (JargonQueryException | JargonException | NumberFormatException | GenQueryBuilderException e)
 			{
@@ -1196,13 +1675,81 @@ public class CyVerseConnectionManager
 						null,
 						"Error",
 						"Query failed",
-						"Query caused an exception!",
+						"Aggregate query caused an exception!",
 						false);
+				counts = null;
 			}
 			this.sessionManager.closeSession();
 		}
 
-		return Collections.emptyList();
+		return counts;
+	}
+
+	/**
+	 * Computes a modification stamp for every collection on CyVerse. The stamp changes whenever an image in the collection is
+	 * added, removed, or has its metadata changed, so it can be used to tell if cached query results are out of date
+	 *
+	 * @return A map of collection ID -> modification stamp, empty if the stamps could not be retrieved
+	 */
+	public Map<String, String> fetchCollectionModifyStamps()
+	{
+		// Collection ID -> latest data modify time, latest metadata modify time, and number of metadata rows
+		Map<String, Long> latestDataModify = new HashMap<>();
+		Map<String, Long> latestMetadataModify = new HashMap<>();
+		Map<String, Long> metadataCount = new HashMap<>();
+
+		if (this.sessionManager.openSession())
+		{
+			try
+			{
+				// One aggregate row per directory below the collections directory
+				IRODSGenQueryBuilder queryBuilder = new IRODSGenQueryBuilder(false, false, null);
+				queryBuilder.addSelectAsGenQueryValue(RodsGenQueryEnum.COL_COLL_NAME);
+				queryBuilder.addSelectAsAgregateGenQueryValue(RodsGenQueryEnum.COL_D_MODIFY_TIME, GenQueryField.SelectFieldTypes.MAX);
+				queryBuilder.addSelectAsAgregateGenQueryValue(RodsGenQueryEnum.COL_META_DATA_MODIFY_TIME, GenQueryField.SelectFieldTypes.MAX);
+				queryBuilder.addSelectAsAgregateGenQueryValue(RodsGenQueryEnum.COL_D_DATA_ID, GenQueryField.SelectFieldTypes.COUNT);
+				queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_COLL_NAME, QueryConditionOperators.LIKE, COLLECTIONS_DIRECTORY + "/%");
+				IRODSGenQueryFromBuilder query = queryBuilder.exportIRODSQueryFromBuilder(this.sessionManager.getCurrentAO().getJargonProperties().getMaxFilesAndDirsQueryMax());
+				IRODSGenQueryExecutor irodsGenQueryExecutor = this.sessionManager.getCurrentAO().getIRODSGenQueryExecutor(this.authenticatedAccount);
+				IRODSQueryResultSet resultSet = irodsGenQueryExecutor.executeIRODSQuery(query, 0);
+				Boolean morePages;
+
+				// Iterate while more results exist
+				do
+				{
+					for (IRODSQueryResultRow resultRow : resultSet.getResults())
+					{
+						// The collection ID is the first directory below the collections directory
+						String collectionID = collectionIDOf(resultRow.getColumn(0));
+						latestDataModify.merge(collectionID, Long.parseLong(resultRow.getColumn(1)), Math::max);
+						latestMetadataModify.merge(collectionID, Long.parseLong(resultRow.getColumn(2)), Math::max);
+						metadataCount.merge(collectionID, Long.parseLong(resultRow.getColumn(3)), Long::sum);
+					}
+
+					// Remember if there's another page before we move on so the last page still gets read
+					morePages = resultSet.isHasMoreRecords();
+					// Need this test to avoid NoMoreResultsException
+					if (morePages)
+					{
+						IRODSQueryResultSet nextResultSet = irodsGenQueryExecutor.getMoreResults(resultSet);
+						irodsGenQueryExecutor.closeResults(resultSet);
+						resultSet = nextResultSet;
+					}
+				} while (morePages);
+			}
+			catch (JargonQueryException | JargonException | NumberFormatException | GenQueryBuilderException e)
+			{
+				// Without stamps the cache is never used, which is safe
+				SanimalData.getInstance().getErrorDisplay().printError("Could not retrieve collection modify times: " + e.getMessage());
+				latestDataModify.clear();
+			}
+			this.sessionManager.closeSession();
+		}
+
+		// Combine the three values into a single stamp per collection
+		Map<String, String> stamps = new TreeMap<>();
+		latestDataModify.forEach((collectionID, dataModify) -> stamps.put(collectionID, dataModify + ":" + latestMetadataModify.get(collectionID) + ":" + metadataCount.get(collectionID)));
+		return stamps;
 	}
 
 	/**
@@ -1218,8 +1765,8 @@ public class CyVerseConnectionManager
 		if (this.sessionManager.openSession())
 		{
 			// A unique list of species and locations is used to ensure images with identical locations don't create two locations
-			List<Location> uniqueLocations = new LinkedList<>();
-			List<Species> uniqueSpecies = new LinkedList<>();
+			LocationRegistry uniqueLocations = new LocationRegistry(new ArrayList<>());
+			SpeciesRegistry uniqueSpecies = new SpeciesRegistry(new ArrayList<>());
 			try
 			{
 				// We will fill in these various fields from the image metadata
@@ -1290,11 +1837,10 @@ public class CyVerseConnectionManager
 					}
 
 					// Compute a new location if we need to
-					String finalLocationID = locationID;
-					Boolean locationForImagePresent = uniqueLocations.stream().anyMatch(location -> location.getId().equals(finalLocationID));
+					Optional<Location> locationForImage = uniqueLocations.findByLocationId(locationID);
 					// Do we have the location?
-					if (!locationForImagePresent)
-						uniqueLocations.add(new Location(locationName, locationID, locationLatitude, locationLongitude, locationElevation));
+					Location correctLocation = locationForImage.orElse(new Location(locationName, locationID, locationLatitude, locationLongitude, locationElevation));
+					uniqueLocations.register(correctLocation);
 					// Compute a new species (s) if we need to
 					for (Integer key : speciesIDToScientificName.keySet())
 					{
@@ -1303,13 +1849,10 @@ public class CyVerseConnectionManager
 						// Grab the common name of the species
 						String speciesName = speciesIDToCommonName.get(key);
 						// Test if the species is present, if not add it
-						Boolean speciesForImagePresent = uniqueSpecies.stream().anyMatch(species -> species.getScientificName().equalsIgnoreCase(speciesScientificName));
-						if (!speciesForImagePresent)
-							uniqueSpecies.add(new Species(speciesName, speciesScientificName, Species.DEFAULT_ICON));
+						if (!uniqueSpecies.findByScientificName(speciesScientificName).isPresent())
+							uniqueSpecies.register(new Species(speciesName, speciesScientificName, Species.DEFAULT_ICON));
 					}
 
-					// Grab the correct location for the image entry
-					Location correctLocation = uniqueLocations.stream().filter(location -> location.getId().equals(finalLocationID)).findFirst().get();
 					// Create the image entry
 					ImageEntry entry = new ImageEntry(new File(irodsAbsolutePath));
 					// Set the location and date taken
@@ -1321,7 +1864,7 @@ public class CyVerseConnectionManager
 						String speciesScientificName = speciesIDToScientificName.get(key);
 						Integer speciesCount = speciesIDToCount.get(key);
 						// Grab the species based on ID
-						Species correctSpecies = uniqueSpecies.stream().filter(species -> species.getScientificName().equals(speciesScientificName)).findFirst().get();
+						Species correctSpecies = uniqueSpecies.findByScientificName(speciesScientificName).get();
 						entry.addSpecies(correctSpecies, speciesCount);
 					}
 					toReturn.add(entry);
@@ -4,10 +4,12 @@ import javafx.collections.FXCollections;
 import javafx.scene.control.Alert;
 import javafx.util.Pair;
 import model.SanimalData;
+import model.util.SettingsData;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.irods.jargon.core.connection.IRODSAccount;
 import org.irods.jargon.core.connection.IRODSSession;
 import org.irods.jargon.core.connection.IRODSSimpleProtocolManager;
+import org.irods.jargon.core.connection.SettableJargonProperties;
 import org.irods.jargon.core.exception.JargonException;
 import org.irods.jargon.core.pub.IRODSAccessObjectFactory;
 import org.irods.jargon.core.pub.IRODSAccessObjectFactoryImpl;
@@ -57,6 +59,9 @@ public class CyVerseSessionManager
 			{
 				// Create the session and store it
 				IRODSSession newSession = IRODSSession.instance(IRODSSimpleProtocolManager.instance());
+				// Tune the session's transfers to the user's network. The profile is only read here, so a new profile takes effect with the next
+				// session and never changes a transfer that is already running
+				CyVerseSessionManager.applyTransferProfile(newSession, SanimalData.getInstance().getSettings().getTransferProfile());
 				IRODSAccessObjectFactory newAccessFactory = IRODSAccessObjectFactoryImpl.instance(newSession);
 				this.sessions.put(current, new Pair<>(newSession, newAccessFactory));
 				return true;
@@ -76,6 +81,34 @@ public class CyVerseSessionManager
 		}
 	}
 
+	/**
+	 * Applies a transfer profile to a session so that every put and get operation performed with that session uses its thread count,
+	 * buffer sizes, and time outs. Properties not covered by the profile keep their values from jargon.properties
+	 *
+	 * @param session The session to tune
+	 * @param profile The profile to apply, if null the session is left unchanged
+	 */
+	static void applyTransferProfile(IRODSSession session, SettingsData.TransferProfile profile)
+	{
+		if (profile == null)
+			return;
+
+		// Start with the properties read from jargon.properties
+		SettableJargonProperties properties = new SettableJargonProperties(session.getJargonProperties());
+		// Parallel transfer settings
+		properties.setUseParallelTransfer(profile.getParallelThreads() > 1);
+		properties.setMaxParallelThreads(profile.getParallelThreads());
+		properties.setParallelThreadsLengthThreshold(profile.getParallelThreshold());
+		// Buffer sizes
+		properties.setPutBufferSize(profile.getBufferSize());
+		properties.setGetBufferSize(profile.getBufferSize());
+		properties.setParallelCopyBufferSize(profile.getBufferSize());
+		// Time outs
+		properties.setIrodsSocketTimeout(profile.getSocketTimeout());
+		properties.setIRODSParallelTransferSocketTimeout(profile.getParallelSocketTimeout());
+		session.setJargonProperties(properties);
+	}
+
 	/**
 	 * Closes the session for the current thread if there is one open at the moment
 	 */
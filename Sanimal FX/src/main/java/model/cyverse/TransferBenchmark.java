@@ -0,0 +1,278 @@
+package model.cyverse;
+
+import model.SanimalData;
+import model.util.SettingsData;
+import org.irods.jargon.core.connection.IRODSAccount;
+import org.irods.jargon.core.connection.IRODSSession;
+import org.irods.jargon.core.connection.IRODSSimpleProtocolManager;
+import org.irods.jargon.core.exception.JargonException;
+import org.irods.jargon.core.pub.IRODSAccessObjectFactory;
+import org.irods.jargon.core.pub.IRODSAccessObjectFactoryImpl;
+import org.irods.jargon.core.pub.io.IRODSFile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Micro-benchmark that copies a test file into a local stand-in for the data store using each transfer profile's thread count
+ * and buffer size. Each buffer sent waits a simulated round trip so that the effect of latency on small buffers and on parallel
+ * transfers can be seen without a connection to CyVerse. If the user opts in, the benchmark can instead upload the test file to their
+ * CyVerse account once per profile, which measures the real connection but costs one full upload of the test file per profile
+ */
+public class TransferBenchmark
+{
+	// The fraction of the best throughput a more conservative profile must reach to be recommended over a faster one
+	private static final Double RECOMMENDATION_TOLERANCE = 0.9;
+
+	// The account to upload with, or null to copy into the local stand-in
+	private final IRODSAccount account;
+	// The remote collection the test file is uploaded into and removed from, or null to copy into the local stand-in
+	private final String remoteDirectory;
+	// The size of the test file in bytes
+	private final Long testFileSize;
+	// The simulated round trip time in milliseconds waited after each buffer is written to the local stand-in
+	private final Long simulatedLatencyMillis;
+
+	/**
+	 * Constructor for a benchmark against the local stand-in, nothing is sent over the network
+	 *
+	 * @param testFileSize The size of the test file to transfer in bytes
+	 * @param simulatedLatencyMillis The simulated round trip time per buffer in milliseconds
+	 */
+	public TransferBenchmark(Long testFileSize, Long simulatedLatencyMillis)
+	{
+		this.account = null;
+		this.remoteDirectory = null;
+		this.testFileSize = testFileSize;
+		this.simulatedLatencyMillis = simulatedLatencyMillis;
+	}
+
+	/**
+	 * Constructor for a benchmark that uploads to CyVerse, created by CyVerseConnectionManager once the user has opted in
+	 *
+	 * @param account The authenticated account to upload with
+	 * @param remoteDirectory The remote collection to upload the test file into
+	 * @param testFileSize The size of the test file to transfer in bytes
+	 */
+	TransferBenchmark(IRODSAccount account, String remoteDirectory, Long testFileSize)
+	{
+		this.account = account;
+		this.remoteDirectory = remoteDirectory;
+		this.testFileSize = testFileSize;
+		this.simulatedLatencyMillis = 0L;
+	}
+
+	/**
+	 * Runs the benchmark once for each transfer profile
+	 *
+	 * @return A map of profile -> measured throughput in bytes per second, in the order of the profiles
+	 * @throws IOException If the test files could not be written
+	 * @throws JargonException If a test upload failed
+	 */
+	public Map<SettingsData.TransferProfile, Double> run() throws IOException, JargonException
+	{
+		Map<SettingsData.TransferProfile, Double> throughputs = new LinkedHashMap<>();
+
+		// Write the test file full of random (uncompressible) bytes
+		File source = SanimalData.getInstance().getTempDirectoryManager().createTempFile("transferBenchmark.bin");
+		this.writeTestFile(source);
+
+		try
+		{
+			for (SettingsData.TransferProfile profile : SettingsData.TransferProfile.values())
+			{
+				long start = System.nanoTime();
+				if (this.account == null)
+					this.transferLocal(source, profile);
+				else
+					this.transferRemote(source, profile);
+				long elapsedNanos = Math.max(System.nanoTime() - start, 1L);
+				throughputs.put(profile, this.testFileSize / (elapsedNanos / 1_000_000_000D));
+			}
+		}
+		finally
+		{
+			source.delete();
+		}
+
+		return throughputs;
+	}
+
+	/**
+	 * Picks the most conservative profile whose throughput is within the tolerance of the best measured throughput. Conservative
+	 * profiles use fewer connections and longer time outs, so they are preferred when they perform nearly as well
+	 *
+	 * @param throughputs The result of run()
+	 * @return The recommended profile
+	 */
+	public static SettingsData.TransferProfile recommend(Map<SettingsData.TransferProfile, Double> throughputs)
+	{
+		// Find the best throughput
+		Double best = throughputs.values().stream().max(Double::compare).orElse(0D);
+		// Profiles are declared conservative first, so return the first one that is fast enough
+		for (SettingsData.TransferProfile profile : SettingsData.TransferProfile.values())
+			if (throughputs.containsKey(profile) && throughputs.get(profile) >= best * RECOMMENDATION_TOLERANCE)
+				return profile;
+		return SettingsData.TransferProfile.Campus;
+	}
+
+	/**
+	 * Writes the test file to disk
+	 *
+	 * @param source The file to write to
+	 * @throws IOException If the file could not be written
+	 */
+	private void writeTestFile(File source) throws IOException
+	{
+		Random random = new Random();
+		byte[] chunk = new byte[1024 * 1024];
+		try (OutputStream outputStream = new FileOutputStream(source))
+		{
+			long written = 0;
+			while (written < this.testFileSize)
+			{
+				random.nextBytes(chunk);
+				int toWrite = (int) Math.min(chunk.length, this.testFileSize - written);
+				outputStream.write(chunk, 0, toWrite);
+				written = written + toWrite;
+			}
+		}
+	}
+
+	/**
+	 * Copies the source to a local stand-in for the data store the way the given profile would, splitting the file into one segment
+	 * per thread if it is above the profile's parallel threshold
+	 *
+	 * @param source The file to copy
+	 * @param profile The profile to copy with
+	 * @throws IOException If the copy failed
+	 */
+	private void transferLocal(File source, SettingsData.TransferProfile profile) throws IOException
+	{
+		// The destination file represents the data store
+		File destination = SanimalData.getInstance().getTempDirectoryManager().createTempFile("transferBenchmarkStore.bin");
+
+		// Small files or single threaded profiles use one segment
+		Integer threads = this.testFileSize > profile.getParallelThreshold() ? profile.getParallelThreads() : 1;
+		long segmentSize = (this.testFileSize + threads - 1) / threads;
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try
+		{
+			// Copy each segment on its own thread
+			List<Future<Void>> segments = new ArrayList<>();
+			for (int i = 0; i < threads; i++)
+			{
+				long position = i * segmentSize;
+				long length = Math.min(segmentSize, this.testFileSize - position);
+				segments.add(executor.submit(() ->
+				{
+					this.copySegment(source, destination, position, length, profile.getBufferSize());
+					return null;
+				}));
+			}
+			// Wait for every segment to finish
+			for (Future<Void> segment : segments)
+				segment.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Benchmark transfer was interrupted", e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new IOException("Benchmark transfer failed", e);
+		}
+		finally
+		{
+			executor.shutdownNow();
+			destination.delete();
+		}
+	}
+
+	/**
+	 * Copies one segment of the source file into the same position in the destination file
+	 *
+	 * @param source The file to copy from
+	 * @param destination The file to copy to
+	 * @param position The offset of the segment in bytes
+	 * @param length The length of the segment in bytes
+	 * @param bufferSize The number of bytes sent at a time
+	 * @throws IOException If the copy failed
+	 * @throws InterruptedException If the simulated latency was interrupted
+	 */
+	private void copySegment(File source, File destination, long position, long length, Integer bufferSize) throws IOException, InterruptedException
+	{
+		try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+			 FileChannel out = FileChannel.open(destination.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE))
+		{
+			ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+			long copied = 0;
+			while (copied < length)
+			{
+				// Read up to one buffer from the segment
+				buffer.clear();
+				buffer.limit((int) Math.min(bufferSize, length - copied));
+				int read = in.read(buffer, position + copied);
+				if (read <= 0)
+					break;
+				// Write it at the same spot in the destination
+				buffer.flip();
+				while (buffer.hasRemaining())
+					out.write(buffer, position + copied + buffer.position());
+				copied = copied + read;
+				// Wait for the simulated acknowledgement
+				if (this.simulatedLatencyMillis > 0)
+					Thread.sleep(this.simulatedLatencyMillis);
+			}
+		}
+	}
+
+	/**
+	 * Uploads the source file to CyVerse using a session tuned with the given profile, then removes the uploaded copy
+	 *
+	 * @param source The file to upload
+	 * @param profile The profile to upload with
+	 * @throws JargonException If the upload failed
+	 */
+	private void transferRemote(File source, SettingsData.TransferProfile profile) throws JargonException
+	{
+		// Use a fresh session so the profile's properties are the only ones in effect
+		IRODSSession session = IRODSSession.instance(IRODSSimpleProtocolManager.instance());
+		try
+		{
+			CyVerseSessionManager.applyTransferProfile(session, profile);
+			IRODSAccessObjectFactory accessObjectFactory = IRODSAccessObjectFactoryImpl.instance(session);
+			IRODSFile remoteFile = accessObjectFactory.getIRODSFileFactory(this.account).instanceIRODSFile(this.remoteDirectory + "/" + source.getName());
+			try
+			{
+				accessObjectFactory.getDataTransferOperations(this.account).putOperation(source, remoteFile, null, null);
+			}
+			finally
+			{
+				// Don't leave test files on the user's account, even if the put failed part way through
+				if (remoteFile.exists() && !remoteFile.delete())
+					SanimalData.getInstance().getErrorDisplay().printError("Could not remove the transfer benchmark test file " + remoteFile.getAbsolutePath() + " from CyVerse");
+			}
+		}
+		finally
+		{
+			session.closeSession(this.account);
+		}
+	}
+}
@@ -276,7 +276,7 @@ public class CloudImageEntry extends ImageEntry
 			File localFile = pullTask.getValue();
 			this.getFileProperty().setValue(localFile);
 			// Read the metadata into the image file
-			super.readFileMetadataIntoImage(SanimalData.getInstance().getLocationList(), SanimalData.getInstance().getSpeciesList());
+			super.readFileMetadataIntoImage(SanimalData.getInstance().getLocationRegistry(), SanimalData.getInstance().getSpeciesRegistry());
 			// Update flags
 			if (!this.getSpeciesPresent().isEmpty())
 				wasTaggedWithSpecies.set(true);
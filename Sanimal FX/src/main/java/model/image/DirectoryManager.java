@@ -4,7 +4,9 @@ import javafx.scene.control.Alert;
 import model.SanimalData;
 import model.analysis.SanimalAnalysisUtils;
 import model.location.Location;
+import model.location.LocationRegistry;
 import model.species.Species;
+import model.species.SpeciesRegistry;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.apache.commons.io.FilenameUtils;
@@ -12,11 +14,17 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.irods.jargon.core.pub.domain.AvuData;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.math.BigInteger;
 import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
@@ -84,13 +92,16 @@ public class DirectoryManager
 	 */
 	public static ImageDirectory loadDirectory(File imageOrLocation, List<Location> knownLocations, List<Species> knownSpecies)
 	{
+		// Index the known locations and species once so each image can find its location and species without scanning the lists
+		LocationRegistry locationRegistry = new LocationRegistry(knownLocations);
+		SpeciesRegistry speciesRegistry = new SpeciesRegistry(knownSpecies);
 		ImageDirectory toReturn;
 		if (!imageOrLocation.isDirectory())
 		{
 			// If it's not a directory, then just add the image
 			toReturn = new ImageDirectory(imageOrLocation.getParentFile());
 			ImageEntry imageEntry = new ImageEntry(imageOrLocation);
-			imageEntry.readFileMetadataIntoImage(knownLocations, knownSpecies);
+			imageEntry.readFileMetadataIntoImage(locationRegistry, speciesRegistry);
 			imageEntry.initIconBindings();
 			toReturn.addImage(imageEntry);
 		}
@@ -98,7 +109,7 @@ public class DirectoryManager
 		{
 			// If it is a directory, recursively create it
 			toReturn = new ImageDirectory(imageOrLocation);
-			DirectoryManager.createDirectoryAndImageTree(toReturn, knownLocations, knownSpecies);
+			DirectoryManager.createDirectoryAndImageTree(toReturn, locationRegistry, speciesRegistry);
 		}
 		return toReturn;
 	}
@@ -109,7 +120,7 @@ public class DirectoryManager
 	 * @param current
 	 *            The current directory to work on
 	 */
-	private static void createDirectoryAndImageTree(ImageDirectory current, List<Location> knownLocations, List<Species> knownSpecies)
+	private static void createDirectoryAndImageTree(ImageDirectory current, LocationRegistry locationRegistry, SpeciesRegistry speciesRegistry)
 	{
 		File[] subFiles = current.getFile().listFiles();
 
@@ -122,7 +133,7 @@ public class DirectoryManager
 				if (SanimalAnalysisUtils.fileIsImage(file))
 				{
 					ImageEntry imageEntry = new ImageEntry(file);
-					imageEntry.readFileMetadataIntoImage(knownLocations, knownSpecies);
+					imageEntry.readFileMetadataIntoImage(locationRegistry, speciesRegistry);
 					imageEntry.initIconBindings();
 					current.addImage(imageEntry);
 				}
@@ -131,58 +142,61 @@ public class DirectoryManager
 				{
 					ImageDirectory subDirectory = new ImageDirectory(file);
 					current.addChild(subDirectory);
-					DirectoryManager.createDirectoryAndImageTree(subDirectory, knownLocations, knownSpecies);
+					DirectoryManager.createDirectoryAndImageTree(subDirectory, locationRegistry, speciesRegistry);
 				}
 			}
 		}
 	}
 
 	/**
-	 * Given an image directory, this will create a TAR file out of the directory
+	 * Given an image directory, this will create a set of TAR files out of the directory. Images are split into parts based on their size on disk
+	 * so that each part is roughly the same number of bytes. MD5 and SHA-256 checksums of each TAR are computed as the TAR is written
 	 *
 	 * @param directory The image directory to TAR
 	 * @param directoryMetaJSON The JSON file representing this image directory
 	 * @param imageToMetadata The CSV file representing each image's metadata
-	 * @return The TAR file
+	 * @param targetBytesPerTar The number of bytes each TAR file should roughly contain
+	 * @param maxImagesPerTar The maximum number of images that may go into a single TAR file
+	 * @return The TAR files and their checksums
 	 */
-	public static File[] directoryToTars(ImageDirectory directory, File directoryMetaJSON, Function<ImageEntry, String> imageToMetadata, Integer maxImagesPerTar)
+	public static TarPart[] directoryToTars(ImageDirectory directory, File directoryMetaJSON, Function<ImageEntry, String> imageToMetadata, Long targetBytesPerTar, Integer maxImagesPerTar)
 	{
-		maxImagesPerTar = maxImagesPerTar - 1;
 		try
 		{
 			// List of images to be uploaded
 			List<ImageEntry> imageEntries = directory.flattened().filter(imageContainer -> imageContainer instanceof ImageEntry).map(imageContainer -> (ImageEntry) imageContainer).collect(Collectors.toList());
 
-			// Take the number of images / maximum number of images per tar to get the number of tar files we need
-			Integer numberOfTars = (int) Math.ceil((double) imageEntries.size() / (double) maxImagesPerTar);
-			Integer imagesPerTar = (int) Math.ceil((double) imageEntries.size() / (double) numberOfTars);
+			// Split the images into parts of roughly equal size
+			List<List<ImageEntry>> parts = DirectoryManager.partitionBySize(imageEntries, targetBytesPerTar, maxImagesPerTar);
 			// Create an array of tars
-			File[] tars = new File[numberOfTars];
+			TarPart[] tars = new TarPart[parts.size()];
 
 			// Get the path to the top level directory
 			String topDirectory = directory.getFile().getParentFile().getAbsolutePath();
 
-			for (Integer tarIndex = 0; tarIndex < numberOfTars; tarIndex++)
+			for (Integer tarIndex = 0; tarIndex < parts.size(); tarIndex++)
 			{
 				// Create a temporarily TAR file to write to
 				File tempTar = SanimalData.getInstance().getTempDirectoryManager().createTempFile("tarToUpload.tar");
+				// Digests that see every byte on its way to disk, so we get checksums without reading the TAR a second time
+				MessageDigest md5Digest = MessageDigest.getInstance("MD5");
+				MessageDigest sha256Digest = MessageDigest.getInstance("SHA-256");
 				// Create a TAR output stream to write to
-				TarArchiveOutputStream tarOut = new TarArchiveOutputStream(new FileOutputStream(tempTar));
+				TarArchiveOutputStream tarOut = new TarArchiveOutputStream(new DigestOutputStream(new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(tempTar)), md5Digest), sha256Digest));
 
 				File tempMetaCSV = SanimalData.getInstance().getTempDirectoryManager().createTempFile("meta.csv");
 				tempMetaCSV.createNewFile();
 
 				PrintWriter metaOut = new PrintWriter(tempMetaCSV);
-				for (Integer imageIndex = tarIndex * imagesPerTar; imageIndex < (tarIndex + 1) * imagesPerTar && imageIndex < imageEntries.size(); imageIndex++)
+				for (ImageEntry imageEntry : parts.get(tarIndex))
 				{
-					ImageEntry imageEntry = imageEntries.get(imageIndex);
 					// Create an archive entry for the image
 					String tarPath = StringUtils.substringAfter(imageEntry.getFile().getAbsolutePath(), topDirectory).replace('\\', '/');
 					ArchiveEntry archiveEntry = tarOut.createArchiveEntry(imageEntry.getFile(), tarPath);
 					// Put the archive entry into the TAR file
 					tarOut.putArchiveEntry(archiveEntry);
-					// Write all the bytes in the file into the TAR file
-					tarOut.write(Files.readAllBytes(imageEntry.getFile().toPath()));
+					// Stream all the bytes in the file into the TAR file
+					Files.copy(imageEntry.getFile().toPath(), tarOut);
 					// Finish writing the TAR entry
 					tarOut.closeArchiveEntry();
 
@@ -218,18 +232,85 @@ public class DirectoryManager
 				tarOut.flush();
 				tarOut.close();
 
-				// Store the tar path
-				tars[tarIndex] = tempTar;
+				// Store the tar path and its checksums
+				tars[tarIndex] = new TarPart(tempTar, DirectoryManager.toHex(md5Digest.digest()), DirectoryManager.toHex(sha256Digest.digest()));
 			}
 
 			return tars;
 		}
-		catch (IOException e)
+		catch (IOException | NoSuchAlgorithmException e)
 		{
 			e.printStackTrace();
 		}
 		// If something goes wrong, return a blank array
-		return new File[0];
+		return new TarPart[0];
+	}
+
+	/**
+	 * Converts a digest into a lowercase hex string
+	 *
+	 * @param digest The digest bytes
+	 * @return The digest as a hex string padded to the digest length
+	 */
+	private static String toHex(byte[] digest)
+	{
+		return String.format("%0" + (digest.length * 2) + "x", new BigInteger(1, digest));
+	}
+
+	/**
+	 * Splits a list of images into consecutive parts so that each part holds roughly the same number of bytes. The number of parts is
+	 * decided up front by the target size and image limit, and each part is then cut against the bytes still left to place divided by the
+	 * parts still left to fill. That way a part that comes out a little small or large is made up for by the parts after it, and we never
+	 * end up with one tiny trailing part
+	 *
+	 * @param imageEntries The images to split up
+	 * @param targetBytesPerPart The number of bytes each part should roughly contain
+	 * @param maxImagesPerPart The maximum number of files that may go into a single part, one slot of which is kept for the part's meta file
+	 * @return A list of parts, each part being a list of images
+	 */
+	private static List<List<ImageEntry>> partitionBySize(List<ImageEntry> imageEntries, Long targetBytesPerPart, Integer maxImagesPerPart)
+	{
+		List<List<ImageEntry>> parts = new ArrayList<>();
+
+		// Leave one file in each part for the meta-X.csv file
+		int maxImages = Math.max(1, maxImagesPerPart - 1);
+
+		// Sum up the size of every image
+		long totalBytes = 0;
+		for (ImageEntry imageEntry : imageEntries)
+			totalBytes = totalBytes + imageEntry.getFile().length();
+
+		// Take the total size / target size to get the number of parts we need, but use more parts if the image limit requires it
+		long numberOfParts = Math.max(1L, (long) Math.ceil((double) totalBytes / (double) targetBytesPerPart));
+		numberOfParts = Math.max(numberOfParts, (long) Math.ceil((double) imageEntries.size() / (double) maxImages));
+
+		long bytesLeft = totalBytes;
+		List<ImageEntry> currentPart = new ArrayList<>();
+		long currentPartBytes = 0;
+		for (ImageEntry imageEntry : imageEntries)
+		{
+			long imageBytes = imageEntry.getFile().length();
+			// The number of bytes this part should hold so the bytes left are spread evenly over the parts left
+			long partsLeft = Math.max(1L, numberOfParts - parts.size());
+			double partTarget = (double) bytesLeft / (double) partsLeft;
+			// Start a new part if the image is over the image limit, or if most of the image would land past this part's target. The last
+			// planned part takes everything that is left so we never make an extra part because of rounding
+			boolean overBytes = partsLeft > 1 && currentPartBytes + imageBytes / 2.0 > partTarget;
+			if (!currentPart.isEmpty() && (overBytes || currentPart.size() >= maxImages))
+			{
+				parts.add(currentPart);
+				bytesLeft = bytesLeft - currentPartBytes;
+				currentPart = new ArrayList<>();
+				currentPartBytes = 0;
+			}
+			currentPart.add(imageEntry);
+			currentPartBytes = currentPartBytes + imageBytes;
+		}
+
+		// Add the last part. We always produce at least one part because the first part holds the UploadMeta.json file
+		parts.add(currentPart);
+
+		return parts;
 	}
 
 	/**
@@ -241,12 +322,16 @@ public class DirectoryManager
 	 */
 	public static void parseLegacyDirectory(ImageDirectory directory, List<Location> knownLocations, List<Species> knownSpecies)
 	{
+		// Index the known locations and species by name
+		LocationRegistry locationRegistry = new LocationRegistry(knownLocations);
+		SpeciesRegistry speciesRegistry = new SpeciesRegistry(knownSpecies);
+
 		// Iterate over all location directories
 		directory.getChildren().stream().filter(imageContainer -> imageContainer instanceof ImageDirectory).map(imageContainer -> (ImageDirectory) imageContainer).forEach(locationDirectory ->
 		{
 			// Get the location name
 			String locationName = locationDirectory.getFile().getName();
-			Optional<Location> locationOpt = knownLocations.stream().filter(location -> location.getName().equalsIgnoreCase(locationName)).findFirst();
+			Optional<Location> locationOpt = locationRegistry.findByName(locationName);
 			Location currentLocation;
 			// Get the location if it exists
 			if (locationOpt.isPresent())
@@ -262,7 +347,7 @@ public class DirectoryManager
 				currentLocation.setElevation(0.0);
 				currentLocation.setLat(0.0);
 				currentLocation.setLng(0.0);
-				knownLocations.add(currentLocation);
+				locationRegistry.register(currentLocation);
 			}
 
 			// Iterate over all species directories
@@ -270,7 +355,7 @@ public class DirectoryManager
 			{
 				// Get the species name
 				String speciesName = speciesDirectory.getFile().getName();
-				Optional<Species> speciesOpt = knownSpecies.stream().filter(species -> species.getName().equalsIgnoreCase(speciesName)).findFirst();
+				Optional<Species> speciesOpt = speciesRegistry.findByName(speciesName);
 				Species currentSpecies;
 				// Get the species if it exists
 				if (speciesOpt.isPresent())
@@ -283,7 +368,7 @@ public class DirectoryManager
 					currentSpecies = new Species();
 					currentSpecies.setName(speciesName);
 					currentSpecies.setSpeciesIcon(Species.DEFAULT_ICON);
-					knownSpecies.add(currentSpecies);
+					speciesRegistry.register(currentSpecies);
 				}
 
 				// Iterate over all species count directories
@@ -13,8 +13,10 @@ import javafx.scene.image.Image;
 import model.SanimalData;
 import model.constant.SanimalMetadataFields;
 import model.location.Location;
+import model.location.LocationRegistry;
 import model.species.Species;
 import model.species.SpeciesEntry;
+import model.species.SpeciesRegistry;
 import model.util.MetadataUtils;
 import model.util.RoundingUtils;
 import org.apache.commons.imaging.ImageReadException;
@@ -91,7 +93,7 @@ public class ImageEntry extends ImageContainer
 	/**
 	 * Reads the file metadata and initializes fields
 	 */
-	public void readFileMetadataIntoImage(List<Location> knownLocations, List<Species> knownSpecies)
+	public void readFileMetadataIntoImage(LocationRegistry knownLocations, SpeciesRegistry knownSpecies)
 	{
 		try
 		{
@@ -140,10 +142,10 @@ public class ImageEntry extends ImageContainer
 	 * Reads the location off of an image given metadata
 	 *
 	 * @param tiffImageMetadata The image metadata
-	 * @param knownLocations The current list of known locations
+	 * @param knownLocations The registry of known locations
 	 * @throws ImageReadException If the image read fails
 	 */
-	private void readLocationFromMetadata(TiffImageMetadata tiffImageMetadata, List<Location> knownLocations) throws ImageReadException
+	private void readLocationFromMetadata(TiffImageMetadata tiffImageMetadata, LocationRegistry knownLocations) throws ImageReadException
 	{
 		// Make sure it actually has metadata to read...
 		if (tiffImageMetadata != null)
@@ -167,18 +169,11 @@ public class ImageEntry extends ImageContainer
 					try
 					{
 						// Find a matching location. It must have:
-						// The same name
+						// The same id
 						// A latitude .00001 units apart from the original
 						// A longitude .00001 units apart from the original
-						// An elevation 25 units apart from the original location
-						Optional<Location> correctLocation =
-							knownLocations
-								.stream()
-								.filter(location ->
-										StringUtils.equalsIgnoreCase(location.getId(), locationId) &&
-												Math.abs(location.getLat() - locationLatitude) < 0.0001 &&
-												Math.abs(location.getLng() - locationLongitude) < 0.0001)// For now, ignore elevation Math.abs(location.getElevation() - Double.parseDouble(locationElevation)) < 25)
-								.findFirst();
+						// For now, ignore elevation
+						Optional<Location> correctLocation = knownLocations.find(locationId, locationLatitude, locationLongitude);
 
 						if (correctLocation.isPresent())
 						{
@@ -187,7 +182,7 @@ public class ImageEntry extends ImageContainer
 						else
 						{
 							Location newLocation = new Location(locationName, locationId, locationLatitude, locationLongitude, Double.parseDouble(locationElevation));
-							knownLocations.add(newLocation);
+							knownLocations.register(newLocation);
 							this.setLocationTaken(newLocation);
 						}
 					}
@@ -210,10 +205,10 @@ public class ImageEntry extends ImageContainer
 	 * Reads the species off of an image given metadata
 	 *
 	 * @param tiffImageMetadata The image metadata
-	 * @param knownSpecies The current list of known species
+	 * @param knownSpecies The registry of known species
 	 * @throws ImageReadException If the image read fails
 	 */
-	private void readSpeciesFroMetadata(TiffImageMetadata tiffImageMetadata, List<Species> knownSpecies) throws ImageReadException
+	private void readSpeciesFroMetadata(TiffImageMetadata tiffImageMetadata, SpeciesRegistry knownSpecies) throws ImageReadException
 	{
 		// Make sure it actually has metadata to read...
 		if (tiffImageMetadata != null)
@@ -240,13 +235,7 @@ public class ImageEntry extends ImageContainer
 							String speciesCount = StringUtils.trim(speciesEntryUnpacked[2]);
 
 							// Check to see if we already have a species with the scientific and regular name
-							Optional<Species> correctSpecies =
-								knownSpecies
-									.stream()
-									.filter(species ->
-											StringUtils.equalsIgnoreCase(species.getName(), speciesName) &&
-													StringUtils.equalsIgnoreCase(species.getScientificName(), speciesScientificName))
-									.findFirst();
+							Optional<Species> correctSpecies = knownSpecies.find(speciesName, speciesScientificName);
 
 							// We need to parse a string into an integer so ensure that this doesn't crash using a try & catch
 							try
@@ -260,7 +249,7 @@ public class ImageEntry extends ImageContainer
 								else
 								{
 									Species newSpecies = new Species(speciesName, speciesScientificName);
-									knownSpecies.add(newSpecies);
+									knownSpecies.register(newSpecies);
 									this.addSpecies(newSpecies, Integer.parseInt(speciesCount));
 								}
 							}
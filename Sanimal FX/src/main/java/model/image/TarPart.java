@@ -0,0 +1,64 @@
+package model.image;
+
+import java.io.File;
+
+/**
+ * A single TAR file to upload along with the checksums computed while it was being written
+ */
+public class TarPart
+{
+	// The TAR file on disk
+	private File file;
+	// The MD5 checksum of the TAR file as a hex string
+	private final String md5Hex;
+	// The SHA-256 checksum of the TAR file as a hex string
+	private final String sha256Hex;
+
+	/**
+	 * Constructor initializes all fields
+	 *
+	 * @param file The TAR file on disk
+	 * @param md5Hex The MD5 checksum of the file as a hex string
+	 * @param sha256Hex The SHA-256 checksum of the file as a hex string
+	 */
+	public TarPart(File file, String md5Hex, String sha256Hex)
+	{
+		this.file = file;
+		this.md5Hex = md5Hex;
+		this.sha256Hex = sha256Hex;
+	}
+
+	/**
+	 * Used if the TAR file gets moved or renamed
+	 *
+	 * @param file The new location of the TAR file
+	 */
+	public void setFile(File file)
+	{
+		this.file = file;
+	}
+
+	/**
+	 * @return The TAR file on disk
+	 */
+	public File getFile()
+	{
+		return this.file;
+	}
+
+	/**
+	 * @return The MD5 checksum of the TAR file as a hex string
+	 */
+	public String getMd5Hex()
+	{
+		return this.md5Hex;
+	}
+
+	/**
+	 * @return The SHA-256 checksum of the TAR file as a hex string
+	 */
+	public String getSha256Hex()
+	{
+		return this.sha256Hex;
+	}
+}
@@ -0,0 +1,163 @@
+package model.location;
+
+import javafx.collections.ObservableList;
+import model.util.Registry;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A dictionary of locations with constant time lookup by location id, name, or coordinates. Locations don't define equals or hashCode,
+ * so the registry (like the analysis) tells them apart by reference. New locations are written through to the list the registry was
+ * created from. Locations without coordinates can be found by location id or name, but never by coordinates
+ */
+public class LocationRegistry extends Registry<Location>
+{
+	// Two locations are considered the same place if their coordinates are less than this many degrees apart
+	private static final Double COORDINATE_TOLERANCE = 0.0001;
+
+	// The lookup tables, in the order of keysOf. Cells are the size of the tolerance so a coordinate match is at most one cell away
+	private static final int BY_LOCATION_ID = 0;
+	private static final int BY_NAME = 1;
+	private static final int BY_CELL = 2;
+
+	/**
+	 * Constructor registers every location in the list. New locations found through the registry are added to the list
+	 *
+	 * @param backingList The list of known locations
+	 */
+	public LocationRegistry(List<Location> backingList)
+	{
+		super(backingList, 3);
+	}
+
+	/**
+	 * Constructor registers every location in the observable list and keeps the registry up to date as locations are added or edited.
+	 * The list should be created with an extractor that fires updates when a location's properties change
+	 *
+	 * @param backingList The list of known locations
+	 */
+	public LocationRegistry(ObservableList<Location> backingList)
+	{
+		super(backingList, 3);
+	}
+
+	/**
+	 * @param location The location
+	 * @return The location's lower case location id, lower case name, and coordinate grid cell (null if it has no coordinates)
+	 */
+	@Override
+	protected Object[] keysOf(Location location)
+	{
+		Long cell = location.getLat() == null || location.getLng() == null ? null : cellKey(cellOf(location.getLat()), cellOf(location.getLng()));
+		return new Object[] { key(location.getId()), key(location.getName()), cell };
+	}
+
+	/**
+	 * Finds a location by its location id and coordinates, this is how image metadata is matched to a known location
+	 *
+	 * @param locationId The location id, case insensitive
+	 * @param latitude The latitude, may be null
+	 * @param longitude The longitude, may be null
+	 * @return The first registered location with the location id and coordinates less than .0001 degrees away, or empty if there is none.
+	 * If the coordinates are null, the first registered location with the location id and no coordinates
+	 */
+	public synchronized Optional<Location> find(String locationId, Double latitude, Double longitude)
+	{
+		return this.candidates(BY_LOCATION_ID, key(locationId))
+				.filter(location -> isNear(location, latitude, longitude))
+				.findFirst();
+	}
+
+	/**
+	 * Finds a location by its location id
+	 *
+	 * @param locationId The location id, case insensitive
+	 * @return The first registered location with the location id, or empty if there is none
+	 */
+	public synchronized Optional<Location> findByLocationId(String locationId)
+	{
+		return this.candidates(BY_LOCATION_ID, key(locationId)).findFirst();
+	}
+
+	/**
+	 * Finds a location by its name
+	 *
+	 * @param name The name, case insensitive
+	 * @return The first registered location with the name, or empty if there is none
+	 */
+	public synchronized Optional<Location> findByName(String name)
+	{
+		return this.candidates(BY_NAME, key(name)).findFirst();
+	}
+
+	/**
+	 * Finds a location by its coordinates
+	 *
+	 * @param latitude The latitude
+	 * @param longitude The longitude
+	 * @return The first registered location less than .0001 degrees away on both axes, or empty if there is none or the coordinates are null
+	 */
+	public synchronized Optional<Location> findByCoordinates(Double latitude, Double longitude)
+	{
+		if (latitude == null || longitude == null)
+			return Optional.empty();
+
+		long latitudeCell = cellOf(latitude);
+		long longitudeCell = cellOf(longitude);
+		// A location within the tolerance is at most one cell away in each direction
+		for (long latitudeOffset = -1; latitudeOffset <= 1; latitudeOffset++)
+			for (long longitudeOffset = -1; longitudeOffset <= 1; longitudeOffset++)
+			{
+				Optional<Location> match = this.candidates(BY_CELL, cellKey(latitudeCell + latitudeOffset, longitudeCell + longitudeOffset))
+						.filter(location -> isNear(location, latitude, longitude))
+						.findFirst();
+				if (match.isPresent())
+					return match;
+			}
+		return Optional.empty();
+	}
+
+	/**
+	 * @param location The location to test
+	 * @param latitude The latitude, may be null
+	 * @param longitude The longitude, may be null
+	 * @return True if the location is less than the tolerance away from the coordinates on both axes. A missing coordinate only matches
+	 * another missing coordinate
+	 */
+	private static Boolean isNear(Location location, Double latitude, Double longitude)
+	{
+		return isNear(location.getLat(), latitude) && isNear(location.getLng(), longitude);
+	}
+
+	/**
+	 * @param first A latitude or longitude, may be null
+	 * @param second Another latitude or longitude, may be null
+	 * @return True if both are null or both are less than the tolerance apart
+	 */
+	private static Boolean isNear(Double first, Double second)
+	{
+		if (first == null || second == null)
+			return first == null && second == null;
+		return Math.abs(first - second) < COORDINATE_TOLERANCE;
+	}
+
+	/**
+	 * @param degrees A latitude or longitude
+	 * @return The index of the grid cell the coordinate falls into
+	 */
+	private static long cellOf(Double degrees)
+	{
+		return (long) Math.floor(degrees / COORDINATE_TOLERANCE);
+	}
+
+	/**
+	 * @param latitudeCell The latitude cell index
+	 * @param longitudeCell The longitude cell index
+	 * @return One key for the two cell indices
+	 */
+	private static Long cellKey(long latitudeCell, long longitudeCell)
+	{
+		return latitudeCell * 100_000_000L + longitudeCell;
+	}
+}
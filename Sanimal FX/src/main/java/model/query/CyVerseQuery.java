@@ -2,6 +2,7 @@ package model.query;
 
 
 import model.constant.SanimalMetadataFields;
+import javafx.util.Pair;
 import model.cyverse.ImageCollection;
 import model.location.Location;
 import model.species.Species;
@@ -12,6 +13,7 @@ import java.time.DayOfWeek;
 import java.time.LocalDateTime;
 import java.time.Month;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -35,40 +37,100 @@ public class CyVerseQuery
 	private Set<Integer> hourQuery = new HashSet<>();
 	// A list of days of week to query for
 	private Set<Integer> dayOfWeekQuery = new HashSet<>();
+	// The first year to query for, or null if there is no lower bound
+	private Integer startYear = null;
+	// The last year to query for, or null if there is no upper bound
+	private Integer endYear = null;
+	// All images must be taken after this date, or null if there is no lower bound
+	private LocalDateTime startDate = null;
+	// All images must be taken before this date, or null if there is no upper bound
+	private LocalDateTime endDate = null;
+	// A list of elevation (in meters) comparisons to 'and' into the query
+	private List<Pair<Double, QueryConditionOperators>> elevationConditions = new ArrayList<>();
+	// The latitude range all images must be taken in, either may be null if unbounded
+	private Double minLatitude = null;
+	private Double maxLatitude = null;
+	// The longitude range all images must be taken in, either may be null if unbounded
+	private Double minLongitude = null;
+	private Double maxLongitude = null;
+	// A list of circles all images must be taken in. CyVerse only sees their bounding boxes, so these must be tested on the client
+	private List<SpatialRadius> radiusConditions = new ArrayList<>();
+	// A list of seasonal windows all images must be taken in, sent to CyVerse as day of year ranges
+	private List<DayOfYearRange> dayOfYearRanges = new ArrayList<>();
+	// A list of time of day windows all images must be taken in, sent to CyVerse as hour ranges
+	private List<MinuteOfDayRange> minuteOfDayRanges = new ArrayList<>();
 
-	// The IRODS query builder to append to
-	private IRODSGenQueryBuilder queryBuilder;
+	// The list of conditions to append to the iRODS query when it is built. These are stored instead of appended immediately
+	// so that the query can be built more than once and split into shards
+	private List<QueryElement> queryElements = new ArrayList<>();
+
+	// True if this query returns counts instead of image paths
+	private final Boolean countQuery;
+	// If this is a count query, the attribute whose values the counts are grouped by, or null to get a single total
+	private final String countByAttribute;
 
 	/**
-	 * Constructor initializes base query fields
+	 * Constructor initializes base query fields, this query will return the path of each matching image
 	 */
 	public CyVerseQuery()
 	{
-		// We want distinct results
-		this.queryBuilder = new IRODSGenQueryBuilder(true, false, null);
-		try
-		{
-			// Path to the collection containing this data item
-			queryBuilder.addSelectAsGenQueryValue(RodsGenQueryEnum.COL_COLL_NAME);
-			// Name of this data object
-			queryBuilder.addSelectAsGenQueryValue(RodsGenQueryEnum.COL_DATA_NAME);
-			/*
-			queryBuilder.addSelectAsGenQueryValue(RodsGenQueryEnum.COL_D_DATA_ID); // ID of the data item
-			queryBuilder.addSelectAsGenQueryValue(RodsGenQueryEnum.COL_META_DATA_ATTR_ID); // ID of the metadata
-			queryBuilder.addSelectAsGenQueryValue(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME); // Attribute
-			queryBuilder.addSelectAsGenQueryValue(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE); // Value
-			queryBuilder.addSelectAsGenQueryValue(RodsGenQueryEnum.COL_META_DATA_ATTR_UNITS); // Units
-			*/
-		}
-		catch (GenQueryBuilderException e)
-		{
-			e.printStackTrace();
-		}
+		this.countQuery = false;
+		this.countByAttribute = null;
 		// All queries must operate on sanimal data, therefore SANIMAL=true
 		appendQueryElement(AVUQueryElement.AVUQueryPart.ATTRIBUTE, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_SANIMAL);
 		appendQueryElement(AVUQueryElement.AVUQueryPart.VALUE, QueryConditionOperators.EQUAL, "true");
 	}
 
+	/**
+	 * Constructor initializes an aggregate query which returns a few rows of counts computed on the server instead of one row per image.
+	 * iRODS groups an aggregate select by every non-aggregate column selected, so selecting an attribute's value next to COUNT(DATA_ID)
+	 * gives one row per distinct value. Counts are of matching metadata rows, so an image matching a multi-valued condition (like an
+	 * IN list of species) more than once is counted more than once
+	 *
+	 * @param countByAttribute The metadata attribute (from SanimalMetadataFields) to group counts by, or null to count all matching images
+	 */
+	public CyVerseQuery(String countByAttribute)
+	{
+		this.countQuery = true;
+		this.countByAttribute = countByAttribute;
+		// The value being grouped by must be the first AVU condition so iRODS joins it to the same metadata row as the selected value
+		if (countByAttribute != null)
+			appendQueryElement(AVUQueryElement.AVUQueryPart.ATTRIBUTE, QueryConditionOperators.EQUAL, countByAttribute);
+		// All queries must operate on sanimal data, therefore SANIMAL=true
+		appendQueryElement(AVUQueryElement.AVUQueryPart.ATTRIBUTE, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_SANIMAL);
+		appendQueryElement(AVUQueryElement.AVUQueryPart.VALUE, QueryConditionOperators.EQUAL, "true");
+	}
+
+	/**
+	 * Copy constructor used to create shards, copies every condition of the other query
+	 *
+	 * @param other The query to copy
+	 */
+	private CyVerseQuery(CyVerseQuery other)
+	{
+		this.countQuery = other.countQuery;
+		this.countByAttribute = other.countByAttribute;
+		this.speciesQuery = new HashSet<>(other.speciesQuery);
+		this.locationQuery = new HashSet<>(other.locationQuery);
+		this.collectionQuery = new HashSet<>(other.collectionQuery);
+		this.monthQuery = new HashSet<>(other.monthQuery);
+		this.hourQuery = new HashSet<>(other.hourQuery);
+		this.dayOfWeekQuery = new HashSet<>(other.dayOfWeekQuery);
+		this.startYear = other.startYear;
+		this.endYear = other.endYear;
+		this.startDate = other.startDate;
+		this.endDate = other.endDate;
+		this.elevationConditions = new ArrayList<>(other.elevationConditions);
+		this.minLatitude = other.minLatitude;
+		this.maxLatitude = other.maxLatitude;
+		this.minLongitude = other.minLongitude;
+		this.maxLongitude = other.maxLongitude;
+		this.radiusConditions = new ArrayList<>(other.radiusConditions);
+		this.dayOfYearRanges = new ArrayList<>(other.dayOfYearRanges);
+		this.minuteOfDayRanges = new ArrayList<>(other.minuteOfDayRanges);
+		this.queryElements = new ArrayList<>(other.queryElements);
+	}
+
 	/**
 	 * Adds a given species to the query
 	 *
@@ -107,10 +169,9 @@ public class CyVerseQuery
 	 */
 	public void setStartAndEndYear(Integer startYear, Integer endYear)
 	{
-		appendQueryElement(AVUQueryElement.AVUQueryPart.ATTRIBUTE, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_DATE_YEAR_TAKEN);
-		appendQueryElement(AVUQueryElement.AVUQueryPart.VALUE, QueryConditionOperators.NUMERIC_GREATER_THAN_OR_EQUAL_TO, startYear);
-		appendQueryElement(AVUQueryElement.AVUQueryPart.ATTRIBUTE, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_DATE_YEAR_TAKEN);
-		appendQueryElement(AVUQueryElement.AVUQueryPart.VALUE, QueryConditionOperators.NUMERIC_LESS_THAN_OR_EQUAL_TO, endYear);
+		// Multiple year ranges are 'and'ed together, so only the overlap of the ranges is kept
+		this.startYear = this.startYear == null ? startYear : Math.max(this.startYear, startYear);
+		this.endYear = this.endYear == null ? endYear : Math.min(this.endYear, endYear);
 	}
 
 	/**
@@ -150,8 +211,9 @@ public class CyVerseQuery
 	 */
 	public void setStartDate(LocalDateTime startDate)
 	{
-		appendQueryElement(AVUQueryElement.AVUQueryPart.ATTRIBUTE, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_DATE_TIME_TAKEN);
-		appendQueryElement(AVUQueryElement.AVUQueryPart.VALUE, QueryConditionOperators.NUMERIC_GREATER_THAN, startDate.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+		// Multiple start dates are 'and'ed together, so only the latest one matters
+		if (this.startDate == null || startDate.isAfter(this.startDate))
+			this.startDate = startDate;
 	}
 
 	/**
@@ -161,14 +223,83 @@ public class CyVerseQuery
 	 */
 	public void setEndDate(LocalDateTime endDate)
 	{
-		appendQueryElement(AVUQueryElement.AVUQueryPart.ATTRIBUTE, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_DATE_TIME_TAKEN);
-		appendQueryElement(AVUQueryElement.AVUQueryPart.VALUE, QueryConditionOperators.NUMERIC_LESS_THAN, endDate.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+		// Multiple end dates are 'and'ed together, so only the earliest one matters
+		if (this.endDate == null || endDate.isBefore(this.endDate))
+			this.endDate = endDate;
 	}
 
+	/**
+	 * Adds an elevation comparison to the query
+	 *
+	 * @param elevation The elevation in meters to compare against
+	 * @param operator The numeric comparison operator
+	 */
 	public void addElevationCondition(Double elevation, QueryConditionOperators operator)
 	{
-		appendQueryElement(AVUQueryElement.AVUQueryPart.ATTRIBUTE, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_LOCATION_ELEVATION);
-		appendQueryElement(AVUQueryElement.AVUQueryPart.VALUE, operator, elevation.toString());
+		this.elevationConditions.add(new Pair<>(elevation, operator));
+	}
+
+	/**
+	 * Restricts the query to images taken between two latitudes
+	 *
+	 * @param minLatitude The smallest latitude in degrees
+	 * @param maxLatitude The largest latitude in degrees
+	 */
+	public void setLatitudeRange(Double minLatitude, Double maxLatitude)
+	{
+		// Multiple ranges are 'and'ed together, so only the overlap of the ranges is kept
+		this.minLatitude = this.minLatitude == null ? minLatitude : Math.max(this.minLatitude, minLatitude);
+		this.maxLatitude = this.maxLatitude == null ? maxLatitude : Math.min(this.maxLatitude, maxLatitude);
+	}
+
+	/**
+	 * Restricts the query to images taken between two longitudes
+	 *
+	 * @param minLongitude The smallest longitude in degrees
+	 * @param maxLongitude The largest longitude in degrees
+	 */
+	public void setLongitudeRange(Double minLongitude, Double maxLongitude)
+	{
+		// Multiple ranges are 'and'ed together, so only the overlap of the ranges is kept
+		this.minLongitude = this.minLongitude == null ? minLongitude : Math.max(this.minLongitude, minLongitude);
+		this.maxLongitude = this.maxLongitude == null ? maxLongitude : Math.min(this.maxLongitude, maxLongitude);
+	}
+
+	/**
+	 * Restricts the query to images taken inside of a circle. CyVerse is sent the circle's bounding box as a latitude and longitude
+	 * range, the images in the corners of the box must be removed on the client
+	 *
+	 * @param spatialRadius The circle to 'and' into the query
+	 */
+	public void addRadiusCondition(SpatialRadius spatialRadius)
+	{
+		this.radiusConditions.add(spatialRadius);
+		this.setLatitudeRange(spatialRadius.getMinLatitude(), spatialRadius.getMaxLatitude());
+		// Circles around a pole or across the antimeridian can't be narrowed by longitude
+		if (spatialRadius.getMinLongitude() != null && spatialRadius.getMaxLongitude() != null)
+			this.setLongitudeRange(spatialRadius.getMinLongitude(), spatialRadius.getMaxLongitude());
+	}
+
+	/**
+	 * Restricts the query to images taken inside of a seasonal window in any year. CyVerse is sent the widest day of year range the
+	 * window covers, the images a day outside of the window in leap years must be removed on the client
+	 *
+	 * @param dayOfYearRange The window to 'and' into the query
+	 */
+	public void addDayOfYearRange(DayOfYearRange dayOfYearRange)
+	{
+		this.dayOfYearRanges.add(dayOfYearRange);
+	}
+
+	/**
+	 * Restricts the query to images taken inside of a time of day window. CyVerse is sent the range of hours the window covers, the
+	 * images in the partial first and last hours must be removed on the client
+	 *
+	 * @param minuteOfDayRange The window to 'and' into the query
+	 */
+	public void addMinuteOfDayRange(MinuteOfDayRange minuteOfDayRange)
+	{
+		this.minuteOfDayRanges.add(minuteOfDayRange);
 	}
 
 	/**
@@ -178,55 +309,379 @@ public class CyVerseQuery
 	 */
 	public IRODSGenQueryBuilder build()
 	{
+		// Each build gets a fresh query builder so the same query can be built more than once
+		IRODSGenQueryBuilder queryBuilder;
+		try
+		{
+			if (this.countQuery)
+			{
+				// Distinct would collapse identical counts, so we don't want it here
+				queryBuilder = new IRODSGenQueryBuilder(false, false, null);
+				// The value counts are grouped by
+				if (this.countByAttribute != null)
+					queryBuilder.addSelectAsGenQueryValue(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE);
+				// The number of data objects in each group
+				queryBuilder.addSelectAsAgregateGenQueryValue(RodsGenQueryEnum.COL_D_DATA_ID, GenQueryField.SelectFieldTypes.COUNT);
+			}
+			else
+			{
+				// We want distinct results
+				queryBuilder = new IRODSGenQueryBuilder(true, false, null);
+				// Path to the collection containing this data item
+				queryBuilder.addSelectAsGenQueryValue(RodsGenQueryEnum.COL_COLL_NAME);
+				// Name of this data object
+				queryBuilder.addSelectAsGenQueryValue(RodsGenQueryEnum.COL_DATA_NAME);
+				/*
+				queryBuilder.addSelectAsGenQueryValue(RodsGenQueryEnum.COL_D_DATA_ID); // ID of the data item
+				queryBuilder.addSelectAsGenQueryValue(RodsGenQueryEnum.COL_META_DATA_ATTR_ID); // ID of the metadata
+				queryBuilder.addSelectAsGenQueryValue(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME); // Attribute
+				queryBuilder.addSelectAsGenQueryValue(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE); // Value
+				queryBuilder.addSelectAsGenQueryValue(RodsGenQueryEnum.COL_META_DATA_ATTR_UNITS); // Units
+				*/
+			}
+		}
+		catch (GenQueryBuilderException e)
+		{
+			e.printStackTrace();
+			queryBuilder = new IRODSGenQueryBuilder(true, false, null);
+		}
+
+		// Add all conditions in the order they were given
+		for (QueryElement queryElement : this.queryElements)
+			queryBuilder.addConditionAsGenQueryField(queryElement.column, queryElement.operator, queryElement.value);
+
+		// Add the date range if there is one
+		if (this.startDate != null)
+		{
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_DATE_TIME_TAKEN);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE, QueryConditionOperators.NUMERIC_GREATER_THAN, this.startDate.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+		}
+		if (this.endDate != null)
+		{
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_DATE_TIME_TAKEN);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE, QueryConditionOperators.NUMERIC_LESS_THAN, this.endDate.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+		}
+
+		// Add each elevation comparison
+		for (Pair<Double, QueryConditionOperators> elevationCondition : this.elevationConditions)
+		{
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_LOCATION_ELEVATION);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE, elevationCondition.getValue(), elevationCondition.getKey().toString());
+		}
+
+		// Add the latitude and longitude ranges as numeric comparisons on the location's coordinates
+		if (this.minLatitude != null)
+		{
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_LOCATION_LATITUDE);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE, QueryConditionOperators.NUMERIC_GREATER_THAN_OR_EQUAL_TO, this.minLatitude.toString());
+		}
+		if (this.maxLatitude != null)
+		{
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_LOCATION_LATITUDE);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE, QueryConditionOperators.NUMERIC_LESS_THAN_OR_EQUAL_TO, this.maxLatitude.toString());
+		}
+		if (this.minLongitude != null)
+		{
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_LOCATION_LONGITUDE);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE, QueryConditionOperators.NUMERIC_GREATER_THAN_OR_EQUAL_TO, this.minLongitude.toString());
+		}
+		if (this.maxLongitude != null)
+		{
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_LOCATION_LONGITUDE);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE, QueryConditionOperators.NUMERIC_LESS_THAN_OR_EQUAL_TO, this.maxLongitude.toString());
+		}
+
+		// Add each seasonal window as a day of year range, windows over the new year can only be tested on the client
+		for (DayOfYearRange dayOfYearRange : this.dayOfYearRanges)
+		{
+			if (!dayOfYearRange.wrapsAroundYear())
+			{
+				queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_DATE_DAY_OF_YEAR_TAKEN);
+				queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE, QueryConditionOperators.NUMERIC_GREATER_THAN_OR_EQUAL_TO, dayOfYearRange.getMinDayOfYear());
+				queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_DATE_DAY_OF_YEAR_TAKEN);
+				queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE, QueryConditionOperators.NUMERIC_LESS_THAN_OR_EQUAL_TO, dayOfYearRange.getMaxDayOfYear());
+			}
+		}
+
+		// Add each time of day window as an hour range, windows over midnight can only be tested on the client
+		for (MinuteOfDayRange minuteOfDayRange : this.minuteOfDayRanges)
+		{
+			if (!minuteOfDayRange.wrapsAroundMidnight())
+			{
+				queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_DATE_HOUR_TAKEN);
+				queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE, QueryConditionOperators.NUMERIC_GREATER_THAN_OR_EQUAL_TO, minuteOfDayRange.getStartHour());
+				queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_DATE_HOUR_TAKEN);
+				queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE, QueryConditionOperators.NUMERIC_LESS_THAN_OR_EQUAL_TO, minuteOfDayRange.getEndHour());
+			}
+		}
+
+		// Add the year range if there is one
+		if (this.startYear != null)
+		{
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_DATE_YEAR_TAKEN);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE, QueryConditionOperators.NUMERIC_GREATER_THAN_OR_EQUAL_TO, this.startYear);
+		}
+		if (this.endYear != null)
+		{
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_DATE_YEAR_TAKEN);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE, QueryConditionOperators.NUMERIC_LESS_THAN_OR_EQUAL_TO, this.endYear);
+		}
+
 		// To test if a species is in a list, we is the "IN" operator. We need to create a formatted string like: ('spec1','spec2')
 		String speciesInStr = "(" + this.speciesQuery.stream().map(species -> "'" + species.getScientificName() + "'").collect(Collectors.joining(",")) + ")";
 		if (!speciesQuery.isEmpty())
 		{
-			appendQueryElement(AVUQueryElement.AVUQueryPart.ATTRIBUTE, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_SPECIES_SCIENTIFIC_NAME);
-			appendQueryElement(AVUQueryElement.AVUQueryPart.VALUE, QueryConditionOperators.IN, speciesInStr);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_SPECIES_SCIENTIFIC_NAME);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE, QueryConditionOperators.IN, speciesInStr);
 		}
 
 		// To test if a location is in a list, we is the "IN" operator. We need to create a formatted string like: ('loc1','loc2')
 		String locationInStr = "(" + this.locationQuery.stream().map(location -> "'" + location.getId() + "'").collect(Collectors.joining(",")) + ")";
 		if (!locationQuery.isEmpty())
 		{
-			appendQueryElement(AVUQueryElement.AVUQueryPart.ATTRIBUTE, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_LOCATION_ID);
-			appendQueryElement(AVUQueryElement.AVUQueryPart.VALUE, QueryConditionOperators.IN, locationInStr);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_LOCATION_ID);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE, QueryConditionOperators.IN, locationInStr);
 		}
 
 		// To test if a collection is in a list, we is the "IN" operator. We need to create a formatted string like: ('col1','col2')
 		String imageCollectionInStr = "(" + this.collectionQuery.stream().map(imageCollection -> "'" + imageCollection.getID().toString() + "'").collect(Collectors.joining(",")) + ")";
 		if (!collectionQuery.isEmpty())
 		{
-			appendQueryElement(AVUQueryElement.AVUQueryPart.ATTRIBUTE, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_COLLECTION_ID);
-			appendQueryElement(AVUQueryElement.AVUQueryPart.VALUE, QueryConditionOperators.IN, imageCollectionInStr);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_COLLECTION_ID);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE, QueryConditionOperators.IN, imageCollectionInStr);
 		}
 
 		// To test if a month is in a list, we is the "IN" operator. We need to create a formatted string like: ('mon1','mon2')
 		String monthInStr = "(" + this.monthQuery.stream().map(month -> "'" + month.toString() + "'").collect(Collectors.joining(",")) + ")";
 		if (!monthQuery.isEmpty())
 		{
-			appendQueryElement(AVUQueryElement.AVUQueryPart.ATTRIBUTE, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_DATE_MONTH_TAKEN);
-			appendQueryElement(AVUQueryElement.AVUQueryPart.VALUE, QueryConditionOperators.IN, monthInStr);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_DATE_MONTH_TAKEN);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE, QueryConditionOperators.IN, monthInStr);
 		}
 
 		// To test if a hour is in a list, we is the "IN" operator. We need to create a formatted string like: ('hr1','hr2')
 		String hourInStr = "(" + this.hourQuery.stream().map(hour -> "'" + hour.toString() + "'").collect(Collectors.joining(",")) + ")";
 		if (!hourQuery.isEmpty())
 		{
-			appendQueryElement(AVUQueryElement.AVUQueryPart.ATTRIBUTE, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_DATE_HOUR_TAKEN);
-			appendQueryElement(AVUQueryElement.AVUQueryPart.VALUE, QueryConditionOperators.IN, hourInStr);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_DATE_HOUR_TAKEN);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE, QueryConditionOperators.IN, hourInStr);
 		}
 
 		// To test if a day of week is in a list, we is the "IN" operator. We need to create a formatted string like: ('doy1','doy2')
 		String dayOfWeekInStr = "(" + this.dayOfWeekQuery.stream().map(dayOfWeek -> "'" + dayOfWeek.toString() + "'").collect(Collectors.joining(",")) + ")";
 		if (!dayOfWeekQuery.isEmpty())
 		{
-			appendQueryElement(AVUQueryElement.AVUQueryPart.ATTRIBUTE, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_DATE_DAY_OF_WEEK_TAKEN);
-			appendQueryElement(AVUQueryElement.AVUQueryPart.VALUE, QueryConditionOperators.IN, dayOfWeekInStr);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_NAME, QueryConditionOperators.EQUAL, SanimalMetadataFields.A_DATE_DAY_OF_WEEK_TAKEN);
+			queryBuilder.addConditionAsGenQueryField(RodsGenQueryEnum.COL_META_DATA_ATTR_VALUE, QueryConditionOperators.IN, dayOfWeekInStr);
+		}
+
+		return queryBuilder;
+	}
+
+	/**
+	 * @return True if this query returns counts instead of image paths
+	 */
+	public Boolean isCountQuery()
+	{
+		return this.countQuery;
+	}
+
+	/**
+	 * @return The attribute counts are grouped by, or null if this query returns a single total or is not a count query
+	 */
+	public String getCountByAttribute()
+	{
+		return this.countByAttribute;
+	}
+
+	///
+	/// Getters used by QueryPlan to read the conditions collected by this query
+	///
+
+	Set<Species> getSpeciesQuery()
+	{
+		return this.speciesQuery;
+	}
+
+	Set<Location> getLocationQuery()
+	{
+		return this.locationQuery;
+	}
+
+	Set<ImageCollection> getCollectionQuery()
+	{
+		return this.collectionQuery;
+	}
+
+	Set<Integer> getMonthQuery()
+	{
+		return this.monthQuery;
+	}
+
+	Set<Integer> getHourQuery()
+	{
+		return this.hourQuery;
+	}
+
+	Set<Integer> getDayOfWeekQuery()
+	{
+		return this.dayOfWeekQuery;
+	}
+
+	Integer getStartYear()
+	{
+		return this.startYear;
+	}
+
+	Integer getEndYear()
+	{
+		return this.endYear;
+	}
+
+	LocalDateTime getStartDate()
+	{
+		return this.startDate;
+	}
+
+	LocalDateTime getEndDate()
+	{
+		return this.endDate;
+	}
+
+	List<Pair<Double, QueryConditionOperators>> getElevationConditions()
+	{
+		return this.elevationConditions;
+	}
+
+	Double getMinLatitude()
+	{
+		return this.minLatitude;
+	}
+
+	Double getMaxLatitude()
+	{
+		return this.maxLatitude;
+	}
+
+	Double getMinLongitude()
+	{
+		return this.minLongitude;
+	}
+
+	Double getMaxLongitude()
+	{
+		return this.maxLongitude;
+	}
+
+	List<SpatialRadius> getRadiusConditions()
+	{
+		return this.radiusConditions;
+	}
+
+	List<DayOfYearRange> getDayOfYearRanges()
+	{
+		return this.dayOfYearRanges;
+	}
+
+	List<MinuteOfDayRange> getMinuteOfDayRanges()
+	{
+		return this.minuteOfDayRanges;
+	}
+
+	/**
+	 * Creates a copy of this query that only searches the given collections
+	 *
+	 * @param imageCollections The collections the copy searches, these replace any collections of this query
+	 * @return A copy of this query with its collections replaced
+	 */
+	public CyVerseQuery restrictedTo(Set<ImageCollection> imageCollections)
+	{
+		CyVerseQuery restricted = new CyVerseQuery(this);
+		restricted.collectionQuery = new HashSet<>(imageCollections);
+		return restricted;
+	}
+
+	/**
+	 * Splits this query into independent shards that together return the same results. The first dimension with more than one
+	 * value is split: collections first, then the year range, then the location and species IN lists. Images with more than one
+	 * species may be returned by more than one species shard, so results should be de-duplicated when merged
+	 *
+	 * @param maxShards The maximum number of shards to create
+	 * @return A list of shards, or a list containing only this query if it can't be split
+	 */
+	public List<CyVerseQuery> shard(Integer maxShards)
+	{
+		List<CyVerseQuery> shards = new ArrayList<>();
+		// Split the collection list, one or more collections per shard
+		if (this.collectionQuery.size() > 1 && maxShards > 1)
+		{
+			for (Set<ImageCollection> chunk : chunk(this.collectionQuery, maxShards))
+			{
+				CyVerseQuery shard = new CyVerseQuery(this);
+				shard.collectionQuery = chunk;
+				shards.add(shard);
+			}
+		}
+		// Split the year range into smaller contiguous year ranges
+		else if (this.startYear != null && this.endYear != null && this.endYear > this.startYear && maxShards > 1)
+		{
+			Integer years = this.endYear - this.startYear + 1;
+			Integer numberOfShards = Math.min(years, maxShards);
+			for (int i = 0; i < numberOfShards; i++)
+			{
+				CyVerseQuery shard = new CyVerseQuery(this);
+				shard.startYear = this.startYear + i * years / numberOfShards;
+				shard.endYear = this.startYear + (i + 1) * years / numberOfShards - 1;
+				shards.add(shard);
+			}
+		}
+		// Split the location IN list
+		else if (this.locationQuery.size() > 1 && maxShards > 1)
+		{
+			for (Set<Location> chunk : chunk(this.locationQuery, maxShards))
+			{
+				CyVerseQuery shard = new CyVerseQuery(this);
+				shard.locationQuery = chunk;
+				shards.add(shard);
+			}
+		}
+		// Split the species IN list
+		else if (this.speciesQuery.size() > 1 && maxShards > 1)
+		{
+			for (Set<Species> chunk : chunk(this.speciesQuery, maxShards))
+			{
+				CyVerseQuery shard = new CyVerseQuery(this);
+				shard.speciesQuery = chunk;
+				shards.add(shard);
+			}
 		}
+		// Nothing to split on
+		else
+		{
+			shards.add(this);
+		}
+		return shards;
+	}
 
-		return this.queryBuilder;
+	/**
+	 * Splits a set of values into a number of similarly sized sets
+	 *
+	 * @param values The values to split
+	 * @param maxChunks The maximum number of sets to split into
+	 * @param <T> The type of value
+	 * @return A list of non-empty sets containing all values exactly once
+	 */
+	private static <T> List<Set<T>> chunk(Set<T> values, Integer maxChunks)
+	{
+		Integer numberOfChunks = Math.min(values.size(), maxChunks);
+		List<Set<T>> chunks = new ArrayList<>();
+		for (int i = 0; i < numberOfChunks; i++)
+			chunks.add(new HashSet<>());
+		// Deal the values out like cards
+		int index = 0;
+		for (T value : values)
+			chunks.get(index++ % numberOfChunks).add(value);
+		return chunks;
 	}
 
 	/**
@@ -313,7 +768,7 @@ public class CyVerseQuery
 	 */
 	private void appendQueryElement(RodsGenQueryEnum column, QueryConditionOperators operator, String value)
 	{
-		this.queryBuilder.addConditionAsGenQueryField(column, operator, value);
+		this.queryElements.add(new QueryElement(column, operator, value));
 	}
 
 	/**
@@ -325,7 +780,7 @@ public class CyVerseQuery
 	 */
 	private void appendQueryElement(RodsGenQueryEnum column, QueryConditionOperators operator, int value)
 	{
-		this.queryBuilder.addConditionAsGenQueryField(column, operator, value);
+		this.queryElements.add(new QueryElement(column, operator, String.valueOf(value)));
 	}
 
 	/**
@@ -337,6 +792,33 @@ public class CyVerseQuery
 	 */
 	private void appendQueryElement(RodsGenQueryEnum column, QueryConditionOperators operator, long value)
 	{
-		this.queryBuilder.addConditionAsGenQueryField(column, operator, value);
+		this.queryElements.add(new QueryElement(column, operator, String.valueOf(value)));
+	}
+
+	/**
+	 * A single condition to add to the iRODS query when it is built
+	 */
+	private static class QueryElement
+	{
+		// The iRODS column to test
+		private final RodsGenQueryEnum column;
+		// The operator to test with
+		private final QueryConditionOperators operator;
+		// The value to test against
+		private final String value;
+
+		/**
+		 * Constructor initializes all fields
+		 *
+		 * @param column The iRODS column to test
+		 * @param operator The operator to test with
+		 * @param value The value to test against
+		 */
+		QueryElement(RodsGenQueryEnum column, QueryConditionOperators operator, String value)
+		{
+			this.column = column;
+			this.operator = operator;
+			this.value = value;
+		}
 	}
 }
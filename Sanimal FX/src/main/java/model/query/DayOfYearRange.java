@@ -0,0 +1,106 @@
+package model.query;
+
+import java.time.LocalDateTime;
+import java.time.MonthDay;
+
+/**
+ * An immutable seasonal window, such as every June 15th to August 31st, that applies to every year. CyVerse stores the day of year
+ * each image was taken, but the same calendar day has a different day of year in leap years, so the window is sent to CyVerse as the
+ * widest day of year range it could cover and the exact calendar test is done on the client
+ */
+public final class DayOfYearRange
+{
+	// A leap and non-leap year used to find the widest day of year range
+	private static final Integer LEAP_YEAR = 2000;
+	private static final Integer NON_LEAP_YEAR = 2001;
+
+	// The first day of the window, inclusive
+	private final MonthDay start;
+	// The last day of the window, inclusive
+	private final MonthDay end;
+
+	/**
+	 * Constructor initializes the window. If the start is after the end the window wraps over the new year
+	 *
+	 * @param start The first day of the window, inclusive
+	 * @param end The last day of the window, inclusive
+	 */
+	public DayOfYearRange(MonthDay start, MonthDay end)
+	{
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Tests if a date falls inside of the window in any year
+	 *
+	 * @param dateTime The date to test
+	 * @return True if the date's month and day are inside the window
+	 */
+	public Boolean contains(LocalDateTime dateTime)
+	{
+		if (dateTime == null)
+			return false;
+		MonthDay monthDay = MonthDay.from(dateTime);
+		// A window over the new year contains everything after the start or before the end
+		if (this.wrapsAroundYear())
+			return !monthDay.isBefore(this.start) || !monthDay.isAfter(this.end);
+		return !monthDay.isBefore(this.start) && !monthDay.isAfter(this.end);
+	}
+
+	/**
+	 * @return True if the window goes over the new year, which can't be sent to CyVerse as a single range
+	 */
+	public Boolean wrapsAroundYear()
+	{
+		return this.start.isAfter(this.end);
+	}
+
+	/**
+	 * @return The smallest day of year the window starts on, which is in non-leap years
+	 */
+	public Integer getMinDayOfYear()
+	{
+		return this.start.atYear(NON_LEAP_YEAR).getDayOfYear();
+	}
+
+	/**
+	 * @return The largest day of year the window ends on, which is in leap years
+	 */
+	public Integer getMaxDayOfYear()
+	{
+		return this.end.atYear(LEAP_YEAR).getDayOfYear();
+	}
+
+	///
+	/// Getters
+	///
+
+	public MonthDay getStart()
+	{
+		return this.start;
+	}
+
+	public MonthDay getEnd()
+	{
+		return this.end;
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+		return other instanceof DayOfYearRange && this.toString().equals(other.toString());
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return this.toString().hashCode();
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.start + "/" + this.end;
+	}
+}
@@ -0,0 +1,374 @@
+package model.query;
+
+import javafx.util.Pair;
+import model.cyverse.ImageCollection;
+import model.image.ImageEntry;
+import model.location.Location;
+import model.species.Species;
+import model.species.SpeciesEntry;
+import org.apache.commons.io.FilenameUtils;
+import org.irods.jargon.core.query.QueryConditionOperators;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A local index over the metadata of a list of images. Each species, location, collection, year, month, hour, and day of week
+ * has a bitmap with a bit set for every image that has that value, so query conditions can be evaluated by ANDing and ORing
+ * bitmaps without contacting CyVerse
+ */
+public class ImageIndex
+{
+	// The images in the index, an image's position in this list is its bit in every bitmap
+	private final List<ImageEntry> images;
+
+	// Bitmaps for each value of each indexed attribute
+	private final Map<String, BitSet> speciesIndex = new HashMap<>();
+	private final Map<String, BitSet> locationIndex = new HashMap<>();
+	private final Map<String, BitSet> collectionIndex = new HashMap<>();
+	private final Map<Integer, BitSet> yearIndex = new HashMap<>();
+	private final Map<Integer, BitSet> monthIndex = new HashMap<>();
+	private final Map<Integer, BitSet> hourIndex = new HashMap<>();
+	private final Map<Integer, BitSet> dayOfWeekIndex = new HashMap<>();
+
+	// Location ID -> location, used to evaluate elevation and spatial conditions one location at a time
+	private final Map<String, Location> indexedLocations = new HashMap<>();
+
+	// Image positions sorted by date taken along with the sorted dates, used to evaluate date ranges with a binary search
+	private final int[] positionsByDate;
+	private final LocalDateTime[] sortedDates;
+
+	/**
+	 * Constructor builds every bitmap from the images' metadata
+	 *
+	 * @param images The images to index
+	 */
+	public ImageIndex(List<ImageEntry> images)
+	{
+		this.images = Collections.unmodifiableList(new ArrayList<>(images));
+
+		for (int i = 0; i < this.images.size(); i++)
+		{
+			ImageEntry image = this.images.get(i);
+
+			// Species, an image can have more than one
+			for (SpeciesEntry speciesEntry : image.getSpeciesPresent())
+				set(this.speciesIndex, speciesKey(speciesEntry.getSpecies().getScientificName()), i);
+
+			// Location
+			Location location = image.getLocationTaken();
+			if (location != null)
+			{
+				set(this.locationIndex, location.getId(), i);
+				this.indexedLocations.putIfAbsent(location.getId(), location);
+			}
+
+			// Collection, which is the directory below the collections directory in the image's path
+			set(this.collectionIndex, collectionIDFromPath(image.getFile().getPath()), i);
+
+			// Date fields, the same values CyVerse stores as metadata
+			LocalDateTime dateTaken = image.getDateTaken();
+			if (dateTaken != null)
+			{
+				set(this.yearIndex, dateTaken.getYear(), i);
+				set(this.monthIndex, dateTaken.getMonthValue(), i);
+				set(this.hourIndex, dateTaken.getHour(), i);
+				set(this.dayOfWeekIndex, dateTaken.getDayOfWeek().getValue(), i);
+			}
+		}
+
+		// Sort image positions by date taken, images without a date never match a date range so they are left out
+		this.positionsByDate = sortedPositionsByDate(this.images);
+		this.sortedDates = new LocalDateTime[this.positionsByDate.length];
+		for (int i = 0; i < this.positionsByDate.length; i++)
+			this.sortedDates[i] = this.images.get(this.positionsByDate[i]).getDateTaken();
+	}
+
+	/**
+	 * Evaluates a query plan against the index. Values within one condition are ORed together and separate conditions are ANDed,
+	 * exactly like the query CyVerse would run
+	 *
+	 * @param queryPlan The plan to evaluate
+	 * @return A bitmap with a bit set for every matching image
+	 */
+	public BitSet evaluate(QueryPlan queryPlan)
+	{
+		// Start with every image
+		BitSet result = new BitSet(this.images.size());
+		result.set(0, this.images.size());
+
+		// Each IN list becomes an OR of bitmaps, which is ANDed into the result
+		if (!queryPlan.getSpecies().isEmpty())
+			result.and(this.anyOf(this.speciesIndex, queryPlan.getSpecies(), species -> speciesKey(species.getScientificName())));
+		if (!queryPlan.getLocations().isEmpty())
+			result.and(this.anyOf(this.locationIndex, queryPlan.getLocations(), Location::getId));
+		if (!queryPlan.getCollections().isEmpty())
+			result.and(this.anyOf(this.collectionIndex, queryPlan.getCollections(), collection -> collection.getID().toString()));
+		if (!queryPlan.getMonths().isEmpty())
+			result.and(this.anyOf(this.monthIndex, queryPlan.getMonths(), Function.identity()));
+		if (!queryPlan.getHours().isEmpty())
+			result.and(this.anyOf(this.hourIndex, queryPlan.getHours(), Function.identity()));
+		if (!queryPlan.getDaysOfWeek().isEmpty())
+			result.and(this.anyOf(this.dayOfWeekIndex, queryPlan.getDaysOfWeek(), Function.identity()));
+
+		// The year range is an OR of every year in the range
+		if (queryPlan.getStartYear() != null || queryPlan.getEndYear() != null)
+		{
+			BitSet years = new BitSet(this.images.size());
+			for (Map.Entry<Integer, BitSet> yearEntry : this.yearIndex.entrySet())
+				if ((queryPlan.getStartYear() == null || yearEntry.getKey() >= queryPlan.getStartYear()) && (queryPlan.getEndYear() == null || yearEntry.getKey() <= queryPlan.getEndYear()))
+					years.or(yearEntry.getValue());
+			result.and(years);
+		}
+
+		// The date range is found with a binary search of the images sorted by date
+		if (queryPlan.getStartDate() != null || queryPlan.getEndDate() != null)
+			result.and(this.dateRange(queryPlan.getStartDate(), queryPlan.getEndDate()));
+
+		// Elevation is a property of the location, so test each location and OR together the ones that pass
+		if (!queryPlan.getElevationConditions().isEmpty())
+		{
+			BitSet elevations = new BitSet(this.images.size());
+			for (Map.Entry<String, Location> indexedLocation : this.indexedLocations.entrySet())
+				if (queryPlan.getElevationConditions().stream().allMatch(condition -> compare(indexedLocation.getValue().getElevation(), condition)))
+					elevations.or(this.locationIndex.get(indexedLocation.getKey()));
+			result.and(elevations);
+		}
+
+		// Coordinate ranges and circles are also properties of the location, and are tested exactly
+		if (queryPlan.hasSpatialConditions())
+		{
+			BitSet spatial = new BitSet(this.images.size());
+			for (Map.Entry<String, Location> indexedLocation : this.indexedLocations.entrySet())
+				if (queryPlan.matchesLocation(indexedLocation.getValue()))
+					spatial.or(this.locationIndex.get(indexedLocation.getKey()));
+			result.and(spatial);
+		}
+
+		// Seasonal and time of day windows depend on the exact date, so test each remaining image
+		if (!queryPlan.getDayOfYearRanges().isEmpty() || !queryPlan.getMinuteOfDayRanges().isEmpty())
+			for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1))
+				if (!queryPlan.matchesDate(this.images.get(i).getDateTaken()))
+					result.clear(i);
+
+		return result;
+	}
+
+	/**
+	 * Returns the images with a bit set in the given bitmap
+	 *
+	 * @param bitmap The bitmap, usually the result of evaluate()
+	 * @return A list of images in index order
+	 */
+	public List<ImageEntry> imagesFor(BitSet bitmap)
+	{
+		List<ImageEntry> matching = new ArrayList<>(bitmap.cardinality());
+		for (int i = bitmap.nextSetBit(0); i >= 0 && i < this.images.size(); i = bitmap.nextSetBit(i + 1))
+			matching.add(this.images.get(i));
+		return matching;
+	}
+
+	///
+	/// Single value bitmaps that can be combined with BitSet's and() and or() for conditions not covered by a query plan.
+	/// Each one is a copy so it can be modified freely
+	///
+
+	public BitSet getSpeciesBitmap(Species species)
+	{
+		return copy(this.speciesIndex.get(speciesKey(species.getScientificName())));
+	}
+
+	public BitSet getLocationBitmap(Location location)
+	{
+		return copy(this.locationIndex.get(location.getId()));
+	}
+
+	public BitSet getCollectionBitmap(ImageCollection collection)
+	{
+		return copy(this.collectionIndex.get(collection.getID().toString()));
+	}
+
+	public BitSet getYearBitmap(Integer year)
+	{
+		return copy(this.yearIndex.get(year));
+	}
+
+	public BitSet getMonthBitmap(Integer month)
+	{
+		return copy(this.monthIndex.get(month));
+	}
+
+	public BitSet getHourBitmap(Integer hour)
+	{
+		return copy(this.hourIndex.get(hour));
+	}
+
+	public BitSet getDayOfWeekBitmap(Integer dayOfWeek)
+	{
+		return copy(this.dayOfWeekIndex.get(dayOfWeek));
+	}
+
+	/**
+	 * @return The images in the index
+	 */
+	public List<ImageEntry> getImages()
+	{
+		return this.images;
+	}
+
+	/**
+	 * ORs together the bitmaps of a set of values
+	 *
+	 * @param index The index to read bitmaps from
+	 * @param values The values to OR together
+	 * @param keyExtractor Turns a value into its key in the index
+	 * @param <K> The key type
+	 * @param <V> The value type
+	 * @return A bitmap with a bit set for every image with any of the values
+	 */
+	private <K, V> BitSet anyOf(Map<K, BitSet> index, Collection<V> values, Function<V, K> keyExtractor)
+	{
+		BitSet result = new BitSet(this.images.size());
+		for (V value : values)
+		{
+			BitSet bitmap = index.get(keyExtractor.apply(value));
+			if (bitmap != null)
+				result.or(bitmap);
+		}
+		return result;
+	}
+
+	/**
+	 * Finds every image taken strictly after the start date and strictly before the end date, like the CyVerse query does
+	 *
+	 * @param startDate The start date, or null if unbounded
+	 * @param endDate The end date, or null if unbounded
+	 * @return A bitmap of images in the range
+	 */
+	private BitSet dateRange(LocalDateTime startDate, LocalDateTime endDate)
+	{
+		// First date strictly after the start, and first date at or after the end
+		int from = startDate == null ? 0 : this.firstIndexWhere(date -> date.isAfter(startDate));
+		int to = endDate == null ? this.sortedDates.length : this.firstIndexWhere(date -> !date.isBefore(endDate));
+		BitSet result = new BitSet(this.images.size());
+		for (int i = from; i < to; i++)
+			result.set(this.positionsByDate[i]);
+		return result;
+	}
+
+	/**
+	 * Binary search for the first sorted date matching a predicate which is false for a prefix of the dates and true after
+	 *
+	 * @param predicate The predicate to test
+	 * @return The index of the first matching date, or the number of dates if none match
+	 */
+	private int firstIndexWhere(Predicate<LocalDateTime> predicate)
+	{
+		int low = 0;
+		int high = this.sortedDates.length;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (predicate.test(this.sortedDates[middle]))
+				high = middle;
+			else
+				low = middle + 1;
+		}
+		return low;
+	}
+
+	/**
+	 * Tests a value against a numeric comparison
+	 *
+	 * @param value The value to test
+	 * @param condition The comparison value and operator
+	 * @return True if the value passes the comparison
+	 */
+	private static Boolean compare(Double value, Pair<Double, QueryConditionOperators> condition)
+	{
+		if (value == null)
+			return false;
+		int comparison = Double.compare(value, condition.getKey());
+		switch (condition.getValue())
+		{
+			case NUMERIC_EQUAL:
+				return comparison == 0;
+			case NUMERIC_GREATER_THAN:
+				return comparison > 0;
+			case NUMERIC_GREATER_THAN_OR_EQUAL_TO:
+				return comparison >= 0;
+			case NUMERIC_LESS_THAN:
+				return comparison < 0;
+			case NUMERIC_LESS_THAN_OR_EQUAL_TO:
+				return comparison <= 0;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Sets an image's bit in the bitmap for a value, creating the bitmap if needed
+	 *
+	 * @param index The index to add to
+	 * @param key The value
+	 * @param position The image's position
+	 * @param <K> The value type
+	 */
+	private static <K> void set(Map<K, BitSet> index, K key, int position)
+	{
+		index.computeIfAbsent(key, ignored -> new BitSet()).set(position);
+	}
+
+	/**
+	 * @param bitmap The bitmap to copy, may be null
+	 * @return A copy of the bitmap, or an empty bitmap if it was null
+	 */
+	private static BitSet copy(BitSet bitmap)
+	{
+		return bitmap == null ? new BitSet() : (BitSet) bitmap.clone();
+	}
+
+	/**
+	 * Species are matched ignoring case, the same way query results are de-duplicated
+	 *
+	 * @param scientificName The scientific name of the species
+	 * @return The key of the species in the index
+	 */
+	private static String speciesKey(String scientificName)
+	{
+		return scientificName.toLowerCase();
+	}
+
+	/**
+	 * Images on CyVerse are stored in Collections/[collection ID]/Uploads/..., this pulls the collection ID out of that path
+	 *
+	 * @param path The path to the image
+	 * @return The collection ID, or an empty string if the image isn't in a collection
+	 */
+	private static String collectionIDFromPath(String path)
+	{
+		String[] directories = FilenameUtils.separatorsToUnix(path).split("/");
+		for (int i = 0; i < directories.length - 1; i++)
+			if (directories[i].equals("Collections"))
+				return directories[i + 1];
+		return "";
+	}
+
+	/**
+	 * Sorts image positions by date taken
+	 *
+	 * @param images The images to sort
+	 * @return The positions of every image with a date, sorted by that date
+	 */
+	private static int[] sortedPositionsByDate(List<ImageEntry> images)
+	{
+		List<Integer> positions = new ArrayList<>();
+		for (int i = 0; i < images.size(); i++)
+			if (images.get(i).getDateTaken() != null)
+				positions.add(i);
+		positions.sort(Comparator.comparing(position -> images.get(position).getDateTaken()));
+		return positions.stream().mapToInt(Integer::intValue).toArray();
+	}
+}
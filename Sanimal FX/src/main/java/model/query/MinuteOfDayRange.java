@@ -0,0 +1,123 @@
+package model.query;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * An immutable time of day window with minute precision, such as every day from 5:30 to 7:45. CyVerse only stores the hour each
+ * image was taken, so the window is sent to CyVerse as a range of hours and the exact minute test is done on the client
+ */
+public final class MinuteOfDayRange
+{
+	// The number of minutes in an hour
+	private static final Integer MINUTES_PER_HOUR = 60;
+
+	// The first minute of the window, inclusive
+	private final Integer startMinute;
+	// The last minute of the window, inclusive
+	private final Integer endMinute;
+
+	/**
+	 * Constructor initializes the window. If the start is after the end the window wraps over midnight
+	 *
+	 * @param start The first minute of the window, inclusive
+	 * @param end The last minute of the window, inclusive
+	 */
+	public MinuteOfDayRange(LocalTime start, LocalTime end)
+	{
+		this.startMinute = minuteOfDay(start);
+		this.endMinute = minuteOfDay(end);
+	}
+
+	/**
+	 * Tests if a date's time of day falls inside of the window
+	 *
+	 * @param dateTime The date to test
+	 * @return True if the date's minute of day is inside the window
+	 */
+	public Boolean contains(LocalDateTime dateTime)
+	{
+		if (dateTime == null)
+			return false;
+		Integer minute = minuteOfDay(dateTime.toLocalTime());
+		// A window over midnight contains everything after the start or before the end
+		if (this.wrapsAroundMidnight())
+			return minute >= this.startMinute || minute <= this.endMinute;
+		return minute >= this.startMinute && minute <= this.endMinute;
+	}
+
+	/**
+	 * @return True if the window goes over midnight, which can't be sent to CyVerse as a single range
+	 */
+	public Boolean wrapsAroundMidnight()
+	{
+		return this.startMinute > this.endMinute;
+	}
+
+	/**
+	 * @return True if every minute of the day is in the window, so the window filters nothing
+	 */
+	public Boolean coversWholeDay()
+	{
+		return this.wrapsAroundMidnight() ? this.startMinute - this.endMinute == 1 : this.startMinute == 0 && this.endMinute == 24 * MINUTES_PER_HOUR - 1;
+	}
+
+	/**
+	 * @return The hour the window starts in
+	 */
+	public Integer getStartHour()
+	{
+		return this.startMinute / MINUTES_PER_HOUR;
+	}
+
+	/**
+	 * @return The hour the window ends in
+	 */
+	public Integer getEndHour()
+	{
+		return this.endMinute / MINUTES_PER_HOUR;
+	}
+
+	/**
+	 * Converts a time into the number of minutes since midnight, ignoring seconds
+	 *
+	 * @param time The time to convert
+	 * @return The minute of day from 0 to 1439
+	 */
+	private static Integer minuteOfDay(LocalTime time)
+	{
+		return time.getHour() * MINUTES_PER_HOUR + time.getMinute();
+	}
+
+	///
+	/// Getters
+	///
+
+	public Integer getStartMinute()
+	{
+		return this.startMinute;
+	}
+
+	public Integer getEndMinute()
+	{
+		return this.endMinute;
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+		return other instanceof MinuteOfDayRange && this.toString().equals(other.toString());
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return this.toString().hashCode();
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.startMinute + "-" + this.endMinute;
+	}
+}
@@ -28,14 +28,28 @@ public class QueryEngine
 		return QUERY_FILTERS;
 	}
 
+	/**
+	 * Creates an immutable, normalized plan from the current list of query conditions
+	 *
+	 * @return A query plan which can be validated and turned into executable queries
+	 */
+	public QueryPlan createPlan()
+	{
+		return QueryPlan.fromConditions(new ArrayList<>(this.queryConditions));
+	}
+
 	public enum QueryFilters
 	{
 		SPECIES_FILTER("Species Filter", SpeciesFilterCondition::new),
 		LOCATION_FILTER("Location Filter", LocationFilterCondition::new),
 		ELEVATION_FILTER("Elevation filter", ElevationCondition::new),
+		BOUNDING_BOX_FILTER("Bounding Box Filter", BoundingBoxCondition::new),
+		RADIUS_FILTER("Radius Filter", RadiusCondition::new),
 		YEAR_FILTER("Year Filter", YearCondition::new),
 		MONTH_FILTER("Month Filter", MonthCondition::new),
+		DAY_OF_YEAR_FILTER("Day of Year Filter", DayOfYearCondition::new),
 		HOUR_FILTER("Hour Filter", HourCondition::new),
+		TIME_OF_DAY_FILTER("Time of Day Filter", TimeOfDayCondition::new),
 		DAY_OF_WEEK_FILTER("Day of Week Filter", DayOfWeekCondition::new),
 		START_TIME_FILTER("Start Date Filter", StartDateCondition::new),
 		END_TIME_FILTER("End Date Filter", EndDateCondition::new),
@@ -0,0 +1,573 @@
+package model.query;
+
+import javafx.util.Pair;
+import model.cyverse.ImageCollection;
+import model.image.ImageEntry;
+import model.location.Location;
+import model.species.Species;
+import org.irods.jargon.core.query.QueryConditionOperators;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable, normalized description of a query. Plans are created from the conditions in the query engine, can be validated
+ * before being sent to CyVerse, and can create any number of executable CyVerseQuery objects. Two plans with the same
+ * normalized conditions are equal, so plans can be used as cache keys and shared across threads
+ */
+public final class QueryPlan
+{
+	// The list of unique species to query for, sorted by scientific name
+	private final List<Species> species;
+	// The list of unique locations to query for, sorted by ID
+	private final List<Location> locations;
+	// The list of unique collections to query for, sorted by ID
+	private final List<ImageCollection> collections;
+	// The sorted months to query for, empty if every month is allowed
+	private final SortedSet<Integer> months;
+	// The sorted hours to query for, empty if every hour is allowed
+	private final SortedSet<Integer> hours;
+	// The sorted days of week to query for, empty if every day is allowed
+	private final SortedSet<Integer> daysOfWeek;
+	// The year range, either may be null if unbounded
+	private final Integer startYear;
+	private final Integer endYear;
+	// The date range, either may be null if unbounded
+	private final LocalDateTime startDate;
+	private final LocalDateTime endDate;
+	// The elevation comparisons, with only the tightest bound kept for each operator
+	private final List<Pair<Double, QueryConditionOperators>> elevationConditions;
+	// The latitude and longitude ranges, any may be null if unbounded
+	private final Double minLatitude;
+	private final Double maxLatitude;
+	private final Double minLongitude;
+	private final Double maxLongitude;
+	// The unique circles images must be taken in, sorted by their string form
+	private final List<SpatialRadius> radiusConditions;
+	// The unique seasonal windows images must be taken in, sorted by their string form
+	private final List<DayOfYearRange> dayOfYearRanges;
+	// The unique time of day windows images must be taken in, sorted by their string form
+	private final List<MinuteOfDayRange> minuteOfDayRanges;
+
+	// The canonical string representation of this plan, used for equality and cache keys
+	private final String canonicalForm;
+
+	/**
+	 * Creates a plan from the conditions given, each condition is applied to a query which is then normalized
+	 *
+	 * @param queryConditions The conditions to create the plan from
+	 * @return An immutable query plan
+	 */
+	public static QueryPlan fromConditions(List<IQueryCondition> queryConditions)
+	{
+		// Collect all conditions into a query first
+		CyVerseQuery conditionCollector = new CyVerseQuery();
+		for (IQueryCondition queryCondition : queryConditions)
+			queryCondition.appendConditionToQuery(conditionCollector);
+		return new QueryPlan(conditionCollector);
+	}
+
+	/**
+	 * Constructor normalizes all conditions collected by the given query
+	 *
+	 * @param conditionCollector The query that all conditions were appended to
+	 */
+	private QueryPlan(CyVerseQuery conditionCollector)
+	{
+		// Remove duplicate IN values, objects representing the same species, location, or collection are merged
+		this.species = uniqueSorted(conditionCollector.getSpeciesQuery(), Species::getScientificName);
+		this.locations = uniqueSorted(conditionCollector.getLocationQuery(), Location::getId);
+		this.collections = uniqueSorted(conditionCollector.getCollectionQuery(), collection -> collection.getID().toString());
+
+		// Time filters that allow every possible value are always true, so we drop them
+		this.months = dropIfComplete(conditionCollector.getMonthQuery(), 1, 12);
+		this.hours = dropIfComplete(conditionCollector.getHourQuery(), 0, 23);
+		this.daysOfWeek = dropIfComplete(conditionCollector.getDayOfWeekQuery(), 1, 7);
+
+		// Year and date ranges are already merged into their overlap as they are added
+		this.startYear = conditionCollector.getStartYear();
+		this.endYear = conditionCollector.getEndYear();
+		this.startDate = conditionCollector.getStartDate();
+		this.endDate = conditionCollector.getEndDate();
+
+		// Only keep the tightest elevation bound for each operator
+		Map<QueryConditionOperators, TreeSet<Double>> elevationsByOperator = new TreeMap<>();
+		for (Pair<Double, QueryConditionOperators> elevationCondition : conditionCollector.getElevationConditions())
+			elevationsByOperator.computeIfAbsent(elevationCondition.getValue(), operator -> new TreeSet<>()).add(elevationCondition.getKey());
+		List<Pair<Double, QueryConditionOperators>> elevations = new ArrayList<>();
+		elevationsByOperator.forEach((operator, sortedValues) ->
+		{
+			// Greater than keeps the largest value, less than keeps the smallest, and equality keeps them all
+			if (operator == QueryConditionOperators.NUMERIC_GREATER_THAN || operator == QueryConditionOperators.NUMERIC_GREATER_THAN_OR_EQUAL_TO)
+				elevations.add(new Pair<>(sortedValues.last(), operator));
+			else if (operator == QueryConditionOperators.NUMERIC_LESS_THAN || operator == QueryConditionOperators.NUMERIC_LESS_THAN_OR_EQUAL_TO)
+				elevations.add(new Pair<>(sortedValues.first(), operator));
+			else
+				sortedValues.forEach(value -> elevations.add(new Pair<>(value, operator)));
+		});
+		this.elevationConditions = Collections.unmodifiableList(elevations);
+
+		// Coordinate ranges are already merged into their overlap as they are added, which includes the bounding box of each circle
+		this.minLatitude = conditionCollector.getMinLatitude();
+		this.maxLatitude = conditionCollector.getMaxLatitude();
+		this.minLongitude = conditionCollector.getMinLongitude();
+		this.maxLongitude = conditionCollector.getMaxLongitude();
+		this.radiusConditions = uniqueSorted(new HashSet<>(conditionCollector.getRadiusConditions()), SpatialRadius::toString);
+
+		// Remove duplicate windows, and time of day windows covering the whole day since they are always true
+		this.dayOfYearRanges = uniqueSorted(new HashSet<>(conditionCollector.getDayOfYearRanges()), DayOfYearRange::toString);
+		this.minuteOfDayRanges = uniqueSorted(conditionCollector.getMinuteOfDayRanges().stream().filter(minuteOfDayRange -> !minuteOfDayRange.coversWholeDay()).collect(Collectors.toSet()), MinuteOfDayRange::toString);
+
+		this.canonicalForm = this.computeCanonicalForm();
+	}
+
+	/**
+	 * Validates the plan, returning a list of reasons the query can never return a result
+	 *
+	 * @return A list of problems with the plan, empty if the plan is valid
+	 */
+	public List<String> validate()
+	{
+		List<String> problems = new ArrayList<>();
+		if (this.startYear != null && this.endYear != null && this.startYear > this.endYear)
+			problems.add("The start year (" + this.startYear + ") is after the end year (" + this.endYear + ")");
+		if (this.startDate != null && this.endDate != null && !this.startDate.isBefore(this.endDate))
+			problems.add("The start date (" + this.startDate + ") is not before the end date (" + this.endDate + ")");
+		if (this.startDate != null && this.endYear != null && this.startDate.getYear() > this.endYear)
+			problems.add("The start date (" + this.startDate + ") is after the end year (" + this.endYear + ")");
+		if (this.endDate != null && this.startYear != null && this.endDate.getYear() < this.startYear)
+			problems.add("The end date (" + this.endDate + ") is before the start year (" + this.startYear + ")");
+
+		// Find the tightest lower and upper elevation bounds and make sure they overlap. A bound is strict if it comes from a greater than
+		// or less than, if a strict and non-strict bound have the same value the strict one is the tighter of the two
+		Double lowerBound = Double.NEGATIVE_INFINITY;
+		Double upperBound = Double.POSITIVE_INFINITY;
+		Boolean lowerStrict = false;
+		Boolean upperStrict = false;
+		Set<Double> equalTo = new HashSet<>();
+		for (Pair<Double, QueryConditionOperators> elevationCondition : this.elevationConditions)
+		{
+			QueryConditionOperators operator = elevationCondition.getValue();
+			Double value = elevationCondition.getKey();
+			if (operator == QueryConditionOperators.NUMERIC_GREATER_THAN || operator == QueryConditionOperators.NUMERIC_GREATER_THAN_OR_EQUAL_TO)
+			{
+				Boolean strict = operator == QueryConditionOperators.NUMERIC_GREATER_THAN;
+				if (value > lowerBound || (value.equals(lowerBound) && strict))
+				{
+					lowerBound = value;
+					lowerStrict = strict;
+				}
+			}
+			else if (operator == QueryConditionOperators.NUMERIC_LESS_THAN || operator == QueryConditionOperators.NUMERIC_LESS_THAN_OR_EQUAL_TO)
+			{
+				Boolean strict = operator == QueryConditionOperators.NUMERIC_LESS_THAN;
+				if (value < upperBound || (value.equals(upperBound) && strict))
+				{
+					upperBound = value;
+					upperStrict = strict;
+				}
+			}
+			else if (operator == QueryConditionOperators.NUMERIC_EQUAL)
+				equalTo.add(value);
+		}
+		// An empty range is invalid, and so is a single value if either end of the range excludes it
+		if (lowerBound > upperBound || (lowerBound.equals(upperBound) && (lowerStrict || upperStrict)))
+			problems.add("The elevation must be " + (lowerStrict ? "above " : "at least ") + lowerBound + "m and " + (upperStrict ? "below " : "at most ") + upperBound + "m at the same time");
+		if (equalTo.size() > 1)
+			problems.add("The elevation must equal more than one value at the same time");
+		for (Double value : equalTo)
+			if (value < lowerBound || value > upperBound || (value.equals(lowerBound) && lowerStrict) || (value.equals(upperBound) && upperStrict))
+				problems.add("The elevation must equal " + value + "m, which is outside of the elevation range");
+
+		// The bounding boxes and circles must overlap
+		if (this.minLatitude != null && this.maxLatitude != null && this.minLatitude > this.maxLatitude)
+			problems.add("The latitude must be above " + this.minLatitude + " and below " + this.maxLatitude + " at the same time");
+		if (this.minLongitude != null && this.maxLongitude != null && this.minLongitude > this.maxLongitude)
+			problems.add("The longitude must be above " + this.minLongitude + " and below " + this.maxLongitude + " at the same time");
+		for (int i = 0; i < this.radiusConditions.size(); i++)
+			for (int j = i + 1; j < this.radiusConditions.size(); j++)
+			{
+				SpatialRadius first = this.radiusConditions.get(i);
+				SpatialRadius second = this.radiusConditions.get(j);
+				if (SpatialRadius.distanceMeters(first.getCenterLatitude(), first.getCenterLongitude(), second.getCenterLatitude(), second.getCenterLongitude()) > first.getRadiusMeters() + second.getRadiusMeters())
+					problems.add("The radius filters around (" + first.getCenterLatitude() + ", " + first.getCenterLongitude() + ") and (" + second.getCenterLatitude() + ", " + second.getCenterLongitude() + ") do not overlap");
+			}
+
+		// Windows that don't wrap around must overlap
+		for (DayOfYearRange first : this.dayOfYearRanges)
+			for (DayOfYearRange second : this.dayOfYearRanges)
+				if (!first.wrapsAroundYear() && !second.wrapsAroundYear() && first.getEnd().isBefore(second.getStart()))
+					problems.add("The day of year windows " + first + " and " + second + " do not overlap");
+		for (MinuteOfDayRange first : this.minuteOfDayRanges)
+			for (MinuteOfDayRange second : this.minuteOfDayRanges)
+				if (!first.wrapsAroundMidnight() && !second.wrapsAroundMidnight() && first.getEndMinute() < second.getStartMinute())
+					problems.add("The time of day windows " + first + " and " + second + " do not overlap");
+
+		return problems;
+	}
+
+	/**
+	 * Tests if this plan is strictly narrower than another plan, meaning every image matching this plan also matches the other
+	 * plan. If so, this plan can be evaluated locally against the other plan's results instead of querying CyVerse again
+	 *
+	 * @param broader The plan to compare against
+	 * @return True if this plan's results are a subset of the other plan's results and the plans are not equal
+	 */
+	public Boolean isNarrowerThan(QueryPlan broader)
+	{
+		if (broader == null || this.equals(broader))
+			return false;
+
+		// Every IN list must be unconstrained in the broader plan, or a subset of it here
+		Boolean narrower =
+				isSubset(this.species, broader.species, Species::getScientificName) &&
+				isSubset(this.locations, broader.locations, Location::getId) &&
+				isSubset(this.collections, broader.collections, collection -> collection.getID().toString()) &&
+				isSubset(this.months, broader.months, Object::toString) &&
+				isSubset(this.hours, broader.hours, Object::toString) &&
+				isSubset(this.daysOfWeek, broader.daysOfWeek, Object::toString);
+
+		// Every range must be unbounded in the broader plan, or at least as tight here
+		narrower = narrower &&
+				(broader.startYear == null || (this.startYear != null && this.startYear >= broader.startYear)) &&
+				(broader.endYear == null || (this.endYear != null && this.endYear <= broader.endYear)) &&
+				(broader.startDate == null || (this.startDate != null && !this.startDate.isBefore(broader.startDate))) &&
+				(broader.endDate == null || (this.endDate != null && !this.endDate.isAfter(broader.endDate)));
+
+		// Every elevation comparison in the broader plan must also be in this plan
+		narrower = narrower && this.elevationConditions.containsAll(broader.elevationConditions);
+
+		// Coordinate ranges must be at least as tight here, and every circle in the broader plan must also be in this plan
+		narrower = narrower &&
+				(broader.minLatitude == null || (this.minLatitude != null && this.minLatitude >= broader.minLatitude)) &&
+				(broader.maxLatitude == null || (this.maxLatitude != null && this.maxLatitude <= broader.maxLatitude)) &&
+				(broader.minLongitude == null || (this.minLongitude != null && this.minLongitude >= broader.minLongitude)) &&
+				(broader.maxLongitude == null || (this.maxLongitude != null && this.maxLongitude <= broader.maxLongitude)) &&
+				this.radiusConditions.containsAll(broader.radiusConditions);
+
+		// Every window in the broader plan must also be in this plan
+		narrower = narrower &&
+				this.dayOfYearRanges.containsAll(broader.dayOfYearRanges) &&
+				this.minuteOfDayRanges.containsAll(broader.minuteOfDayRanges);
+
+		return narrower;
+	}
+
+	/**
+	 * Tests if one IN list is a subset of another, where an empty list means every value is allowed
+	 *
+	 * @param values The values of the narrower list
+	 * @param broaderValues The values of the broader list
+	 * @param keyExtractor Gets the key identifying a value
+	 * @param <T> The type of value
+	 * @return True if every value allowed by the narrower list is allowed by the broader list
+	 */
+	private static <T> Boolean isSubset(Collection<T> values, Collection<T> broaderValues, Function<T, String> keyExtractor)
+	{
+		if (broaderValues.isEmpty())
+			return true;
+		if (values.isEmpty())
+			return false;
+		Set<String> broaderKeys = broaderValues.stream().map(keyExtractor).collect(Collectors.toSet());
+		return values.stream().map(keyExtractor).allMatch(broaderKeys::contains);
+	}
+
+	/**
+	 * Tests if a location passes this plan's spatial conditions exactly. CyVerse only tests the bounding box of radius conditions,
+	 * so this must be used on the client to remove the images in the corners of the box
+	 *
+	 * @param location The location to test
+	 * @return True if the location is inside every coordinate range and circle
+	 */
+	public Boolean matchesLocation(Location location)
+	{
+		if (!this.hasSpatialConditions())
+			return true;
+		if (location == null || location.getLat() == null || location.getLng() == null)
+			return false;
+		Double latitude = location.getLat();
+		Double longitude = location.getLng();
+		return (this.minLatitude == null || latitude >= this.minLatitude) &&
+				(this.maxLatitude == null || latitude <= this.maxLatitude) &&
+				(this.minLongitude == null || longitude >= this.minLongitude) &&
+				(this.maxLongitude == null || longitude <= this.maxLongitude) &&
+				this.radiusConditions.stream().allMatch(spatialRadius -> spatialRadius.contains(latitude, longitude));
+	}
+
+	/**
+	 * Tests if a date passes this plan's seasonal and time of day windows exactly. CyVerse only tests the day of year and hour
+	 * ranges covering the windows, so this must be used on the client to remove the images at the edges of the ranges
+	 *
+	 * @param dateTaken The date to test
+	 * @return True if the date is inside every window
+	 */
+	public Boolean matchesDate(LocalDateTime dateTaken)
+	{
+		return this.dayOfYearRanges.stream().allMatch(dayOfYearRange -> dayOfYearRange.contains(dateTaken)) &&
+				this.minuteOfDayRanges.stream().allMatch(minuteOfDayRange -> minuteOfDayRange.contains(dateTaken));
+	}
+
+	/**
+	 * Removes the images returned by CyVerse that don't pass the conditions that can only be tested on the client
+	 *
+	 * @param images The images returned by CyVerse
+	 * @return The images that exactly match this plan
+	 */
+	public List<ImageEntry> filterOnClient(List<ImageEntry> images)
+	{
+		if (!this.hasClientConditions())
+			return images;
+		// Test each location once since many images share a location
+		Map<Location, Boolean> locationMatches = new IdentityHashMap<>();
+		return images.stream()
+				.filter(image -> image.getLocationTaken() != null && locationMatches.computeIfAbsent(image.getLocationTaken(), this::matchesLocation))
+				.filter(image -> this.matchesDate(image.getDateTaken()))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * @return True if this plan has conditions that CyVerse can only approximate, so results must be filtered with filterOnClient()
+	 */
+	public Boolean hasClientConditions()
+	{
+		return this.hasSpatialConditions() || !this.dayOfYearRanges.isEmpty() || !this.minuteOfDayRanges.isEmpty();
+	}
+
+	/**
+	 * @return True if this plan has a coordinate range or radius condition
+	 */
+	public Boolean hasSpatialConditions()
+	{
+		return this.minLatitude != null || this.maxLatitude != null || this.minLongitude != null || this.maxLongitude != null || !this.radiusConditions.isEmpty();
+	}
+
+	/**
+	 * Creates a new executable query that returns the path of every image matching this plan
+	 *
+	 * @return A new query ready to be built and executed
+	 */
+	public CyVerseQuery toQuery()
+	{
+		return this.applyTo(new CyVerseQuery());
+	}
+
+	/**
+	 * Creates a new executable aggregate query that counts the images matching this plan
+	 *
+	 * @param countByAttribute The metadata attribute to group counts by, or null to count all matching images
+	 * @return A new query ready to be built and executed
+	 */
+	public CyVerseQuery toCountQuery(String countByAttribute)
+	{
+		return this.applyTo(new CyVerseQuery(countByAttribute));
+	}
+
+	/**
+	 * Applies every normalized condition in this plan to a query
+	 *
+	 * @param query The query to apply to
+	 * @return The same query, for convenience
+	 */
+	private CyVerseQuery applyTo(CyVerseQuery query)
+	{
+		this.species.forEach(query::addSpecies);
+		this.locations.forEach(query::addLocation);
+		this.collections.forEach(query::addImageCollection);
+		this.months.forEach(query::addMonth);
+		this.hours.forEach(query::addHour);
+		this.daysOfWeek.forEach(query::addDayOfWeek);
+		if (this.startYear != null && this.endYear != null)
+			query.setStartAndEndYear(this.startYear, this.endYear);
+		if (this.startDate != null)
+			query.setStartDate(this.startDate);
+		if (this.endDate != null)
+			query.setEndDate(this.endDate);
+		this.elevationConditions.forEach(elevationCondition -> query.addElevationCondition(elevationCondition.getKey(), elevationCondition.getValue()));
+		if (this.minLatitude != null && this.maxLatitude != null)
+			query.setLatitudeRange(this.minLatitude, this.maxLatitude);
+		if (this.minLongitude != null && this.maxLongitude != null)
+			query.setLongitudeRange(this.minLongitude, this.maxLongitude);
+		this.radiusConditions.forEach(query::addRadiusCondition);
+		this.dayOfYearRanges.forEach(query::addDayOfYearRange);
+		this.minuteOfDayRanges.forEach(query::addMinuteOfDayRange);
+		return query;
+	}
+
+	/**
+	 * Computes a string that uniquely identifies the normalized conditions of this plan
+	 *
+	 * @return The canonical string
+	 */
+	private String computeCanonicalForm()
+	{
+		return "species=" + this.species.stream().map(Species::getScientificName).collect(Collectors.joining(",")) +
+				";locations=" + this.locations.stream().map(Location::getId).collect(Collectors.joining(",")) +
+				";collections=" + this.collections.stream().map(collection -> collection.getID().toString()).collect(Collectors.joining(",")) +
+				";months=" + this.months.stream().map(Object::toString).collect(Collectors.joining(",")) +
+				";hours=" + this.hours.stream().map(Object::toString).collect(Collectors.joining(",")) +
+				";daysOfWeek=" + this.daysOfWeek.stream().map(Object::toString).collect(Collectors.joining(",")) +
+				";years=" + this.startYear + "-" + this.endYear +
+				";dates=" + this.startDate + "-" + this.endDate +
+				";elevation=" + this.elevationConditions.stream().map(elevationCondition -> elevationCondition.getValue().name() + ":" + elevationCondition.getKey()).collect(Collectors.joining(",")) +
+				";latitude=" + this.minLatitude + "-" + this.maxLatitude +
+				";longitude=" + this.minLongitude + "-" + this.maxLongitude +
+				";radius=" + this.radiusConditions.stream().map(SpatialRadius::toString).collect(Collectors.joining(",")) +
+				";dayOfYear=" + this.dayOfYearRanges.stream().map(DayOfYearRange::toString).collect(Collectors.joining(",")) +
+				";minuteOfDay=" + this.minuteOfDayRanges.stream().map(MinuteOfDayRange::toString).collect(Collectors.joining(","));
+	}
+
+	/**
+	 * Removes duplicate values from a set of objects by a key, and sorts them by the key
+	 *
+	 * @param values The values to make unique
+	 * @param keyExtractor The function that gets the key identifying a value
+	 * @param <T> The type of value
+	 * @return An unmodifiable sorted list of unique values
+	 */
+	private static <T> List<T> uniqueSorted(Set<T> values, Function<T, String> keyExtractor)
+	{
+		Map<String, T> byKey = new TreeMap<>();
+		for (T value : values)
+			byKey.putIfAbsent(keyExtractor.apply(value), value);
+		return Collections.unmodifiableList(new ArrayList<>(byKey.values()));
+	}
+
+	/**
+	 * Sorts the given values, returning an empty set if every value from min to max is present since that filter is always true
+	 *
+	 * @param values The values to test
+	 * @param min The smallest possible value
+	 * @param max The largest possible value
+	 * @return An unmodifiable sorted set of values, empty if the filter is always true
+	 */
+	private static SortedSet<Integer> dropIfComplete(Set<Integer> values, Integer min, Integer max)
+	{
+		SortedSet<Integer> sorted = new TreeSet<>(values);
+		if (IntStream.rangeClosed(min, max).allMatch(sorted::contains))
+			sorted.clear();
+		return Collections.unmodifiableSortedSet(sorted);
+	}
+
+	///
+	/// Getters
+	///
+
+	public List<Species> getSpecies()
+	{
+		return this.species;
+	}
+
+	public List<Location> getLocations()
+	{
+		return this.locations;
+	}
+
+	public List<ImageCollection> getCollections()
+	{
+		return this.collections;
+	}
+
+	public SortedSet<Integer> getMonths()
+	{
+		return this.months;
+	}
+
+	public SortedSet<Integer> getHours()
+	{
+		return this.hours;
+	}
+
+	public SortedSet<Integer> getDaysOfWeek()
+	{
+		return this.daysOfWeek;
+	}
+
+	public Integer getStartYear()
+	{
+		return this.startYear;
+	}
+
+	public Integer getEndYear()
+	{
+		return this.endYear;
+	}
+
+	public LocalDateTime getStartDate()
+	{
+		return this.startDate;
+	}
+
+	public LocalDateTime getEndDate()
+	{
+		return this.endDate;
+	}
+
+	public List<Pair<Double, QueryConditionOperators>> getElevationConditions()
+	{
+		return this.elevationConditions;
+	}
+
+	public Double getMinLatitude()
+	{
+		return this.minLatitude;
+	}
+
+	public Double getMaxLatitude()
+	{
+		return this.maxLatitude;
+	}
+
+	public Double getMinLongitude()
+	{
+		return this.minLongitude;
+	}
+
+	public Double getMaxLongitude()
+	{
+		return this.maxLongitude;
+	}
+
+	public List<SpatialRadius> getRadiusConditions()
+	{
+		return this.radiusConditions;
+	}
+
+	public List<DayOfYearRange> getDayOfYearRanges()
+	{
+		return this.dayOfYearRanges;
+	}
+
+	public List<MinuteOfDayRange> getMinuteOfDayRanges()
+	{
+		return this.minuteOfDayRanges;
+	}
+
+	/**
+	 * @return The canonical string representation of this plan's conditions
+	 */
+	public String getCanonicalForm()
+	{
+		return this.canonicalForm;
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+		return other instanceof QueryPlan && this.canonicalForm.equals(((QueryPlan) other).canonicalForm);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return this.canonicalForm.hashCode();
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.canonicalForm;
+	}
+}
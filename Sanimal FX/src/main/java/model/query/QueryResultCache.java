@@ -0,0 +1,350 @@
+package model.query;
+
+import javafx.scene.control.Alert;
+import model.SanimalData;
+import model.cyverse.ImageCollection;
+import model.image.ImageEntry;
+import model.location.Location;
+import model.species.Species;
+import model.species.SpeciesEntry;
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On disk cache of query results. Entries are keyed by the canonical form of a query plan and store the image metadata retrieved
+ * from CyVerse. An entry is only used if every collection the query touches has the same modification stamp as when the entry
+ * was written
+ */
+public class QueryResultCache
+{
+	// The directory that cache entries are written to
+	private final File cacheDirectory;
+
+	/**
+	 * Constructor initializes the cache directory
+	 *
+	 * @param cacheDirectory The directory to store cache entries in, it is created if it does not exist
+	 */
+	public QueryResultCache(File cacheDirectory)
+	{
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	/**
+	 * Returns the cached result of a query plan if there is one. Out of date results are returned too so that they can be
+	 * refreshed incrementally, use CachedResult.isUpToDate() to test if the result can be used as is
+	 *
+	 * @param queryPlan The plan that was executed
+	 * @param collectionStamps The current collection ID -> modification stamp of every collection on CyVerse
+	 * @return The cached result, or null if there is no cache entry
+	 */
+	public CachedResult get(QueryPlan queryPlan, Map<String, String> collectionStamps)
+	{
+		// Without stamps we can't tell if an entry is out of date
+		if (collectionStamps.isEmpty())
+			return null;
+
+		File entryFile = this.entryFileFor(queryPlan);
+		if (!entryFile.exists())
+			return null;
+
+		try (Reader reader = new InputStreamReader(new GZIPInputStream(new FileInputStream(entryFile)), StandardCharsets.UTF_8))
+		{
+			CacheEntry cacheEntry = SanimalData.getInstance().getGson().fromJson(reader, CacheEntry.class);
+			// Make sure the entry belongs to this plan (and not a hash collision)
+			if (cacheEntry == null || cacheEntry.highWaterMark == null || !queryPlan.getCanonicalForm().equals(cacheEntry.canonicalForm))
+				return null;
+			// The result is up to date if no collection involved has changed
+			Boolean upToDate = this.involvedStamps(queryPlan, collectionStamps).equals(cacheEntry.collectionStamps);
+			return new CachedResult(this.hydrate(cacheEntry.images), cacheEntry.collectionStamps, cacheEntry.highWaterMark, upToDate);
+		}
+		catch (Exception e)
+		{
+			// A broken cache entry is just a miss, remove it so we don't read it again
+			SanimalData.getInstance().getErrorDisplay().printError("Could not read query cache entry, ignoring it: " + e.getMessage());
+			entryFile.delete();
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the result of a query plan in the cache
+	 *
+	 * @param queryPlan The plan that was executed
+	 * @param collectionStamps The collection ID -> modification stamp of every collection on CyVerse when the query was executed
+	 * @param images The images the query returned
+	 */
+	public void put(QueryPlan queryPlan, Map<String, String> collectionStamps, List<ImageEntry> images)
+	{
+		// Without stamps the entry could never be validated, and we need somewhere to put it
+		if (collectionStamps.isEmpty() || (!this.cacheDirectory.exists() && !this.cacheDirectory.mkdirs()))
+			return;
+
+		CacheEntry cacheEntry = new CacheEntry();
+		cacheEntry.canonicalForm = queryPlan.getCanonicalForm();
+		cacheEntry.collectionStamps = this.involvedStamps(queryPlan, collectionStamps);
+		cacheEntry.highWaterMark = highWaterMark(cacheEntry.collectionStamps);
+		cacheEntry.images = images.stream().map(CachedImage::new).collect(Collectors.toList());
+
+		// Write to a temporary file first and then move it over so a half written entry is never read
+		File entryFile = this.entryFileFor(queryPlan);
+		File partialFile = new File(entryFile.getPath() + ".part");
+		try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(partialFile)), StandardCharsets.UTF_8))
+		{
+			SanimalData.getInstance().getGson().toJson(cacheEntry, writer);
+		}
+		catch (IOException e)
+		{
+			SanimalData.getInstance().getErrorDisplay().showPopup(
+					Alert.AlertType.ERROR,
+					null,
+					"Error",
+					"Cache error",
+					"Error writing the query cache!\n" + ExceptionUtils.getStackTrace(e),
+					false);
+			partialFile.delete();
+			return;
+		}
+		entryFile.delete();
+		partialFile.renameTo(entryFile);
+	}
+
+	/**
+	 * Removes every entry from the cache
+	 */
+	public void clear()
+	{
+		File[] entryFiles = this.cacheDirectory.listFiles();
+		if (entryFiles != null)
+			for (File entryFile : entryFiles)
+				entryFile.delete();
+	}
+
+	/**
+	 * Returns the stamps of only the collections a plan touches. A plan without a collection filter touches every collection,
+	 * so a new collection appearing also invalidates it
+	 *
+	 * @param queryPlan The plan
+	 * @param collectionStamps The stamps of every collection
+	 * @return A sorted map of collection ID -> stamp
+	 */
+	private Map<String, String> involvedStamps(QueryPlan queryPlan, Map<String, String> collectionStamps)
+	{
+		Map<String, String> involved = new TreeMap<>();
+		if (queryPlan.getCollections().isEmpty())
+			involved.putAll(collectionStamps);
+		else
+			for (ImageCollection collection : queryPlan.getCollections())
+				involved.put(collection.getID().toString(), collectionStamps.getOrDefault(collection.getID().toString(), ""));
+		return involved;
+	}
+
+	/**
+	 * Finds the latest data or metadata modify time in a set of stamps. Anything modified after this time was not seen when the
+	 * stamps were taken
+	 *
+	 * @param collectionStamps The stamps, each formatted as dataModifyTime:metadataModifyTime:count
+	 * @return The latest modify time in epoch seconds
+	 */
+	private static Long highWaterMark(Map<String, String> collectionStamps)
+	{
+		Long highWaterMark = 0L;
+		for (String stamp : collectionStamps.values())
+		{
+			String[] parts = stamp.split(":");
+			for (int i = 0; i < Math.min(2, parts.length); i++)
+				if (parts[i].matches("\\d+"))
+					highWaterMark = Math.max(highWaterMark, Long.parseLong(parts[i]));
+		}
+		return highWaterMark;
+	}
+
+	/**
+	 * Turns cached images back into image entries. Like the CyVerse query, images with the same location or species share one object
+	 *
+	 * @param cachedImages The images read from the cache
+	 * @return A list of image entries
+	 */
+	private List<ImageEntry> hydrate(List<CachedImage> cachedImages)
+	{
+		Map<String, Location> uniqueLocations = new HashMap<>();
+		Map<String, Species> uniqueSpecies = new HashMap<>();
+		List<ImageEntry> images = new ArrayList<>(cachedImages.size());
+		for (CachedImage cachedImage : cachedImages)
+		{
+			ImageEntry entry = new ImageEntry(new File(cachedImage.path));
+			entry.setDateTaken(LocalDateTime.parse(cachedImage.dateTaken));
+			entry.setLocationTaken(uniqueLocations.computeIfAbsent(cachedImage.locationID, id -> new Location(cachedImage.locationName, id, cachedImage.locationLatitude, cachedImage.locationLongitude, cachedImage.locationElevation)));
+			for (CachedSpecies cachedSpecies : cachedImage.species)
+				entry.addSpecies(uniqueSpecies.computeIfAbsent(cachedSpecies.scientificName.toLowerCase(), key -> new Species(cachedSpecies.commonName, cachedSpecies.scientificName, Species.DEFAULT_ICON)), cachedSpecies.count);
+			images.add(entry);
+		}
+		return images;
+	}
+
+	/**
+	 * Returns the file a plan's entry is stored in, named after a hash of the user and the plan since results depend on both
+	 *
+	 * @param queryPlan The plan
+	 * @return The file to store the entry in
+	 */
+	private File entryFileFor(QueryPlan queryPlan)
+	{
+		String key = SanimalData.getInstance().getUsername() + "\n" + queryPlan.getCanonicalForm();
+		try
+		{
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+			return new File(this.cacheDirectory, String.format("%064x", new BigInteger(1, hash)) + ".json.gz");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			// Every JVM has SHA-256, but fall back to the string hash just in case
+			return new File(this.cacheDirectory, Integer.toHexString(key.hashCode()) + ".json.gz");
+		}
+	}
+
+	/**
+	 * A query result read from the cache
+	 */
+	public static class CachedResult
+	{
+		// The images the query returned
+		private final List<ImageEntry> images;
+		// The modification stamp of each collection involved when the result was cached
+		private final Map<String, String> collectionStamps;
+		// The latest modify time seen when the result was cached, in epoch seconds
+		private final Long highWaterMark;
+		// True if no collection involved has changed since the result was cached
+		private final Boolean upToDate;
+
+		/**
+		 * Constructor initializes all fields
+		 *
+		 * @param images The images the query returned
+		 * @param collectionStamps The modification stamp of each collection involved when the result was cached
+		 * @param highWaterMark The latest modify time seen when the result was cached, in epoch seconds
+		 * @param upToDate True if no collection involved has changed since the result was cached
+		 */
+		CachedResult(List<ImageEntry> images, Map<String, String> collectionStamps, Long highWaterMark, Boolean upToDate)
+		{
+			this.images = images;
+			this.collectionStamps = collectionStamps;
+			this.highWaterMark = highWaterMark;
+			this.upToDate = upToDate;
+		}
+
+		/**
+		 * @return The images the query returned
+		 */
+		public List<ImageEntry> getImages()
+		{
+			return this.images;
+		}
+
+		/**
+		 * @return The modification stamp of each collection involved when the result was cached
+		 */
+		public Map<String, String> getCollectionStamps()
+		{
+			return this.collectionStamps;
+		}
+
+		/**
+		 * @return The latest modify time seen when the result was cached, in epoch seconds
+		 */
+		public Long getHighWaterMark()
+		{
+			return this.highWaterMark;
+		}
+
+		/**
+		 * @return True if no collection involved has changed since the result was cached
+		 */
+		public Boolean isUpToDate()
+		{
+			return this.upToDate;
+		}
+	}
+
+	/**
+	 * The contents of a single cache file
+	 */
+	private static class CacheEntry
+	{
+		// The canonical form of the plan that was executed
+		private String canonicalForm;
+		// The modification stamp of each collection involved when the query was executed
+		private Map<String, String> collectionStamps;
+		// The latest modify time in the stamps, changes at or after this time were not seen by the cached result
+		private Long highWaterMark;
+		// The images returned
+		private List<CachedImage> images;
+	}
+
+	/**
+	 * The metadata of a single image returned by a query
+	 */
+	private static class CachedImage
+	{
+		private String path;
+		private String dateTaken;
+		private String locationName;
+		private String locationID;
+		private Double locationLatitude;
+		private Double locationLongitude;
+		private Double locationElevation;
+		private List<CachedSpecies> species;
+
+		/**
+		 * Constructor copies the metadata out of an image entry
+		 *
+		 * @param imageEntry The image to copy
+		 */
+		CachedImage(ImageEntry imageEntry)
+		{
+			this.path = imageEntry.getFile().getPath();
+			this.dateTaken = imageEntry.getDateTaken().toString();
+			Location location = imageEntry.getLocationTaken();
+			this.locationName = location.getName();
+			this.locationID = location.getId();
+			this.locationLatitude = location.getLat();
+			this.locationLongitude = location.getLng();
+			this.locationElevation = location.getElevation();
+			this.species = new ArrayList<>();
+			for (SpeciesEntry speciesEntry : imageEntry.getSpeciesPresent())
+				this.species.add(new CachedSpecies(speciesEntry));
+		}
+	}
+
+	/**
+	 * A single species tagged in an image returned by a query
+	 */
+	private static class CachedSpecies
+	{
+		private String commonName;
+		private String scientificName;
+		private Integer count;
+
+		/**
+		 * Constructor copies the species entry
+		 *
+		 * @param speciesEntry The species entry to copy
+		 */
+		CachedSpecies(SpeciesEntry speciesEntry)
+		{
+			this.commonName = speciesEntry.getSpecies().getName();
+			this.scientificName = speciesEntry.getSpecies().getScientificName();
+			this.count = speciesEntry.getAmount();
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package model.query;
+
+/**
+ * An immutable circle on the earth's surface used by radius query conditions. CyVerse can only compare metadata values against
+ * numbers, so the circle is sent to CyVerse as its bounding box and the exact distance test is done on the client
+ */
+public final class SpatialRadius
+{
+	// The mean radius of the earth in meters
+	private static final Double EARTH_RADIUS_METERS = 6371008.8;
+
+	// The latitude of the center in degrees
+	private final Double centerLatitude;
+	// The longitude of the center in degrees
+	private final Double centerLongitude;
+	// The radius of the circle in meters
+	private final Double radiusMeters;
+
+	/**
+	 * Constructor initializes the circle
+	 *
+	 * @param centerLatitude The latitude of the center in degrees
+	 * @param centerLongitude The longitude of the center in degrees
+	 * @param radiusMeters The radius of the circle in meters
+	 */
+	public SpatialRadius(Double centerLatitude, Double centerLongitude, Double radiusMeters)
+	{
+		this.centerLatitude = centerLatitude;
+		this.centerLongitude = centerLongitude;
+		this.radiusMeters = radiusMeters;
+	}
+
+	/**
+	 * Tests if a point is inside of the circle using the haversine great circle distance
+	 *
+	 * @param latitude The latitude of the point in degrees
+	 * @param longitude The longitude of the point in degrees
+	 * @return True if the point is at most the radius away from the center
+	 */
+	public Boolean contains(Double latitude, Double longitude)
+	{
+		if (latitude == null || longitude == null)
+			return false;
+		return distanceMeters(this.centerLatitude, this.centerLongitude, latitude, longitude) <= this.radiusMeters;
+	}
+
+	/**
+	 * @return The smallest latitude inside the circle, clamped to the south pole
+	 */
+	public Double getMinLatitude()
+	{
+		return Math.max(-90D, this.centerLatitude - this.latitudeExtent());
+	}
+
+	/**
+	 * @return The largest latitude inside the circle, clamped to the north pole
+	 */
+	public Double getMaxLatitude()
+	{
+		return Math.min(90D, this.centerLatitude + this.latitudeExtent());
+	}
+
+	/**
+	 * @return The smallest longitude inside the circle, or null if the circle's longitudes can't be described by one range
+	 */
+	public Double getMinLongitude()
+	{
+		Double extent = this.longitudeExtent();
+		return extent == null ? null : this.centerLongitude - extent;
+	}
+
+	/**
+	 * @return The largest longitude inside the circle, or null if the circle's longitudes can't be described by one range
+	 */
+	public Double getMaxLongitude()
+	{
+		Double extent = this.longitudeExtent();
+		return extent == null ? null : this.centerLongitude + extent;
+	}
+
+	/**
+	 * @return The number of degrees of latitude the circle reaches north and south of its center
+	 */
+	private Double latitudeExtent()
+	{
+		return Math.toDegrees(this.radiusMeters / EARTH_RADIUS_METERS);
+	}
+
+	/**
+	 * Computes how far east and west of its center the circle reaches. The widest point of a circle on a sphere is not at the
+	 * center's latitude, so this uses the exact tangent longitude instead of the radius divided by the latitude's circumference
+	 *
+	 * @return The number of degrees of longitude the circle reaches east and west of its center, or null if the circle contains a pole
+	 * or crosses the antimeridian
+	 */
+	private Double longitudeExtent()
+	{
+		Double angularRadius = this.radiusMeters / EARTH_RADIUS_METERS;
+		Double sinExtent = Math.sin(angularRadius) / Math.cos(Math.toRadians(this.centerLatitude));
+		// The circle contains a pole, so every longitude is inside
+		if (angularRadius >= Math.PI / 2 || sinExtent >= 1)
+			return null;
+		Double extent = Math.toDegrees(Math.asin(sinExtent));
+		// A range that wraps around +-180 can't be sent as a single numeric range
+		if (this.centerLongitude - extent < -180 || this.centerLongitude + extent > 180)
+			return null;
+		return extent;
+	}
+
+	/**
+	 * Computes the great circle distance between two points with the haversine formula
+	 *
+	 * @param latitude1 The latitude of the first point in degrees
+	 * @param longitude1 The longitude of the first point in degrees
+	 * @param latitude2 The latitude of the second point in degrees
+	 * @param longitude2 The longitude of the second point in degrees
+	 * @return The distance in meters
+	 */
+	public static Double distanceMeters(Double latitude1, Double longitude1, Double latitude2, Double longitude2)
+	{
+		double phi1 = Math.toRadians(latitude1);
+		double phi2 = Math.toRadians(latitude2);
+		double sinHalfDeltaPhi = Math.sin((phi2 - phi1) / 2);
+		double sinHalfDeltaLambda = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+		double a = sinHalfDeltaPhi * sinHalfDeltaPhi + Math.cos(phi1) * Math.cos(phi2) * sinHalfDeltaLambda * sinHalfDeltaLambda;
+		return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+	}
+
+	///
+	/// Getters
+	///
+
+	public Double getCenterLatitude()
+	{
+		return this.centerLatitude;
+	}
+
+	public Double getCenterLongitude()
+	{
+		return this.centerLongitude;
+	}
+
+	public Double getRadiusMeters()
+	{
+		return this.radiusMeters;
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+		return other instanceof SpatialRadius && this.toString().equals(other.toString());
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return this.toString().hashCode();
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.centerLatitude + ":" + this.centerLongitude + ":" + this.radiusMeters;
+	}
+}
@@ -0,0 +1,84 @@
+package model.query.conditions;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import model.query.CyVerseQuery;
+import model.query.IQueryCondition;
+
+/**
+ * Data model used by the "Bounding box filter" query condition
+ */
+public class BoundingBoxCondition implements IQueryCondition
+{
+	// The southern edge of the box in degrees
+	private DoubleProperty minLatitude = new SimpleDoubleProperty(-90);
+	// The northern edge of the box in degrees
+	private DoubleProperty maxLatitude = new SimpleDoubleProperty(90);
+	// The western edge of the box in degrees
+	private DoubleProperty minLongitude = new SimpleDoubleProperty(-180);
+	// The eastern edge of the box in degrees
+	private DoubleProperty maxLongitude = new SimpleDoubleProperty(180);
+
+	/**
+	 * This query condition ensures only images taken at locations inside the box are queried for
+	 *
+	 * @param query The current state of the query before the appending
+	 */
+	@Override
+	public void appendConditionToQuery(CyVerseQuery query)
+	{
+		query.setLatitudeRange(this.minLatitude.getValue(), this.maxLatitude.getValue());
+		query.setLongitudeRange(this.minLongitude.getValue(), this.maxLongitude.getValue());
+	}
+
+	/**
+	 * Returns the FXML document that can edit this data model
+	 *
+	 * @return An FXML UI document to edit this data model
+	 */
+	@Override
+	public String getFXMLConditionEditor()
+	{
+		return "BoundingBoxCondition.fxml";
+	}
+
+	/**
+	 * The southern edge of the box
+	 *
+	 * @return The minimum latitude in degrees
+	 */
+	public DoubleProperty minLatitudeProperty()
+	{
+		return this.minLatitude;
+	}
+
+	/**
+	 * The northern edge of the box
+	 *
+	 * @return The maximum latitude in degrees
+	 */
+	public DoubleProperty maxLatitudeProperty()
+	{
+		return this.maxLatitude;
+	}
+
+	/**
+	 * The western edge of the box
+	 *
+	 * @return The minimum longitude in degrees
+	 */
+	public DoubleProperty minLongitudeProperty()
+	{
+		return this.minLongitude;
+	}
+
+	/**
+	 * The eastern edge of the box
+	 *
+	 * @return The maximum longitude in degrees
+	 */
+	public DoubleProperty maxLongitudeProperty()
+	{
+		return this.maxLongitude;
+	}
+}
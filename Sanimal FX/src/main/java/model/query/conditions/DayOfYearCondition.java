@@ -0,0 +1,117 @@
+package model.query.conditions;
+
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import model.query.CyVerseQuery;
+import model.query.DayOfYearRange;
+import model.query.IQueryCondition;
+
+import java.time.Month;
+import java.time.MonthDay;
+
+/**
+ * Data model used by the "Day of year filter" query condition
+ */
+public class DayOfYearCondition implements IQueryCondition
+{
+	// The month the window starts in
+	private ObjectProperty<Month> startMonth = new SimpleObjectProperty<>(Month.JANUARY);
+	// The day of the month the window starts on
+	private IntegerProperty startDay = new SimpleIntegerProperty(1);
+	// The month the window ends in
+	private ObjectProperty<Month> endMonth = new SimpleObjectProperty<>(Month.DECEMBER);
+	// The day of the month the window ends on
+	private IntegerProperty endDay = new SimpleIntegerProperty(31);
+
+	// A list of possible months to pick from
+	private ObservableList<Month> monthList = FXCollections.observableArrayList(Month.values());
+
+	/**
+	 * This query condition ensures only images taken inside the window of every year are queried for
+	 *
+	 * @param query The current state of the query before the appending
+	 */
+	@Override
+	public void appendConditionToQuery(CyVerseQuery query)
+	{
+		if (this.startMonth.getValue() != null && this.endMonth.getValue() != null)
+			query.addDayOfYearRange(new DayOfYearRange(toMonthDay(this.startMonth.getValue(), this.startDay.getValue()), toMonthDay(this.endMonth.getValue(), this.endDay.getValue())));
+	}
+
+	/**
+	 * Creates a month day, clamping the day to the length of the month
+	 *
+	 * @param month The month
+	 * @param day The day of the month
+	 * @return The month day
+	 */
+	private static MonthDay toMonthDay(Month month, Integer day)
+	{
+		return MonthDay.of(month, Math.max(1, Math.min(day, month.maxLength())));
+	}
+
+	/**
+	 * Returns the FXML document that can edit this data model
+	 *
+	 * @return An FXML UI document to edit this data model
+	 */
+	@Override
+	public String getFXMLConditionEditor()
+	{
+		return "DayOfYearCondition.fxml";
+	}
+
+	/**
+	 * The month the window starts in
+	 *
+	 * @return The start month
+	 */
+	public ObjectProperty<Month> startMonthProperty()
+	{
+		return this.startMonth;
+	}
+
+	/**
+	 * The day of the month the window starts on
+	 *
+	 * @return The start day
+	 */
+	public IntegerProperty startDayProperty()
+	{
+		return this.startDay;
+	}
+
+	/**
+	 * The month the window ends in
+	 *
+	 * @return The end month
+	 */
+	public ObjectProperty<Month> endMonthProperty()
+	{
+		return this.endMonth;
+	}
+
+	/**
+	 * The day of the month the window ends on
+	 *
+	 * @return The end day
+	 */
+	public IntegerProperty endDayProperty()
+	{
+		return this.endDay;
+	}
+
+	/**
+	 * Getter for all possible months
+	 *
+	 * @return A list of months
+	 */
+	public ObservableList<Month> getMonthList()
+	{
+		return this.monthList;
+	}
+}
@@ -0,0 +1,150 @@
+package model.query.conditions;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import model.query.CyVerseQuery;
+import model.query.IQueryCondition;
+import model.query.SpatialRadius;
+
+/**
+ * Data model used by the "Radius filter" query condition
+ */
+public class RadiusCondition implements IQueryCondition
+{
+	// The latitude of the center point in degrees
+	private DoubleProperty latitude = new SimpleDoubleProperty(0);
+	// The longitude of the center point in degrees
+	private DoubleProperty longitude = new SimpleDoubleProperty(0);
+	// The distance from the center point
+	private DoubleProperty radius = new SimpleDoubleProperty(1);
+	// The units to interpret the radius as
+	private ObjectProperty<RadiusUnits> units = new SimpleObjectProperty<>(RadiusUnits.Kilometers);
+
+	// A list of possible units to filter
+	private ObservableList<RadiusUnits> unitList = FXCollections.observableArrayList(RadiusUnits.values());
+
+	/**
+	 * This query condition ensures only images taken at locations within the radius of the center point are queried for
+	 *
+	 * @param query The current state of the query before the appending
+	 */
+	@Override
+	public void appendConditionToQuery(CyVerseQuery query)
+	{
+		if (this.units.getValue() != null)
+			query.addRadiusCondition(new SpatialRadius(this.latitude.getValue(), this.longitude.getValue(), this.units.getValue().toMeters(this.radius.getValue())));
+	}
+
+	/**
+	 * Returns the FXML document that can edit this data model
+	 *
+	 * @return An FXML UI document to edit this data model
+	 */
+	@Override
+	public String getFXMLConditionEditor()
+	{
+		return "RadiusCondition.fxml";
+	}
+
+	/**
+	 * The latitude of the center point
+	 *
+	 * @return The latitude in degrees
+	 */
+	public DoubleProperty latitudeProperty()
+	{
+		return this.latitude;
+	}
+
+	/**
+	 * The longitude of the center point
+	 *
+	 * @return The longitude in degrees
+	 */
+	public DoubleProperty longitudeProperty()
+	{
+		return this.longitude;
+	}
+
+	/**
+	 * The distance from the center point
+	 *
+	 * @return The radius in the current units
+	 */
+	public DoubleProperty radiusProperty()
+	{
+		return this.radius;
+	}
+
+	/**
+	 * The units used by the radius
+	 *
+	 * @return The units of the radius
+	 */
+	public ObjectProperty<RadiusUnits> unitsProperty()
+	{
+		return this.units;
+	}
+
+	/**
+	 * Getter for all possible radius units
+	 *
+	 * @return A list of possible units
+	 */
+	public ObservableList<RadiusUnits> getUnitList()
+	{
+		return this.unitList;
+	}
+
+	/**
+	 * Enum of units a radius can be given in
+	 */
+	public enum RadiusUnits
+	{
+		Meters("m", 1D),
+		Kilometers("km", 1000D),
+		Feet("ft", 0.3048D),
+		Miles("mi", 1609.344D);
+
+		private String symbol;
+		private Double metersPerUnit;
+
+		/**
+		 * Constructor takes the symbol to display and the number of meters in one unit
+		 *
+		 * @param symbol The symbol to visually display
+		 * @param metersPerUnit The number of meters in one of this unit
+		 */
+		RadiusUnits(String symbol, Double metersPerUnit)
+		{
+			this.symbol = symbol;
+			this.metersPerUnit = metersPerUnit;
+		}
+
+		/**
+		 * Converts a distance in this unit to meters
+		 *
+		 * @param value The distance in this unit
+		 * @return The distance in meters
+		 */
+		public Double toMeters(Double value)
+		{
+			return this.metersPerUnit * value;
+		}
+
+		/**
+		 * Returns the symbol as the unit's toString
+		 *
+		 * @return The symbol
+		 */
+		@Override
+		public String toString()
+		{
+			return this.symbol;
+		}
+	}
+}
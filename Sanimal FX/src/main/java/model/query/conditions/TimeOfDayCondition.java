@@ -0,0 +1,63 @@
+package model.query.conditions;
+
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import model.query.CyVerseQuery;
+import model.query.IQueryCondition;
+import model.query.MinuteOfDayRange;
+
+import java.time.LocalTime;
+
+/**
+ * Data model used by the "Time of day filter" query condition
+ */
+public class TimeOfDayCondition implements IQueryCondition
+{
+	// The first minute of the window
+	private ObjectProperty<LocalTime> startTime = new SimpleObjectProperty<>(LocalTime.of(0, 0));
+	// The last minute of the window
+	private ObjectProperty<LocalTime> endTime = new SimpleObjectProperty<>(LocalTime.of(23, 59));
+
+	/**
+	 * This query condition ensures only images taken inside the window of every day are queried for
+	 *
+	 * @param query The current state of the query before the appending
+	 */
+	@Override
+	public void appendConditionToQuery(CyVerseQuery query)
+	{
+		if (this.startTime.getValue() != null && this.endTime.getValue() != null)
+			query.addMinuteOfDayRange(new MinuteOfDayRange(this.startTime.getValue(), this.endTime.getValue()));
+	}
+
+	/**
+	 * Returns the FXML document that can edit this data model
+	 *
+	 * @return An FXML UI document to edit this data model
+	 */
+	@Override
+	public String getFXMLConditionEditor()
+	{
+		return "TimeOfDayCondition.fxml";
+	}
+
+	/**
+	 * The first minute of the window
+	 *
+	 * @return The start time
+	 */
+	public ObjectProperty<LocalTime> startTimeProperty()
+	{
+		return this.startTime;
+	}
+
+	/**
+	 * The last minute of the window
+	 *
+	 * @return The end time
+	 */
+	public ObjectProperty<LocalTime> endTimeProperty()
+	{
+		return this.endTime;
+	}
+}
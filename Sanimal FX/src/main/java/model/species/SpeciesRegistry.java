@@ -0,0 +1,85 @@
+package model.species;
+
+import javafx.collections.ObservableList;
+import model.util.Registry;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A dictionary of species with constant time lookup by name or scientific name. Species don't define equals or hashCode, so the
+ * registry (like the analysis) tells them apart by reference. New species are written through to the list the registry was created from
+ */
+public class SpeciesRegistry extends Registry<Species>
+{
+	// The lookup tables, in the order of keysOf
+	private static final int BY_SCIENTIFIC_NAME = 0;
+	private static final int BY_NAME = 1;
+
+	/**
+	 * Constructor registers every species in the list. New species found through the registry are added to the list
+	 *
+	 * @param backingList The list of known species
+	 */
+	public SpeciesRegistry(List<Species> backingList)
+	{
+		super(backingList, 2);
+	}
+
+	/**
+	 * Constructor registers every species in the observable list and keeps the registry up to date as species are added or edited.
+	 * The list should be created with an extractor that fires updates when a species' properties change
+	 *
+	 * @param backingList The list of known species
+	 */
+	public SpeciesRegistry(ObservableList<Species> backingList)
+	{
+		super(backingList, 2);
+	}
+
+	/**
+	 * @param species The species
+	 * @return The species' lower case scientific name and name
+	 */
+	@Override
+	protected Object[] keysOf(Species species)
+	{
+		return new Object[] { key(species.getScientificName()), key(species.getName()) };
+	}
+
+	/**
+	 * Finds a species by both of its names, this is how image metadata is matched to a known species
+	 *
+	 * @param name The common name, case insensitive
+	 * @param scientificName The scientific name, case insensitive
+	 * @return The first registered species with both names, or empty if there is none
+	 */
+	public synchronized Optional<Species> find(String name, String scientificName)
+	{
+		return this.candidates(BY_SCIENTIFIC_NAME, key(scientificName))
+				.filter(candidate -> key(candidate.getName()).equals(key(name)))
+				.findFirst();
+	}
+
+	/**
+	 * Finds a species by its scientific name
+	 *
+	 * @param scientificName The scientific name, case insensitive
+	 * @return The first registered species with the scientific name, or empty if there is none
+	 */
+	public synchronized Optional<Species> findByScientificName(String scientificName)
+	{
+		return this.candidates(BY_SCIENTIFIC_NAME, key(scientificName)).findFirst();
+	}
+
+	/**
+	 * Finds a species by its common name
+	 *
+	 * @param name The common name, case insensitive
+	 * @return The first registered species with the name, or empty if there is none
+	 */
+	public synchronized Optional<Species> findByName(String name)
+	{
+		return this.candidates(BY_NAME, key(name)).findFirst();
+	}
+}
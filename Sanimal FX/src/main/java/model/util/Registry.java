@@ -0,0 +1,165 @@
+package model.util;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * A dictionary of items with constant time lookup by any number of keys. Items are told apart by reference, so two items with the same
+ * fields are still registered separately. New items are written through to the list the registry was created from. Subclasses decide
+ * which keys an item is looked up by and add finders on top of candidates()
+ *
+ * @param <T> The type of item stored in the registry
+ */
+public abstract class Registry<T>
+{
+	// The list new items get added to
+	private final List<T> backingList;
+
+	// Lookup table -> key -> items with that key, in the order they were indexed
+	private final List<Map<Object, List<T>>> tables = new ArrayList<>();
+	// Item -> the keys the item is currently indexed under, used to un-index an item when it is edited or removed
+	private final Map<T, Object[]> indexedKeys = new IdentityHashMap<>();
+
+	/**
+	 * Constructor registers every item in the list. New items found through the registry are added to the list
+	 *
+	 * @param backingList The list of known items
+	 * @param tableCount The number of keys each item is looked up by, the length of the array keysOf returns
+	 */
+	protected Registry(List<T> backingList, int tableCount)
+	{
+		this.backingList = backingList;
+		for (int table = 0; table < tableCount; table++)
+			this.tables.add(new HashMap<>());
+		synchronized (backingList)
+		{
+			backingList.forEach(this::index);
+		}
+	}
+
+	/**
+	 * Constructor registers every item in the observable list and keeps the registry up to date as items are added, edited, or
+	 * removed. The list should be created with an extractor that fires updates when an item's properties change
+	 *
+	 * @param backingList The list of known items
+	 * @param tableCount The number of keys each item is looked up by, the length of the array keysOf returns
+	 */
+	protected Registry(ObservableList<T> backingList, int tableCount)
+	{
+		this((List<T>) backingList, tableCount);
+		backingList.addListener((ListChangeListener<T>) change ->
+		{
+			while (change.next())
+			{
+				// Index new items, items added through the registry are already indexed
+				if (change.wasAdded())
+					change.getAddedSubList().forEach(this::index);
+				// Re-index items whose fields changed
+				if (change.wasUpdated())
+					for (int i = change.getFrom(); i < change.getTo(); i++)
+						this.reindex(change.getList().get(i));
+				// Removed items can't be found anymore
+				if (change.wasRemoved())
+					change.getRemoved().stream().filter(removed -> !change.getList().contains(removed)).forEach(this::unindex);
+			}
+		});
+	}
+
+	/**
+	 * Computes the keys an item is looked up by. This is called from the constructor, so it may only depend on the item
+	 *
+	 * @param item The item
+	 * @return One key per lookup table, a null key means the item can't be found through that table
+	 */
+	protected abstract Object[] keysOf(T item);
+
+	/**
+	 * Adds an item to the registry and the backing list, items that are already registered are ignored
+	 *
+	 * @param item The item to add
+	 */
+	public void register(T item)
+	{
+		synchronized (this)
+		{
+			if (this.indexedKeys.containsKey(item))
+				return;
+			this.index(item);
+		}
+		// Add to the list outside of the registry's lock, the list may be synchronized and notify our listener while holding its own lock
+		this.backingList.add(item);
+	}
+
+	/**
+	 * Finds the items indexed under a key. Callers must hold the registry's lock while using the stream
+	 *
+	 * @param table The lookup table to use
+	 * @param key The key to look up
+	 * @return The items stored under the key, in the order they were indexed
+	 */
+	protected Stream<T> candidates(int table, Object key)
+	{
+		return this.tables.get(table).getOrDefault(key, Collections.emptyList()).stream();
+	}
+
+	/**
+	 * Indexes an item under its keys if it is not indexed already
+	 *
+	 * @param item The item to index
+	 */
+	private synchronized void index(T item)
+	{
+		if (this.indexedKeys.containsKey(item))
+			return;
+		Object[] keys = this.keysOf(item);
+		for (int table = 0; table < keys.length; table++)
+			if (keys[table] != null)
+				this.tables.get(table).computeIfAbsent(keys[table], ignored -> new ArrayList<>(1)).add(item);
+		this.indexedKeys.put(item, keys);
+	}
+
+	/**
+	 * Updates the lookup tables after an item's fields are edited
+	 *
+	 * @param item The item that changed
+	 */
+	private synchronized void reindex(T item)
+	{
+		this.unindex(item);
+		this.index(item);
+	}
+
+	/**
+	 * Removes an item from every lookup table using the keys it was indexed under
+	 *
+	 * @param item The item to remove
+	 */
+	private synchronized void unindex(T item)
+	{
+		Object[] keys = this.indexedKeys.remove(item);
+		if (keys == null)
+			return;
+		for (int table = 0; table < keys.length; table++)
+		{
+			List<T> itemsForKey = this.tables.get(table).get(keys[table]);
+			if (itemsForKey != null)
+			{
+				itemsForKey.removeIf(candidate -> candidate == item);
+				if (itemsForKey.isEmpty())
+					this.tables.get(table).remove(keys[table]);
+			}
+		}
+	}
+
+	/**
+	 * @param value A string field
+	 * @return The field lower cased, with null treated as empty
+	 */
+	protected static String key(String value)
+	{
+		return value == null ? "" : value.toLowerCase();
+	}
+}
@@ -28,6 +28,7 @@ public class SettingsData
 	private BooleanProperty drSandersonOutput = new SimpleBooleanProperty(false);
 	private BooleanProperty automaticNextImage = new SimpleBooleanProperty(false);
 	private BooleanProperty backgroundImageLoading = new SimpleBooleanProperty(false);
+	private ObjectProperty<TransferProfile> transferProfile = new SimpleObjectProperty<>(TransferProfile.Campus);
 
 	/**
 	 * Constructor adds all settings SANIMAL will use to the dictionary
@@ -52,6 +53,9 @@ public class SettingsData
 		this.drSandersonOutput.setValue(otherSettings.getDrSandersonOutput());
 		this.automaticNextImage.setValue(otherSettings.getAutomaticNextImage());
 		this.backgroundImageLoading.setValue(otherSettings.getBackgroundImageLoading());
+		// Settings files written before transfer profiles existed won't have one
+		if (otherSettings.getTransferProfile() != null)
+			this.transferProfile.setValue(otherSettings.getTransferProfile());
 	}
 
 	/**
@@ -67,6 +71,7 @@ public class SettingsData
 		settingList.add(new CustomPropertyItem<>("Show Dr. Sanderson's Output Replicas: ", "Options", "Gives the option to see Dr. Jim Sanderson's Output.txt and AllPictures.txt replicas when querying", drSandersonOutput, Boolean.class));
 		settingList.add(new CustomPropertyItem<>("Automatically Select Next Image: ", "Options", "Automatically select the next image after tagging one with species", automaticNextImage, Boolean.class));
 		settingList.add(new CustomPropertyItem<>("Background Image Loading: ", "Options", "Load images in the background when selecting them, useful for slow hard drives or SD cards", backgroundImageLoading, Boolean.class));
+		settingList.add(new CustomPropertyItem<>("Transfer Profile: ", "Network", "Tunes parallel threads, buffer sizes, and timeouts used when uploading to and downloading from CyVerse", transferProfile, TransferProfile.class));
 	}
 
 	/**
@@ -310,6 +315,101 @@ public class SettingsData
 		}
 	}
 
+	/**
+	 * Transfer profiles tune how files are sent to and received from CyVerse for different kinds of network connections.
+	 * Profiles are listed from the most conservative to the most aggressive
+	 */
+	public enum TransferProfile
+	{
+		FieldSatellite("Field Satellite -- slow, high latency, unreliable links", 2, 256 * 1024, 256L * 1024L * 1024L, 600, 900),
+		Campus("Campus -- shared university networks", 4, 1024 * 1024, 32L * 1024L * 1024L, 120, 300),
+		LAN("LAN -- fast, low latency wired networks", 8, 4 * 1024 * 1024, 32L * 1024L * 1024L, 60, 120);
+
+		// The display name of the profile
+		private String stringValue;
+		// The maximum number of threads used to transfer a single file in parallel
+		private Integer parallelThreads;
+		// The size of the buffer used to send and receive file segments, in bytes
+		private Integer bufferSize;
+		// Files larger than this many bytes are transferred using multiple threads
+		private Long parallelThreshold;
+		// Time out in seconds for the main iRODS connection
+		private Integer socketTimeout;
+		// Time out in seconds for each parallel transfer thread's connection
+		private Integer parallelSocketTimeout;
+
+		/**
+		 * Constructor takes the display name and all transfer parameters
+		 *
+		 * @param stringValue The display name of the profile
+		 * @param parallelThreads The maximum number of parallel transfer threads
+		 * @param bufferSize The transfer buffer size in bytes
+		 * @param parallelThreshold The file size in bytes above which parallel transfers are used
+		 * @param socketTimeout The main connection time out in seconds
+		 * @param parallelSocketTimeout The parallel transfer connection time out in seconds
+		 */
+		TransferProfile(String stringValue, Integer parallelThreads, Integer bufferSize, Long parallelThreshold, Integer socketTimeout, Integer parallelSocketTimeout)
+		{
+			this.stringValue = stringValue;
+			this.parallelThreads = parallelThreads;
+			this.bufferSize = bufferSize;
+			this.parallelThreshold = parallelThreshold;
+			this.socketTimeout = socketTimeout;
+			this.parallelSocketTimeout = parallelSocketTimeout;
+		}
+
+		/**
+		 * Returns the display name of the profile
+		 *
+		 * @return The display name of the profile
+		 */
+		@Override
+		public String toString()
+		{
+			return this.stringValue;
+		}
+
+		/**
+		 * @return The maximum number of threads used to transfer a single file
+		 */
+		public Integer getParallelThreads()
+		{
+			return this.parallelThreads;
+		}
+
+		/**
+		 * @return The size of the transfer buffer in bytes
+		 */
+		public Integer getBufferSize()
+		{
+			return this.bufferSize;
+		}
+
+		/**
+		 * @return The file size in bytes above which parallel transfers are used
+		 */
+		public Long getParallelThreshold()
+		{
+			return this.parallelThreshold;
+		}
+
+		/**
+		 * @return The main connection time out in seconds
+		 */
+		public Integer getSocketTimeout()
+		{
+			return this.socketTimeout;
+		}
+
+		/**
+		 * @return The parallel transfer connection time out in seconds
+		 */
+		public Integer getParallelSocketTimeout()
+		{
+			return this.parallelSocketTimeout;
+		}
+	}
+
 	///
 	/// Getters/Setters
 	///
@@ -438,4 +538,19 @@ public class SettingsData
 	{
 		return drSandersonOutput;
 	}
+
+	public void setTransferProfile(TransferProfile transferProfile)
+	{
+		this.transferProfile.set(transferProfile);
+	}
+
+	public TransferProfile getTransferProfile()
+	{
+		return transferProfile.get();
+	}
+
+	public ObjectProperty<TransferProfile> transferProfileProperty()
+	{
+		return transferProfile;
+	}
 }